@@ -1,7 +1,9 @@
 package com.hungng3011.vdtecomberefresh.cart.controllers;
 
 import com.hungng3011.vdtecomberefresh.cart.dtos.CartDto;
+import com.hungng3011.vdtecomberefresh.cart.dtos.CartItemDeltaDto;
 import com.hungng3011.vdtecomberefresh.cart.dtos.CartItemDto;
+import com.hungng3011.vdtecomberefresh.cart.dtos.CartSummaryDto;
 import com.hungng3011.vdtecomberefresh.cart.services.CartService;
 import com.hungng3011.vdtecomberefresh.common.dtos.PagedResponse;
 
@@ -253,6 +255,31 @@ public class CartController {
         }
     }
 
+    /**
+     * Get a slim summary of the current user's cart: flat lines and totals in one small payload
+     * @param jwt JWT token with user email
+     * @return Cart summary for the user
+     */
+    @GetMapping("/current/summary")
+    public ResponseEntity<CartSummaryDto> getCurrentUserCartSummary(@AuthenticationPrincipal Jwt jwt) {
+        String userEmail = jwt.getClaimAsString("email");
+        log.info("Fetching cart summary for user email: {}", userEmail);
+        
+        if (userEmail == null || userEmail.trim().isEmpty()) {
+            log.error("No email found in JWT token for user: {}", jwt.getSubject());
+            return ResponseEntity.badRequest().build();
+        }
+        
+        try {
+            CartSummaryDto summary = cartService.getCartSummaryByEmail(userEmail);
+            log.info("Successfully retrieved cart summary for user email: {}", userEmail);
+            return ResponseEntity.ok(summary);
+        } catch (Exception e) {
+            log.error("Error fetching cart summary for user email: {}", userEmail, e);
+            throw e;
+        }
+    }
+
     /**
      * Get cart items for current authenticated user with cursor-based pagination
      * @param jwt JWT token with user email
@@ -293,12 +320,14 @@ public class CartController {
     /**
      * Add item to cart for current authenticated user
      * @param jwt JWT token with user email
+     * @param idempotencyKey Optional Idempotency-Key header; retries with the same key add the item only once
      * @param cartItemDto Cart item to add
-     * @return Updated cart
+     * @return Added line and new cart totals
      */
     @PostMapping("/current/items")
-    public ResponseEntity<CartDto> addItemToCurrentUserCart(
+    public ResponseEntity<CartItemDeltaDto> addItemToCurrentUserCart(
             @AuthenticationPrincipal Jwt jwt,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @Valid @RequestBody CartItemDto cartItemDto) {
         
         String userEmail = jwt.getClaimAsString("email");
@@ -311,9 +340,9 @@ public class CartController {
         }
         
         try {
-            CartDto updatedCart = cartService.addItemToCartByEmail(userEmail, cartItemDto);
+            CartItemDeltaDto delta = cartService.addItemToCartByEmail(userEmail, cartItemDto, idempotencyKey);
             log.info("Successfully added item to cart for user email: {}", userEmail);
-            return ResponseEntity.ok(updatedCart);
+            return ResponseEntity.ok(delta);
         } catch (Exception e) {
             log.error("Error adding item to cart for user email: {}", userEmail, e);
             throw e;
@@ -325,10 +354,10 @@ public class CartController {
      * @param jwt JWT token with user email
      * @param itemId Cart item ID
      * @param cartItemDto Updated cart item data
-     * @return Updated cart
+     * @return Changed line and new cart totals
      */
     @PutMapping("/current/items/{itemId}")
-    public ResponseEntity<CartDto> updateCurrentUserCartItem(
+    public ResponseEntity<CartItemDeltaDto> updateCurrentUserCartItem(
             @AuthenticationPrincipal Jwt jwt,
             @PathVariable Long itemId,
             @Valid @RequestBody CartItemDto cartItemDto) {
@@ -343,9 +372,9 @@ public class CartController {
         }
         
         try {
-            CartDto updatedCart = cartService.updateCartItemByEmail(userEmail, itemId, cartItemDto);
+            CartItemDeltaDto delta = cartService.updateCartItemByEmail(userEmail, itemId, cartItemDto);
             log.info("Successfully updated cart item {} for user email: {}", itemId, userEmail);
-            return ResponseEntity.ok(updatedCart);
+            return ResponseEntity.ok(delta);
         } catch (Exception e) {
             log.error("Error updating cart item {} for user email: {}", itemId, userEmail, e);
             throw e;
@@ -356,10 +385,10 @@ public class CartController {
      * Remove item from cart for current authenticated user
      * @param jwt JWT token with user email
      * @param itemId Cart item ID to remove
-     * @return Updated cart
+     * @return Removed line ID and new cart totals
      */
     @DeleteMapping("/current/items/{itemId}")
-    public ResponseEntity<CartDto> removeItemFromCurrentUserCart(
+    public ResponseEntity<CartItemDeltaDto> removeItemFromCurrentUserCart(
             @AuthenticationPrincipal Jwt jwt,
             @PathVariable Long itemId) {
         
@@ -372,9 +401,9 @@ public class CartController {
         }
         
         try {
-            CartDto updatedCart = cartService.removeItemFromCartByEmail(userEmail, itemId);
+            CartItemDeltaDto delta = cartService.removeItemFromCartByEmail(userEmail, itemId);
             log.info("Successfully removed cart item {} for user email: {}", itemId, userEmail);
-            return ResponseEntity.ok(updatedCart);
+            return ResponseEntity.ok(delta);
         } catch (Exception e) {
             log.error("Error removing cart item {} for user email: {}", itemId, userEmail, e);
             throw e;
@@ -0,0 +1,25 @@
+package com.hungng3011.vdtecomberefresh.cart.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Response for a single cart line change: the changed line (or the ID of the
+ * removed line) and the new cart totals, instead of the whole cart.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartItemDeltaDto {
+    private Long cartId;
+    /**
+     * Line after the change, null when the line was removed
+     */
+    private CartLineDto item;
+    /**
+     * ID of the removed line, null when the line was updated
+     */
+    private Long removedItemId;
+    private CartTotalsDto totals;
+}
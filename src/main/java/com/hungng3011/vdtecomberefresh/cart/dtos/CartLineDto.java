@@ -0,0 +1,40 @@
+package com.hungng3011.vdtecomberefresh.cart.dtos;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Slim, flat view of a cart line built directly from a join query.
+ * Unlike CartItemDto it carries no nested variation or product graph.
+ */
+@Data
+@NoArgsConstructor
+public class CartLineDto {
+    private Long id;
+    private Long productId;
+    private String productName;
+    private String variationSignature;
+    private String stockSku;
+    private Integer quantity;
+    private BigDecimal unitPrice;
+    private BigDecimal subtotal;
+
+    /**
+     * Constructor used by JPQL constructor expressions
+     */
+    public CartLineDto(Long id, Long productId, String productName, String variationSignature,
+                       String stockSku, Integer quantity, BigDecimal unitPrice) {
+        this.id = id;
+        this.productId = productId;
+        this.productName = productName;
+        this.variationSignature = variationSignature;
+        this.stockSku = stockSku;
+        this.quantity = quantity;
+        this.unitPrice = unitPrice;
+        this.subtotal = unitPrice != null && quantity != null
+                ? unitPrice.multiply(BigDecimal.valueOf(quantity))
+                : BigDecimal.ZERO;
+    }
+}
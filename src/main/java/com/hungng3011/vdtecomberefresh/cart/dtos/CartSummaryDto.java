@@ -0,0 +1,20 @@
+package com.hungng3011.vdtecomberefresh.cart.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Slim cart representation for clients that only need to render the cart:
+ * flat lines plus totals, loaded with a single join query.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartSummaryDto {
+    private Long cartId;
+    private List<CartLineDto> lines;
+    private CartTotalsDto totals;
+}
@@ -0,0 +1,35 @@
+package com.hungng3011.vdtecomberefresh.cart.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Aggregated totals of a cart
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartTotalsDto {
+    private long itemCount;
+    private long totalQuantity;
+    private BigDecimal totalPrice;
+
+    /**
+     * Compute totals from already loaded cart lines
+     * @param lines Cart lines
+     * @return Totals over the given lines
+     */
+    public static CartTotalsDto of(List<CartLineDto> lines) {
+        long quantity = 0;
+        BigDecimal price = BigDecimal.ZERO;
+        for (CartLineDto line : lines) {
+            quantity += line.getQuantity() != null ? line.getQuantity() : 0;
+            price = price.add(line.getSubtotal());
+        }
+        return new CartTotalsDto(lines.size(), quantity, price);
+    }
+}
@@ -9,17 +9,26 @@ import lombok.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 @Entity
-@Table(name = "cart_item")
+@Table(name = "cart_item", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_cart_item_line", columnNames = {"cart_id", "product_id", "variation_signature"})
+})
 @Getter @Setter
 @NoArgsConstructor
 public class CartItem {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cart_item_seq")
+    @SequenceGenerator(name = "cart_item_seq", sequenceName = "cart_item_seq", allocationSize = 50)
     private Long id;
 
+    @Version
+    private Long version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "cart_id", nullable = false)
     private Cart cart;
@@ -36,6 +45,14 @@ public class CartItem {
     )
     private List<Variation> selectedVariations = new ArrayList<>();
 
+    /**
+     * Sorted, comma-separated IDs of the selected variations ("" when none).
+     * Together with cart and product it identifies a cart line, so concurrent
+     * adds of the same line collapse into one row instead of duplicates.
+     */
+    @Column(name = "variation_signature", nullable = false)
+    private String variationSignature = "";
+
     @Column(nullable = false)
     private String stockSku;
 
@@ -57,5 +74,28 @@ public class CartItem {
     @PrePersist
     public void prePersist() {
         addedAt = LocalDateTime.now();
+        variationSignature = signatureOf(selectedVariations.stream().map(Variation::getId).toList());
+    }
+
+    @PreUpdate
+    public void preUpdate() {
+        variationSignature = signatureOf(selectedVariations.stream().map(Variation::getId).toList());
+    }
+
+    /**
+     * Build the canonical variation signature for a set of variation IDs
+     * @param variationIds Variation IDs, in any order (may be null)
+     * @return Sorted, comma-separated IDs, or an empty string when there are none
+     */
+    public static String signatureOf(Collection<Long> variationIds) {
+        if (variationIds == null || variationIds.isEmpty()) {
+            return "";
+        }
+        return variationIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
     }
 }
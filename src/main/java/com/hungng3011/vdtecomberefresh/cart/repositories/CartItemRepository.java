@@ -1,5 +1,7 @@
 package com.hungng3011.vdtecomberefresh.cart.repositories;
 
+import com.hungng3011.vdtecomberefresh.cart.dtos.CartLineDto;
+import com.hungng3011.vdtecomberefresh.cart.dtos.CartTotalsDto;
 import com.hungng3011.vdtecomberefresh.cart.entities.CartItem;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -8,7 +10,9 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.jpa.repository.Modifying;
 
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
 
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     
@@ -75,4 +79,84 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
      */
     @Query("SELECT COUNT(ci) FROM CartItem ci WHERE ci.cart.userId = :userId")
     long countByUserId(@Param("userId") Long userId);
+
+    /**
+     * Find the cart line for a product and variation combination
+     * @param cartId Cart ID to look in
+     * @param productId Product ID of the line
+     * @param variationSignature Canonical variation signature (see CartItem.signatureOf)
+     * @return Optional cart item for that line
+     */
+    @Query("SELECT ci FROM CartItem ci WHERE ci.cart.id = :cartId AND ci.product.id = :productId AND ci.variationSignature = :variationSignature")
+    Optional<CartItem> findLine(@Param("cartId") Long cartId,
+                                @Param("productId") Long productId,
+                                @Param("variationSignature") String variationSignature);
+
+    /**
+     * Atomically add a quantity to a cart line in a single statement.
+     * Inserts the line (and its variation links) when it does not exist yet, otherwise
+     * increments the existing quantity. Relies on the uk_cart_item_line unique constraint,
+     * so concurrent adds of the same line can never produce duplicate rows.
+     * Also bumps the owning cart's last_updated and version.
+     * @param cartId Cart ID to add to
+     * @param productId Product ID to add
+     * @param variationSignature Canonical variation signature (see CartItem.signatureOf)
+     * @param stockSku Stock SKU for the line, or null
+     * @param quantity Quantity to add
+     * @param unitPrice Unit price, or null to use the product base price
+     * @return ID of the inserted or updated cart item
+     */
+    @Query(value = "WITH upserted AS (" +
+            "  INSERT INTO cart_item (id, cart_id, product_id, variation_signature, stock_sku, quantity, unit_price, added_at, version) " +
+            "  VALUES (nextval('cart_item_seq'), :cartId, :productId, :variationSignature, COALESCE(CAST(:stockSku AS varchar), ''), :quantity, " +
+            "          COALESCE(CAST(:unitPrice AS numeric), (SELECT p.base_price FROM products p WHERE p.id = :productId)), now(), 0) " +
+            "  ON CONFLICT (cart_id, product_id, variation_signature) " +
+            "  DO UPDATE SET quantity = cart_item.quantity + EXCLUDED.quantity, version = cart_item.version + 1 " +
+            "  RETURNING id, (xmax = 0) AS inserted" +
+            "), linked AS (" +
+            "  INSERT INTO cart_item_variation (cart_item_id, variation_id) " +
+            "  SELECT u.id, CAST(v.variation_id AS bigint) FROM upserted u " +
+            "  CROSS JOIN unnest(string_to_array(:variationSignature, ',')) AS v(variation_id) " +
+            "  WHERE u.inserted" +
+            "), touched AS (" +
+            "  UPDATE cart SET last_updated = now(), version = version + 1 WHERE id = :cartId" +
+            ") " +
+            "SELECT id FROM upserted",
+            nativeQuery = true)
+    Long upsertLine(@Param("cartId") Long cartId,
+                    @Param("productId") Long productId,
+                    @Param("variationSignature") String variationSignature,
+                    @Param("stockSku") String stockSku,
+                    @Param("quantity") Integer quantity,
+                    @Param("unitPrice") BigDecimal unitPrice);
+
+    /**
+     * Load all lines of a cart as flat projections in one join query
+     * @param cartId Cart ID to load lines for
+     * @return Cart lines ordered by ID
+     */
+    @Query("SELECT new com.hungng3011.vdtecomberefresh.cart.dtos.CartLineDto(" +
+           "ci.id, p.id, p.name, ci.variationSignature, ci.stockSku, ci.quantity, ci.unitPrice) " +
+           "FROM CartItem ci JOIN ci.product p WHERE ci.cart.id = :cartId ORDER BY ci.id ASC")
+    List<CartLineDto> findLinesByCartId(@Param("cartId") Long cartId);
+
+    /**
+     * Load a single cart line as a flat projection
+     * @param itemId Cart item ID
+     * @return Optional cart line
+     */
+    @Query("SELECT new com.hungng3011.vdtecomberefresh.cart.dtos.CartLineDto(" +
+           "ci.id, p.id, p.name, ci.variationSignature, ci.stockSku, ci.quantity, ci.unitPrice) " +
+           "FROM CartItem ci JOIN ci.product p WHERE ci.id = :itemId")
+    Optional<CartLineDto> findLineById(@Param("itemId") Long itemId);
+
+    /**
+     * Aggregate cart totals without loading any cart item
+     * @param cartId Cart ID to aggregate
+     * @return Line count, total quantity and total price of the cart
+     */
+    @Query("SELECT new com.hungng3011.vdtecomberefresh.cart.dtos.CartTotalsDto(" +
+           "COUNT(ci), COALESCE(SUM(ci.quantity), 0L), COALESCE(SUM(ci.unitPrice * ci.quantity), 0)) " +
+           "FROM CartItem ci WHERE ci.cart.id = :cartId")
+    CartTotalsDto getTotalsByCartId(@Param("cartId") Long cartId);
 }
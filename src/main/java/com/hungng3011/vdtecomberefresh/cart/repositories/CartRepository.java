@@ -103,6 +103,25 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
         return carts.isEmpty() ? Optional.empty() : Optional.of(carts.get(0));
     }
 
+    /**
+     * Find cart IDs by user email ordered by last updated descending, without loading the carts
+     * @param userEmail User email to search for
+     * @param pageable Pageable information for limiting results
+     * @return List of cart IDs for the user ordered by most recent first
+     */
+    @Query("SELECT c.id FROM Cart c WHERE c.userEmail = :userEmail ORDER BY c.lastUpdated DESC")
+    List<Long> findIdsByUserEmailOrderByLastUpdatedDesc(@Param("userEmail") String userEmail, Pageable pageable);
+
+    /**
+     * Find the ID of the most recent cart for a user by user email
+     * @param userEmail User email to search for
+     * @return Optional cart ID for the user
+     */
+    default Optional<Long> findActiveCartIdByUserEmail(String userEmail) {
+        List<Long> ids = findIdsByUserEmailOrderByLastUpdatedDesc(userEmail, Pageable.ofSize(1));
+        return ids.isEmpty() ? Optional.empty() : Optional.of(ids.get(0));
+    }
+
     // Statistical queries for system stats
     @Query("SELECT COUNT(c) FROM Cart c WHERE c.lastUpdated >= :activeThreshold")
     long countActiveCarts(@Param("activeThreshold") LocalDateTime activeThreshold);
@@ -12,7 +12,6 @@ import com.hungng3011.vdtecomberefresh.exception.cart.CartProcessingException;
 import com.hungng3011.vdtecomberefresh.product.entities.Product;
 import com.hungng3011.vdtecomberefresh.product.entities.Variation;
 import com.hungng3011.vdtecomberefresh.product.repositories.ProductRepository;
-import com.hungng3011.vdtecomberefresh.product.repositories.VariationRepository;
 import com.hungng3011.vdtecomberefresh.stock.StockService;
 import com.hungng3011.vdtecomberefresh.stock.dtos.StockDto;
 
@@ -21,7 +20,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -36,12 +34,14 @@ public class CartItemService {
     private final CartItemRepository cartItemRepository;
     private final CartRepository cartRepository;
     private final ProductRepository productRepository;
-    private final VariationRepository variationRepository;
     private final CartItemMapper cartItemMapper;
     private final StockService stockService;
 
     /**
-     * Add item to cart with comprehensive stock validation
+     * Add item to cart with comprehensive stock validation.
+     * The line is written with {@link CartItemRepository#upsertLine}, so concurrent adds of the same
+     * line are merged by the database instead of racing through a load-scan-save cycle. The resulting
+     * quantity is validated against stock afterwards and the transaction rolls back when it is too large.
      * @param cartId Cart ID to add item to
      * @param request Add to cart request with product details
      * @return CartItemDto representing the added item
@@ -53,11 +53,10 @@ public class CartItemService {
         
         try {
             // Validate cart exists
-            Cart cart = cartRepository.findById(cartId)
-                    .orElseThrow(() -> {
-                        log.warn("Cart not found with ID: {}", cartId);
-                        return new CartProcessingException("Cart not found", cartId);
-                    });
+            if (!cartRepository.existsById(cartId)) {
+                log.warn("Cart not found with ID: {}", cartId);
+                throw new CartProcessingException("Cart not found", cartId);
+            }
 
             // Validate product exists
             Product product = productRepository.findById(request.getProductId())
@@ -77,62 +76,31 @@ public class CartItemService {
                 throw new IllegalStateException(errorMsg);
             }
 
-            // Check if item already exists in cart
-            Optional<CartItem> existingItem = findExistingCartItem(cart, request.getProductId(), request.getVariationIds());
-            
-            if (existingItem.isPresent()) {
-                // Update existing item quantity
-                CartItem cartItem = existingItem.get();
-                int newQuantity = cartItem.getQuantity() + request.getQuantity();
-                
-                // Validate new total quantity
-                boolean newQuantityAvailable = validateStockAvailability(request.getProductId(), 
-                        request.getVariationIds(), newQuantity);
-                
-                if (!newQuantityAvailable) {
-                    String errorMsg = String.format("Insufficient stock for total quantity. Available stock cannot support %d items", newQuantity);
-                    log.warn(errorMsg);
-                    throw new IllegalStateException(errorMsg);
-                }
-                
-                cartItem.setQuantity(newQuantity);
-                // Note: subtotal is calculated automatically via @Transient getSubtotal() method
-                
-                CartItem savedItem = cartItemRepository.save(cartItem);
-                log.info("Updated existing cart item {} to quantity {}", savedItem.getId(), newQuantity);
-                return cartItemMapper.toDto(savedItem);
-                
-            } else {
-                // Create new cart item
-                CartItem cartItem = new CartItem();
-                cartItem.setCart(cart);
-                cartItem.setProduct(product);
-                cartItem.setQuantity(request.getQuantity());
-                cartItem.setAddedAt(LocalDateTime.now());
-                
-                // Set product price as unit price (you might want to get this from a price service)
-                cartItem.setUnitPrice(product.getBasePrice());
-                // Note: subtotal is calculated automatically via @Transient getSubtotal() method
-                
-                // Handle variations if provided
-                if (request.getVariationIds() != null && !request.getVariationIds().isEmpty()) {
-                    List<Variation> variations = variationRepository.findAllById(request.getVariationIds());
-                    cartItem.setSelectedVariations(variations);
-                    
-                    // Set stock SKU if provided or find appropriate one
-                    if (request.getStockSku() != null) {
-                        cartItem.setStockSku(request.getStockSku());
-                    } else {
-                        // Find appropriate stock SKU for this variation combination
-                        String stockSku = findStockSkuForVariations(request.getProductId(), request.getVariationIds());
-                        cartItem.setStockSku(stockSku);
-                    }
-                }
-                
-                CartItem savedItem = cartItemRepository.save(cartItem);
-                log.info("Created new cart item {} with quantity {}", savedItem.getId(), request.getQuantity());
-                return cartItemMapper.toDto(savedItem);
+            // Set stock SKU if provided or find appropriate one for the variation combination
+            String stockSku = request.getStockSku();
+            if (stockSku == null && request.getVariationIds() != null && !request.getVariationIds().isEmpty()) {
+                stockSku = findStockSkuForVariations(request.getProductId(), request.getVariationIds());
             }
+
+            // Insert the line or add to its quantity in one statement; the product price is the unit price
+            Long itemId = cartItemRepository.upsertLine(cartId, request.getProductId(),
+                    CartItem.signatureOf(request.getVariationIds()), stockSku, request.getQuantity(),
+                    product.getBasePrice());
+            CartItem savedItem = cartItemRepository.findById(itemId)
+                    .orElseThrow(() -> new IllegalStateException("Cart item not found with id: " + itemId));
+
+            // Validate new total quantity
+            if (savedItem.getQuantity() > request.getQuantity()
+                    && !validateStockAvailability(request.getProductId(), request.getVariationIds(),
+                            savedItem.getQuantity())) {
+                String errorMsg = String.format("Insufficient stock for total quantity. Available stock cannot support %d items",
+                        savedItem.getQuantity());
+                log.warn(errorMsg);
+                throw new IllegalStateException(errorMsg);
+            }
+
+            log.info("Added {} to cart item {}, now at quantity {}", request.getQuantity(), itemId, savedItem.getQuantity());
+            return cartItemMapper.toDto(savedItem);
             
         } catch (CartProcessingException | IllegalArgumentException | IllegalStateException e) {
             throw e; // Re-throw business exceptions
@@ -301,27 +269,6 @@ public class CartItemService {
         }
     }
 
-    /**
-     * Find existing cart item with same product and variations
-     */
-    private Optional<CartItem> findExistingCartItem(Cart cart, Long productId, List<Long> variationIds) {
-        return cart.getItems().stream()
-                .filter(item -> item.getProduct().getId().equals(productId))
-                .filter(item -> {
-                    List<Long> itemVariationIds = item.getSelectedVariations().stream()
-                            .map(Variation::getId)
-                            .toList();
-                    
-                    if (variationIds == null || variationIds.isEmpty()) {
-                        return itemVariationIds.isEmpty();
-                    }
-                    
-                    return itemVariationIds.size() == variationIds.size() && 
-                           itemVariationIds.containsAll(variationIds);
-                })
-                .findFirst();
-    }
-
     /**
      * Find appropriate stock SKU for variation combination
      */
@@ -1,7 +1,11 @@
 package com.hungng3011.vdtecomberefresh.cart.services;
 
 import com.hungng3011.vdtecomberefresh.cart.dtos.CartDto;
+import com.hungng3011.vdtecomberefresh.cart.dtos.CartItemDeltaDto;
 import com.hungng3011.vdtecomberefresh.cart.dtos.CartItemDto;
+import com.hungng3011.vdtecomberefresh.cart.dtos.CartLineDto;
+import com.hungng3011.vdtecomberefresh.cart.dtos.CartSummaryDto;
+import com.hungng3011.vdtecomberefresh.cart.dtos.CartTotalsDto;
 import com.hungng3011.vdtecomberefresh.cart.entities.CartItem;
 import com.hungng3011.vdtecomberefresh.cart.mappers.CartMapper;
 import com.hungng3011.vdtecomberefresh.cart.mappers.CartItemMapper;
@@ -10,25 +14,31 @@ import com.hungng3011.vdtecomberefresh.cart.repositories.CartItemRepository;
 import com.hungng3011.vdtecomberefresh.common.dtos.PagedResponse;
 import com.hungng3011.vdtecomberefresh.exception.cart.CartProcessingException;
 import com.hungng3011.vdtecomberefresh.product.dtos.VariationDto;
-import com.hungng3011.vdtecomberefresh.product.entities.Variation;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 @AllArgsConstructor
 @Slf4j
 public class CartService {
+    private static final String IDEMPOTENCY_KEY_PREFIX = "cart:idempotency:";
+    private static final Duration IDEMPOTENCY_KEY_TTL = Duration.ofHours(24);
+
     private final CartRepository cartRepository;
     private final CartItemRepository cartItemRepository;
     private final CartMapper cartMapper;
     private final CartItemMapper cartItemMapper;
+    private final RedisTemplate<String, Object> redisTemplate;
 
     public CartDto create(CartDto cartDto) {
         log.info("Creating new cart for user: {}", cartDto.getUserId() != null ? cartDto.getUserId() : "guest");
@@ -71,6 +81,7 @@ public class CartService {
                     });
             var updated = cartMapper.toEntity(cartDto);
             updated.setId(existing.getId());
+            updated.setVersion(existing.getVersion());
             var saved = cartRepository.save(updated);
             log.info("Successfully updated cart with ID: {}", id);
             return cartMapper.toDto(saved);
@@ -369,37 +380,75 @@ public class CartService {
      * Add item to cart by user email
      * @param userEmail User email from JWT
      * @param cartItemDto Cart item to add
-     * @return Updated cart
+     * @return Added line and new cart totals
+     */
+    @Transactional
+    public CartItemDeltaDto addItemToCartByEmail(String userEmail, CartItemDto cartItemDto) {
+        return addItemToCartByEmail(userEmail, cartItemDto, null);
+    }
+
+    /**
+     * Add item to cart by user email, de-duplicating retries by idempotency key.
+     * A request whose key was already seen within the retention window does not add
+     * the item again; it returns the line as it currently is instead.
+     * @param userEmail User email from JWT
+     * @param cartItemDto Cart item to add
+     * @param idempotencyKey Client supplied Idempotency-Key header, or null
+     * @return Added line and new cart totals
      */
-    public CartDto addItemToCartByEmail(String userEmail, CartItemDto cartItemDto) {
+    @Transactional
+    public CartItemDeltaDto addItemToCartByEmail(String userEmail, CartItemDto cartItemDto, String idempotencyKey) {
         log.info("Adding item to cart for user email: {}", userEmail);
+        String redisKey = idempotencyKey != null && !idempotencyKey.isBlank()
+                ? IDEMPOTENCY_KEY_PREFIX + userEmail + ":" + idempotencyKey.trim()
+                : null;
+        
+        if (redisKey != null && !claimIdempotencyKey(redisKey)) {
+            log.info("Duplicate add-to-cart request for user email: {} with idempotency key: {}", userEmail, idempotencyKey);
+            return getCurrentLine(resolveCartIdByEmail(userEmail), cartItemDto);
+        }
+        
         try {
-            // Get or create cart for user
-            CartDto cart = getOrCreateCartByEmail(userEmail);
-            
-            // Add item to cart (assuming there's an existing method)
-            return addItemToCart(cart.getId(), cartItemDto);
+            // Resolve the cart ID only; the cart itself is never loaded
+            return addItemToCart(resolveCartIdByEmail(userEmail), cartItemDto);
         } catch (Exception e) {
+            if (redisKey != null) {
+                releaseIdempotencyKey(redisKey);
+            }
             log.error("Error adding item to cart for user email: {}", userEmail, e);
             throw e;
         }
     }
 
+    /**
+     * Get a slim summary of the current user's cart (flat lines plus totals)
+     * @param userEmail User email from JWT
+     * @return CartSummaryDto for the user
+     */
+    public CartSummaryDto getCartSummaryByEmail(String userEmail) {
+        log.info("Fetching cart summary for user email: {}", userEmail);
+        try {
+            Long cartId = resolveCartIdByEmail(userEmail);
+            List<CartLineDto> lines = cartItemRepository.findLinesByCartId(cartId);
+            return new CartSummaryDto(cartId, lines, CartTotalsDto.of(lines));
+        } catch (Exception e) {
+            log.error("Error fetching cart summary for user email: {}", userEmail, e);
+            throw e;
+        }
+    }
+
     /**
      * Update cart item by user email
      * @param userEmail User email from JWT
      * @param itemId Cart item ID
      * @param cartItemDto Updated cart item
-     * @return Updated cart
+     * @return Changed line and new cart totals
      */
-    public CartDto updateCartItemByEmail(String userEmail, Long itemId, CartItemDto cartItemDto) {
+    @Transactional
+    public CartItemDeltaDto updateCartItemByEmail(String userEmail, Long itemId, CartItemDto cartItemDto) {
         log.info("Updating cart item {} for user email: {}", itemId, userEmail);
         try {
-            // Get cart for user
-            CartDto cart = getOrCreateCartByEmail(userEmail);
-            
-            // Update item in cart (assuming there's an existing method)
-            return updateCartItem(cart.getId(), itemId, cartItemDto);
+            return updateCartItem(resolveCartIdByEmail(userEmail), itemId, cartItemDto);
         } catch (Exception e) {
             log.error("Error updating cart item {} for user email: {}", itemId, userEmail, e);
             throw e;
@@ -410,16 +459,13 @@ public class CartService {
      * Remove item from cart by user email
      * @param userEmail User email from JWT
      * @param itemId Cart item ID
-     * @return Updated cart
+     * @return Removed line ID and new cart totals
      */
-    public CartDto removeItemFromCartByEmail(String userEmail, Long itemId) {
+    @Transactional
+    public CartItemDeltaDto removeItemFromCartByEmail(String userEmail, Long itemId) {
         log.info("Removing cart item {} for user email: {}", itemId, userEmail);
         try {
-            // Get cart for user
-            CartDto cart = getOrCreateCartByEmail(userEmail);
-            
-            // Remove item from cart (assuming there's an existing method)
-            return removeItemFromCart(cart.getId(), itemId);
+            return removeItemFromCart(resolveCartIdByEmail(userEmail), itemId);
         } catch (Exception e) {
             log.error("Error removing cart item {} for user email: {}", itemId, userEmail, e);
             throw e;
@@ -447,61 +493,66 @@ public class CartService {
 
     // Helper methods (these would need to be implemented if they don't exist)
     
-    private CartDto addItemToCart(Long cartId, CartItemDto cartItemDto) {
+    /**
+     * Add item to cart with a single upsert statement.
+     * The (cart, product, variation signature) unique key lets the database merge concurrent
+     * adds of the same line, so there is no load-scan-save cycle that could race.
+     */
+    private CartItemDeltaDto addItemToCart(Long cartId, CartItemDto cartItemDto) {
         log.info("Adding item to cart {}: product {}, quantity {}", 
                 cartId, cartItemDto.getProductId(), cartItemDto.getQuantity());
         
+        if (cartItemDto.getQuantity() == null || cartItemDto.getQuantity() < 1) {
+            throw new CartProcessingException("Quantity must be at least 1", cartId);
+        }
+        
         try {
-            // Get the cart
-            var cart = cartRepository.findById(cartId)
-                    .orElseThrow(() -> new CartProcessingException("Cart not found with ID: " + cartId));
+            Long itemId = cartItemRepository.upsertLine(cartId, cartItemDto.getProductId(),
+                    signatureOf(cartItemDto), cartItemDto.getStockSku(),
+                    cartItemDto.getQuantity(), cartItemDto.getUnitPrice());
+            log.info("Upserted cart item {} in cart {}", itemId, cartId);
             
-            // Check if item already exists in cart (by product ID and selected variations)
-            var existingItem = cart.getItems().stream()
-                    .filter(item -> item.getProduct().getId().equals(cartItemDto.getProductId()) 
-                            && variationsMatch(item.getSelectedVariations(), cartItemDto.getSelectedVariations()))
-                    .findFirst();
-            
-            if (existingItem.isPresent()) {
-                // Update quantity if item exists
-                CartItem item = existingItem.get();
-                item.setQuantity(item.getQuantity() + cartItemDto.getQuantity());
-                cartItemRepository.save(item);
-                log.info("Updated existing cart item quantity to {}", item.getQuantity());
-            } else {
-                // Add new item to cart
-                CartItem newItem = cartItemMapper.toEntity(cartItemDto);
-                newItem.setCart(cart);
-                cartItemRepository.save(newItem);
-                cart.getItems().add(newItem);
-                log.info("Added new item to cart");
-            }
-            
-            cartRepository.save(cart);
-            return cartMapper.toDto(cart);
+            // Line and totals are projections read from the database, so they include the upserted
+            // row even when the cart was created earlier in this transaction
+            CartLineDto line = cartItemRepository.findLineById(itemId)
+                    .orElseThrow(() -> new CartProcessingException("Cart item not found with ID: " + itemId));
+            return new CartItemDeltaDto(cartId, line, null, cartItemRepository.getTotalsByCartId(cartId));
+        } catch (CartProcessingException e) {
+            throw e; // Re-throw business exceptions
         } catch (Exception e) {
             log.error("Error adding item to cart {}", cartId, e);
             throw new CartProcessingException("Failed to add item to cart", e);
         }
     }
 
-    private boolean variationsMatch(List<Variation> itemVariations, List<VariationDto> dtoVariations) {
-        if (itemVariations.size() != dtoVariations.size()) {
-            return false;
+    /**
+     * Current state of the line an add request targets, for replayed requests
+     */
+    private CartItemDeltaDto getCurrentLine(Long cartId, CartItemDto cartItemDto) {
+        CartLineDto line = cartItemRepository.findLine(cartId, cartItemDto.getProductId(), signatureOf(cartItemDto))
+                .flatMap(item -> cartItemRepository.findLineById(item.getId()))
+                .orElse(null);
+        return new CartItemDeltaDto(cartId, line, null, cartItemRepository.getTotalsByCartId(cartId));
+    }
+
+    private static String signatureOf(CartItemDto cartItemDto) {
+        if (cartItemDto.getSelectedVariations() == null) {
+            return CartItem.signatureOf(List.of());
         }
-        
-        Set<Long> itemVariationIds = itemVariations.stream()
-                .map(Variation::getId)
-                .collect(Collectors.toSet());
-        
-        Set<Long> dtoVariationIds = dtoVariations.stream()
+        return CartItem.signatureOf(cartItemDto.getSelectedVariations().stream()
                 .map(VariationDto::getId)
-                .collect(Collectors.toSet());
-        
-        return itemVariationIds.equals(dtoVariationIds);
+                .toList());
     }
 
-    private CartDto updateCartItem(Long cartId, Long itemId, CartItemDto cartItemDto) {
+    /**
+     * Resolve the active cart ID of a user without hydrating the cart, creating the cart if needed
+     */
+    private Long resolveCartIdByEmail(String userEmail) {
+        return cartRepository.findActiveCartIdByUserEmail(userEmail)
+                .orElseGet(() -> getOrCreateCartByEmail(userEmail).getId());
+    }
+
+    private CartItemDeltaDto updateCartItem(Long cartId, Long itemId, CartItemDto cartItemDto) {
         log.info("Updating cart item {} in cart {} with quantity {}", itemId, cartId, cartItemDto.getQuantity());
         
         try {
@@ -520,17 +571,21 @@ public class CartService {
                 cartItem.setUnitPrice(cartItemDto.getUnitPrice());
             }
             
-            cartItemRepository.save(cartItem);
+            cartItemRepository.saveAndFlush(cartItem);
             
-            // Return updated cart
-            return get(cartId);
+            // Return only the changed line and the new totals
+            CartLineDto line = cartItemRepository.findLineById(itemId)
+                    .orElseThrow(() -> new CartProcessingException("Cart item not found with ID: " + itemId));
+            return new CartItemDeltaDto(cartId, line, null, cartItemRepository.getTotalsByCartId(cartId));
+        } catch (CartProcessingException e) {
+            throw e; // Re-throw business exceptions
         } catch (Exception e) {
             log.error("Error updating cart item {} in cart {}", itemId, cartId, e);
             throw new CartProcessingException("Failed to update cart item", e);
         }
     }
 
-    private CartDto removeItemFromCart(Long cartId, Long itemId) {
+    private CartItemDeltaDto removeItemFromCart(Long cartId, Long itemId) {
         log.info("Removing cart item {} from cart {}", itemId, cartId);
         
         try {
@@ -543,14 +598,14 @@ public class CartService {
                 throw new CartProcessingException("Cart item " + itemId + " does not belong to cart " + cartId);
             }
             
-            // Remove the item from cart
-            var cart = cartItem.getCart();
-            cart.getItems().remove(cartItem);
+            // Delete the line directly; the cart's item collection is never loaded
             cartItemRepository.delete(cartItem);
-            cartRepository.save(cart);
+            cartItemRepository.flush();
             
             log.info("Successfully removed cart item {} from cart {}", itemId, cartId);
-            return cartMapper.toDto(cart);
+            return new CartItemDeltaDto(cartId, null, itemId, cartItemRepository.getTotalsByCartId(cartId));
+        } catch (CartProcessingException e) {
+            throw e; // Re-throw business exceptions
         } catch (Exception e) {
             log.error("Error removing cart item {} from cart {}", itemId, cartId, e);
             throw new CartProcessingException("Failed to remove cart item", e);
@@ -577,4 +632,26 @@ public class CartService {
             throw new CartProcessingException("Failed to clear cart", e);
         }
     }
+
+    /**
+     * Claim an idempotency key, failing open when Redis is unavailable
+     * @return true if the key was not seen before and the request should proceed
+     */
+    private boolean claimIdempotencyKey(String redisKey) {
+        try {
+            Boolean claimed = redisTemplate.opsForValue().setIfAbsent(redisKey, LocalDateTime.now().toString(), IDEMPOTENCY_KEY_TTL);
+            return !Boolean.FALSE.equals(claimed);
+        } catch (Exception e) {
+            log.warn("Could not claim idempotency key {}, proceeding without de-duplication", redisKey, e);
+            return true;
+        }
+    }
+
+    private void releaseIdempotencyKey(String redisKey) {
+        try {
+            redisTemplate.delete(redisKey);
+        } catch (Exception e) {
+            log.warn("Could not release idempotency key {}", redisKey, e);
+        }
+    }
 }
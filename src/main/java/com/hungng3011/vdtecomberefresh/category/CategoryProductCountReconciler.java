@@ -0,0 +1,47 @@
+package com.hungng3011.vdtecomberefresh.category;
+
+import com.hungng3011.vdtecomberefresh.category.cache.CategoryCatalogCache;
+import com.hungng3011.vdtecomberefresh.category.repositories.CategoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Corrects drift in the maintained per-category product counters.
+ *
+ * Product writes keep {@code categories.product_count} current in the same transaction, but writes that bypass
+ * the services (manual SQL, restored backups) can leave it wrong. This job recounts every category in one
+ * statement and only rewrites the counters that differ.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CategoryProductCountReconciler {
+    private final CategoryRepository categoryRepository;
+    private final CategoryCatalogCache categoryCatalogCache;
+
+    /**
+     * Recount products per category and fix the counters that drifted
+     * @return Number of categories whose counter was corrected
+     */
+    @Scheduled(cron = "${app.category.product-count.reconcile-cron:0 30 3 * * *}")
+    @Transactional
+    public int reconcile() {
+        log.info("Reconciling category product counters");
+        try {
+            int corrected = categoryRepository.reconcileProductCounts();
+            if (corrected > 0) {
+                log.warn("Corrected product counters of {} categories", corrected);
+                categoryCatalogCache.refresh();
+            } else {
+                log.info("Category product counters are consistent");
+            }
+            return corrected;
+        } catch (Exception e) {
+            log.error("Failed to reconcile category product counters", e);
+            throw e;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.hungng3011.vdtecomberefresh.category;
 
+import com.hungng3011.vdtecomberefresh.category.cache.CategoryCatalogCache;
 import com.hungng3011.vdtecomberefresh.category.dtos.CategoryDto;
 import com.hungng3011.vdtecomberefresh.category.dtos.CategoryDynamicFieldDto;
 import com.hungng3011.vdtecomberefresh.category.entities.Category;
@@ -8,14 +9,12 @@ import com.hungng3011.vdtecomberefresh.category.mappers.CategoryDynamicFieldMapp
 import com.hungng3011.vdtecomberefresh.category.mappers.CategoryMapper;
 import com.hungng3011.vdtecomberefresh.category.repositories.CategoryDynamicFieldRepository;
 import com.hungng3011.vdtecomberefresh.category.repositories.CategoryRepository;
-import com.hungng3011.vdtecomberefresh.product.entities.Product;
-import com.hungng3011.vdtecomberefresh.product.repositories.ProductRepository;
+import com.hungng3011.vdtecomberefresh.search.events.ProductIndexEvent;
 import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.actuate.health.HttpCodeStatusMapper;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -38,19 +37,17 @@ public class CategoryService {
     private final CategoryDynamicFieldMapper categoryDynamicFieldMapper;
     private final EntityManager entityManager;
     private final HttpCodeStatusMapper httpCodeStatusMapper;
-    private final ProductRepository productRepository;
+    private final CategoryCatalogCache categoryCatalogCache;
+    private final ApplicationEventPublisher eventPublisher;
 
-    @Cacheable(value = "categories")
+    /**
+     * Get every category with its dynamic fields and product count, served from the catalog snapshot
+     * @return All categories
+     */
     public List<CategoryDto> getAll() {
         log.info("Fetching all categories");
         try {
-            List<CategoryDto> categories = categoryRepository.findAll().stream()
-                    .map(category -> {
-                        CategoryDto dto = categoryMapper.toDto(category);
-                        dto.setProductCount(getProductCountSafely(category));
-                        return dto;
-                    })
-                    .collect(Collectors.toList());
+            List<CategoryDto> categories = categoryCatalogCache.getSnapshot().toDtos();
             log.info("Successfully retrieved {} categories", categories.size());
             return categories;
         } catch (Exception e) {
@@ -59,14 +56,22 @@ public class CategoryService {
         }
     }
 
-    @Cacheable(value = "categories", key = "#id")
+    /**
+     * Get a category from the catalog snapshot, falling back to the database for a category created on
+     * another node whose catalog broadcast has not arrived yet
+     * @param id Category ID
+     * @return The category, or null when it does not exist
+     */
     public CategoryDto getById(Long id) {
         log.info("Fetching category with ID: {}", id);
         try {
+            CategoryDto cached = categoryCatalogCache.getSnapshot().toDto(id).orElse(null);
+            if (cached != null) {
+                return cached;
+            }
             Category category = categoryRepository.findById(id).orElse(null);
             if (category != null) {
                 CategoryDto dto = categoryMapper.toDto(category);
-                dto.setProductCount(getProductCountSafely(category));
                 log.info("Successfully retrieved category with ID: {}", id);
                 return dto;
             } else {
@@ -113,6 +118,7 @@ public class CategoryService {
         Category savedCategory = categoryRepository.save(category);
         CategoryDto result = categoryMapper.toDto(savedCategory);
         result.setProductCount(0L); // New category has no products
+        categoryCatalogCache.refresh();
         return result;
     }
 
@@ -126,8 +132,7 @@ public class CategoryService {
             return null;
         }
         
-        List<Product> products = getProductsByCategorySafely(category);
-        if (products != null && !products.isEmpty()) {
+        if (category.getProductCount() > 0) {
             log.warn("Cannot update category with id {} because it is associated with products", dto.getId());
             throw new CategoryProcessingException("CATEGORY_HAS_PRODUCTS", 
                 "Category is associated with products and cannot be updated", dto.getId());
@@ -142,7 +147,8 @@ public class CategoryService {
 
         Category savedCategory = categoryRepository.save(category);
         CategoryDto result = categoryMapper.toDto(savedCategory);
-        result.setProductCount(getProductCountSafely(savedCategory));
+        categoryCatalogCache.refresh();
+        eventPublisher.publishEvent(ProductIndexEvent.category(savedCategory.getId()));
         
         log.info("Successfully updated category with ID: {}", dto.getId());
         return result;
@@ -246,7 +252,6 @@ public class CategoryService {
                 });
     }
 
-    @CacheEvict(value = "categories", key = "#id")
     public void delete(Long id) {
         Category category = categoryRepository.findById(id).orElse(null);
         if (category != null) {
@@ -259,40 +264,10 @@ public class CategoryService {
                 });
             }
             categoryRepository.delete(category);
+            categoryCatalogCache.refresh();
         } else {
             log.warn("Category with id {} not found for deletion", id);
             throw new CategoryProcessingException("CATEGORY_NOT_FOUND", "Category not found", id);
         }
     }
-
-    /**
-     * Safely get product count for a category, returning 0L if Product table is not available
-     * @param category The category to count products for
-     * @return The product count or 0L if unable to access Product repository
-     */
-    private Long getProductCountSafely(Category category) {
-        try {
-            return productRepository.countByCategory(category);
-        } catch (Exception e) {
-            log.debug("Unable to count products for category {} (likely in test environment): {}", 
-                category.getId(), e.getMessage());
-            return 0L;
-        }
-    }
-
-    /**
-     * Safely get products by category, returning null if Product table is not available
-     * @param category The category to find products for
-     * @return The list of products or null if unable to access Product repository
-     */
-    private List<Product> getProductsByCategorySafely(Category category) {
-        try {
-            return productRepository.findByCategory(category);
-        } catch (Exception e) {
-            log.debug("Unable to find products for category {} (likely in test environment): {}", 
-                category.getId(), e.getMessage());
-            return null;
-        }
-    }
 }
-
@@ -0,0 +1,165 @@
+package com.hungng3011.vdtecomberefresh.category.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.hungng3011.vdtecomberefresh.category.repositories.CategoryRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versioned in-memory snapshot of the category catalog (categories, dynamic-field definitions, product counts).
+ *
+ * The snapshot is built with a single query, the categories with their fields fetch-joined; product counts come
+ * from the maintained {@code product_count} column instead of a count per category. Category writes rebuild it
+ * after the surrounding transaction commits, under a catalog version taken from Redis
+ * ({@code category:catalog:version}), and broadcast that version over Redis pub/sub so other nodes rebuild when
+ * they are behind. Product counts change with product writes rather than category writes, so the snapshot is
+ * also rebuilt in the background after the refresh interval and callers keep reading the previous one until the
+ * rebuild completes.
+ */
+@Component
+@Slf4j
+public class CategoryCatalogCache implements MessageListener {
+    static final String VERSION_KEY = "category:catalog:version";
+    static final String INVALIDATION_CHANNEL = "category:catalog:invalidation";
+    private static final String VERSION_MESSAGE = "version:";
+    private static final String KEY = "catalog";
+
+    private final CategoryRepository categoryRepository;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final AtomicLong version = new AtomicLong();
+    private final LoadingCache<String, CategoryCatalogSnapshot> catalog;
+
+    public CategoryCatalogCache(CategoryRepository categoryRepository,
+                                RedisTemplate<String, Object> redisTemplate,
+                                RedisMessageListenerContainer listenerContainer,
+                                @Value("${app.cache.category.catalog.refresh-interval:60s}") Duration refreshInterval) {
+        this.categoryRepository = categoryRepository;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.catalog = Caffeine.newBuilder()
+                .refreshAfterWrite(refreshInterval)
+                .build(key -> load());
+    }
+
+    @PostConstruct
+    void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+        try {
+            Object stored = redisTemplate.opsForValue().get(VERSION_KEY);
+            if (stored instanceof Number number) {
+                version.set(number.longValue());
+            }
+        } catch (Exception e) {
+            log.warn("Could not read category catalog version from Redis, starting at {}", version.get(), e);
+        }
+    }
+
+    /**
+     * @return The current catalog snapshot, building it on first use
+     */
+    public CategoryCatalogSnapshot getSnapshot() {
+        return catalog.get(KEY);
+    }
+
+    /**
+     * Look up a dynamic-field definition in the current snapshot
+     * @param fieldId Dynamic field ID
+     * @return The field definition, or empty when the field is not in the snapshot
+     */
+    public Optional<CategoryCatalogSnapshot.FieldDefinition> findDynamicField(Long fieldId) {
+        if (fieldId == null) {
+            return Optional.empty();
+        }
+        return getSnapshot().findField(fieldId);
+    }
+
+    /**
+     * Rebuild the snapshot under a new catalog version on every node once the current transaction commits.
+     * Called on category writes.
+     */
+    public void refresh() {
+        afterCommit(() -> {
+            long next = nextVersion();
+            rebuild(next);
+            try {
+                redisTemplate.convertAndSend(INVALIDATION_CHANNEL, VERSION_MESSAGE + next);
+            } catch (Exception e) {
+                log.warn("Could not broadcast category catalog version {}", next, e);
+            }
+        });
+    }
+
+    /**
+     * Handle catalog versions broadcast by other nodes
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8).replace("\"", "");
+        if (!body.startsWith(VERSION_MESSAGE)) {
+            return;
+        }
+        try {
+            long next = Long.parseLong(body.substring(VERSION_MESSAGE.length()));
+            if (getSnapshot().getVersion() < next) {
+                rebuild(next);
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed category catalog message: {}", body);
+        }
+    }
+
+    private long nextVersion() {
+        try {
+            Long next = redisTemplate.opsForValue().increment(VERSION_KEY);
+            if (next != null) {
+                return version.accumulateAndGet(next, Math::max);
+            }
+        } catch (Exception e) {
+            log.warn("Could not bump category catalog version in Redis, using a local version", e);
+        }
+        return version.incrementAndGet();
+    }
+
+    private void rebuild(long next) {
+        version.accumulateAndGet(next, Math::max);
+        catalog.put(KEY, load());
+    }
+
+    private CategoryCatalogSnapshot load() {
+        long startedAt = System.currentTimeMillis();
+        CategoryCatalogSnapshot snapshot = CategoryCatalogSnapshot.of(version.get(),
+                categoryRepository.findAllWithDynamicFields());
+        log.debug("Built category catalog snapshot v{} with {} categories in {} ms",
+                snapshot.getVersion(), snapshot.size(), System.currentTimeMillis() - startedAt);
+        return snapshot;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.hungng3011.vdtecomberefresh.category.cache;
+
+import com.hungng3011.vdtecomberefresh.category.dtos.CategoryDto;
+import com.hungng3011.vdtecomberefresh.category.dtos.CategoryDynamicFieldDto;
+import com.hungng3011.vdtecomberefresh.category.entities.Category;
+import com.hungng3011.vdtecomberefresh.category.entities.CategoryDynamicField;
+import com.hungng3011.vdtecomberefresh.category.enums.AppliesTo;
+import com.hungng3011.vdtecomberefresh.category.enums.FieldType;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Immutable view of the category catalog: every category, its dynamic-field definitions and its product count.
+ *
+ * A snapshot is never modified after it is built; a catalog change builds a new one with a higher version.
+ * Readers get fresh DTO copies, so callers can modify what they receive without touching the shared snapshot.
+ */
+public final class CategoryCatalogSnapshot {
+    private final long version;
+    private final Instant builtAt;
+    private final List<CategoryEntry> categories;
+    private final Map<Long, CategoryEntry> categoriesById;
+    private final Map<Long, FieldDefinition> fieldsById;
+
+    private CategoryCatalogSnapshot(long version, Instant builtAt, List<CategoryEntry> categories) {
+        this.version = version;
+        this.builtAt = builtAt;
+        this.categories = List.copyOf(categories);
+
+        Map<Long, CategoryEntry> byId = new LinkedHashMap<>();
+        Map<Long, FieldDefinition> fields = new LinkedHashMap<>();
+        for (CategoryEntry category : this.categories) {
+            byId.put(category.id(), category);
+            for (FieldDefinition field : category.fields()) {
+                fields.put(field.id(), field);
+            }
+        }
+        this.categoriesById = Map.copyOf(byId);
+        this.fieldsById = Map.copyOf(fields);
+    }
+
+    /**
+     * Build a snapshot from loaded categories
+     * @param version Catalog version the snapshot represents
+     * @param categories Categories with their dynamic fields initialized, in display order
+     * @return The snapshot
+     */
+    public static CategoryCatalogSnapshot of(long version, Collection<Category> categories) {
+        List<CategoryEntry> entries = new ArrayList<>(categories.size());
+        for (Category category : categories) {
+            List<FieldDefinition> fields = new ArrayList<>();
+            if (category.getDynamicFields() != null) {
+                for (CategoryDynamicField field : category.getDynamicFields()) {
+                    fields.add(new FieldDefinition(field.getId(), category.getId(), field.getFieldName(),
+                            field.getFieldType(), field.getAppliesTo(), field.isRequired()));
+                }
+            }
+            entries.add(new CategoryEntry(category.getId(), category.getName(), category.getImageUrl(),
+                    category.getProductCount(), fields));
+        }
+        return new CategoryCatalogSnapshot(version, Instant.now(), entries);
+    }
+
+    /**
+     * @return Catalog version; a higher version reflects later category writes
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return When the snapshot was built, which bounds the age of its product counts
+     */
+    public Instant getBuiltAt() {
+        return builtAt;
+    }
+
+    /**
+     * @return Every category as a fresh DTO, in display order
+     */
+    public List<CategoryDto> toDtos() {
+        return categories.stream().map(CategoryEntry::toDto).toList();
+    }
+
+    /**
+     * @param categoryId Category ID
+     * @return The category as a fresh DTO, or empty when it is not in the snapshot
+     */
+    public Optional<CategoryDto> toDto(Long categoryId) {
+        return Optional.ofNullable(categoriesById.get(categoryId)).map(CategoryEntry::toDto);
+    }
+
+    /**
+     * @param fieldId Dynamic field ID
+     * @return The field definition, or empty when it is not in the snapshot
+     */
+    public Optional<FieldDefinition> findField(Long fieldId) {
+        return Optional.ofNullable(fieldsById.get(fieldId));
+    }
+
+    /**
+     * @return Number of categories in the snapshot
+     */
+    public int size() {
+        return categories.size();
+    }
+
+    /**
+     * A category with its product count and dynamic-field definitions
+     */
+    public record CategoryEntry(Long id, String name, String imageUrl, long productCount,
+                                List<FieldDefinition> fields) {
+        public CategoryEntry {
+            fields = List.copyOf(fields);
+        }
+
+        CategoryDto toDto() {
+            List<CategoryDynamicFieldDto> fieldDtos = fields.stream().map(FieldDefinition::toDto)
+                    .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+            return new CategoryDto(id, name, fieldDtos, imageUrl, productCount);
+        }
+    }
+
+    /**
+     * A dynamic-field definition of a category
+     */
+    public record FieldDefinition(Long id, Long categoryId, String fieldName, FieldType fieldType,
+                                  AppliesTo appliesTo, boolean required) {
+
+        CategoryDynamicFieldDto toDto() {
+            return new CategoryDynamicFieldDto(id, categoryId, fieldName, fieldType, appliesTo, required);
+        }
+    }
+}
@@ -36,5 +36,14 @@ public class Category {
     private List<CategoryDynamicField> dynamicFields;
 
     private String imageUrl;
+
+    /**
+     * Number of products in the category, maintained by product writes through
+     * {@code CategoryRepository#adjustProductCount} and corrected by the reconciliation job.
+     * Never written from the entity, so a category update cannot overwrite a concurrent increment.
+     */
+    @Column(name = "product_count", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "bigint not null default 0")
+    private long productCount;
 }
 
@@ -8,6 +8,7 @@ import org.mapstruct.Named;
 
 @Mapper(componentModel = "spring", uses = {CategoryDynamicFieldMapper.class})
 public interface CategoryMapper {
+    @Mapping(target = "productCount", ignore = true)
     public Category toEntity(CategoryDto categoryDto);
 
     @Mapping(target="dynamicFields", source="dynamicFields")
@@ -2,6 +2,37 @@ package com.hungng3011.vdtecomberefresh.category.repositories;
 
 import com.hungng3011.vdtecomberefresh.category.entities.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 
 public interface CategoryRepository extends JpaRepository<Category, Long> {
+
+    /**
+     * Load every category with its dynamic fields in a single query
+     * @return Categories ordered by ID, with dynamic fields initialized
+     */
+    @Query("SELECT DISTINCT c FROM Category c LEFT JOIN FETCH c.dynamicFields ORDER BY c.id")
+    List<Category> findAllWithDynamicFields();
+
+    /**
+     * Atomically add to a category's product counter in the current transaction
+     * @param categoryId Category ID
+     * @param delta Number of products added (positive) or removed (negative)
+     * @return Number of rows updated
+     */
+    @Modifying
+    @Query("UPDATE Category c SET c.productCount = c.productCount + :delta WHERE c.id = :categoryId")
+    int adjustProductCount(@Param("categoryId") Long categoryId, @Param("delta") long delta);
+
+    /**
+     * Reset every product counter that differs from the actual number of products
+     * @return Number of categories whose counter was corrected
+     */
+    @Modifying
+    @Query("UPDATE Category c SET c.productCount = (SELECT COUNT(p) FROM Product p WHERE p.category = c) " +
+            "WHERE c.productCount <> (SELECT COUNT(p) FROM Product p WHERE p.category = c)")
+    int reconcileProductCounts();
 }
@@ -0,0 +1,58 @@
+package com.hungng3011.vdtecomberefresh.config;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.query.ReturnableType;
+import org.hibernate.query.sqm.function.AbstractSqmSelfRenderingFunctionDescriptor;
+import org.hibernate.query.sqm.produce.function.StandardArgumentsValidators;
+import org.hibernate.query.sqm.produce.function.StandardFunctionReturnTypeResolvers;
+import org.hibernate.sql.ast.SqlAstTranslator;
+import org.hibernate.sql.ast.spi.SqlAppender;
+import org.hibernate.sql.ast.tree.SqlAstNode;
+import org.hibernate.type.BasicType;
+import org.hibernate.type.StandardBasicTypes;
+
+import java.util.List;
+
+/**
+ * Registers PostgreSQL JSONB operators as HQL/Criteria functions.
+ *
+ * The function form of the jsonpath match operator ({@code jsonb_path_match(...)}) cannot use a GIN
+ * index, so queries need the operator itself: {@code jsonb_matches(doc, path)} renders
+ * {@code doc @@ cast(path as jsonpath)}. GIN {@code jsonb_ops} cannot narrow a path predicate that only
+ * compares ranges or tests existence, so {@code jsonb_has_key(doc, key)} renders the key existence
+ * operator {@code doc ? key}. That one is rendered by hand: a function pattern reads every {@code ?} as an
+ * argument placeholder, and the JDBC driver needs it written as {@code ??}.
+ *
+ * Registered through {@code META-INF/services/org.hibernate.boot.model.FunctionContributor}.
+ */
+public class JsonbFunctionContributor implements FunctionContributor {
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        var registry = functionContributions.getFunctionRegistry();
+        var booleanType = functionContributions.getTypeConfiguration()
+                .getBasicTypeRegistry()
+                .resolve(StandardBasicTypes.BOOLEAN);
+        registry.registerPattern("jsonb_matches", "(?1 @@ cast(?2 as jsonpath))", booleanType);
+        registry.register("jsonb_has_key", new JsonbHasKeyFunction(booleanType));
+    }
+
+    private static class JsonbHasKeyFunction extends AbstractSqmSelfRenderingFunctionDescriptor {
+
+        JsonbHasKeyFunction(BasicType<Boolean> booleanType) {
+            super("jsonb_has_key", StandardArgumentsValidators.exactly(2),
+                    StandardFunctionReturnTypeResolvers.invariant(booleanType), null);
+        }
+
+        @Override
+        public void render(SqlAppender sqlAppender, List<? extends SqlAstNode> arguments,
+                           ReturnableType<?> returnType, SqlAstTranslator<?> walker) {
+            sqlAppender.appendSql('(');
+            arguments.get(0).accept(walker);
+            sqlAppender.appendSql(" ?? ");
+            arguments.get(1).accept(walker);
+            sqlAppender.appendSql(')');
+        }
+    }
+}
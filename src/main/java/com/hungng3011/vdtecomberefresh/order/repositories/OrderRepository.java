@@ -12,6 +12,7 @@ import org.springframework.data.repository.query.Param;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderRepository extends JpaRepository<Order, String> {
@@ -184,6 +185,17 @@ public interface OrderRepository extends JpaRepository<Order, String> {
     @Query("SELECT o FROM Order o WHERE o.createdAt >= :since ORDER BY o.createdAt DESC")
     List<Order> findRecentOrders(@Param("since") LocalDateTime since, Pageable pageable);
     
+    /**
+     * Number of orders per product, for search ranking
+     * @param productIds Products to count
+     * @param statuses Order statuses that count as a sale
+     * @return Rows of [productId, order count]; products never ordered are absent
+     */
+    @Query("SELECT oi.product.id, COUNT(DISTINCT o.id) FROM Order o JOIN o.items oi " +
+           "WHERE oi.product.id IN :productIds AND o.status IN :statuses GROUP BY oi.product.id")
+    List<Object[]> countOrdersByProductIds(@Param("productIds") Collection<Long> productIds,
+                                           @Param("statuses") Collection<OrderStatus> statuses);
+    
     @Query("SELECT DATE(o.createdAt) as date, COUNT(o) as count, COALESCE(SUM(CASE WHEN o.paymentStatus = 'SUCCESSFUL' THEN o.totalPrice ELSE 0 END), 0) as revenue " +
            "FROM Order o WHERE o.createdAt >= :startDate GROUP BY DATE(o.createdAt) ORDER BY date DESC")
     List<Object[]> getDailyOrderTrends(@Param("startDate") LocalDateTime startDate);
@@ -10,10 +10,12 @@ import com.hungng3011.vdtecomberefresh.order.mappers.OrderMapper;
 import com.hungng3011.vdtecomberefresh.order.repositories.OrderRepository;
 import com.hungng3011.vdtecomberefresh.product.entities.Product;
 import com.hungng3011.vdtecomberefresh.product.repositories.ProductRepository;
+import com.hungng3011.vdtecomberefresh.search.events.ProductIndexEvent;
 import com.hungng3011.vdtecomberefresh.stock.StockService;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -37,6 +39,7 @@ public class OrderService {
     private final NotificationService notificationService;
     private final ProductRepository productRepository;
     private final StockService stockService;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Helper method to get customer email from order
@@ -81,6 +84,7 @@ public class OrderService {
         }
 
         Order savedOrder = orderRepository.save(order);
+        publishIndexEvent(savedOrder);
         OrderDto savedOrderDto = orderMapper.toDto(savedOrder);
         
         // Send order confirmation email asynchronously
@@ -189,6 +193,7 @@ public class OrderService {
         order.setUpdatedAt(LocalDateTime.now());
         
         Order savedOrder = orderRepository.save(order);
+        publishIndexEvent(savedOrder);
         
         // Send cancellation email
         try {
@@ -207,6 +212,24 @@ public class OrderService {
         return orderMapper.toDto(savedOrder);
     }
     
+    /**
+     * Order placement and status changes feed the products' sales signals in the search index
+     * @param order The written order
+     */
+    private void publishIndexEvent(Order order) {
+        if (order.getItems() == null) {
+            return;
+        }
+        List<Long> productIds = order.getItems().stream()
+                .filter(item -> item.getProduct() != null)
+                .map(item -> item.getProduct().getId())
+                .distinct()
+                .toList();
+        if (!productIds.isEmpty()) {
+            eventPublisher.publishEvent(ProductIndexEvent.upsert("order", productIds));
+        }
+    }
+
     /**
      * Check if an order can be cancelled based on its current status
      * @param status The current order status
@@ -243,6 +266,7 @@ public class OrderService {
         order.setUpdatedAt(LocalDateTime.now());
         
         Order savedOrder = orderRepository.save(order);
+        publishIndexEvent(savedOrder);
         
         // Send status update email notifications
         try {
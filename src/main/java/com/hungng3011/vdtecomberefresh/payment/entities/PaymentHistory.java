@@ -23,7 +23,8 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class PaymentHistory {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_history_seq")
+    @SequenceGenerator(name = "payment_history_seq", sequenceName = "payment_history_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "order_id", nullable = false)
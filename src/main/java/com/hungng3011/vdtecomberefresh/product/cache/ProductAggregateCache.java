@@ -0,0 +1,205 @@
+package com.hungng3011.vdtecomberefresh.product.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hungng3011.vdtecomberefresh.product.dtos.ProductDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Two-level cache for the product detail aggregate (product, category, dynamic values,
+ * variations and variation dynamic values).
+ *
+ * - L1 is an in-process Caffeine cache. Concurrent misses for the same product are
+ *   collapsed into a single load (single-flight), so a hot product that expires does
+ *   not stampede Redis or the database.
+ * - L2 is Redis. Keys carry a namespace generation and a per-product version
+ *   ({@code product:aggregate:g{n}:{id}:v{version}}). The whole namespace is invalidated by
+ *   bumping the generation instead of scanning and deleting keys; stale generations simply expire.
+ * - Writes bump the product's version after the surrounding transaction commits, so a load that
+ *   read the old row before the commit and writes it to Redis afterwards lands under a key nobody
+ *   reads any more. The eviction is broadcast over Redis pub/sub so every node drops its L1 entry.
+ *
+ * Hit/miss statistics are published to Micrometer and visible through the Actuator
+ * metrics endpoint as {@code cache.*{cache=product.aggregate.l1}} and
+ * {@code product.aggregate.l2.requests}.
+ */
+@Component
+@Slf4j
+public class ProductAggregateCache implements MessageListener {
+    static final String KEY_PREFIX = "product:aggregate:g";
+    static final String GENERATION_KEY = "product:aggregate:generation";
+    static final String VERSION_KEY_PREFIX = "product:aggregate:version:";
+    static final String INVALIDATION_CHANNEL = "product:aggregate:invalidation";
+    private static final String EVICT_MESSAGE = "evict:";
+    private static final String GENERATION_MESSAGE = "generation:";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+    private final Duration l2Ttl;
+    private final Cache<Long, ProductDto> l1;
+    private final AtomicLong generation = new AtomicLong();
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+
+    public ProductAggregateCache(RedisTemplate<String, Object> redisTemplate,
+                                 RedisMessageListenerContainer listenerContainer,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.cache.product.l1.max-size:10000}") long l1MaxSize,
+                                 @Value("${app.cache.product.l1.ttl:60s}") Duration l1Ttl,
+                                 @Value("${app.cache.product.l2.ttl:10m}") Duration l2Ttl) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.meterRegistry = meterRegistry;
+        this.l2Ttl = l2Ttl;
+        this.l1 = Caffeine.newBuilder()
+                .maximumSize(l1MaxSize)
+                .expireAfterWrite(l1Ttl)
+                .recordStats()
+                .build();
+        this.l2Hits = Counter.builder("product.aggregate.l2.requests").tag("result", "hit").register(meterRegistry);
+        this.l2Misses = Counter.builder("product.aggregate.l2.requests").tag("result", "miss").register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        CaffeineCacheMetrics.monitor(meterRegistry, l1, "product.aggregate.l1");
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+        try {
+            Object stored = redisTemplate.opsForValue().get(GENERATION_KEY);
+            if (stored instanceof Number number) {
+                generation.set(number.longValue());
+            }
+        } catch (Exception e) {
+            log.warn("Could not read product cache generation from Redis, starting at {}", generation.get(), e);
+        }
+    }
+
+    /**
+     * Get a product aggregate, loading it at most once per node on a miss
+     * @param productId Product ID
+     * @param loader Loads the aggregate from the database; may return null when the product does not exist
+     * @return Cached or freshly loaded product, or null when not found
+     */
+    public ProductDto get(Long productId, Function<Long, ProductDto> loader) {
+        return l1.get(productId, id -> loadThroughL2(id, loader));
+    }
+
+    /**
+     * Evict a product from both cache levels on every node once the current transaction commits
+     * @param productId Product ID to evict
+     */
+    public void evict(Long productId) {
+        afterCommit(() -> {
+            l1.invalidate(productId);
+            try {
+                // Version keys never expire (one counter per edited product), so a version is never reused
+                redisTemplate.opsForValue().increment(VERSION_KEY_PREFIX + productId);
+                redisTemplate.convertAndSend(INVALIDATION_CHANNEL, EVICT_MESSAGE + productId);
+            } catch (Exception e) {
+                log.warn("Could not evict product {} from Redis cache", productId, e);
+            }
+        });
+    }
+
+    /**
+     * Invalidate every cached product on every node by moving to a new key generation,
+     * e.g. after category changes or bulk imports that touch many products
+     */
+    public void invalidateAll() {
+        afterCommit(() -> {
+            l1.invalidateAll();
+            try {
+                Long next = redisTemplate.opsForValue().increment(GENERATION_KEY);
+                if (next != null) {
+                    generation.set(next);
+                    redisTemplate.convertAndSend(INVALIDATION_CHANNEL, GENERATION_MESSAGE + next);
+                }
+            } catch (Exception e) {
+                log.warn("Could not bump product cache generation in Redis", e);
+            }
+        });
+    }
+
+    /**
+     * Handle invalidations broadcast by other nodes
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8).replace("\"", "");
+        try {
+            if (body.startsWith(EVICT_MESSAGE)) {
+                l1.invalidate(Long.parseLong(body.substring(EVICT_MESSAGE.length())));
+            } else if (body.startsWith(GENERATION_MESSAGE)) {
+                long next = Long.parseLong(body.substring(GENERATION_MESSAGE.length()));
+                if (generation.getAndAccumulate(next, Math::max) < next) {
+                    l1.invalidateAll();
+                }
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed product cache invalidation message: {}", body);
+        }
+    }
+
+    private ProductDto loadThroughL2(Long productId, Function<Long, ProductDto> loader) {
+        String key = null;
+        try {
+            Object version = redisTemplate.opsForValue().get(VERSION_KEY_PREFIX + productId);
+            key = key(generation.get(), productId, version instanceof Number number ? number.longValue() : 0);
+            Object cached = redisTemplate.opsForValue().get(key);
+            if (cached instanceof ProductDto product) {
+                l2Hits.increment();
+                return product;
+            }
+        } catch (Exception e) {
+            log.warn("Could not read product {} from Redis cache, loading from database", productId, e);
+        }
+        l2Misses.increment();
+
+        ProductDto product = loader.apply(productId);
+        // Without the current version the entry could not be invalidated, so it is not cached in Redis
+        if (product != null && key != null) {
+            try {
+                redisTemplate.opsForValue().set(key, product, l2Ttl);
+            } catch (Exception e) {
+                log.warn("Could not write product {} to Redis cache", productId, e);
+            }
+        }
+        return product;
+    }
+
+    private static String key(long generation, Long productId, long version) {
+        return KEY_PREFIX + generation + ":" + productId + ":v" + version;
+    }
+
+    static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.hungng3011.vdtecomberefresh.product.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.hungng3011.vdtecomberefresh.product.repositories.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Approximate total number of products for listing metadata.
+ *
+ * An exact {@code COUNT(*)} scans the whole table on PostgreSQL, so listings read this cached value
+ * instead. Large tables use the planner estimate ({@code pg_class.reltuples}, kept current by
+ * autovacuum/ANALYZE); small tables, or databases without {@code pg_class}, fall back to an exact count.
+ * Once loaded, the value is refreshed in the background after the refresh interval and callers keep
+ * getting the previous value until the refresh completes.
+ */
+@Component
+@Slf4j
+public class ProductCountCache {
+    private static final String KEY = "products";
+    private static final String ESTIMATE_SQL =
+            "SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass('products')";
+
+    private final ProductRepository productRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final long exactCountThreshold;
+    private final LoadingCache<String, Long> counts;
+
+    public ProductCountCache(ProductRepository productRepository,
+                             JdbcTemplate jdbcTemplate,
+                             @Value("${app.product.count.refresh-interval:60s}") Duration refreshInterval,
+                             @Value("${app.product.count.exact-threshold:100000}") long exactCountThreshold) {
+        this.productRepository = productRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.exactCountThreshold = exactCountThreshold;
+        this.counts = Caffeine.newBuilder()
+                .refreshAfterWrite(refreshInterval)
+                .build(key -> load());
+    }
+
+    /**
+     * @return Approximate number of products, at most one refresh interval old
+     */
+    public long getApproximateCount() {
+        return counts.get(KEY);
+    }
+
+    private long load() {
+        Long estimate = null;
+        try {
+            estimate = jdbcTemplate.queryForObject(ESTIMATE_SQL, Long.class);
+        } catch (DataAccessException e) {
+            log.debug("Row estimate unavailable for products, using exact count: {}", e.getMessage());
+        }
+        // reltuples is -1 (or 0) until the table has been vacuumed or analyzed
+        if (estimate != null && estimate >= exactCountThreshold) {
+            log.debug("Refreshed approximate product count: {}", estimate);
+            return estimate;
+        }
+        long exact = productRepository.countAllProducts();
+        log.debug("Refreshed exact product count: {}", exact);
+        return exact;
+    }
+}
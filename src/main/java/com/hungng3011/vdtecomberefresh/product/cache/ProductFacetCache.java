@@ -0,0 +1,128 @@
+package com.hungng3011.vdtecomberefresh.product.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFacetsDto;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * In-process cache of facet counts per filter context.
+ *
+ * Entries are keyed by the sanitized filter without paging and sorting, and are invalidated per category:
+ * a product or stock change in a category drops the entries scoped to that category plus the unscoped
+ * entries (whose category counts include it), and leaves other categories' entries alone. Invalidations
+ * run after the surrounding transaction commits and are broadcast over Redis pub/sub so every node drops
+ * its entries; the TTL only bounds staleness when a broadcast is missed.
+ *
+ * Hit/miss statistics are published as {@code cache.*{cache=product.facets}}.
+ */
+@Component
+@Slf4j
+public class ProductFacetCache implements MessageListener {
+    static final String INVALIDATION_CHANNEL = "product:facets:invalidation";
+    private static final String CATEGORY_MESSAGE = "category:";
+    private static final String ALL_MESSAGE = "all";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+    private final Cache<ProductFilterDto, ProductFacetsDto> facets;
+
+    public ProductFacetCache(RedisTemplate<String, Object> redisTemplate,
+                             RedisMessageListenerContainer listenerContainer,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.cache.product.facets.max-size:5000}") long maxSize,
+                             @Value("${app.cache.product.facets.ttl:10m}") Duration ttl) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.meterRegistry = meterRegistry;
+        this.facets = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    @PostConstruct
+    void init() {
+        CaffeineCacheMetrics.monitor(meterRegistry, facets, "product.facets");
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    /**
+     * Get the facet counts for a filter context, computing them at most once per node on a miss
+     * @param context Sanitized filter without paging and sorting; must not be modified afterwards
+     * @param loader Computes the facet counts
+     * @return Cached or freshly computed facet counts
+     */
+    public ProductFacetsDto get(ProductFilterDto context, Function<ProductFilterDto, ProductFacetsDto> loader) {
+        return facets.get(context, loader);
+    }
+
+    /**
+     * Drop the facet counts affected by a change in a category on every node once the current transaction commits
+     * @param categoryId Category of the changed product
+     */
+    public void evictCategory(Long categoryId) {
+        ProductAggregateCache.afterCommit(() -> {
+            evictLocal(categoryId);
+            publish(CATEGORY_MESSAGE + categoryId);
+        });
+    }
+
+    /**
+     * Drop every cached facet count on every node, e.g. after a bulk import
+     */
+    public void invalidateAll() {
+        ProductAggregateCache.afterCommit(() -> {
+            facets.invalidateAll();
+            publish(ALL_MESSAGE);
+        });
+    }
+
+    /**
+     * Handle invalidations broadcast by other nodes
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8).replace("\"", "");
+        try {
+            if (body.startsWith(CATEGORY_MESSAGE)) {
+                evictLocal(Long.parseLong(body.substring(CATEGORY_MESSAGE.length())));
+            } else if (ALL_MESSAGE.equals(body)) {
+                facets.invalidateAll();
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed facet cache invalidation message: {}", body);
+        }
+    }
+
+    private void evictLocal(Long categoryId) {
+        facets.asMap().keySet().removeIf(context ->
+                context.getCategoryId() == null || Objects.equals(context.getCategoryId(), categoryId));
+    }
+
+    private void publish(String message) {
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, message);
+        } catch (Exception e) {
+            log.warn("Could not broadcast facet cache invalidation '{}'", message, e);
+        }
+    }
+}
@@ -3,11 +3,21 @@ package com.hungng3011.vdtecomberefresh.product.controllers;
 import com.hungng3011.vdtecomberefresh.product.dtos.*;
 import com.hungng3011.vdtecomberefresh.product.services.*;
 import com.hungng3011.vdtecomberefresh.common.dtos.PagedResponse;
+import com.hungng3011.vdtecomberefresh.exception.product.ProductProcessingException;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto.ProductSortField;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto.SortDirection;
+import com.hungng3011.vdtecomberefresh.product.enums.ProductImportFormat;
+import com.hungng3011.vdtecomberefresh.search.services.SearchAnalyticsService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -16,6 +26,8 @@ import java.util.List;
 @Slf4j
 public class ProductController {
     private final ProductService productService;
+    private final ProductImportService productImportService;
+    private final SearchAnalyticsService searchAnalyticsService;
 
     @GetMapping
     public PagedResponse<ProductDto> get(
@@ -51,6 +63,26 @@ public class ProductController {
         }
     }
 
+    @GetMapping("/listing")
+    public PagedResponse<ProductDto> getListing(
+            @RequestParam(defaultValue = "ID") ProductSortField sortBy,
+            @RequestParam(defaultValue = "ASC") SortDirection direction,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cursor) {
+        log.info("Fetching product listing - sortBy: {}, direction: {}, size: {}, cursor: {}",
+                sortBy, direction, size, cursor);
+        try {
+            PagedResponse<ProductDto> response = productService.getListing(sortBy, direction, page,
+                    Math.min(100, Math.max(1, size)), cursor);
+            log.info("Successfully retrieved {} products for listing", response.getContent().size());
+            return response;
+        } catch (Exception e) {
+            log.error("Error fetching product listing", e);
+            throw e;
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ProductDto> getById(@PathVariable Long id) {
         log.info("Fetching product with ID: {}", id);
@@ -61,6 +93,7 @@ public class ProductController {
                 return ResponseEntity.notFound().build();
             }
             log.info("Successfully retrieved product with ID: {}", id);
+            searchAnalyticsService.logProductView(id);
             return ResponseEntity.ok(product);
         } catch (Exception e) {
             log.error("Error fetching product with ID: {}", id, e);
@@ -98,6 +131,33 @@ public class ProductController {
         }
     }
 
+    /**
+     * Bulk import products from a CSV or NDJSON file
+     * @param file The file to import
+     * @param format csv or ndjson; inferred from the file extension when omitted
+     * @return Imported/failed counts and per-row errors
+     */
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ProductImportResultDto> importProducts(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(required = false) String format) {
+        log.info("Importing products from file: {} ({} bytes)", file.getOriginalFilename(), file.getSize());
+        ProductImportFormat importFormat = ProductImportFormat.resolve(format, file.getOriginalFilename())
+                .orElseThrow(() -> new ProductProcessingException("PRODUCT_IMPORT_FORMAT_UNSUPPORTED",
+                        "Import format must be csv or ndjson"));
+        try (InputStream input = file.getInputStream()) {
+            ProductImportResultDto result = productImportService.importProducts(input, importFormat);
+            if (result.getReadError() != null) {
+                log.warn("Product import of {} stopped early: {}", file.getOriginalFilename(), result.getReadError());
+            }
+            log.info("Product import completed: {} imported, {} failed", result.getImported(), result.getFailed());
+            return ResponseEntity.ok(result);
+        } catch (IOException e) {
+            log.error("Error reading product import file: {}", file.getOriginalFilename(), e);
+            throw new ProductProcessingException("PRODUCT_IMPORT_READ_FAILED", "Import file could not be read", e);
+        }
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<ProductDto> update(@Valid @RequestBody ProductDto req) {
         log.info("Updating product with ID: {} and name: {}", req.getId(), req.getName());
@@ -2,6 +2,7 @@ package com.hungng3011.vdtecomberefresh.product.controllers;
 
 import com.hungng3011.vdtecomberefresh.common.dtos.PagedResponse;
 import com.hungng3011.vdtecomberefresh.product.dtos.ProductDto;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFacetsDto;
 import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto;
 import com.hungng3011.vdtecomberefresh.product.services.ProductFilterService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -92,6 +93,63 @@ public class ProductFilterController {
         }
     }
 
+    /**
+     * Get facet counts for the products matching the filter criteria
+     */
+    @PostMapping("/facets")
+    @Operation(
+        summary = "Get facet counts",
+        description = "Count matching products per category, price range, brand, dynamic attribute value and availability"
+    )
+    public ResponseEntity<ProductFacetsDto> getFacets(
+            @Valid @RequestBody ProductFilterDto filterDto) {
+        
+        log.info("Getting product facets with criteria: name={}, category={}, priceRange=[{}-{}]", 
+                filterDto.getName(), filterDto.getCategoryId(), 
+                filterDto.getMinPrice(), filterDto.getMaxPrice());
+        
+        try {
+            return ResponseEntity.ok(productFilterService.getFacets(filterDto));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid filter criteria for product facets: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Error getting product facets with criteria: {}", filterDto, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Get facet counts for a category page
+     */
+    @GetMapping("/category/{categoryId}/facets")
+    @Operation(
+        summary = "Get facet counts for a category",
+        description = "Count the category's products per price range, brand, dynamic attribute value and availability"
+    )
+    public ResponseEntity<ProductFacetsDto> getCategoryFacets(
+            @Parameter(description = "Category ID")
+            @PathVariable Long categoryId,
+            @Parameter(description = "Minimum price filter")
+            @RequestParam(required = false) Double minPrice,
+            @Parameter(description = "Maximum price filter")
+            @RequestParam(required = false) Double maxPrice) {
+        
+        log.info("Getting product facets for category {} with priceRange=[{}-{}]", categoryId, minPrice, maxPrice);
+        
+        try {
+            ProductFilterDto filterDto = ProductFilterDto.builder()
+                    .categoryId(categoryId)
+                    .minPrice(convertToBigDecimal(minPrice))
+                    .maxPrice(convertToBigDecimal(maxPrice))
+                    .build();
+            return ResponseEntity.ok(productFilterService.getFacets(filterDto));
+        } catch (Exception e) {
+            log.error("Error getting product facets for category {}: {}", categoryId, e.getMessage());
+            throw e;
+        }
+    }
+
     /**
      * Search products by text with security protection
      */
@@ -0,0 +1,16 @@
+package com.hungng3011.vdtecomberefresh.product.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A row of a bulk import that could not be imported
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductImportErrorDto {
+    private long row;
+    private String message;
+}
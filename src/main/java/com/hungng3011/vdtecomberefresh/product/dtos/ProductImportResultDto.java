@@ -0,0 +1,23 @@
+package com.hungng3011.vdtecomberefresh.product.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk product import
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductImportResultDto {
+    private long totalRows;
+    private long imported;
+    private long failed;
+    private List<ProductImportErrorDto> errors = new ArrayList<>();
+    /** Why reading the file stopped before its end, or null when it was read completely */
+    private String readError;
+}
@@ -0,0 +1,116 @@
+package com.hungng3011.vdtecomberefresh.product.dtos;
+
+import com.hungng3011.vdtecomberefresh.exception.product.ProductProcessingException;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto.ProductSortField;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto.SortDirection;
+import com.hungng3011.vdtecomberefresh.product.entities.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Keyset position in a sorted product listing: the sort key and ID of the last product on a page, or of the
+ * first one when paging backward.
+ *
+ * Clients receive it as an opaque URL-safe string. The sort field and direction are encoded too,
+ * so a cursor issued for one ordering is rejected when replayed against another.
+ */
+@Data
+@AllArgsConstructor
+public class ProductListingCursor {
+    private static final String SEPARATOR = "|";
+    private static final String AFTER = "A";
+    private static final String BEFORE = "B";
+
+    private ProductSortField sortBy;
+    private SortDirection direction;
+    private Long id;
+    private Object sortValue;
+    private boolean backward;
+
+    /**
+     * Build the cursor pointing after the given product
+     * @param product Last product of the current page
+     * @param sortBy Sort field of the listing
+     * @param direction Sort direction of the listing
+     * @return Cursor positioned after the product
+     */
+    public static ProductListingCursor after(Product product, ProductSortField sortBy, SortDirection direction) {
+        return new ProductListingCursor(sortBy, direction, product.getId(), sortValue(product, sortBy), false);
+    }
+
+    /**
+     * Build the cursor pointing before the given product
+     * @param product First product of the current page
+     * @param sortBy Sort field of the listing
+     * @param direction Sort direction of the listing
+     * @return Cursor positioned before the product
+     */
+    public static ProductListingCursor before(Product product, ProductSortField sortBy, SortDirection direction) {
+        return new ProductListingCursor(sortBy, direction, product.getId(), sortValue(product, sortBy), true);
+    }
+
+    public String encode() {
+        String raw = sortBy + SEPARATOR + direction + SEPARATOR + (backward ? BEFORE : AFTER) + SEPARATOR + id
+                + SEPARATOR + formatValue();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor previously returned by {@link #encode()}
+     * @param token Opaque cursor string from the client
+     * @param sortBy Sort field of the requested listing
+     * @param direction Sort direction of the requested listing
+     * @return Decoded cursor
+     * @throws ProductProcessingException if the token is malformed or was issued for another ordering
+     */
+    public static ProductListingCursor decode(String token, ProductSortField sortBy, SortDirection direction) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // The sort value goes last so names containing the separator survive the split
+            String[] parts = raw.split("\\" + SEPARATOR, 5);
+            if (parts.length != 5
+                    || ProductSortField.valueOf(parts[0]) != sortBy
+                    || SortDirection.valueOf(parts[1]) != direction
+                    || !(AFTER.equals(parts[2]) || BEFORE.equals(parts[2]))) {
+                throw invalid(token);
+            }
+            Long id = Long.valueOf(parts[3]);
+            Object sortValue = switch (sortBy) {
+                case NAME -> parts[4];
+                case BASE_PRICE -> new BigDecimal(parts[4]);
+                case CREATED_AT -> LocalDateTime.parse(parts[4]);
+                case ID -> null;
+            };
+            return new ProductListingCursor(sortBy, direction, id, sortValue, BEFORE.equals(parts[2]));
+        } catch (ProductProcessingException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw invalid(token);
+        }
+    }
+
+    private static Object sortValue(Product product, ProductSortField sortBy) {
+        return switch (sortBy) {
+            case NAME -> product.getName();
+            case BASE_PRICE -> product.getBasePrice();
+            case CREATED_AT -> product.getCreatedAt();
+            case ID -> null;
+        };
+    }
+
+    private String formatValue() {
+        if (sortValue == null) {
+            return "";
+        }
+        return sortValue instanceof BigDecimal price ? price.toPlainString() : sortValue.toString();
+    }
+
+    private static ProductProcessingException invalid(String token) {
+        return new ProductProcessingException("INVALID_CURSOR", "Invalid or mismatched listing cursor: " + token);
+    }
+}
@@ -0,0 +1,25 @@
+package com.hungng3011.vdtecomberefresh.product.dtos.filters;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Number of products for one facet value in the current filter context
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetCountDto {
+    // Value to filter by: category ID, price bucket bounds "min-max" or the attribute value
+    private String key;
+
+    private String label;
+
+    private Long count;
+
+    // Whether the current filter already selects this value
+    private Boolean selected;
+}
@@ -0,0 +1,34 @@
+package com.hungng3011.vdtecomberefresh.product.dtos.filters;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Facet counts for a product filter context.
+ *
+ * Category counts are only present when the filter is not scoped to a category. Price bucket counts ignore
+ * the filter's own price range so that other ranges stay selectable.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductFacetsDto {
+    private Long totalProducts;
+
+    private Long inStockProducts;
+
+    private List<FacetCountDto> categories;
+
+    private List<FacetCountDto> priceRanges;
+
+    private List<FacetCountDto> brands;
+
+    // Dynamic attribute values keyed by lower-cased field name
+    private Map<String, List<FacetCountDto>> attributes;
+}
@@ -56,6 +56,7 @@ public class ProductFilterDto {
     private Integer size = 20;
     
     @Data
+    @Builder
     @NoArgsConstructor
     @AllArgsConstructor
     public static class DynamicFieldFilterDto {
@@ -65,7 +66,13 @@ public class ProductFilterDto {
         @Size(max = 500, message = "Field value must not exceed 500 characters")
         private String value;
         
+        @Builder.Default
         private FieldMatchType matchType = FieldMatchType.EQUALS;
+        
+        // Inclusive numeric range for NUMBER fields; either bound may be omitted
+        private BigDecimal minValue;
+        
+        private BigDecimal maxValue;
     }
     
     public enum ProductSortField {
@@ -13,6 +13,7 @@ import org.hibernate.annotations.UpdateTimestamp;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Đại diện cho sản phẩm trong hệ thống thương mại điện tử.
@@ -24,6 +25,7 @@ import java.util.List;
  * - Trường `dynamicValues` lưu giá trị các thuộc tính động, liên kết với định nghĩa trường động của danh mục (\@see CategoryDynamicField).
  * - Trường `variations` hỗ trợ các biến thể sản phẩm (ví dụ: màu sắc, kích thước).
  * - Trường `images` lưu danh sách URL ảnh sản phẩm dưới dạng JSONB, thuận tiện cho việc lưu trữ nhiều ảnh.
+ * - Trường `attributes` là bản chiếu có kiểu của `dynamicValues` dưới dạng JSONB (có GIN index) để lọc nhiều thuộc tính trong một truy vấn.
  *
  * Cách tiếp cận này giúp hệ thống dễ bảo trì, mở rộng, thuận tiện thêm/xoá/sửa thuộc tính động cho từng sản phẩm khi nghiệp vụ thay đổi.
  *
@@ -35,14 +37,17 @@ import java.util.List;
 @Entity
 @Table(name = "products", indexes = {
         @Index(name = "idx_product_category_id", columnList = "category_id"),
-        @Index(name = "idx_product_name", columnList = "name")
+        @Index(name = "idx_product_name_id", columnList = "name, id"),
+        @Index(name = "idx_product_base_price_id", columnList = "base_price, id"),
+        @Index(name = "idx_product_created_at_id", columnList = "created_at, id")
 })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Product {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_seq")
+    @SequenceGenerator(name = "products_seq", sequenceName = "products_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -64,7 +69,7 @@ public class Product {
     private BigDecimal basePrice;
 
     @CreationTimestamp
-    @Column(name = "created_at", updatable = false)
+    @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
     @UpdateTimestamp
@@ -75,6 +80,14 @@ public class Product {
     @Type(JsonBinaryType.class)
     private List<String> images; // List of image URLs
 
+    /**
+     * Typed projection of the dynamic values, keyed by lower-cased field name, for indexed filtering.
+     * Maintained on every write of the dynamic values, see {@link ProductAttributes}.
+     */
+    @Column(columnDefinition = "jsonb")
+    @Type(JsonBinaryType.class)
+    private Map<String, Object> attributes;
+
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL)
     private List<ProductDynamicValue> dynamicValues;
 
@@ -0,0 +1,115 @@
+package com.hungng3011.vdtecomberefresh.product.entities;
+
+import com.hungng3011.vdtecomberefresh.category.entities.CategoryDynamicField;
+import com.hungng3011.vdtecomberefresh.category.enums.FieldType;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Typed projection of a product's dynamic values into the {@code products.attributes} JSONB column.
+ *
+ * The {@link ProductDynamicValue} rows stay the source of truth; the projection only exists so that
+ * filters on several attributes at once can be answered by one GIN-indexed predicate on {@code products}.
+ * Keys are the lower-cased field names, so the same attribute can be filtered across categories.
+ * Values are typed from {@link CategoryDynamicField#getFieldType()}:
+ * - NUMBER: JSON number, so range filters compare numerically
+ * - BOOLEAN: JSON boolean
+ * - everything else (TEXT, ENUM, DATE, COLOR_HASH): lower-cased string, matching the case-insensitive filters
+ * A value that does not parse as its declared type is kept as a string rather than dropped.
+ *
+ * {@code V14__Product_attributes_projection.sql} backfills existing rows with the same rules.
+ */
+public final class ProductAttributes {
+
+    private ProductAttributes() {
+    }
+
+    /**
+     * Build the projection for a product's dynamic values
+     * @param values Dynamic values with their fields
+     * @return Attribute map for {@link Product#setAttributes(Map)}; empty when there are no values
+     */
+    public static Map<String, Object> project(List<ProductDynamicValue> values) {
+        return project(values, field -> new FieldKey(field.getFieldName(), field.getFieldType()));
+    }
+
+    /**
+     * Build the projection for a product's dynamic values, taking field names and types from elsewhere than the
+     * field entities, e.g. a catalog snapshot, so that lazy field references are never initialized
+     * @param values Dynamic values with their fields
+     * @param describe Name and type of a field
+     * @return Attribute map for {@link Product#setAttributes(Map)}; empty when there are no values
+     */
+    public static Map<String, Object> project(List<ProductDynamicValue> values,
+                                              Function<CategoryDynamicField, FieldKey> describe) {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        if (values == null) {
+            return attributes;
+        }
+        for (ProductDynamicValue value : values) {
+            if (value.getField() == null || value.getValue() == null) {
+                continue;
+            }
+            FieldKey field = describe.apply(value.getField());
+            if (field.fieldName() == null) {
+                continue;
+            }
+            attributes.put(key(field.fieldName()), typedValue(field.fieldType(), value.getValue()));
+        }
+        return attributes;
+    }
+
+    /**
+     * @param fieldName Dynamic field name
+     * @return Projection key for the field
+     */
+    public static String key(String fieldName) {
+        return fieldName.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Convert a raw dynamic value to its projected JSON type
+     * @param fieldType Declared field type, may be null
+     * @param raw Raw string value
+     * @return BigDecimal, Boolean or lower-cased String
+     */
+    public static Object typedValue(FieldType fieldType, String raw) {
+        String trimmed = raw.trim();
+        if (fieldType == FieldType.NUMBER) {
+            BigDecimal number = parseNumber(trimmed);
+            if (number != null) {
+                return number;
+            }
+        } else if (fieldType == FieldType.BOOLEAN) {
+            if ("true".equalsIgnoreCase(trimmed) || "false".equalsIgnoreCase(trimmed)) {
+                return Boolean.valueOf(trimmed);
+            }
+        }
+        return trimmed.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Name and declared type of a dynamic field
+     * @param fieldName Field name
+     * @param fieldType Declared field type, may be null
+     */
+    public record FieldKey(String fieldName, FieldType fieldType) {
+    }
+
+    /**
+     * @param value Candidate number
+     * @return The parsed number, or null when the value is not numeric
+     */
+    public static BigDecimal parseNumber(String value) {
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -17,7 +17,8 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class ProductDynamicValue {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_dynamic_values_seq")
+    @SequenceGenerator(name = "product_dynamic_values_seq", sequenceName = "product_dynamic_values_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
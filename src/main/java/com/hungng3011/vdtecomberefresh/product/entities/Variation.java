@@ -19,7 +19,8 @@ import java.util.List;
 @AllArgsConstructor
 public class Variation {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "variations_seq")
+    @SequenceGenerator(name = "variations_seq", sequenceName = "variations_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -13,7 +13,8 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class VariationDynamicValue {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "variation_dynamic_values_seq")
+    @SequenceGenerator(name = "variation_dynamic_values_seq", sequenceName = "variation_dynamic_values_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -0,0 +1,44 @@
+package com.hungng3011.vdtecomberefresh.product.enums;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Supported input formats for bulk product import
+ */
+public enum ProductImportFormat {
+    /**
+     * Header row followed by one product per line; unknown columns are product dynamic fields by name
+     */
+    CSV,
+    /**
+     * One ProductDto JSON document per line
+     */
+    NDJSON;
+
+    /**
+     * Resolve the format from an explicit parameter, falling back to the file extension
+     * @param format Explicit format name, may be null
+     * @param fileName Uploaded file name, may be null
+     * @return The resolved format, or empty when it cannot be determined
+     */
+    public static Optional<ProductImportFormat> resolve(String format, String fileName) {
+        if (format != null && !format.isBlank()) {
+            try {
+                return Optional.of(valueOf(format.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                return Optional.empty();
+            }
+        }
+        if (fileName != null) {
+            String lower = fileName.toLowerCase(Locale.ROOT);
+            if (lower.endsWith(".csv")) {
+                return Optional.of(CSV);
+            }
+            if (lower.endsWith(".ndjson") || lower.endsWith(".jsonl")) {
+                return Optional.of(NDJSON);
+            }
+        }
+        return Optional.empty();
+    }
+}
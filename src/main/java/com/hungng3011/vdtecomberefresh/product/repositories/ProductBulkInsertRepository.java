@@ -0,0 +1,157 @@
+package com.hungng3011.vdtecomberefresh.product.repositories;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hungng3011.vdtecomberefresh.product.entities.Product;
+import com.hungng3011.vdtecomberefresh.product.entities.ProductDynamicValue;
+import com.hungng3011.vdtecomberefresh.product.entities.Variation;
+import com.hungng3011.vdtecomberefresh.product.entities.VariationDynamicValue;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plain JDBC writer for bulk product import.
+ *
+ * Rows are written with JDBC batch inserts instead of one persist per entity. IDs are reserved up front
+ * from the same pooled sequences the entities use, so imported rows never collide with rows created
+ * through JPA.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductBulkInsertRepository {
+    private static final String INSERT_PRODUCT = "INSERT INTO products " +
+            "(id, category_id, name, sku, description, meta_description, base_price, images, attributes, " +
+            "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, CAST(? AS jsonb), CAST(? AS jsonb), ?, ?)";
+    private static final String INSERT_PRODUCT_DYNAMIC_VALUE = "INSERT INTO product_dynamic_values " +
+            "(id, product_id, field_id, value) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_VARIATION = "INSERT INTO variations " +
+            "(id, product_id, type, name, additional_price) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_VARIATION_DYNAMIC_VALUE = "INSERT INTO variation_dynamic_values " +
+            "(id, variation_id, field_id, value) VALUES (?, ?, ?, ?)";
+
+    /**
+     * Must match the allocationSize of the entity sequence generators
+     */
+    static final int ID_ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Reserve IDs from an entity ID sequence. The sequences are pooled (each value starts a block of
+     * {@link #ID_ALLOCATION_SIZE} IDs, see the pooled-lo optimizer), so one round trip reserves all blocks needed.
+     * @param sequence Sequence backing the entity IDs, e.g. {@code products_seq}
+     * @param count Number of IDs to reserve
+     * @return The reserved IDs
+     */
+    public List<Long> allocateIds(String sequence, int count) {
+        if (count <= 0) {
+            return List.of();
+        }
+        int blocks = (count + ID_ALLOCATION_SIZE - 1) / ID_ALLOCATION_SIZE;
+        List<Long> blockStarts = jdbcTemplate.queryForList(
+                "SELECT nextval(?) FROM generate_series(1, ?)", Long.class, sequence, blocks);
+        List<Long> ids = new ArrayList<>(count);
+        for (Long start : blockStarts) {
+            for (int offset = 0; offset < ID_ALLOCATION_SIZE && ids.size() < count; offset++) {
+                ids.add(start + offset);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Batch insert products whose IDs have already been assigned
+     * @param products Products to insert
+     */
+    public void insertProducts(List<Product> products) {
+        if (products.isEmpty()) {
+            return;
+        }
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.batchUpdate(INSERT_PRODUCT, products, products.size(), (ps, product) -> {
+            ps.setLong(1, product.getId());
+            ps.setLong(2, product.getCategory().getId());
+            ps.setString(3, product.getName());
+            ps.setString(4, product.getSku());
+            ps.setString(5, product.getDescription());
+            ps.setString(6, product.getMetaDescription());
+            ps.setBigDecimal(7, product.getBasePrice());
+            if (product.getImages() != null) {
+                ps.setString(8, toJson(product.getImages()));
+            } else {
+                ps.setNull(8, Types.VARCHAR);
+            }
+            if (product.getAttributes() != null) {
+                ps.setString(9, toJson(product.getAttributes()));
+            } else {
+                ps.setNull(9, Types.VARCHAR);
+            }
+            ps.setTimestamp(10, now);
+            ps.setTimestamp(11, now);
+        });
+    }
+
+    /**
+     * Batch insert product dynamic values whose IDs have already been assigned
+     * @param values Dynamic values to insert
+     */
+    public void insertProductDynamicValues(List<ProductDynamicValue> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_PRODUCT_DYNAMIC_VALUE, values, values.size(), (ps, value) -> {
+            ps.setLong(1, value.getId());
+            ps.setLong(2, value.getProduct().getId());
+            ps.setLong(3, value.getField().getId());
+            ps.setString(4, value.getValue());
+        });
+    }
+
+    /**
+     * Batch insert variations whose IDs have already been assigned
+     * @param variations Variations to insert
+     */
+    public void insertVariations(List<Variation> variations) {
+        if (variations.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_VARIATION, variations, variations.size(), (ps, variation) -> {
+            ps.setLong(1, variation.getId());
+            ps.setLong(2, variation.getProduct().getId());
+            ps.setString(3, variation.getType());
+            ps.setString(4, variation.getName());
+            ps.setBigDecimal(5, variation.getAdditionalPrice());
+        });
+    }
+
+    /**
+     * Batch insert variation dynamic values whose IDs have already been assigned
+     * @param values Variation dynamic values to insert
+     */
+    public void insertVariationDynamicValues(List<VariationDynamicValue> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_VARIATION_DYNAMIC_VALUE, values, values.size(), (ps, value) -> {
+            ps.setLong(1, value.getId());
+            ps.setLong(2, value.getVariation().getId());
+            ps.setLong(3, value.getField().getId());
+            ps.setString(4, value.getValue());
+        });
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Product JSON column cannot be serialized", e);
+        }
+    }
+}
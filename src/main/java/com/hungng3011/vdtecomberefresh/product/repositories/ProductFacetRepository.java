@@ -0,0 +1,140 @@
+package com.hungng3011.vdtecomberefresh.product.repositories;
+
+import com.hungng3011.vdtecomberefresh.category.entities.Category;
+import com.hungng3011.vdtecomberefresh.category.entities.CategoryDynamicField;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto;
+import com.hungng3011.vdtecomberefresh.product.entities.Product;
+import com.hungng3011.vdtecomberefresh.product.entities.ProductDynamicValue;
+import com.hungng3011.vdtecomberefresh.stock.entities.Stock;
+import com.hungng3011.vdtecomberefresh.stock.enums.StockStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import jakarta.persistence.criteria.Subquery;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Facet counts for a product filter context, one grouped query per facet dimension.
+ *
+ * Every query applies the same predicates as the product filter ({@link ProductFilterSpecifications}), so a
+ * category page gets all of its counts in a handful of aggregate queries instead of one count per value.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductFacetRepository {
+    private final EntityManager entityManager;
+
+    /**
+     * Count matching products per category
+     * @param filter Sanitized filter context
+     * @return Rows of (category ID, category name, product count), largest first
+     */
+    public List<Tuple> countByCategory(ProductFilterDto filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Product> product = query.from(Product.class);
+        Join<Product, Category> category = product.join("category");
+        Expression<Long> count = cb.count(product);
+
+        query.multiselect(category.get("id"), category.get("name"), count)
+                .where(ProductFilterSpecifications.from(filter).toPredicate(product, query, cb))
+                .groupBy(category.get("id"), category.get("name"))
+                .orderBy(cb.desc(count));
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    /**
+     * Count matching products per price bucket in a single pass
+     * @param filter Sanitized filter context
+     * @param bounds Ascending bucket bounds; n bounds make n + 1 buckets, each including its lower bound
+     * @return Product count per bucket, in bucket order
+     */
+    public List<Long> countByPriceBucket(ProductFilterDto filter, List<BigDecimal> bounds) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Product> product = query.from(Product.class);
+        Expression<BigDecimal> price = product.get("basePrice");
+
+        List<Selection<?>> buckets = new ArrayList<>(bounds.size() + 1);
+        for (int i = 0; i <= bounds.size(); i++) {
+            List<Predicate> inBucket = new ArrayList<>(2);
+            if (i > 0) {
+                inBucket.add(cb.greaterThanOrEqualTo(price, bounds.get(i - 1)));
+            }
+            if (i < bounds.size()) {
+                inBucket.add(cb.lessThan(price, bounds.get(i)));
+            }
+            buckets.add(cb.sum(cb.<Long>selectCase()
+                    .when(cb.and(inBucket.toArray(new Predicate[0])), 1L)
+                    .otherwise(0L)));
+        }
+
+        query.multiselect(buckets)
+                .where(ProductFilterSpecifications.from(filter).toPredicate(product, query, cb));
+        Tuple row = entityManager.createQuery(query).getSingleResult();
+        List<Long> counts = new ArrayList<>(buckets.size());
+        for (int i = 0; i < buckets.size(); i++) {
+            Number count = (Number) row.get(i);
+            counts.add(count != null ? count.longValue() : 0L);
+        }
+        return counts;
+    }
+
+    /**
+     * Count matching products per dynamic attribute value. Names and values are trimmed and lower-cased,
+     * matching the keys of the attribute projection.
+     * @param filter Sanitized filter context
+     * @return Rows of (field name, value, product count), largest first
+     */
+    public List<Tuple> countByAttributeValue(ProductFilterDto filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Product> product = query.from(Product.class);
+        Join<Product, ProductDynamicValue> value = product.join("dynamicValues");
+        Join<ProductDynamicValue, CategoryDynamicField> field = value.join("field");
+        Expression<String> fieldName = cb.lower(cb.trim(field.get("fieldName")));
+        Expression<String> fieldValue = cb.lower(cb.trim(value.get("value")));
+        Expression<Long> count = cb.countDistinct(product);
+
+        query.multiselect(fieldName, fieldValue, count)
+                .where(cb.and(ProductFilterSpecifications.from(filter).toPredicate(product, query, cb),
+                        cb.isNotNull(value.get("value"))))
+                .groupBy(fieldName, fieldValue)
+                .orderBy(cb.desc(count));
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    /**
+     * Count matching products that have at least one sellable stock entry
+     * @param filter Sanitized filter context
+     * @return Number of products in stock
+     */
+    public long countInStock(ProductFilterDto filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Product> product = query.from(Product.class);
+
+        Subquery<Integer> inStock = query.subquery(Integer.class);
+        Root<Stock> stock = inStock.from(Stock.class);
+        inStock.select(cb.literal(1)).where(
+                cb.equal(stock.get("product"), product),
+                cb.greaterThan(stock.get("quantity"), 0),
+                cb.notEqual(stock.get("status"), StockStatus.DISCONTINUED));
+
+        query.select(cb.count(product))
+                .where(cb.and(ProductFilterSpecifications.from(filter).toPredicate(product, query, cb),
+                        cb.exists(inStock)));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+}
@@ -0,0 +1,193 @@
+package com.hungng3011.vdtecomberefresh.product.repositories;
+
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto.FieldMatchType;
+import com.hungng3011.vdtecomberefresh.product.entities.Product;
+import com.hungng3011.vdtecomberefresh.product.entities.ProductAttributes;
+import com.hungng3011.vdtecomberefresh.product.entities.ProductDynamicValue;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Builds the product filter query for each request from only the criteria that are present.
+ *
+ * The previous static queries wrapped every predicate in {@code (:param IS NULL OR ...)} and chose the
+ * dynamic field match with {@code CASE :matchType} inside {@code EXISTS}, which PostgreSQL can only
+ * evaluate row by row. Here each criterion becomes a plain predicate, and each text match type has its
+ * own query shape:
+ * - CONTAINS: {@code lower(value) LIKE '%term%'}
+ * - STARTS_WITH: {@code lower(value) LIKE 'term%'}
+ * - ENDS_WITH: {@code lower(value) LIKE '%term'}
+ *
+ * All of these are served by the pg_trgm GIN indexes on {@code lower(name)}, {@code lower(description)}
+ * and {@code lower(value)} (see {@code V13__Product_filter_trigram_indexes.sql}). LIKE wildcards in user
+ * input are escaped so they match literally.
+ *
+ * Dynamic field equality, presence and numeric range filters do not touch the EAV rows: they are combined
+ * into a single jsonpath predicate on the typed {@code products.attributes} projection
+ * ({@link ProductAttributes}), e.g. {@code attributes @@ '$."color" == "blue" && $."ram" >= 8'}, which the
+ * GIN index from {@code V14__Product_attributes_projection.sql} answers in one pass (range and presence
+ * conditions add a key existence check, which is what the index can narrow them by). Only the pattern
+ * match types (CONTAINS, STARTS_WITH, ENDS_WITH) still use a correlated EXISTS over the dynamic values.
+ */
+public final class ProductFilterSpecifications {
+    private static final char ESCAPE = '\\';
+
+    private ProductFilterSpecifications() {
+    }
+
+    /**
+     * Build the specification for a sanitized filter
+     * @param filter Sanitized filter criteria
+     * @return Specification combining every present criterion with AND
+     */
+    public static Specification<Product> from(ProductFilterDto filter) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+
+            if (StringUtils.hasText(filter.getName())) {
+                predicates.add(match(cb, cb.lower(root.get("name")), filter.getName(), FieldMatchType.CONTAINS));
+            }
+            if (StringUtils.hasText(filter.getDescription())) {
+                predicates.add(match(cb, cb.lower(root.get("description")), filter.getDescription(),
+                        FieldMatchType.CONTAINS));
+            }
+            if (filter.getCategoryId() != null) {
+                predicates.add(cb.equal(root.get("category").get("id"), filter.getCategoryId()));
+            }
+            if (filter.getMinPrice() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("basePrice"), filter.getMinPrice()));
+            }
+            if (filter.getMaxPrice() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("basePrice"), filter.getMaxPrice()));
+            }
+            if (filter.getDynamicFields() != null) {
+                List<String> attributeConditions = new ArrayList<>();
+                for (ProductFilterDto.DynamicFieldFilterDto field : filter.getDynamicFields()) {
+                    if (!StringUtils.hasText(field.getFieldName())) {
+                        continue;
+                    }
+                    if (isPatternMatch(field)) {
+                        predicates.add(hasDynamicValue(root, query.subquery(Integer.class), cb, field));
+                    } else {
+                        attributeConditions.add(attributeCondition(field));
+                        if (!isEquality(field)) {
+                            // Range and presence conditions are only narrowed by the index through the key
+                            predicates.add(cb.isTrue(cb.function("jsonb_has_key", Boolean.class,
+                                    root.get("attributes"), cb.literal(ProductAttributes.key(field.getFieldName())))));
+                        }
+                    }
+                }
+                if (!attributeConditions.isEmpty()) {
+                    String path = String.join(" && ", attributeConditions);
+                    predicates.add(cb.isTrue(cb.function("jsonb_matches", Boolean.class,
+                            root.get("attributes"), cb.literal(path))));
+                }
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    private static boolean isPatternMatch(ProductFilterDto.DynamicFieldFilterDto field) {
+        return StringUtils.hasText(field.getValue())
+                && field.getMinValue() == null && field.getMaxValue() == null
+                && field.getMatchType() != null && field.getMatchType() != FieldMatchType.EQUALS;
+    }
+
+    private static boolean isEquality(ProductFilterDto.DynamicFieldFilterDto field) {
+        return StringUtils.hasText(field.getValue()) && field.getMinValue() == null && field.getMaxValue() == null;
+    }
+
+    /**
+     * jsonpath condition on the attribute projection for a range, equality or presence filter.
+     * Equality accepts every JSON type the raw value could have been projected to.
+     */
+    private static String attributeCondition(ProductFilterDto.DynamicFieldFilterDto field) {
+        String accessor = "$." + jsonPathString(ProductAttributes.key(field.getFieldName()));
+        List<String> conditions = new ArrayList<>();
+        if (field.getMinValue() != null) {
+            conditions.add(accessor + " >= " + field.getMinValue().toPlainString());
+        }
+        if (field.getMaxValue() != null) {
+            conditions.add(accessor + " <= " + field.getMaxValue().toPlainString());
+        }
+        if (isEquality(field)) {
+            String value = field.getValue().trim();
+            List<String> alternatives = new ArrayList<>();
+            alternatives.add(accessor + " == " + jsonPathString(value.toLowerCase(Locale.ROOT)));
+            BigDecimal number = ProductAttributes.parseNumber(value);
+            if (number != null) {
+                alternatives.add(accessor + " == " + number.toPlainString());
+            }
+            if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+                alternatives.add(accessor + " == " + value.toLowerCase(Locale.ROOT));
+            }
+            conditions.add("(" + String.join(" || ", alternatives) + ")");
+        }
+        if (conditions.isEmpty()) {
+            conditions.add("exists(" + accessor + ")");
+        }
+        return String.join(" && ", conditions);
+    }
+
+    /**
+     * Quote a jsonpath string literal; the path is bound as a parameter, this only keeps it well-formed
+     */
+    private static String jsonPathString(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /**
+     * EXISTS subquery for one dynamic field; correlated on the product so no DISTINCT is needed
+     */
+    private static Predicate hasDynamicValue(Root<Product> product, Subquery<Integer> subquery, CriteriaBuilder cb,
+                                             ProductFilterDto.DynamicFieldFilterDto field) {
+        Root<ProductDynamicValue> value = subquery.from(ProductDynamicValue.class);
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.equal(value.get("product"), product));
+        predicates.add(cb.equal(cb.lower(value.get("field").get("fieldName")),
+                field.getFieldName().toLowerCase(Locale.ROOT)));
+        if (StringUtils.hasText(field.getValue())) {
+            FieldMatchType matchType = field.getMatchType() != null ? field.getMatchType() : FieldMatchType.EQUALS;
+            predicates.add(match(cb, cb.lower(value.get("value")), field.getValue(), matchType));
+        }
+        subquery.select(cb.literal(1)).where(predicates.toArray(new Predicate[0]));
+        return cb.exists(subquery);
+    }
+
+    private static Predicate match(CriteriaBuilder cb, Expression<String> lowered, String term, FieldMatchType matchType) {
+        String normalized = term.toLowerCase(Locale.ROOT);
+        if (matchType == FieldMatchType.EQUALS) {
+            return cb.equal(lowered, normalized);
+        }
+        String escaped = escapeLike(normalized);
+        String pattern = switch (matchType) {
+            case STARTS_WITH -> escaped + "%";
+            case ENDS_WITH -> "%" + escaped;
+            default -> "%" + escaped + "%";
+        };
+        return cb.like(lowered, pattern, ESCAPE);
+    }
+
+    private static String escapeLike(String term) {
+        StringBuilder escaped = new StringBuilder(term.length());
+        for (char c : term.toCharArray()) {
+            if (c == '%' || c == '_' || c == ESCAPE) {
+                escaped.append(ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
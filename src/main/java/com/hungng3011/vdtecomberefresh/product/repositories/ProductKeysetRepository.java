@@ -0,0 +1,101 @@
+package com.hungng3011.vdtecomberefresh.product.repositories;
+
+import com.hungng3011.vdtecomberefresh.product.dtos.ProductListingCursor;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto.ProductSortField;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto.SortDirection;
+import com.hungng3011.vdtecomberefresh.product.entities.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keyset (seek) pagination over products ordered by (sort key, id).
+ *
+ * Following pages are read with a row-value comparison such as {@code (p.name, p.id) > (:value, :id)},
+ * which PostgreSQL answers with a range scan on the matching composite index
+ * ({@code idx_product_name_id}, {@code idx_product_base_price_id}, {@code idx_product_created_at_id})
+ * instead of skipping over an OFFSET. Previous pages scan the same index backward with the comparison and
+ * order flipped. Property names come from the {@link ProductSortField} whitelist only.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductKeysetRepository {
+    private final EntityManager entityManager;
+
+    /**
+     * Find the first page of a sorted listing
+     * @param sortBy Sort field
+     * @param direction Sort direction
+     * @param limit Maximum number of products to return
+     * @return Products in listing order
+     */
+    public List<Product> findFirstPage(ProductSortField sortBy, SortDirection direction, int limit) {
+        String jpql = "SELECT p FROM Product p " + orderBy(sortBy, direction);
+        return entityManager.createQuery(jpql, Product.class)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Find the page following a cursor
+     * @param cursor Position of the last product of the previous page
+     * @param limit Maximum number of products to return
+     * @return Products in listing order
+     */
+    public List<Product> findPageAfter(ProductListingCursor cursor, int limit) {
+        return findPage(cursor, cursor.getDirection(), limit);
+    }
+
+    /**
+     * Find the page preceding a cursor
+     * @param cursor Position of the first product of the following page
+     * @param limit Maximum number of products to return
+     * @return Products in listing order, the ones furthest from the cursor first
+     */
+    public List<Product> findPageBefore(ProductListingCursor cursor, int limit) {
+        SortDirection reversed = cursor.getDirection() == SortDirection.DESC ? SortDirection.ASC : SortDirection.DESC;
+        List<Product> products = new ArrayList<>(findPage(cursor, reversed, limit));
+        Collections.reverse(products);
+        return products;
+    }
+
+    private List<Product> findPage(ProductListingCursor cursor, SortDirection scan, int limit) {
+        String operator = scan == SortDirection.DESC ? "<" : ">";
+        TypedQuery<Product> query;
+        if (cursor.getSortBy() == ProductSortField.ID) {
+            query = entityManager.createQuery("SELECT p FROM Product p WHERE p.id " + operator + " :id " +
+                    orderBy(cursor.getSortBy(), scan), Product.class);
+        } else {
+            String property = property(cursor.getSortBy());
+            query = entityManager.createQuery("SELECT p FROM Product p " +
+                    "WHERE (p." + property + ", p.id) " + operator + " (:value, :id) " +
+                    orderBy(cursor.getSortBy(), scan), Product.class);
+            query.setParameter("value", cursor.getSortValue());
+        }
+        return query.setParameter("id", cursor.getId())
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private static String orderBy(ProductSortField sortBy, SortDirection direction) {
+        String order = direction == SortDirection.DESC ? "DESC" : "ASC";
+        if (sortBy == ProductSortField.ID) {
+            return "ORDER BY p.id " + order;
+        }
+        return "ORDER BY p." + property(sortBy) + " " + order + ", p.id " + order;
+    }
+
+    private static String property(ProductSortField sortBy) {
+        return switch (sortBy) {
+            case NAME -> "name";
+            case BASE_PRICE -> "basePrice";
+            case CREATED_AT -> "createdAt";
+            case ID -> "id";
+        };
+    }
+}
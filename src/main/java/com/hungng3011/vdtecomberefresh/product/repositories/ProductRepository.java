@@ -5,6 +5,7 @@ import com.hungng3011.vdtecomberefresh.product.entities.Product;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -12,7 +13,11 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
-public interface ProductRepository extends JpaRepository<Product, Long> {
+/**
+ * Filtering goes through {@link JpaSpecificationExecutor} with {@link ProductFilterSpecifications}, which
+ * generates a query per request containing only the criteria that are present.
+ */
+public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
     List<Product> findByCategory(Category category);
     long countByCategory(Category category);
     
@@ -30,149 +35,34 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
                                                 @Param("cursor") Long cursor, 
                                                 Pageable pageable);
     
-    // General cursor-based pagination for all products
-    @Query("SELECT p FROM Product p WHERE (:cursor IS NULL OR p.id > :cursor) ORDER BY p.id ASC")
+    // General cursor-based pagination for all products. The first page and the following pages use
+    // separate queries: an optional "(:cursor IS NULL OR ...)" predicate keeps PostgreSQL from using
+    // the primary key index as a range scan.
+    @Query("SELECT p FROM Product p ORDER BY p.id ASC")
+    List<Product> findFirstPage(Pageable pageable);
+    
+    @Query("SELECT p FROM Product p WHERE p.id > :cursor ORDER BY p.id ASC")
     List<Product> findAllWithCursorAfter(@Param("cursor") Long cursor, Pageable pageable);
     
-    @Query("SELECT p FROM Product p WHERE (:cursor IS NULL OR p.id < :cursor) ORDER BY p.id DESC")
+    @Query("SELECT p FROM Product p WHERE p.id < :cursor ORDER BY p.id DESC")
     List<Product> findAllWithCursorBefore(@Param("cursor") Long cursor, Pageable pageable);
     
     @Query("SELECT COUNT(p) FROM Product p")
     long countAllProducts();
-    
-    // Secure filtering methods using parameterized queries to prevent SQL injection
-    
-    /**
-     * Filter products by name with case-insensitive partial matching
-     * Uses parameterized query to prevent SQL injection
-     */
-    @Query("SELECT p FROM Product p WHERE " +
-           "(:name IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%')))")
-    Page<Product> findByNameContaining(@Param("name") String name, Pageable pageable);
-    
-    /**
-     * Filter products by multiple criteria with secure parameterized queries
-     */
-    @Query("SELECT p FROM Product p WHERE " +
-           "(:name IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%'))) AND " +
-           "(:description IS NULL OR LOWER(p.description) LIKE LOWER(CONCAT('%', :description, '%'))) AND " +
-           "(:categoryId IS NULL OR p.category.id = :categoryId) AND " +
-           "(:minPrice IS NULL OR p.basePrice >= :minPrice) AND " +
-           "(:maxPrice IS NULL OR p.basePrice <= :maxPrice)")
-    Page<Product> findByMultipleCriteria(
-            @Param("name") String name,
-            @Param("description") String description,
-            @Param("categoryId") Long categoryId,
-            @Param("minPrice") BigDecimal minPrice,
-            @Param("maxPrice") BigDecimal maxPrice,
-            Pageable pageable);
-    
-    /**
-     * Filter products by dynamic field values with secure parameterized queries
-     */
-    @Query("SELECT DISTINCT p FROM Product p " +
-           "JOIN p.dynamicValues dv " +
-           "JOIN dv.field df " +
-           "WHERE " +
-           "(:fieldName IS NULL OR LOWER(df.fieldName) = LOWER(:fieldName)) AND " +
-           "(:fieldValue IS NULL OR " +
-           "  CASE :matchType " +
-           "    WHEN 'EQUALS' THEN LOWER(dv.value) = LOWER(:fieldValue) " +
-           "    WHEN 'CONTAINS' THEN LOWER(dv.value) LIKE LOWER(CONCAT('%', :fieldValue, '%')) " +
-           "    WHEN 'STARTS_WITH' THEN LOWER(dv.value) LIKE LOWER(CONCAT(:fieldValue, '%')) " +
-           "    WHEN 'ENDS_WITH' THEN LOWER(dv.value) LIKE LOWER(CONCAT('%', :fieldValue)) " +
-           "    ELSE TRUE " +
-           "  END)")
-    Page<Product> findByDynamicField(
-            @Param("fieldName") String fieldName,
-            @Param("fieldValue") String fieldValue,
-            @Param("matchType") String matchType,
-            Pageable pageable);
-    
-    /**
-     * Combined filter with dynamic fields - most comprehensive search
-     */
-    @Query("SELECT DISTINCT p FROM Product p " +
-           "LEFT JOIN p.dynamicValues dv " +
-           "LEFT JOIN dv.field df " +
-           "WHERE " +
-           "(:name IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%'))) AND " +
-           "(:description IS NULL OR LOWER(p.description) LIKE LOWER(CONCAT('%', :description, '%'))) AND " +
-           "(:categoryId IS NULL OR p.category.id = :categoryId) AND " +
-           "(:minPrice IS NULL OR p.basePrice >= :minPrice) AND " +
-           "(:maxPrice IS NULL OR p.basePrice <= :maxPrice) AND " +
-           "(:fieldName IS NULL OR " +
-           "  EXISTS (SELECT 1 FROM ProductDynamicValue pdv " +
-           "          JOIN pdv.field pf " +
-           "          WHERE pdv.product = p AND " +
-           "                LOWER(pf.fieldName) = LOWER(:fieldName) AND " +
-           "                CASE :matchType " +
-           "                  WHEN 'EQUALS' THEN LOWER(pdv.value) = LOWER(:fieldValue) " +
-           "                  WHEN 'CONTAINS' THEN LOWER(pdv.value) LIKE LOWER(CONCAT('%', :fieldValue, '%')) " +
-           "                  WHEN 'STARTS_WITH' THEN LOWER(pdv.value) LIKE LOWER(CONCAT(:fieldValue, '%')) " +
-           "                  WHEN 'ENDS_WITH' THEN LOWER(pdv.value) LIKE LOWER(CONCAT('%', :fieldValue)) " +
-           "                  ELSE TRUE " +
-           "                END))")
-    Page<Product> findByComprehensiveCriteria(
-            @Param("name") String name,
-            @Param("description") String description,
-            @Param("categoryId") Long categoryId,
-            @Param("minPrice") BigDecimal minPrice,
-            @Param("maxPrice") BigDecimal maxPrice,
-            @Param("fieldName") String fieldName,
-            @Param("fieldValue") String fieldValue,
-            @Param("matchType") String matchType,
-            Pageable pageable);
-    
-    /**
-     * Count products by multiple criteria - matching findByMultipleCriteria
-     */
-    @Query("SELECT COUNT(p) FROM Product p WHERE " +
-           "(:name IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%'))) AND " +
-           "(:description IS NULL OR LOWER(p.description) LIKE LOWER(CONCAT('%', :description, '%'))) AND " +
-           "(:categoryId IS NULL OR p.category.id = :categoryId) AND " +
-           "(:minPrice IS NULL OR p.basePrice >= :minPrice) AND " +
-           "(:maxPrice IS NULL OR p.basePrice <= :maxPrice)")
-    long countByMultipleCriteria(
-            @Param("name") String name,
-            @Param("description") String description,
-            @Param("categoryId") Long categoryId,
-            @Param("minPrice") BigDecimal minPrice,
-            @Param("maxPrice") BigDecimal maxPrice);
-    
+
     /**
-     * Count products by comprehensive criteria - matching findByComprehensiveCriteria
+     * Keyset page of a product ID range, for reading one slice of the catalog
+     * @param after Exclusive lower bound, the last ID already read
+     * @param upTo Inclusive upper bound of the slice
      */
-    @Query("SELECT COUNT(DISTINCT p) FROM Product p " +
-           "LEFT JOIN p.dynamicValues dv " +
-           "LEFT JOIN dv.field df " +
-           "WHERE " +
-           "(:name IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%'))) AND " +
-           "(:description IS NULL OR LOWER(p.description) LIKE LOWER(CONCAT('%', :description, '%'))) AND " +
-           "(:categoryId IS NULL OR p.category.id = :categoryId) AND " +
-           "(:minPrice IS NULL OR p.basePrice >= :minPrice) AND " +
-           "(:maxPrice IS NULL OR p.basePrice <= :maxPrice) AND " +
-           "(:fieldName IS NULL OR " +
-           "  EXISTS (SELECT 1 FROM ProductDynamicValue pdv " +
-           "          JOIN pdv.field pf " +
-           "          WHERE pdv.product = p AND " +
-           "                LOWER(pf.fieldName) = LOWER(:fieldName) AND " +
-           "                CASE :matchType " +
-           "                  WHEN 'EQUALS' THEN LOWER(pdv.value) = LOWER(:fieldValue) " +
-           "                  WHEN 'CONTAINS' THEN LOWER(pdv.value) LIKE LOWER(CONCAT('%', :fieldValue, '%')) " +
-           "                  WHEN 'STARTS_WITH' THEN LOWER(pdv.value) LIKE LOWER(CONCAT(:fieldValue, '%')) " +
-           "                  WHEN 'ENDS_WITH' THEN LOWER(pdv.value) LIKE LOWER(CONCAT('%', :fieldValue)) " +
-           "                  ELSE TRUE " +
-           "                END))")
-    long countByComprehensiveCriteria(
-            @Param("name") String name,
-            @Param("description") String description,
-            @Param("categoryId") Long categoryId,
-            @Param("minPrice") BigDecimal minPrice,
-            @Param("maxPrice") BigDecimal maxPrice,
-            @Param("fieldName") String fieldName,
-            @Param("fieldValue") String fieldValue,
-            @Param("matchType") String matchType);
+    @Query("SELECT p FROM Product p WHERE p.id > :after AND p.id <= :upTo ORDER BY p.id ASC")
+    List<Product> findIdRangeAfter(@Param("after") Long after, @Param("upTo") Long upTo, Pageable pageable);
+
+    @Query("SELECT MIN(p.id) FROM Product p")
+    Long findMinId();
+
+    @Query("SELECT MAX(p.id) FROM Product p")
+    Long findMaxId();
     
     // Statistical queries for system stats
     @Query("SELECT COUNT(p) FROM Product p WHERE EXISTS (SELECT 1 FROM Stock s WHERE s.product = p AND SIZE(s.variations) > 0)")
@@ -203,4 +93,10 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
      */
     @Query("SELECT p FROM Product p WHERE p.category.id = :categoryId")
     List<Product> findByCategoryId(@Param("categoryId") Long categoryId);
+
+    /**
+     * Find the IDs of a category's products, e.g. to reindex them after the category changes
+     */
+    @Query("SELECT p.id FROM Product p WHERE p.category.id = :categoryId")
+    List<Long> findIdsByCategoryId(@Param("categoryId") Long categoryId);
 }
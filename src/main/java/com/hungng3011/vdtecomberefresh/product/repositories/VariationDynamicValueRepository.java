@@ -3,9 +3,22 @@ package com.hungng3011.vdtecomberefresh.product.repositories;
 import com.hungng3011.vdtecomberefresh.product.entities.VariationDynamicValue;
 import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface VariationDynamicValueRepository extends JpaRepository<VariationDynamicValue, Long> {
     List<VariationDynamicValue> getVariationDynamicValuesByField_Id(Long fieldId, Limit limit);
+
+    /**
+     * Delete all dynamic values of the given variations in a single statement
+     * @param variationIds IDs of the variations being removed
+     * @return Number of rows deleted
+     */
+    @Modifying
+    @Query("DELETE FROM VariationDynamicValue vdv WHERE vdv.variation.id IN :variationIds")
+    int deleteByVariationIds(@Param("variationIds") Collection<Long> variationIds);
 }
@@ -2,6 +2,29 @@ package com.hungng3011.vdtecomberefresh.product.repositories;
 
 import com.hungng3011.vdtecomberefresh.product.entities.Variation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface VariationRepository extends JpaRepository<Variation, Long> {
+
+    /**
+     * Variation labels of several products, for search indexing
+     * @param productIds Products to read
+     * @return Rows of [productId, variationId, type, name]
+     */
+    @Query("SELECT v.product.id, v.id, v.type, v.name FROM Variation v WHERE v.product.id IN :productIds")
+    List<Object[]> findLabelsByProductIds(@Param("productIds") Collection<Long> productIds);
+
+    /**
+     * Detach stock entries from variations that are about to be deleted
+     * @param variationIds IDs of the variations being removed
+     * @return Number of stock-variation links removed
+     */
+    @Modifying
+    @Query(value = "DELETE FROM stock_variation WHERE variation_id IN (:variationIds)", nativeQuery = true)
+    int unlinkStock(@Param("variationIds") Collection<Long> variationIds);
 }
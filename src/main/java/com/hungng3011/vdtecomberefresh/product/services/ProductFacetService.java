@@ -0,0 +1,177 @@
+package com.hungng3011.vdtecomberefresh.product.services;
+
+import com.hungng3011.vdtecomberefresh.product.cache.ProductFacetCache;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.FacetCountDto;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFacetsDto;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto;
+import com.hungng3011.vdtecomberefresh.product.entities.ProductAttributes;
+import com.hungng3011.vdtecomberefresh.product.repositories.ProductFacetRepository;
+import com.hungng3011.vdtecomberefresh.product.repositories.ProductFilterSpecifications;
+import com.hungng3011.vdtecomberefresh.product.repositories.ProductRepository;
+import jakarta.persistence.Tuple;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Facet counts (category, price bucket, brand, dynamic attributes, availability) for a product filter context.
+ *
+ * Each dimension is one aggregate query from {@link ProductFacetRepository}, and the result is cached per
+ * context in {@link ProductFacetCache}, which product and stock writes invalidate per category.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductFacetService {
+    static final String BRAND_ATTRIBUTE = "brand";
+
+    private final ProductRepository productRepository;
+    private final ProductFacetRepository productFacetRepository;
+    private final ProductFacetCache productFacetCache;
+
+    @Value("${app.product.facets.price-buckets:100000,500000,1000000,5000000,10000000}")
+    private List<BigDecimal> priceBuckets;
+
+    @Value("${app.product.facets.max-values-per-attribute:20}")
+    private int maxValuesPerAttribute;
+
+    /**
+     * Get the facet counts for a sanitized filter
+     * @param filter Sanitized filter; paging and sorting are ignored
+     * @return Facet counts for the filter context
+     */
+    public ProductFacetsDto getFacets(ProductFilterDto filter) {
+        ProductFilterDto context = facetContext(filter);
+        return productFacetCache.get(context, this::computeFacets);
+    }
+
+    private ProductFacetsDto computeFacets(ProductFilterDto context) {
+        log.debug("Computing facet counts for filter context: {}", context);
+        long startedAt = System.currentTimeMillis();
+
+        Map<String, List<FacetCountDto>> attributes = attributeFacets(context);
+        ProductFacetsDto facets = ProductFacetsDto.builder()
+                .totalProducts(productRepository.count(ProductFilterSpecifications.from(context)))
+                .inStockProducts(productFacetRepository.countInStock(context))
+                .categories(context.getCategoryId() == null ? categoryFacets(context) : null)
+                .priceRanges(priceFacets(context))
+                .brands(attributes.remove(BRAND_ATTRIBUTE))
+                .attributes(attributes)
+                .build();
+
+        log.debug("Computed facet counts in {} ms", System.currentTimeMillis() - startedAt);
+        return facets;
+    }
+
+    private List<FacetCountDto> categoryFacets(ProductFilterDto context) {
+        List<FacetCountDto> categories = new ArrayList<>();
+        for (Tuple row : productFacetRepository.countByCategory(context)) {
+            categories.add(FacetCountDto.builder()
+                    .key(String.valueOf(row.get(0)))
+                    .label((String) row.get(1))
+                    .count(((Number) row.get(2)).longValue())
+                    .selected(false)
+                    .build());
+        }
+        return categories;
+    }
+
+    /**
+     * Bucket counts ignore the context's own price range, so the other ranges can still be chosen
+     */
+    private List<FacetCountDto> priceFacets(ProductFilterDto context) {
+        ProductFilterDto withoutPrice = copy(context);
+        withoutPrice.setMinPrice(null);
+        withoutPrice.setMaxPrice(null);
+        List<Long> counts = productFacetRepository.countByPriceBucket(withoutPrice, priceBuckets);
+
+        List<FacetCountDto> ranges = new ArrayList<>(counts.size());
+        for (int i = 0; i < counts.size(); i++) {
+            BigDecimal lower = i > 0 ? priceBuckets.get(i - 1) : null;
+            BigDecimal upper = i < priceBuckets.size() ? priceBuckets.get(i) : null;
+            String key = (lower != null ? lower.toPlainString() : "") + "-" + (upper != null ? upper.toPlainString() : "");
+            ranges.add(FacetCountDto.builder()
+                    .key(key)
+                    .label(upper == null ? lower.toPlainString() + "+" : key)
+                    .count(counts.get(i))
+                    .selected(overlapsPriceFilter(context, lower, upper))
+                    .build());
+        }
+        return ranges;
+    }
+
+    private Map<String, List<FacetCountDto>> attributeFacets(ProductFilterDto context) {
+        Map<String, String> selectedValues = new LinkedHashMap<>();
+        if (context.getDynamicFields() != null) {
+            for (ProductFilterDto.DynamicFieldFilterDto field : context.getDynamicFields()) {
+                if (StringUtils.hasText(field.getFieldName()) && StringUtils.hasText(field.getValue())) {
+                    selectedValues.put(ProductAttributes.key(field.getFieldName()),
+                            field.getValue().trim().toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+
+        // Rows arrive largest count first, so the first values seen for a field are its top values
+        Map<String, List<FacetCountDto>> attributes = new LinkedHashMap<>();
+        for (Tuple row : productFacetRepository.countByAttributeValue(context)) {
+            String fieldName = (String) row.get(0);
+            String value = (String) row.get(1);
+            List<FacetCountDto> values = attributes.computeIfAbsent(fieldName, name -> new ArrayList<>());
+            if (values.size() < maxValuesPerAttribute) {
+                values.add(FacetCountDto.builder()
+                        .key(value)
+                        .label(value)
+                        .count(((Number) row.get(2)).longValue())
+                        .selected(Objects.equals(selectedValues.get(fieldName), value))
+                        .build());
+            }
+        }
+        return attributes;
+    }
+
+    private static boolean overlapsPriceFilter(ProductFilterDto context, BigDecimal lower, BigDecimal upper) {
+        if (context.getMinPrice() == null && context.getMaxPrice() == null) {
+            return false;
+        }
+        boolean aboveMin = context.getMinPrice() == null || upper == null || upper.compareTo(context.getMinPrice()) > 0;
+        boolean belowMax = context.getMaxPrice() == null || lower == null || lower.compareTo(context.getMaxPrice()) <= 0;
+        return aboveMin && belowMax;
+    }
+
+    /**
+     * The cache key: the filter criteria without paging and sorting
+     */
+    private static ProductFilterDto facetContext(ProductFilterDto filter) {
+        ProductFilterDto context = copy(filter);
+        context.setSortBy(null);
+        context.setSortDirection(null);
+        context.setPage(null);
+        context.setSize(null);
+        return context;
+    }
+
+    private static ProductFilterDto copy(ProductFilterDto filter) {
+        return ProductFilterDto.builder()
+                .name(filter.getName())
+                .description(filter.getDescription())
+                .categoryId(filter.getCategoryId())
+                .minPrice(filter.getMinPrice())
+                .maxPrice(filter.getMaxPrice())
+                .dynamicFields(filter.getDynamicFields() != null ? List.copyOf(filter.getDynamicFields()) : null)
+                .sortBy(filter.getSortBy())
+                .sortDirection(filter.getSortDirection())
+                .page(filter.getPage())
+                .size(filter.getSize())
+                .build();
+    }
+}
@@ -2,9 +2,11 @@ package com.hungng3011.vdtecomberefresh.product.services;
 
 import com.hungng3011.vdtecomberefresh.common.dtos.PagedResponse;
 import com.hungng3011.vdtecomberefresh.product.dtos.ProductDto;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFacetsDto;
 import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto;
 import com.hungng3011.vdtecomberefresh.product.entities.Product;
 import com.hungng3011.vdtecomberefresh.product.mappers.ProductMapper;
+import com.hungng3011.vdtecomberefresh.product.repositories.ProductFilterSpecifications;
 import com.hungng3011.vdtecomberefresh.product.repositories.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -30,6 +32,7 @@ public class ProductFilterService {
     
     private final ProductRepository productRepository;
     private final ProductMapper productMapper;
+    private final ProductFacetService productFacetService;
     
     /**
      * Filter products using comprehensive criteria with SQL injection protection
@@ -47,17 +50,9 @@ public class ProductFilterService {
             // Create pageable with secure sorting
             Pageable pageable = createSecurePageable(sanitizedFilter);
             
-            Page<Product> productPage;
-            
-            // Apply filtering based on complexity
-            if (hasMultipleCriteria(sanitizedFilter)) {
-                productPage = applyComprehensiveFilter(sanitizedFilter, pageable);
-            } else if (hasBasicCriteria(sanitizedFilter)) {
-                productPage = applyBasicFilter(sanitizedFilter, pageable);
-            } else {
-                // Default: return all products with pagination
-                productPage = productRepository.findAll(pageable);
-            }
+            // Query shape is generated from the criteria present in this request
+            Page<Product> productPage = productRepository.findAll(
+                    ProductFilterSpecifications.from(sanitizedFilter), pageable);
             
             // Convert to DTOs
             List<ProductDto> productDtos = productPage.getContent()
@@ -134,6 +129,8 @@ public class ProductFilterService {
         sanitized.setFieldName(sanitizeStringInput(field.getFieldName()));
         sanitized.setValue(sanitizeStringInput(field.getValue()));
         sanitized.setMatchType(field.getMatchType() != null ? field.getMatchType() : ProductFilterDto.FieldMatchType.EQUALS);
+        sanitized.setMinValue(field.getMinValue());
+        sanitized.setMaxValue(field.getMaxValue());
         return sanitized;
     }
     
@@ -163,7 +160,7 @@ public class ProductFilterService {
             case BASE_PRICE:
                 return "basePrice";
             case CREATED_AT:
-                return "id"; // Use id as proxy for creation time
+                return "createdAt";
             default:
                 return "id";
         }
@@ -189,45 +186,6 @@ public class ProductFilterService {
                filterDto.getMaxPrice() != null;
     }
     
-    /**
-     * Apply comprehensive filter with dynamic fields
-     */
-    private Page<Product> applyComprehensiveFilter(ProductFilterDto filterDto, Pageable pageable) {
-        // For now, handle the first dynamic field - can be extended for multiple fields
-        ProductFilterDto.DynamicFieldFilterDto dynamicField = filterDto.getDynamicFields() != null 
-                && !filterDto.getDynamicFields().isEmpty() 
-                ? filterDto.getDynamicFields().get(0) 
-                : null;
-        
-        String fieldName = dynamicField != null ? dynamicField.getFieldName() : null;
-        String fieldValue = dynamicField != null ? dynamicField.getValue() : null;
-        String matchType = dynamicField != null ? dynamicField.getMatchType().name() : "EQUALS";
-        
-        return productRepository.findByComprehensiveCriteria(
-                filterDto.getName(),
-                filterDto.getDescription(),
-                filterDto.getCategoryId(),
-                filterDto.getMinPrice(),
-                filterDto.getMaxPrice(),
-                fieldName,
-                fieldValue,
-                matchType,
-                pageable);
-    }
-    
-    /**
-     * Apply basic filter without dynamic fields
-     */
-    private Page<Product> applyBasicFilter(ProductFilterDto filterDto, Pageable pageable) {
-        return productRepository.findByMultipleCriteria(
-                filterDto.getName(),
-                filterDto.getDescription(),
-                filterDto.getCategoryId(),
-                filterDto.getMinPrice(),
-                filterDto.getMaxPrice(),
-                pageable);
-    }
-    
     /**
      * Build paged response with metadata
      */
@@ -255,38 +213,7 @@ public class ProductFilterService {
             ProductFilterDto sanitizedFilter = sanitizeFilterDto(filterDto);
             
             // Get filtered products count
-            long totalCount;
-            
-            if (hasMultipleCriteria(sanitizedFilter)) {
-                // For comprehensive criteria, we need to extract dynamic field info
-                ProductFilterDto.DynamicFieldFilterDto dynamicField = sanitizedFilter.getDynamicFields() != null 
-                        && !sanitizedFilter.getDynamicFields().isEmpty() 
-                        ? sanitizedFilter.getDynamicFields().get(0) 
-                        : null;
-                
-                String fieldName = dynamicField != null ? dynamicField.getFieldName() : null;
-                String fieldValue = dynamicField != null ? dynamicField.getValue() : null;
-                String matchType = dynamicField != null ? dynamicField.getMatchType().name() : "EQUALS";
-                
-                totalCount = productRepository.countByComprehensiveCriteria(
-                        sanitizedFilter.getName(),
-                        sanitizedFilter.getDescription(),
-                        sanitizedFilter.getCategoryId(),
-                        sanitizedFilter.getMinPrice(),
-                        sanitizedFilter.getMaxPrice(),
-                        fieldName,
-                        fieldValue,
-                        matchType);
-            } else if (hasBasicCriteria(sanitizedFilter)) {
-                totalCount = productRepository.countByMultipleCriteria(
-                        sanitizedFilter.getName(),
-                        sanitizedFilter.getDescription(),
-                        sanitizedFilter.getCategoryId(),
-                        sanitizedFilter.getMinPrice(),
-                        sanitizedFilter.getMaxPrice());
-            } else {
-                totalCount = productRepository.count();
-            }
+            long totalCount = productRepository.count(ProductFilterSpecifications.from(sanitizedFilter));
             
             // Return basic statistics
             Map<String, Object> statistics = new java.util.HashMap<>();
@@ -305,4 +232,21 @@ public class ProductFilterService {
             throw new RuntimeException("Failed to get product statistics", e);
         }
     }
+    
+    /**
+     * Get facet counts for the products matching the filter criteria
+     * 
+     * @param filterDto Filter criteria with validated input; paging and sorting are ignored
+     * @return Counts per category, price range, brand, dynamic attribute value and availability
+     */
+    public ProductFacetsDto getFacets(ProductFilterDto filterDto) {
+        log.info("Getting product facets with criteria: {}", filterDto);
+        
+        try {
+            return productFacetService.getFacets(sanitizeFilterDto(filterDto));
+        } catch (Exception e) {
+            log.error("Error getting product facets with criteria: {}", filterDto, e);
+            throw new RuntimeException("Failed to get product facets", e);
+        }
+    }
 }
@@ -0,0 +1,481 @@
+package com.hungng3011.vdtecomberefresh.product.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.hungng3011.vdtecomberefresh.category.dtos.CategoryDynamicFieldDto;
+import com.hungng3011.vdtecomberefresh.category.entities.Category;
+import com.hungng3011.vdtecomberefresh.category.entities.CategoryDynamicField;
+import com.hungng3011.vdtecomberefresh.category.repositories.CategoryRepository;
+import com.hungng3011.vdtecomberefresh.product.cache.ProductFacetCache;
+import com.hungng3011.vdtecomberefresh.product.dtos.ProductDto;
+import com.hungng3011.vdtecomberefresh.product.dtos.ProductDynamicValueDto;
+import com.hungng3011.vdtecomberefresh.product.dtos.ProductImportErrorDto;
+import com.hungng3011.vdtecomberefresh.product.dtos.ProductImportResultDto;
+import com.hungng3011.vdtecomberefresh.product.dtos.VariationDto;
+import com.hungng3011.vdtecomberefresh.product.dtos.VariationDynamicValueDto;
+import com.hungng3011.vdtecomberefresh.product.entities.Product;
+import com.hungng3011.vdtecomberefresh.product.entities.ProductAttributes;
+import com.hungng3011.vdtecomberefresh.product.entities.ProductDynamicValue;
+import com.hungng3011.vdtecomberefresh.product.entities.Variation;
+import com.hungng3011.vdtecomberefresh.product.entities.VariationDynamicValue;
+import com.hungng3011.vdtecomberefresh.product.enums.ProductImportFormat;
+import com.hungng3011.vdtecomberefresh.product.repositories.ProductBulkInsertRepository;
+import com.hungng3011.vdtecomberefresh.product.validators.ProductValidator;
+import com.hungng3011.vdtecomberefresh.search.services.ProductIndexingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Streaming bulk import of products from CSV or NDJSON.
+ *
+ * The input is read row by row and written in batches: categories and their dynamic fields are resolved once
+ * and reused, IDs are reserved from the entity sequences per batch, and rows go to the database through JDBC
+ * batch inserts (see {@link ProductBulkInsertRepository}) instead of {@link ProductService#create}. Every batch
+ * commits on its own, so a bad batch does not roll back the rows imported before it. Invalid rows are reported
+ * with their row number and skipped, and the search index is refreshed once for all imported products. If the
+ * input cannot be read to its end, the rows read so far are still imported and the result carries the read error.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductImportService {
+    private static final Set<String> CSV_COLUMNS = Set.of("name", "description", "baseprice", "categoryid", "images");
+    private static final String CSV_IMAGE_SEPARATOR = "\\|";
+
+    private final CategoryRepository categoryRepository;
+    private final ProductBulkInsertRepository productBulkInsertRepository;
+    private final ProductIndexingService productIndexingService;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final ProductFacetCache productFacetCache;
+
+    @Value("${app.import.product.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.import.product.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    /**
+     * Import products from a stream
+     * @param input CSV or NDJSON content; the stream is consumed but not closed
+     * @param format Input format
+     * @return Counts of imported and failed rows with the reason for each failed row
+     */
+    public ProductImportResultDto importProducts(InputStream input, ProductImportFormat format) {
+        log.info("Starting {} product import with batch size {}", format, batchSize);
+        long startedAt = System.currentTimeMillis();
+        ProductImportResultDto result = new ProductImportResultDto();
+        Map<Long, Category> categories = new HashMap<>();
+        List<Long> importedIds = new ArrayList<>();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8);
+        List<ImportRow> batch = new ArrayList<>(batchSize);
+        try {
+            Iterator<ImportRow> rows = format == ProductImportFormat.CSV ? csvRows(reader) : ndjsonRows(reader);
+            try {
+                while (rows.hasNext()) {
+                    batch.add(rows.next());
+                    if (batch.size() >= batchSize) {
+                        importBatch(batch, categories, transactionTemplate, result, importedIds);
+                        batch.clear();
+                    }
+                }
+            } catch (UncheckedIOException e) {
+                // Rows read before the failure are complete, so they are still imported
+                log.error("Product import stopped reading after {} rows: input could not be read",
+                        result.getTotalRows() + batch.size(), e);
+                result.setReadError("Import file could not be read after " + (result.getTotalRows() + batch.size())
+                        + " rows: " + e.getCause().getMessage());
+            }
+            if (!batch.isEmpty()) {
+                importBatch(batch, categories, transactionTemplate, result, importedIds);
+            }
+        } finally {
+            // Batches commit on their own, so whatever was committed must reach the index and facets
+            if (!importedIds.isEmpty()) {
+                log.info("Reindexing {} imported products", importedIds.size());
+                productIndexingService.reindexProducts(importedIds);
+                productFacetCache.invalidateAll();
+            }
+        }
+
+        log.info("Product import finished in {} ms: {} rows, {} imported, {} failed",
+                System.currentTimeMillis() - startedAt, result.getTotalRows(), result.getImported(), result.getFailed());
+        return result;
+    }
+
+    private void importBatch(List<ImportRow> batch, Map<Long, Category> categories,
+                             TransactionTemplate transactionTemplate, ProductImportResultDto result,
+                             List<Long> importedIds) {
+        result.setTotalRows(result.getTotalRows() + batch.size());
+        Map<Long, String> rowErrors = new LinkedHashMap<>();
+        try {
+            List<Long> ids = transactionTemplate.execute(status -> writeBatch(batch, categories, rowErrors));
+            rowErrors.forEach((row, message) -> addError(result, row, message));
+            if (ids != null) {
+                importedIds.addAll(ids);
+                result.setImported(result.getImported() + ids.size());
+            }
+        } catch (Exception e) {
+            log.error("Product import batch starting at row {} failed", batch.get(0).row(), e);
+            for (ImportRow row : batch) {
+                String message = row.error() != null ? row.error() : rowErrors.get(row.row());
+                addError(result, row.row(), message != null ? message : "Batch failed: " + e.getMessage());
+            }
+        }
+        log.info("Product import progress: {} rows read, {} imported, {} failed",
+                result.getTotalRows(), result.getImported(), result.getFailed());
+    }
+
+    /**
+     * Validate a batch and write its valid rows, reserving all IDs up front
+     * @param rowErrors Collects the reason each invalid row was skipped, keyed by row number
+     * @return IDs of the products written
+     */
+    private List<Long> writeBatch(List<ImportRow> batch, Map<Long, Category> categories,
+                                  Map<Long, String> rowErrors) {
+        resolveCategories(batch, categories);
+
+        List<ProductDto> valid = new ArrayList<>();
+        for (ImportRow row : batch) {
+            String error = row.error() != null ? row.error() : validate(row, categories);
+            if (error != null) {
+                rowErrors.put(row.row(), error);
+            } else {
+                valid.add(row.product());
+            }
+        }
+        if (valid.isEmpty()) {
+            return List.of();
+        }
+
+        int dynamicValueCount = 0;
+        int variationCount = 0;
+        int variationValueCount = 0;
+        for (ProductDto dto : valid) {
+            dynamicValueCount += sizeOf(dto.getDynamicValues());
+            for (VariationDto variation : nullToEmpty(dto.getVariations())) {
+                variationCount++;
+                variationValueCount += sizeOf(variation.getDynamicValues());
+            }
+        }
+        Iterator<Long> productIds = productBulkInsertRepository.allocateIds("products_seq", valid.size()).iterator();
+        Iterator<Long> dynamicValueIds = productBulkInsertRepository
+                .allocateIds("product_dynamic_values_seq", dynamicValueCount).iterator();
+        Iterator<Long> variationIds = productBulkInsertRepository.allocateIds("variations_seq", variationCount).iterator();
+        Iterator<Long> variationValueIds = productBulkInsertRepository
+                .allocateIds("variation_dynamic_values_seq", variationValueCount).iterator();
+
+        List<Product> products = new ArrayList<>(valid.size());
+        List<ProductDynamicValue> dynamicValues = new ArrayList<>(dynamicValueCount);
+        List<Variation> variations = new ArrayList<>(variationCount);
+        List<VariationDynamicValue> variationValues = new ArrayList<>(variationValueCount);
+        for (ProductDto dto : valid) {
+            Category category = categories.get(dto.getCategoryId());
+            Map<Long, CategoryDynamicField> fields = fieldsById(category);
+
+            Product product = new Product();
+            product.setId(productIds.next());
+            product.setCategory(category);
+            product.setName(dto.getName());
+            product.setDescription(dto.getDescription());
+            product.setBasePrice(dto.getBasePrice());
+            product.setImages(dto.getImages());
+            products.add(product);
+
+            List<ProductDynamicValue> productValues = new ArrayList<>(sizeOf(dto.getDynamicValues()));
+            for (ProductDynamicValueDto valueDto : nullToEmpty(dto.getDynamicValues())) {
+                productValues.add(new ProductDynamicValue(dynamicValueIds.next(), product,
+                        fields.get(valueDto.getField().getId()), valueDto.getValue()));
+            }
+            product.setAttributes(ProductAttributes.project(productValues));
+            dynamicValues.addAll(productValues);
+            for (VariationDto variationDto : nullToEmpty(dto.getVariations())) {
+                Variation variation = new Variation(variationIds.next(), product, variationDto.getType(),
+                        variationDto.getName(), variationDto.getAdditionalPrice(), null);
+                variations.add(variation);
+                for (VariationDynamicValueDto valueDto : nullToEmpty(variationDto.getDynamicValues())) {
+                    variationValues.add(new VariationDynamicValue(variationValueIds.next(), variation,
+                            fields.get(valueDto.getField().getId()), valueDto.getValue()));
+                }
+            }
+        }
+
+        productBulkInsertRepository.insertProducts(products);
+        productBulkInsertRepository.insertProductDynamicValues(dynamicValues);
+        productBulkInsertRepository.insertVariations(variations);
+        productBulkInsertRepository.insertVariationDynamicValues(variationValues);
+
+        // Categories in ascending ID order, so concurrent batches lock the counter rows in the same order
+        Map<Long, Long> addedPerCategory = products.stream()
+                .collect(Collectors.groupingBy(product -> product.getCategory().getId(), TreeMap::new,
+                        Collectors.counting()));
+        addedPerCategory.forEach(categoryRepository::adjustProductCount);
+        return products.stream().map(Product::getId).toList();
+    }
+
+    /**
+     * Load the categories referenced by a batch that have not been seen yet, with their dynamic fields
+     */
+    private void resolveCategories(List<ImportRow> batch, Map<Long, Category> categories) {
+        Set<Long> missing = batch.stream()
+                .filter(row -> row.product() != null && row.product().getCategoryId() != null)
+                .map(row -> row.product().getCategoryId())
+                .filter(id -> !categories.containsKey(id))
+                .collect(Collectors.toSet());
+        if (missing.isEmpty()) {
+            return;
+        }
+        for (Category category : categoryRepository.findAllById(missing)) {
+            if (category.getDynamicFields() == null) {
+                category.setDynamicFields(new ArrayList<>());
+            }
+            category.getDynamicFields().size(); // initialize while the batch transaction is open
+            categories.put(category.getId(), category);
+        }
+    }
+
+    /**
+     * Validate a parsed row against its category
+     * @return The reason the row cannot be imported, or null when it is valid
+     */
+    private String validate(ImportRow row, Map<Long, Category> categories) {
+        ProductDto dto = row.product();
+        if (dto.getName() == null || dto.getName().isBlank()) {
+            return "Product name is required";
+        }
+        if (dto.getBasePrice() == null || dto.getBasePrice().signum() < 0) {
+            return "Base price is required and must not be negative";
+        }
+        if (dto.getCategoryId() == null) {
+            return "Category ID is required";
+        }
+        Category category = categories.get(dto.getCategoryId());
+        if (category == null) {
+            return "Category not found: " + dto.getCategoryId();
+        }
+
+        if (!row.attributes().isEmpty()) {
+            String error = applyNamedAttributes(dto, row.attributes(), category);
+            if (error != null) {
+                return error;
+            }
+        }
+
+        Map<Long, CategoryDynamicField> fields = fieldsById(category);
+        for (ProductDynamicValueDto value : nullToEmpty(dto.getDynamicValues())) {
+            if (value.getField() == null || !fields.containsKey(value.getField().getId())) {
+                return "Dynamic field does not belong to category " + category.getId();
+            }
+            if (value.getValue() == null) {
+                return "Dynamic value is required for field " + value.getField().getId();
+            }
+        }
+        for (VariationDto variation : nullToEmpty(dto.getVariations())) {
+            if (variation.getType() == null || variation.getName() == null || variation.getAdditionalPrice() == null) {
+                return "Variation type, name and additional price are required";
+            }
+            for (VariationDynamicValueDto value : nullToEmpty(variation.getDynamicValues())) {
+                if (value.getField() == null || !fields.containsKey(value.getField().getId())) {
+                    return "Variation dynamic field does not belong to category " + category.getId();
+                }
+                if (value.getValue() == null) {
+                    return "Variation dynamic value is required for field " + value.getField().getId();
+                }
+            }
+        }
+
+        try {
+            ProductValidator.validate(dto, category);
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+
+    /**
+     * Turn CSV attribute columns into product dynamic values by matching column names to the category's field names
+     */
+    private String applyNamedAttributes(ProductDto dto, Map<String, String> attributes, Category category) {
+        Map<String, CategoryDynamicField> fieldsByName = category.getDynamicFields().stream()
+                .collect(Collectors.toMap(field -> field.getFieldName().trim().toLowerCase(Locale.ROOT),
+                        Function.identity(), (first, second) -> first));
+        List<ProductDynamicValueDto> values = new ArrayList<>(nullToEmpty(dto.getDynamicValues()));
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            CategoryDynamicField field = fieldsByName.get(attribute.getKey().trim().toLowerCase(Locale.ROOT));
+            if (field == null) {
+                return "Unknown attribute '" + attribute.getKey() + "' for category " + category.getId();
+            }
+            CategoryDynamicFieldDto fieldDto = new CategoryDynamicFieldDto();
+            fieldDto.setId(field.getId());
+            values.add(new ProductDynamicValueDto(null, null, fieldDto, attribute.getValue()));
+        }
+        dto.setDynamicValues(values);
+        return null;
+    }
+
+    private void addError(ProductImportResultDto result, long row, String message) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors().size() < maxReportedErrors) {
+            result.getErrors().add(new ProductImportErrorDto(row, message));
+        }
+    }
+
+    private Iterator<ImportRow> ndjsonRows(Reader reader) {
+        BufferedReader lines = new BufferedReader(reader);
+        return new Iterator<>() {
+            private long lineNumber;
+            private String next;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (next == null) {
+                        String line = lines.readLine();
+                        if (line == null) {
+                            return false;
+                        }
+                        lineNumber++;
+                        if (!line.isBlank()) {
+                            next = line;
+                        }
+                    }
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public ImportRow next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String line = next;
+                next = null;
+                try {
+                    return new ImportRow(lineNumber, objectMapper.readValue(line, ProductDto.class), Map.of(), null);
+                } catch (JsonProcessingException e) {
+                    return new ImportRow(lineNumber, null, Map.of(), "Invalid JSON: " + e.getOriginalMessage());
+                }
+            }
+        };
+    }
+
+    private Iterator<ImportRow> csvRows(Reader reader) {
+        MappingIterator<Map<String, String>> records;
+        try {
+            records = new CsvMapper()
+                    .readerForMapOf(String.class)
+                    .with(CsvSchema.emptySchema().withHeader())
+                    .readValues(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Iterator<>() {
+            private long lineNumber = 1; // header
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    return records.hasNextValue();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public ImportRow next() {
+                lineNumber++;
+                try {
+                    return toImportRow(lineNumber, records.nextValue());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    private ImportRow toImportRow(long row, Map<String, String> record) {
+        ProductDto dto = new ProductDto();
+        Map<String, String> attributes = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, String> column : record.entrySet()) {
+                String value = column.getValue() == null ? "" : column.getValue().trim();
+                String key = column.getKey().trim().toLowerCase(Locale.ROOT);
+                if (!CSV_COLUMNS.contains(key)) {
+                    if (!value.isEmpty()) {
+                        attributes.put(column.getKey(), value);
+                    }
+                    continue;
+                }
+                if (value.isEmpty()) {
+                    continue;
+                }
+                switch (key) {
+                    case "name" -> dto.setName(value);
+                    case "description" -> dto.setDescription(value);
+                    case "baseprice" -> dto.setBasePrice(new BigDecimal(value));
+                    case "categoryid" -> dto.setCategoryId(Long.parseLong(value));
+                    case "images" -> dto.setImages(Arrays.stream(value.split(CSV_IMAGE_SEPARATOR))
+                            .map(String::trim)
+                            .filter(image -> !image.isEmpty())
+                            .toList());
+                    default -> throw new IllegalStateException("Unhandled column " + key);
+                }
+            }
+        } catch (NumberFormatException e) {
+            return new ImportRow(row, null, Map.of(), "Invalid number: " + e.getMessage());
+        }
+        return new ImportRow(row, dto, attributes, null);
+    }
+
+    private static Map<Long, CategoryDynamicField> fieldsById(Category category) {
+        return category.getDynamicFields().stream()
+                .collect(Collectors.toMap(CategoryDynamicField::getId, Function.identity()));
+    }
+
+    private static <T> List<T> nullToEmpty(List<T> list) {
+        return list != null ? list : List.of();
+    }
+
+    private static int sizeOf(List<?> list) {
+        return list != null ? list.size() : 0;
+    }
+
+    /**
+     * A parsed input row; either a product (with CSV attribute columns still keyed by name) or a parse error
+     */
+    private record ImportRow(long row, ProductDto product, Map<String, String> attributes, String error) {
+    }
+}
@@ -1,26 +1,39 @@
 package com.hungng3011.vdtecomberefresh.product.services;
 
+import com.hungng3011.vdtecomberefresh.category.cache.CategoryCatalogCache;
 import com.hungng3011.vdtecomberefresh.category.entities.Category;
 import com.hungng3011.vdtecomberefresh.category.entities.CategoryDynamicField;
 import com.hungng3011.vdtecomberefresh.category.repositories.CategoryRepository;
+import com.hungng3011.vdtecomberefresh.product.cache.ProductAggregateCache;
+import com.hungng3011.vdtecomberefresh.product.cache.ProductCountCache;
+import com.hungng3011.vdtecomberefresh.product.cache.ProductFacetCache;
 import com.hungng3011.vdtecomberefresh.product.dtos.ProductDto;
 import com.hungng3011.vdtecomberefresh.product.dtos.ProductDynamicValueDto;
+import com.hungng3011.vdtecomberefresh.product.dtos.ProductListingCursor;
 import com.hungng3011.vdtecomberefresh.product.dtos.VariationDto;
 import com.hungng3011.vdtecomberefresh.product.dtos.VariationDynamicValueDto;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto.ProductSortField;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto.SortDirection;
 import com.hungng3011.vdtecomberefresh.product.entities.Product;
+import com.hungng3011.vdtecomberefresh.product.entities.ProductAttributes;
 import com.hungng3011.vdtecomberefresh.product.entities.ProductDynamicValue;
 import com.hungng3011.vdtecomberefresh.product.entities.Variation;
 import com.hungng3011.vdtecomberefresh.product.entities.VariationDynamicValue;
 import com.hungng3011.vdtecomberefresh.product.mappers.ProductMapper;
+import com.hungng3011.vdtecomberefresh.product.repositories.ProductDynamicValueRepository;
+import com.hungng3011.vdtecomberefresh.product.repositories.ProductKeysetRepository;
 import com.hungng3011.vdtecomberefresh.product.repositories.ProductRepository;
+import com.hungng3011.vdtecomberefresh.product.repositories.VariationDynamicValueRepository;
+import com.hungng3011.vdtecomberefresh.product.repositories.VariationRepository;
+import com.hungng3011.vdtecomberefresh.search.events.ProductIndexEvent;
 import com.hungng3011.vdtecomberefresh.stock.StockService;
 import com.hungng3011.vdtecomberefresh.exception.product.ProductProcessingException;
 import com.hungng3011.vdtecomberefresh.common.dtos.PagedResponse;
-import org.springframework.cache.annotation.Cacheable;
 import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -28,7 +41,12 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -40,6 +58,15 @@ public class ProductService {
     private final CategoryRepository categoryRepository;
     private final EntityManager entityManager;
     private final StockService stockService;
+    private final ProductAggregateCache productAggregateCache;
+    private final ProductDynamicValueRepository productDynamicValueRepository;
+    private final VariationRepository variationRepository;
+    private final VariationDynamicValueRepository variationDynamicValueRepository;
+    private final ProductKeysetRepository productKeysetRepository;
+    private final ProductCountCache productCountCache;
+    private final ProductFacetCache productFacetCache;
+    private final CategoryCatalogCache categoryCatalogCache;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<ProductDto> getAll() {
         log.info("Fetching all products");
@@ -54,11 +81,11 @@ public class ProductService {
         }
     }
 
-    @Cacheable(value = "products", key = "#id")
     public ProductDto getById(Long id) {
         log.info("Get product by id: {}", id);
         try {
-            ProductDto product = productRepository.findById(id).map(productMapper::toDto).orElse(null);
+            ProductDto product = productAggregateCache.get(id,
+                    productId -> productRepository.findById(productId).map(productMapper::toDto).orElse(null));
             if (product != null) {
                 log.info("Successfully retrieved product with id: {}", id);
             } else {
@@ -105,7 +132,7 @@ public class ProductService {
                 for (ProductDynamicValueDto dynamicValueDto : request.getDynamicValues()) {
                     // Verify the field exists in category_dynamic_fields
                     Long fieldId = dynamicValueDto.getField().getId();
-                    CategoryDynamicField field = entityManager.find(CategoryDynamicField.class, fieldId);
+                    CategoryDynamicField field = lookupDynamicField(fieldId);
 
                     if (field == null) {
                         log.error("Category dynamic field not found with ID: {}, cleaning up product", fieldId);
@@ -126,6 +153,7 @@ public class ProductService {
                 entityManager.flush();
                 log.debug("Successfully processed dynamic values for product: {}", savedProduct.getName());
             }
+            savedProduct.setAttributes(ProductAttributes.project(savedProduct.getDynamicValues(), this::describeField));
 
             // 3. Handle variations
             if (request.getVariations() != null) {
@@ -145,7 +173,7 @@ public class ProductService {
                         for (VariationDynamicValueDto dynamicValueDto : variationDto.getDynamicValues()) {
                             // Verify field exists
                             Long fieldId = dynamicValueDto.getField().getId();
-                            CategoryDynamicField field = entityManager.find(CategoryDynamicField.class, fieldId);
+                            CategoryDynamicField field = lookupDynamicField(fieldId);
 
                             if (field == null) {
                                 productRepository.delete(savedProduct); // Clean up saved product to prevent orphaned records
@@ -171,6 +199,9 @@ public class ProductService {
             Product finalProduct = productRepository.findById(savedProduct.getId())
                     .orElseThrow(() -> new ProductProcessingException("PRODUCT_NOT_FOUND",
                             "Product not found after saving", savedProduct.getId()));
+            adjustProductCount(finalProduct.getCategory(), 1);
+            evictFacets(finalProduct.getCategory());
+            eventPublisher.publishEvent(ProductIndexEvent.upsert("product", finalProduct.getId()));
             return productMapper.toDto(finalProduct);
         } catch (Exception e) {
             log.error("Error creating product: {}", request.getName(), e);
@@ -205,6 +236,7 @@ public class ProductService {
             existingProduct.setDescription(request.getDescription());
             existingProduct.setBasePrice(request.getBasePrice());
             existingProduct.setImages(request.getImages() != null ? request.getImages() : existingProduct.getImages());
+            Category previousCategory = existingProduct.getCategory();
 
             // Update category if changed
             if (request.getCategoryId() != null) {
@@ -222,98 +254,20 @@ public class ProductService {
             log.debug("Saving basic product updates for ID: {}", request.getId());
             Product updatedProduct = productRepository.saveAndFlush(existingProduct);
 
-            // Handle dynamic values - clear and recreate approach
+            // Reconcile children with the request instead of deleting and recreating them, so unchanged rows
+            // keep their IDs (and stock links) and only the actual differences are written
             if (request.getDynamicValues() != null) {
-                log.debug("Updating {} dynamic values for product ID: {}", request.getDynamicValues().size(), request.getId());
-                
-                // Clear existing dynamic values
-                for (ProductDynamicValue dynamicValue : new ArrayList<>(updatedProduct.getDynamicValues())) {
-                    entityManager.remove(dynamicValue);
-                }
-                updatedProduct.getDynamicValues().clear();
-                entityManager.flush();
-
-                // Create new dynamic values
-                for (ProductDynamicValueDto dynamicValueDto : request.getDynamicValues()) {
-                    Long fieldId = dynamicValueDto.getField().getId();
-                    log.trace("Processing dynamic value for field ID: {}", fieldId);
-                    
-                    CategoryDynamicField field = entityManager.find(CategoryDynamicField.class, fieldId);
-                    if (field == null) {
-                        log.error("Category dynamic field not found with ID: {} during product update", fieldId);
-                        throw new ProductProcessingException("CATEGORY_FIELD_NOT_FOUND",
-                                "Category dynamic field not found", fieldId);
-                    }
-
-                    ProductDynamicValue dynamicValue = new ProductDynamicValue();
-                    dynamicValue.setProduct(updatedProduct);
-                    dynamicValue.setField(field);
-                    dynamicValue.setValue(dynamicValueDto.getValue());
-
-                    entityManager.persist(dynamicValue);
-                    updatedProduct.getDynamicValues().add(dynamicValue);
-                }
-                entityManager.flush();
-                log.debug("Successfully updated dynamic values for product ID: {}", request.getId());
+                log.debug("Merging {} dynamic values for product ID: {}", request.getDynamicValues().size(), request.getId());
+                mergeDynamicValues(updatedProduct, request.getDynamicValues());
+                updatedProduct.setAttributes(ProductAttributes.project(updatedProduct.getDynamicValues(),
+                        this::describeField));
             }
 
-            // Handle variations - clear and recreate approach
             if (request.getVariations() != null) {
-                log.debug("Updating {} variations for product ID: {}", request.getVariations().size(), request.getId());
-                
-                // Clear existing variations and their dynamic values
-                for (Variation variation : new ArrayList<>(updatedProduct.getVariations())) {
-                    if (variation.getDynamicValues() != null) {
-                        for (VariationDynamicValue dynamicValue : new ArrayList<>(variation.getDynamicValues())) {
-                            entityManager.remove(dynamicValue);
-                        }
-                        variation.getDynamicValues().clear();
-                    }
-                    entityManager.remove(variation);
-                }
-                updatedProduct.getVariations().clear();
-                entityManager.flush();
-
-                // Create new variations
-                for (VariationDto vDto : request.getVariations()) {
-                    log.trace("Processing variation: {} of type: {}", vDto.getName(), vDto.getType());
-                    
-                    Variation variation = new Variation();
-                    variation.setProduct(updatedProduct);
-                    variation.setName(vDto.getName());
-                    variation.setType(vDto.getType());
-                    variation.setAdditionalPrice(vDto.getAdditionalPrice());
-                    variation.setDynamicValues(new ArrayList<>());
-
-                    entityManager.persist(variation);
-                    updatedProduct.getVariations().add(variation);
-
-                    // Process variation dynamic values
-                    if (vDto.getDynamicValues() != null) {
-                        log.trace("Processing {} dynamic values for variation: {}", vDto.getDynamicValues().size(), vDto.getName());
-                        for (VariationDynamicValueDto dynamicValueDto : vDto.getDynamicValues()) {
-                            Long fieldId = dynamicValueDto.getField().getId();
-                            CategoryDynamicField field = entityManager.find(CategoryDynamicField.class, fieldId);
-
-                            if (field == null) {
-                                log.error("Category dynamic field not found with ID: {} for variation dynamic value", fieldId);
-                                throw new ProductProcessingException("CATEGORY_FIELD_NOT_FOUND",
-                                        "Category dynamic field not found", fieldId);
-                            }
-
-                            VariationDynamicValue dynamicValue = new VariationDynamicValue();
-                            dynamicValue.setVariation(variation);
-                            dynamicValue.setField(field);
-                            dynamicValue.setValue(dynamicValueDto.getValue());
-
-                            entityManager.persist(dynamicValue);
-                            variation.getDynamicValues().add(dynamicValue);
-                        }
-                    }
-                }
-                entityManager.flush();
-                log.debug("Successfully updated variations for product ID: {}", request.getId());
+                log.debug("Merging {} variations for product ID: {}", request.getVariations().size(), request.getId());
+                mergeVariations(updatedProduct, request.getVariations());
             }
+            entityManager.flush();
 
             // Reload the complete product with all relationships
             log.debug("Reloading updated product with ID: {} to get complete relationships", updatedProduct.getId());
@@ -324,6 +278,14 @@ public class ProductService {
                                 "Product not found after update", updatedProduct.getId());
                     });
 
+            productAggregateCache.evict(finalProduct.getId());
+            evictFacets(previousCategory);
+            if (finalProduct.getCategory() != previousCategory) {
+                adjustProductCount(previousCategory, -1);
+                adjustProductCount(finalProduct.getCategory(), 1);
+                evictFacets(finalProduct.getCategory());
+            }
+            eventPublisher.publishEvent(ProductIndexEvent.upsert("product", finalProduct.getId()));
             log.info("Successfully updated product with ID: {} and name: {}", finalProduct.getId(), finalProduct.getName());
             return productMapper.toDto(finalProduct);
             
@@ -337,6 +299,242 @@ public class ProductService {
         }
     }
 
+    /**
+     * Update a category's maintained product counter in the current transaction
+     * @param category Category gaining or losing a product; may be null
+     * @param delta Number of products added (positive) or removed (negative)
+     */
+    private void adjustProductCount(Category category, long delta) {
+        if (category != null && category.getId() != null) {
+            categoryRepository.adjustProductCount(category.getId(), delta);
+        }
+    }
+
+    /**
+     * Drop the cached facet counts that include products of a category
+     * @param category Category of a created, updated or deleted product; may be null
+     */
+    private void evictFacets(Category category) {
+        if (category != null && category.getId() != null) {
+            productFacetCache.evictCategory(category.getId());
+        }
+    }
+
+    /**
+     * Reconcile a product's dynamic values with the requested ones. Existing rows are matched by ID, then by
+     * field; matched rows are updated in place (dirty checking skips unchanged ones), unmatched requests are
+     * inserted and leftover rows are deleted in one statement.
+     * @param product The managed product being updated
+     * @param requested Dynamic values from the request
+     */
+    private void mergeDynamicValues(Product product, List<ProductDynamicValueDto> requested) {
+        if (product.getDynamicValues() == null) {
+            product.setDynamicValues(new ArrayList<>());
+        }
+        List<ProductDynamicValue> existing = product.getDynamicValues();
+        Map<Long, ProductDynamicValue> byId = new HashMap<>();
+        Map<Long, ProductDynamicValue> byField = new HashMap<>();
+        for (ProductDynamicValue value : existing) {
+            byId.put(value.getId(), value);
+            byField.putIfAbsent(value.getField().getId(), value);
+        }
+
+        Set<ProductDynamicValue> matched = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<ProductDynamicValue> merged = new ArrayList<>();
+        for (ProductDynamicValueDto dto : requested) {
+            Long fieldId = dto.getField().getId();
+            ProductDynamicValue value = dto.getId() != null ? byId.get(dto.getId()) : null;
+            if (value == null || matched.contains(value)) {
+                value = byField.get(fieldId);
+            }
+
+            if (value != null && matched.add(value)) {
+                if (!fieldId.equals(value.getField().getId())) {
+                    value.setField(findDynamicField(fieldId));
+                }
+                value.setValue(dto.getValue());
+            } else {
+                value = new ProductDynamicValue();
+                value.setProduct(product);
+                value.setField(findDynamicField(fieldId));
+                value.setValue(dto.getValue());
+                entityManager.persist(value);
+            }
+            merged.add(value);
+        }
+
+        List<Long> removedIds = existing.stream()
+                .filter(value -> !matched.contains(value))
+                .map(ProductDynamicValue::getId)
+                .toList();
+        if (!removedIds.isEmpty()) {
+            log.debug("Deleting {} dynamic values from product ID: {}", removedIds.size(), product.getId());
+            productDynamicValueRepository.deleteAllByIdInBatch(removedIds);
+        }
+        existing.clear();
+        existing.addAll(merged);
+    }
+
+    /**
+     * Reconcile a product's variations with the requested ones. Existing variations are matched by ID, then by
+     * type and name, and keep their IDs so stock entries pointing at them stay valid. Variations missing from
+     * the request are unlinked from stock and deleted together with their dynamic values in batched statements.
+     * @param product The managed product being updated
+     * @param requested Variations from the request
+     */
+    private void mergeVariations(Product product, List<VariationDto> requested) {
+        if (product.getVariations() == null) {
+            product.setVariations(new ArrayList<>());
+        }
+        List<Variation> existing = product.getVariations();
+        Map<Long, Variation> byId = new HashMap<>();
+        Map<String, Variation> byNaturalKey = new HashMap<>();
+        for (Variation variation : existing) {
+            byId.put(variation.getId(), variation);
+            byNaturalKey.putIfAbsent(variationKey(variation.getType(), variation.getName()), variation);
+        }
+
+        Set<Variation> matched = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Variation> merged = new ArrayList<>();
+        List<Long> removedValueIds = new ArrayList<>();
+        for (VariationDto dto : requested) {
+            Variation variation = dto.getId() != null ? byId.get(dto.getId()) : null;
+            if (variation == null || matched.contains(variation)) {
+                variation = byNaturalKey.get(variationKey(dto.getType(), dto.getName()));
+            }
+
+            if (variation != null && matched.add(variation)) {
+                variation.setType(dto.getType());
+                variation.setName(dto.getName());
+                variation.setAdditionalPrice(dto.getAdditionalPrice());
+            } else {
+                variation = new Variation();
+                variation.setProduct(product);
+                variation.setType(dto.getType());
+                variation.setName(dto.getName());
+                variation.setAdditionalPrice(dto.getAdditionalPrice());
+                variation.setDynamicValues(new ArrayList<>());
+                entityManager.persist(variation);
+            }
+            merged.add(variation);
+
+            if (dto.getDynamicValues() != null) {
+                removedValueIds.addAll(mergeVariationDynamicValues(variation, dto.getDynamicValues()));
+            }
+        }
+
+        if (!removedValueIds.isEmpty()) {
+            variationDynamicValueRepository.deleteAllByIdInBatch(removedValueIds);
+        }
+
+        List<Long> removedIds = existing.stream()
+                .filter(variation -> !matched.contains(variation))
+                .map(Variation::getId)
+                .toList();
+        if (!removedIds.isEmpty()) {
+            log.debug("Deleting {} variations from product ID: {}", removedIds.size(), product.getId());
+            int unlinked = variationRepository.unlinkStock(removedIds);
+            if (unlinked > 0) {
+                log.warn("Unlinked {} stock entries from variations removed from product ID: {}", unlinked, product.getId());
+            }
+            variationDynamicValueRepository.deleteByVariationIds(removedIds);
+            variationRepository.deleteAllByIdInBatch(removedIds);
+        }
+        existing.clear();
+        existing.addAll(merged);
+    }
+
+    /**
+     * Reconcile the dynamic values of a single variation, matching by ID, then by field
+     * @param variation The managed or newly persisted variation
+     * @param requested Dynamic values from the request
+     * @return IDs of existing values that are no longer requested and must be deleted
+     */
+    private List<Long> mergeVariationDynamicValues(Variation variation, List<VariationDynamicValueDto> requested) {
+        if (variation.getDynamicValues() == null) {
+            variation.setDynamicValues(new ArrayList<>());
+        }
+        List<VariationDynamicValue> existing = variation.getDynamicValues();
+        Map<Long, VariationDynamicValue> byId = new HashMap<>();
+        Map<Long, VariationDynamicValue> byField = new HashMap<>();
+        for (VariationDynamicValue value : existing) {
+            byId.put(value.getId(), value);
+            byField.putIfAbsent(value.getField().getId(), value);
+        }
+
+        Set<VariationDynamicValue> matched = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<VariationDynamicValue> merged = new ArrayList<>();
+        for (VariationDynamicValueDto dto : requested) {
+            Long fieldId = dto.getField().getId();
+            VariationDynamicValue value = dto.getId() != null ? byId.get(dto.getId()) : null;
+            if (value == null || matched.contains(value)) {
+                value = byField.get(fieldId);
+            }
+
+            if (value != null && matched.add(value)) {
+                if (!fieldId.equals(value.getField().getId())) {
+                    value.setField(findDynamicField(fieldId));
+                }
+                value.setValue(dto.getValue());
+            } else {
+                value = new VariationDynamicValue();
+                value.setVariation(variation);
+                value.setField(findDynamicField(fieldId));
+                value.setValue(dto.getValue());
+                entityManager.persist(value);
+            }
+            merged.add(value);
+        }
+
+        List<Long> removedIds = existing.stream()
+                .filter(value -> !matched.contains(value))
+                .map(VariationDynamicValue::getId)
+                .toList();
+        existing.clear();
+        existing.addAll(merged);
+        return removedIds;
+    }
+
+    private CategoryDynamicField findDynamicField(Long fieldId) {
+        CategoryDynamicField field = lookupDynamicField(fieldId);
+        if (field == null) {
+            log.error("Category dynamic field not found with ID: {} during product update", fieldId);
+            throw new ProductProcessingException("CATEGORY_FIELD_NOT_FOUND",
+                    "Category dynamic field not found", fieldId);
+        }
+        return field;
+    }
+
+    /**
+     * Resolve a dynamic field: a field in the category catalog snapshot is known to exist, so it is attached as a
+     * reference without a select, only to set the foreign key; otherwise it is loaded from the database, e.g. a
+     * field created on another node whose catalog broadcast has not arrived yet
+     * @param fieldId Dynamic field ID
+     * @return A managed field or reference to one, or null when it does not exist
+     */
+    private CategoryDynamicField lookupDynamicField(Long fieldId) {
+        if (categoryCatalogCache.findDynamicField(fieldId).isPresent()) {
+            return entityManager.getReference(CategoryDynamicField.class, fieldId);
+        }
+        return entityManager.find(CategoryDynamicField.class, fieldId);
+    }
+
+    /**
+     * Name and type of a dynamic field for the attributes projection, from the catalog snapshot when the field is
+     * in it, so a reference attached by {@link #lookupDynamicField} is never initialized just to be projected
+     * @param field Managed field or reference to one
+     * @return Field name and type
+     */
+    private ProductAttributes.FieldKey describeField(CategoryDynamicField field) {
+        return categoryCatalogCache.findDynamicField(field.getId())
+                .map(definition -> new ProductAttributes.FieldKey(definition.fieldName(), definition.fieldType()))
+                .orElseGet(() -> new ProductAttributes.FieldKey(field.getFieldName(), field.getFieldType()));
+    }
+
+    private static String variationKey(String type, String name) {
+        return type + '\u0000' + name;
+    }
+
     @Transactional
     public void delete(Long id) {
         log.info("Starting product deletion for ID: {}", id);
@@ -379,6 +577,10 @@ public class ProductService {
             // Delete the product
             log.debug("Deleting product entity with ID: {}", id);
             productRepository.delete(product);
+            productAggregateCache.evict(id);
+            adjustProductCount(product.getCategory(), -1);
+            evictFacets(product.getCategory());
+            eventPublisher.publishEvent(ProductIndexEvent.delete("product", id));
             log.info("Successfully deleted product with ID: {}", id);
             
         } catch (ProductProcessingException e) {
@@ -573,16 +775,15 @@ public class ProductService {
                 products = productRepository.findAllWithCursorAfter(cursor, pageable);
             } else {
                 log.debug("Using first page pagination without cursor");
-                // First page - use standard pagination
-                products = productRepository.findAllWithCursorAfter(null, pageable);
+                products = productRepository.findFirstPage(pageable);
             }
 
             List<ProductDto> productDtos = products.stream()
                     .map(productMapper::toDto)
                     .collect(Collectors.toList());
 
-            // Get total count for pagination metadata
-            long totalElements = productRepository.countAllProducts();
+            // Approximate total for pagination metadata; an exact count would scan the table on every page
+            long totalElements = productCountCache.getApproximateCount();
             int totalPages = (int) Math.ceil((double) totalElements / size);
             
             // Calculate cursors
@@ -646,7 +847,7 @@ public class ProductService {
                     .map(productMapper::toDto)
                     .collect(Collectors.toList());
 
-            long totalElements = productRepository.countAllProducts();
+            long totalElements = productCountCache.getApproximateCount();
             int totalPages = (int) Math.ceil((double) totalElements / size);
             
             Long nextCursor = cursor;
@@ -678,4 +879,87 @@ public class ProductService {
                     "Failed to retrieve previous products", e);
         }
     }
+
+    /**
+     * Get all products sorted by name, price, creation time or ID with keyset pagination.
+     * Each page after the first continues from the (sort key, id) of the previous page's last product,
+     * and a previous page ends at the (sort key, id) of the current page's first product,
+     * so deep pages cost the same as the first one. The total is approximate.
+     * @param sortBy Sort field
+     * @param direction Sort direction
+     * @param page Page number (for metadata only)
+     * @param size Number of items per page
+     * @param cursor Optional opaque cursor returned as nextCursor or previousCursor by another page
+     * @return PagedResponse containing products and pagination metadata
+     */
+    public PagedResponse<ProductDto> getListing(ProductSortField sortBy, SortDirection direction, int page, int size, String cursor) {
+        log.info("Finding product listing - sortBy: {}, direction: {}, size: {}, cursor: {}",
+                sortBy, direction, size, cursor);
+
+        ProductListingCursor position = cursor != null
+                ? ProductListingCursor.decode(cursor, sortBy, direction)
+                : null;
+
+        try {
+            // Read one extra row to learn whether a further page exists in the paging direction without counting
+            boolean backward = position != null && position.isBackward();
+            List<Product> products;
+            boolean hasNext;
+            boolean hasPrevious;
+            if (backward) {
+                products = productKeysetRepository.findPageBefore(position, size + 1);
+                hasNext = true;
+                hasPrevious = products.size() > size;
+                if (hasPrevious) {
+                    products = products.subList(1, products.size());
+                }
+            } else {
+                products = position != null
+                        ? productKeysetRepository.findPageAfter(position, size + 1)
+                        : productKeysetRepository.findFirstPage(sortBy, direction, size + 1);
+                hasNext = products.size() > size;
+                hasPrevious = position != null;
+                if (hasNext) {
+                    products = products.subList(0, size);
+                }
+            }
+
+            List<ProductDto> productDtos = products.stream()
+                    .map(productMapper::toDto)
+                    .collect(Collectors.toList());
+
+            long totalElements = productCountCache.getApproximateCount();
+            String nextCursor = hasNext && !products.isEmpty()
+                    ? ProductListingCursor.after(products.get(products.size() - 1), sortBy, direction).encode()
+                    : null;
+            String previousCursor = hasPrevious && !products.isEmpty()
+                    ? ProductListingCursor.before(products.get(0), sortBy, direction).encode()
+                    : null;
+
+            PagedResponse.PaginationMetadata pagination = PagedResponse.PaginationMetadata.builder()
+                    .page(page)
+                    .size(size)
+                    .totalElements(totalElements)
+                    .totalPages((int) Math.ceil((double) totalElements / size))
+                    .hasNext(hasNext)
+                    .hasPrevious(hasPrevious)
+                    .nextCursor(nextCursor)
+                    .previousCursor(previousCursor)
+                    .build();
+
+            log.info("Successfully retrieved {} products for listing (sortBy: {}, approximate total: {})",
+                    productDtos.size(), sortBy, totalElements);
+
+            return PagedResponse.<ProductDto>builder()
+                    .content(productDtos)
+                    .pagination(pagination)
+                    .build();
+
+        } catch (Exception e) {
+            log.error("Error retrieving product listing (sortBy: {}, direction: {}, cursor: {})",
+                    sortBy, direction, cursor, e);
+            throw new ProductProcessingException("PRODUCT_RETRIEVAL_FAILED",
+                    "Failed to retrieve product listing", e);
+        }
+    }
 }
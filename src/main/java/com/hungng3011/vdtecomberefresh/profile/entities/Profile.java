@@ -18,7 +18,8 @@ import static jakarta.persistence.GenerationType.*;
 public class Profile {
 
     @Id
-    @GeneratedValue(strategy = IDENTITY)
+    @GeneratedValue(strategy = SEQUENCE, generator = "profiles_seq")
+    @SequenceGenerator(name = "profiles_seq", sequenceName = "profiles_seq", allocationSize = 50)
     private Long id;
 
     @Column(unique = true, nullable = false)
@@ -0,0 +1,59 @@
+package com.hungng3011.vdtecomberefresh.search.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.hungng3011.vdtecomberefresh.search.services.SearchAnalyticsService;
+import com.hungng3011.vdtecomberefresh.search.utils.PrefixTrie;
+import com.hungng3011.vdtecomberefresh.search.utils.SearchConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory prefix trie of the most searched queries, for answering autocomplete keystrokes without a round
+ * trip to Elasticsearch.
+ *
+ * The trie is built from the top {@code app.search.suggestions.popular-queries} entries of the last week's
+ * popular query counts kept by {@link SearchAnalyticsService} and rebuilt in the background after the refresh interval;
+ * callers keep reading the previous trie until the rebuild completes.
+ */
+@Component
+@Slf4j
+public class PopularQueryCache {
+    private static final String KEY = "popular-queries";
+
+    private final SearchAnalyticsService searchAnalyticsService;
+    private final int popularQueries;
+    private final LoadingCache<String, PrefixTrie<Long>> trie;
+
+    public PopularQueryCache(SearchAnalyticsService searchAnalyticsService,
+                             @Value("${app.search.suggestions.popular-queries:1000}") int popularQueries,
+                             @Value("${app.search.suggestions.refresh-interval:60s}") Duration refreshInterval) {
+        this.searchAnalyticsService = searchAnalyticsService;
+        this.popularQueries = popularQueries;
+        this.trie = Caffeine.newBuilder()
+                .refreshAfterWrite(refreshInterval)
+                .build(key -> load());
+    }
+
+    /**
+     * Popular queries starting with a prefix
+     * @param prefix Text typed so far
+     * @param limit Maximum number of queries
+     * @return Queries with their search counts, most searched first
+     */
+    public List<PrefixTrie.Completion<Long>> complete(String prefix, int limit) {
+        return trie.get(KEY).complete(prefix, limit);
+    }
+
+    private PrefixTrie<Long> load() {
+        Map<String, Long> counts = searchAnalyticsService.getPopularQueryCounts(SearchAnalyticsService.QueryWindow.WEEK, popularQueries);
+        PrefixTrie<Long> loaded = PrefixTrie.of(counts, SearchConstants.MAX_SUGGESTION_LIMIT);
+        log.debug("Built popular query trie with {} queries", loaded.size());
+        return loaded;
+    }
+}
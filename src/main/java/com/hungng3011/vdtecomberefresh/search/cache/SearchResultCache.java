@@ -0,0 +1,240 @@
+package com.hungng3011.vdtecomberefresh.search.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hungng3011.vdtecomberefresh.search.documents.ProductSearchDocument;
+import com.hungng3011.vdtecomberefresh.search.dtos.SearchRequestDto;
+import com.hungng3011.vdtecomberefresh.search.dtos.SearchResponseDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Two-level cache of search result pages.
+ *
+ * - Entries are keyed by a hash of the request with its query normalized (trimmed, lower-cased, whitespace
+ *   collapsed), its list filters sorted and its cursor and cache options removed, so equivalent requests share
+ *   an entry.
+ * - L1 is an in-process Caffeine cache; concurrent misses for the same request collapse into one search.
+ * - L2 is Redis, under {@code search:results:v{index version}:{hash}}. Both levels use short TTLs.
+ * - Full reindexes bump the index version ({@code search:index:version}), which moves every node to a new
+ *   key namespace and drops its L1 entries through a Redis pub/sub broadcast; stale versions simply expire.
+ *   Incremental index writes arrive every second, so they are left to the TTLs rather than emptying the cache.
+ *
+ * Hit/miss statistics are published as {@code cache.*{cache=search.results.l1}} and
+ * {@code search.results.l2.requests}; bypassed requests are counted in {@code search.results.bypassed}.
+ */
+@Component
+@Slf4j
+public class SearchResultCache implements MessageListener {
+    static final String KEY_PREFIX = "search:results:v";
+    static final String VERSION_KEY = "search:index:version";
+    static final String INVALIDATION_CHANNEL = "search:results:invalidation";
+    private static final String VERSION_MESSAGE = "version:";
+    private static final TypeReference<SearchResponseDto<ProductSearchDocument>> RESPONSE_TYPE =
+            new TypeReference<>() {};
+    private static final List<String> IGNORED_FIELDS = List.of("cursor", "bypassCache");
+    private static final List<String> UNORDERED_FILTERS = List.of("categoryIds", "brands", "tags");
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+    private final Duration l2Ttl;
+    private final Cache<String, SearchResponseDto<ProductSearchDocument>> l1;
+    private final AtomicLong version = new AtomicLong();
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+    private final Counter bypassed;
+
+    public SearchResultCache(RedisTemplate<String, Object> redisTemplate,
+                             RedisMessageListenerContainer listenerContainer,
+                             MeterRegistry meterRegistry,
+                             ObjectMapper objectMapper,
+                             @Value("${app.search.cache.l1.max-size:10000}") long l1MaxSize,
+                             @Value("${app.search.cache.l1.ttl:30s}") Duration l1Ttl,
+                             @Value("${app.search.cache.l2.ttl:60s}") Duration l2Ttl) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.meterRegistry = meterRegistry;
+        this.objectMapper = objectMapper;
+        this.l2Ttl = l2Ttl;
+        this.l1 = Caffeine.newBuilder()
+                .maximumSize(l1MaxSize)
+                .expireAfterWrite(l1Ttl)
+                .recordStats()
+                .build();
+        this.l2Hits = Counter.builder("search.results.l2.requests").tag("result", "hit").register(meterRegistry);
+        this.l2Misses = Counter.builder("search.results.l2.requests").tag("result", "miss").register(meterRegistry);
+        this.bypassed = Counter.builder("search.results.bypassed").register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        CaffeineCacheMetrics.monitor(meterRegistry, l1, "search.results.l1");
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+        try {
+            Object stored = redisTemplate.opsForValue().get(VERSION_KEY);
+            if (stored instanceof Number number) {
+                version.set(number.longValue());
+            }
+        } catch (Exception e) {
+            log.warn("Could not read search index version from Redis, starting at {}", version.get(), e);
+        }
+    }
+
+    /**
+     * Get a page of search results, searching at most once per node on a miss. Requests continuing a cursor
+     * read from a point-in-time of their own and, like requests with {@code bypassCache}, always search.
+     * @param request Validated request with a sanitized query
+     * @param loader Runs the search
+     * @return Cached or fresh results; cached results are shared and must not be modified
+     */
+    public SearchResponseDto<ProductSearchDocument> get(SearchRequestDto request,
+            Function<SearchRequestDto, SearchResponseDto<ProductSearchDocument>> loader) {
+        if (Boolean.TRUE.equals(request.getBypassCache()) || request.getCursor() != null) {
+            bypassed.increment();
+            return loader.apply(request);
+        }
+        String hash = hash(request);
+        return l1.get(hash, key -> loadThroughL2(key, request, loader));
+    }
+
+    /**
+     * Invalidate every cached page on every node by moving to a new index version; called after a full
+     * reindex and after ranking scores are rewritten. Incremental index writes rely on the TTLs instead
+     */
+    public void bumpIndexVersion() {
+        l1.invalidateAll();
+        try {
+            Long next = redisTemplate.opsForValue().increment(VERSION_KEY);
+            if (next != null) {
+                version.accumulateAndGet(next, Math::max);
+                redisTemplate.convertAndSend(INVALIDATION_CHANNEL, VERSION_MESSAGE + next);
+            }
+        } catch (Exception e) {
+            // Other nodes keep serving their entries until the TTL expires
+            log.warn("Could not bump search index version in Redis", e);
+        }
+    }
+
+    /**
+     * Handle index versions broadcast by other nodes
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8).replace("\"", "");
+        if (!body.startsWith(VERSION_MESSAGE)) {
+            return;
+        }
+        try {
+            long next = Long.parseLong(body.substring(VERSION_MESSAGE.length()));
+            if (version.getAndAccumulate(next, Math::max) < next) {
+                l1.invalidateAll();
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed search cache invalidation message: {}", body);
+        }
+    }
+
+    private SearchResponseDto<ProductSearchDocument> loadThroughL2(String hash, SearchRequestDto request,
+            Function<SearchRequestDto, SearchResponseDto<ProductSearchDocument>> loader) {
+        String key = KEY_PREFIX + version.get() + ":" + hash;
+        try {
+            Object cached = redisTemplate.opsForValue().get(key);
+            if (cached instanceof String json) {
+                l2Hits.increment();
+                return objectMapper.readValue(json, RESPONSE_TYPE);
+            }
+        } catch (Exception e) {
+            log.warn("Could not read search results from Redis cache, searching the index", e);
+        }
+        l2Misses.increment();
+
+        SearchResponseDto<ProductSearchDocument> response = loader.apply(request);
+        try {
+            // Stored as a JSON string so documents round-trip with the application's date handling
+            redisTemplate.opsForValue().set(key, objectMapper.writeValueAsString(response), l2Ttl);
+        } catch (Exception e) {
+            log.warn("Could not write search results to Redis cache", e);
+        }
+        return response;
+    }
+
+    /**
+     * @param request Search request
+     * @return Hex SHA-256 of the normalized request
+     */
+    String hash(SearchRequestDto request) {
+        ObjectNode normalized = objectMapper.valueToTree(request);
+        IGNORED_FIELDS.forEach(normalized::remove);
+        normalized.put("query", normalizeQuery(request.getQuery()));
+        if (normalized.get("filters") instanceof ObjectNode filters) {
+            UNORDERED_FILTERS.forEach(field -> {
+                if (filters.get(field) instanceof ArrayNode values) {
+                    List<JsonNode> sorted = new ArrayList<>();
+                    values.forEach(sorted::add);
+                    sorted.sort((a, b) -> a.asText().compareTo(b.asText()));
+                    values.removeAll();
+                    values.addAll(sorted);
+                }
+            });
+        }
+        try {
+            byte[] canonical = objectMapper.writeValueAsBytes(sortedFields(normalized));
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(canonical));
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Failed to hash search request", e);
+        }
+    }
+
+    private static String normalizeQuery(String query) {
+        return query == null ? "" : query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Object nodes keep insertion order, so rebuild them with their fields sorted
+     */
+    private JsonNode sortedFields(JsonNode node) {
+        if (node instanceof ObjectNode object) {
+            ObjectNode sorted = objectMapper.createObjectNode();
+            List<String> names = new ArrayList<>();
+            object.fieldNames().forEachRemaining(names::add);
+            names.sort(null);
+            names.forEach(name -> sorted.set(name, sortedFields(object.get(name))));
+            return sorted;
+        }
+        if (node instanceof ArrayNode array) {
+            ArrayNode copy = objectMapper.createArrayNode();
+            array.forEach(element -> copy.add(sortedFields(element)));
+            return copy;
+        }
+        return node;
+    }
+}
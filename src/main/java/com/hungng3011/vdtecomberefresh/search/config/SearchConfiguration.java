@@ -6,6 +6,8 @@ import org.springframework.data.elasticsearch.client.ClientConfiguration;
 import org.springframework.data.elasticsearch.client.elc.ElasticsearchConfiguration;
 import org.springframework.data.elasticsearch.repository.config.EnableElasticsearchRepositories;
 
+import java.time.Duration;
+
 /**
  * Elasticsearch configuration for full-text search
  */
@@ -28,12 +30,15 @@ public class SearchConfiguration extends ElasticsearchConfiguration {
     @Value("${elasticsearch.use-ssl:false}")
     private boolean useSsl;
     
+    @Value("${elasticsearch.timeout:30s}")
+    private Duration timeout;
+    
     @Override
     public ClientConfiguration clientConfiguration() {
         var builder = ClientConfiguration.builder()
             .connectedTo(elasticsearchHost + ":" + elasticsearchPort)
-            .withConnectTimeout(java.time.Duration.ofSeconds(30))
-            .withSocketTimeout(java.time.Duration.ofSeconds(30));
+            .withConnectTimeout(timeout)
+            .withSocketTimeout(timeout);
         
         // Add authentication if credentials are provided
         if (!username.isEmpty() && !password.isEmpty()) {
@@ -1,5 +1,6 @@
 package com.hungng3011.vdtecomberefresh.search.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hungng3011.vdtecomberefresh.search.documents.ProductSearchDocument;
 import com.hungng3011.vdtecomberefresh.search.dtos.SearchRequestDto;
 import com.hungng3011.vdtecomberefresh.search.dtos.SearchResponseDto;
@@ -13,9 +14,13 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import org.apache.hc.core5.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Map;
 
@@ -31,6 +36,9 @@ public class ProductSearchController {
     
     private final ProductSearchService productSearchService;
     private final SearchAnalyticsService searchAnalyticsService;
+    private final ObjectMapper objectMapper;
+    
+    private static final String NDJSON = "application/x-ndjson";
     
     /**
      * Advanced product search with full-text search capabilities
@@ -98,6 +106,9 @@ public class ProductSearchController {
             @Parameter(description = "Page size")
             @RequestParam(defaultValue = "20") Integer size,
             
+            @Parameter(description = "Cursor from the previous page's metadata; replaces page")
+            @RequestParam(required = false) String cursor,
+            
             @Parameter(description = "Sort by")
             @RequestParam(defaultValue = "relevance") String sortBy,
             
@@ -111,7 +122,10 @@ public class ProductSearchController {
             @RequestParam(defaultValue = "false") Boolean facets,
             
             @Parameter(description = "Highlight results")
-            @RequestParam(defaultValue = "true") Boolean highlight) {
+            @RequestParam(defaultValue = "true") Boolean highlight,
+            
+            @Parameter(description = "Skip the result cache")
+            @RequestParam(defaultValue = "false") Boolean bypassCache) {
         
         log.info("Quick search: query='{}', type={}", q, type);
         
@@ -130,16 +144,43 @@ public class ProductSearchController {
             .filters(filters)
             .page(page)
             .size(size)
+            .cursor(cursor)
             .sortBy(sortBy)
             .sortDirection(sortDirection)
             .includeSuggestions(suggestions)
             .includeFacets(facets)
             .highlightResults(highlight)
+            .bypassCache(bypassCache)
             .build();
         
         return searchProducts(request);
     }
     
+    /**
+     * Stream every matching product for catalog feeds
+     */
+    @PostMapping(value = "/products/scroll", produces = NDJSON)
+    @Operation(
+        summary = "Stream all matching products",
+        description = "Export every product matching the query and filters as newline-delimited JSON, read from a point-in-time snapshot in ID order. Paging, sorting, suggestions and facets are ignored; an empty query matches all products"
+    )
+    public ResponseEntity<StreamingResponseBody> scrollProducts(
+            @RequestBody(required = false) SearchRequestDto request) {
+        
+        SearchRequestDto scrollRequest = request != null ? request : new SearchRequestDto();
+        log.info("Product scroll request: query='{}', filters={}", scrollRequest.getQuery(), scrollRequest.getFilters());
+        
+        StreamingResponseBody body = out -> productSearchService.scrollAll(scrollRequest, document -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(document));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+    
     /**
      * Get search suggestions for autocomplete
      */
@@ -153,13 +194,16 @@ public class ProductSearchController {
             @RequestParam String q,
             
             @Parameter(description = "Maximum number of suggestions")
-            @RequestParam(defaultValue = "10") Integer limit) {
+            @RequestParam(defaultValue = "10") Integer limit,
+            
+            @Parameter(description = "Only suggest products from this category")
+            @RequestParam(required = false) Long categoryId) {
         
         log.debug("Getting suggestions for query: '{}'", q);
         
         try {
             List<SearchResponseDto.SearchSuggestion> suggestions = 
-                productSearchService.getSuggestions(q, limit);
+                productSearchService.getSuggestions(q, limit, categoryId);
             
             return ResponseEntity.ok(suggestions);
             
@@ -204,12 +248,15 @@ public class ProductSearchController {
     )
     public ResponseEntity<List<String>> getPopularQueries(
             @Parameter(description = "Maximum number of queries to return")
-            @RequestParam(defaultValue = "10") Integer limit) {
+            @RequestParam(defaultValue = "10") Integer limit,
+            
+            @Parameter(description = "Period to rank: the current hour, the last 24 hours or the last 7 days")
+            @RequestParam(defaultValue = "WEEK") SearchAnalyticsService.QueryWindow window) {
         
-        log.debug("Getting popular queries");
+        log.debug("Getting popular queries for the last {}", window);
         
         try {
-            List<String> popularQueries = searchAnalyticsService.getPopularQueries(limit);
+            List<String> popularQueries = searchAnalyticsService.getPopularQueries(window, limit);
             return ResponseEntity.ok(popularQueries);
             
         } catch (Exception e) {
@@ -281,12 +328,15 @@ public class ProductSearchController {
     )
     public ResponseEntity<List<String>> getFailedQueries(
             @Parameter(description = "Maximum number of queries to return")
-            @RequestParam(defaultValue = "20") Integer limit) {
+            @RequestParam(defaultValue = "20") Integer limit,
+            
+            @Parameter(description = "Period to rank: the current hour, the last 24 hours or the last 7 days")
+            @RequestParam(defaultValue = "WEEK") SearchAnalyticsService.QueryWindow window) {
         
-        log.debug("Getting failed queries");
+        log.debug("Getting failed queries for the last {}", window);
         
         try {
-            List<String> failedQueries = searchAnalyticsService.getFailedQueries(limit);
+            List<String> failedQueries = searchAnalyticsService.getFailedQueries(window, limit);
             return ResponseEntity.ok(failedQueries);
             
         } catch (Exception e) {
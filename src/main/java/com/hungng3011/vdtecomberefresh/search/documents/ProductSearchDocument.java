@@ -168,6 +168,9 @@ public class ProductSearchDocument {
     @Field(type = FieldType.Integer)
     private Integer viewCount;
     
+    @Field(type = FieldType.Integer)
+    private Integer clickCount;
+    
     @Field(type = FieldType.Integer)
     private Integer orderCount;
     
@@ -223,9 +226,23 @@ public class ProductSearchDocument {
     private String status;
     
     /**
-     * Suggest fields for autocomplete functionality
+     * Completion context holding the product's category ID
+     */
+    public static final String CATEGORY_CONTEXT = "category";
+    
+    /**
+     * Category context value every product is indexed with; Elasticsearch requires a context on every
+     * completion query against a context-enabled field
+     */
+    public static final String ALL_CATEGORIES = "all";
+    
+    /**
+     * Suggest fields for autocomplete functionality. Each input carries the product's category and
+     * {@link #ALL_CATEGORIES} as "category" contexts, so suggestions can be scoped to a category or not.
      */
-    @CompletionField(maxInputLength = 100)
+    @CompletionField(maxInputLength = 100, contexts = {
+        @CompletionContext(name = CATEGORY_CONTEXT, type = CompletionContext.ContextMappingType.CATEGORY)
+    })
     private Completion suggest;
     
     @Data
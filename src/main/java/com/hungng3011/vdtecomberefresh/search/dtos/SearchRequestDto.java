@@ -48,6 +48,18 @@ public class SearchRequestDto {
     @Builder.Default
     private Integer size = 20;
     
+    /**
+     * Sort values of the last result of the previous page, from {@code metadata.searchAfter};
+     * when set, {@code page} is ignored
+     */
+    private List<Object> searchAfter;
+    
+    /**
+     * Opaque token from {@code metadata.cursor} of the previous page; when set, {@code page} is ignored.
+     * Send it with the same query, filters and sort as the request that returned it
+     */
+    private String cursor;
+    
     /**
      * Sorting options
      */
@@ -75,6 +87,12 @@ public class SearchRequestDto {
     @Builder.Default
     private Boolean highlightResults = true;
     
+    /**
+     * Skip the search result cache and read straight from the index
+     */
+    @Builder.Default
+    private Boolean bypassCache = false;
+    
     /**
      * Search type enumeration
      */
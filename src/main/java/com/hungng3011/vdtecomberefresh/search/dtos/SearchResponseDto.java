@@ -60,6 +60,9 @@ public class SearchResponseDto<T> {
         private Boolean hasNext;
         private Boolean hasPrevious;
         private String scrollId; // for deep pagination
+        private List<Object> searchAfter; // sort values of the last result, to request the next page
+        private String cursor; // opaque token for the next page, null on the last page
+        private Boolean degraded; // true when answered from the database because the search index is unavailable
     }
     
     /**
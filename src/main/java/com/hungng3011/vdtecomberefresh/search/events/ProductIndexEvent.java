@@ -0,0 +1,62 @@
+package com.hungng3011.vdtecomberefresh.search.events;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A write that changes what the search index should contain for some products.
+ *
+ * Published inside the writing transaction; {@link com.hungng3011.vdtecomberefresh.search.services.ProductIndexSyncService}
+ * receives it only after the transaction commits, so rolled-back writes never reach the index.
+ *
+ * @param action Whether the products must be re-read and indexed, or removed from the index
+ * @param productIds Affected products; empty for a category event
+ * @param categoryId Category whose products are all affected, or null
+ * @param source Kind of write that caused the event (product, stock, category, order), used as a metric tag
+ * @param occurredAt When the write happened, the start of the index lag
+ */
+public record ProductIndexEvent(Action action, Set<Long> productIds, Long categoryId, String source,
+                                Instant occurredAt) {
+
+    public enum Action {
+        UPSERT,
+        DELETE
+    }
+
+    /**
+     * @param source Kind of write
+     * @param productIds Products to re-read and index
+     * @return The event
+     */
+    public static ProductIndexEvent upsert(String source, Collection<Long> productIds) {
+        return new ProductIndexEvent(Action.UPSERT, Set.copyOf(productIds), null, source, Instant.now());
+    }
+
+    /**
+     * @param source Kind of write
+     * @param productId Product to re-read and index
+     * @return The event
+     */
+    public static ProductIndexEvent upsert(String source, Long productId) {
+        return upsert(source, List.of(productId));
+    }
+
+    /**
+     * @param source Kind of write
+     * @param productId Product to remove from the index
+     * @return The event
+     */
+    public static ProductIndexEvent delete(String source, Long productId) {
+        return new ProductIndexEvent(Action.DELETE, Set.of(productId), null, source, Instant.now());
+    }
+
+    /**
+     * @param categoryId Category whose products must all be re-read and indexed, e.g. after a rename
+     * @return The event
+     */
+    public static ProductIndexEvent category(Long categoryId) {
+        return new ProductIndexEvent(Action.UPSERT, Set.of(), categoryId, "category", Instant.now());
+    }
+}
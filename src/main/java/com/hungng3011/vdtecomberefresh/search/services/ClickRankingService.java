@@ -0,0 +1,161 @@
+package com.hungng3011.vdtecomberefresh.search.services;
+
+import com.hungng3011.vdtecomberefresh.search.cache.SearchResultCache;
+import com.hungng3011.vdtecomberefresh.search.services.SearchAnalyticsService.ClickStats;
+import com.hungng3011.vdtecomberefresh.search.services.SearchAnalyticsService.ClickTotals;
+import com.hungng3011.vdtecomberefresh.search.utils.SearchConstants;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns search clicks into each product's {@code searchRankingScore}, which the search query multiplies into
+ * relevance alongside popularity.
+ *
+ * Products high in the results get clicked more whatever their merit, so raw click-through rates mostly reflect
+ * position. {@link SearchAnalyticsService} therefore weights every impression by the chance a result at that
+ * position is looked at; a product's clicks over those examinations is its position-debiased click-through rate.
+ * Both are counted over the last {@code window-days} days, so old behavior ages out. The rate is smoothed towards
+ * the catalog average with {@code prior-examinations} pseudo-examinations, so a product seen a few times does not
+ * jump on one click, then divided by that average and clamped to {@code [min-score, max-score]}: 1 is an average
+ * product, 2 one clicked twice as often as expected.
+ *
+ * Each run rescores only the products shown or clicked in search since the previous run, reading their statistics
+ * {@code batch-size} products at a time, so its cost follows search traffic rather than the catalog size.
+ * Scores are kept to two decimals and those that did not change are left alone. The rest are stored in Redis, where
+ * {@link ProductSignalLoader} picks them up when products are reindexed, and written to the live index with
+ * partial bulk updates of that one field, so the query does no extra work to use them.
+ *
+ * Metrics: {@code search.ranking.clicks.updated} (scores written) and {@code search.ranking.clicks.failures}
+ * (documents the index rejected, e.g. products deleted since they were shown).
+ */
+@Service
+@Slf4j
+public class ClickRankingService {
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final SearchAnalyticsService searchAnalyticsService;
+    private final SearchResultCache searchResultCache;
+    private final double priorExaminations;
+    private final float minScore;
+    private final float maxScore;
+    private final int batchSize;
+    private final Counter updated;
+    private final Counter failures;
+
+    public ClickRankingService(ElasticsearchOperations elasticsearchOperations,
+                               SearchAnalyticsService searchAnalyticsService,
+                               SearchResultCache searchResultCache,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.search.ranking.clicks.prior-examinations:50}") double priorExaminations,
+                               @Value("${app.search.ranking.clicks.min-score:0.5}") float minScore,
+                               @Value("${app.search.ranking.clicks.max-score:3.0}") float maxScore,
+                               @Value("${app.search.ranking.clicks.batch-size:500}") int batchSize) {
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.searchAnalyticsService = searchAnalyticsService;
+        this.searchResultCache = searchResultCache;
+        this.priorExaminations = priorExaminations;
+        this.minScore = minScore;
+        this.maxScore = maxScore;
+        this.batchSize = batchSize;
+        this.updated = Counter.builder("search.ranking.clicks.updated").register(meterRegistry);
+        this.failures = Counter.builder("search.ranking.clicks.failures").register(meterRegistry);
+    }
+
+    /**
+     * Recompute the click ranking scores of the products shown or clicked since the previous run and write the
+     * ones that changed
+     * @return Number of products whose score changed
+     */
+    @Scheduled(cron = "${app.search.ranking.clicks.cron:0 15 * * * *}")
+    public int updateRankingScores() {
+        try {
+            ClickTotals totals = searchAnalyticsService.getClickTotals();
+            if (totals.clicks() == 0 || totals.examinations() <= 0) {
+                log.debug("No search clicks to rank products by");
+                return 0;
+            }
+            double averageRate = totals.clicks() / totals.examinations();
+
+            int updatedProducts = 0;
+            List<Long> productIds;
+            do {
+                productIds = searchAnalyticsService.takeProductsToRank(batchSize);
+                Map<Long, Float> changed = computeChangedScores(searchAnalyticsService.getClickStats(productIds),
+                    averageRate);
+                if (!changed.isEmpty()) {
+                    // Stored first, so a reindex running alongside never loses a score the index has already seen
+                    searchAnalyticsService.saveRankingScores(changed);
+                    bulkUpdate(changed);
+                    updatedProducts += changed.size();
+                }
+            } while (productIds.size() == batchSize);
+
+            if (updatedProducts == 0) {
+                log.debug("No click ranking score changed");
+                return 0;
+            }
+            searchResultCache.bumpIndexVersion();
+            log.info("Updated click ranking scores of {} products", updatedProducts);
+            return updatedProducts;
+        } catch (Exception e) {
+            log.error("Failed to update click ranking scores", e);
+            return 0;
+        }
+    }
+
+    /**
+     * @param stats Click statistics per product
+     * @param averageRate Catalog-wide clicks per examination
+     * @return New scores of the products whose score changed at two decimals, in product ID order
+     */
+    Map<Long, Float> computeChangedScores(Map<Long, ClickStats> stats, double averageRate) {
+        Map<Long, Float> changed = new LinkedHashMap<>();
+        stats.entrySet().stream()
+            .sorted(Map.Entry.comparingByKey())
+            .forEach(entry -> {
+                ClickStats product = entry.getValue();
+                double rate = (product.clicks() + priorExaminations * averageRate)
+                    / (product.examinations() + priorExaminations);
+                int hundredths = Math.round(clamp((float) (rate / averageRate)) * 100);
+                float previous = product.rankingScore() != null ? product.rankingScore() : 1.0f;
+                if (hundredths != Math.round(previous * 100)) {
+                    changed.put(entry.getKey(), hundredths / 100f);
+                }
+            });
+        return changed;
+    }
+
+    private void bulkUpdate(Map<Long, Float> scores) {
+        List<UpdateQuery> batch = new ArrayList<>(scores.size());
+        scores.forEach((productId, score) -> batch.add(UpdateQuery.builder(productId.toString())
+            .withDocument(Document.create().append(SearchConstants.Fields.SEARCH_RANKING_SCORE, score))
+            .build()));
+        try {
+            elasticsearchOperations.bulkUpdate(batch, IndexCoordinates.of(SearchConstants.PRODUCTS_INDEX));
+            updated.increment(batch.size());
+        } catch (BulkFailureException e) {
+            int failed = e.getFailedDocuments().size();
+            failures.increment(failed);
+            updated.increment(batch.size() - failed);
+            log.warn("Index rejected {} of {} click ranking updates: {}", failed, batch.size(),
+                e.getFailedDocuments().keySet());
+        }
+    }
+
+    private float clamp(float score) {
+        return Math.max(minScore, Math.min(maxScore, score));
+    }
+}
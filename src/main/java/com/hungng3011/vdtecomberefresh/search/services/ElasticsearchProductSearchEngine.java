@@ -0,0 +1,380 @@
+package com.hungng3011.vdtecomberefresh.search.services;
+
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import com.hungng3011.vdtecomberefresh.category.cache.CategoryCatalogCache;
+import com.hungng3011.vdtecomberefresh.category.dtos.CategoryDto;
+import com.hungng3011.vdtecomberefresh.search.documents.ProductSearchDocument;
+import com.hungng3011.vdtecomberefresh.search.dtos.SearchRequestDto;
+import com.hungng3011.vdtecomberefresh.search.dtos.SearchResponseDto;
+import com.hungng3011.vdtecomberefresh.search.exceptions.SearchServiceUnavailableException;
+import com.hungng3011.vdtecomberefresh.search.exceptions.SearchValidationException;
+import com.hungng3011.vdtecomberefresh.search.utils.SearchConstants;
+import com.hungng3011.vdtecomberefresh.search.utils.SearchCursor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.data.elasticsearch.core.suggest.response.Suggest;
+import org.springframework.data.elasticsearch.core.suggest.response.TermSuggestion;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Product search on Elasticsearch. Every request is a {@link NativeQuery} assembled by
+ * {@link ProductSearchQueryBuilder} from the Java client's typed query, aggregation and suggester builders, so
+ * there are no JSON templates to fill in and parse, and one round trip returns the hits with their facets,
+ * suggestions and highlights.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ElasticsearchProductSearchEngine implements ProductSearchEngine {
+    
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final ProductSearchQueryBuilder productSearchQueryBuilder;
+    private final CategoryCatalogCache categoryCatalogCache;
+    
+    @Value("${app.search.pagination.point-in-time-keep-alive:2m}")
+    private Duration pointInTimeKeepAlive = Duration.ofMinutes(2);
+    
+    @Value("${app.search.scroll.batch-size:1000}")
+    private int scrollBatchSize = 1000;
+    
+    @Override
+    public SearchResponseDto<ProductSearchDocument> search(SearchRequestDto request, SearchCursor cursor) {
+        long startTime = System.currentTimeMillis();
+        
+        try {
+            SearchHits<ProductSearchDocument> results = performSearch(request, cursor);
+            
+            // Build response
+            return buildSearchResponse(
+                results, 
+                request, 
+                nextCursor(results, request),
+                System.currentTimeMillis() - startTime
+            );
+            
+        } catch (Exception e) {
+            if (cursor != null && isExpiredPointInTime(e)) {
+                throw new SearchValidationException("Search cursor has expired, start again from the first page", e);
+            }
+            log.error("Error performing search for query: '{}'", request.getQuery(), e);
+            throw new SearchServiceUnavailableException("Search service temporarily unavailable", e);
+        }
+    }
+    
+    @Override
+    public List<SearchResponseDto.SearchSuggestion> complete(String prefix, int limit, Long categoryId) {
+        NativeQuery completionQuery = productSearchQueryBuilder.buildCompletionQuery(
+            prefix, limit, categoryId != null ? List.of(categoryId) : null);
+        Suggest suggest = elasticsearchOperations.search(completionQuery, ProductSearchDocument.class).getSuggest();
+        List<SearchResponseDto.SearchSuggestion> completions = new ArrayList<>(limit);
+        if (suggest != null) {
+            addSuggestions(completions, new HashSet<>(), suggest.getSuggestion(ProductSearchQueryBuilder.COMPLETION_SUGGESTION),
+                SearchResponseDto.SearchSuggestion.SuggestionType.COMPLETION);
+        }
+        return completions;
+    }
+    
+    /**
+     * Reads a point-in-time snapshot in {@code search_after} batches sorted by ID, without scoring, total hit
+     * counting or an offset limit; the request's paging, sorting, suggestion and facet options are ignored.
+     */
+    @Override
+    public long scroll(SearchRequestDto request, Consumer<ProductSearchDocument> consumer) {
+        long startTime = System.currentTimeMillis();
+        long streamed = 0;
+        
+        String pointInTimeId = elasticsearchOperations.openPointInTime(
+            IndexCoordinates.of(SearchConstants.PRODUCTS_INDEX), pointInTimeKeepAlive);
+        try {
+            List<Object> searchAfter = null;
+            while (true) {
+                NativeQuery query = productSearchQueryBuilder.buildScrollQuery(request, searchAfter, scrollBatchSize);
+                query.setPointInTime(new Query.PointInTime(pointInTimeId, pointInTimeKeepAlive));
+                SearchHits<ProductSearchDocument> batch = elasticsearchOperations.search(query, ProductSearchDocument.class);
+                if (batch.getPointInTimeId() != null) {
+                    pointInTimeId = batch.getPointInTimeId();
+                }
+                
+                List<SearchHit<ProductSearchDocument>> hits = batch.getSearchHits();
+                hits.forEach(hit -> consumer.accept(hit.getContent()));
+                streamed += hits.size();
+                if (hits.size() < scrollBatchSize) {
+                    break;
+                }
+                searchAfter = hits.get(hits.size() - 1).getSortValues();
+            }
+        } finally {
+            closePointInTime(pointInTimeId);
+        }
+        
+        log.info("Streamed {} products for query '{}' in {}ms", streamed, request.getQuery(),
+            System.currentTimeMillis() - startTime);
+        return streamed;
+    }
+    
+    /**
+     * Perform the actual search: text query, filters, boosting, sorting and paging in one request
+     */
+    private SearchHits<ProductSearchDocument> performSearch(SearchRequestDto request, SearchCursor cursor) {
+        String pointInTimeId = null;
+        if (cursor != null) {
+            request.setSearchAfter(cursor.searchAfter());
+            // The point-in-time is opened when the second page is requested, so searches that never page
+            // further do not hold one open on the cluster
+            pointInTimeId = cursor.pointInTimeId() != null
+                ? cursor.pointInTimeId()
+                : elasticsearchOperations.openPointInTime(IndexCoordinates.of(SearchConstants.PRODUCTS_INDEX), pointInTimeKeepAlive);
+        }
+        
+        NativeQuery query = productSearchQueryBuilder.build(request);
+        if (pointInTimeId != null) {
+            query.setPointInTime(new Query.PointInTime(pointInTimeId, pointInTimeKeepAlive));
+        }
+        return elasticsearchOperations.search(query, ProductSearchDocument.class);
+    }
+    
+    /**
+     * Encode the position after this page, or close the point-in-time when this was the last page
+     * @return Token for the next page, or null when there is none
+     */
+    private String nextCursor(SearchHits<ProductSearchDocument> results, SearchRequestDto request) {
+        List<SearchHit<ProductSearchDocument>> hits = results.getSearchHits();
+        if (hits.size() < request.getSize()) {
+            closePointInTime(results.getPointInTimeId());
+            return null;
+        }
+        return new SearchCursor(results.getPointInTimeId(), hits.get(hits.size() - 1).getSortValues()).encode();
+    }
+    
+    private void closePointInTime(String pointInTimeId) {
+        if (pointInTimeId == null) {
+            return;
+        }
+        try {
+            elasticsearchOperations.closePointInTime(pointInTimeId);
+        } catch (Exception e) {
+            // It expires on its own after the keep-alive
+            log.warn("Failed to close point-in-time", e);
+        }
+    }
+    
+    private static boolean isExpiredPointInTime(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            String message = cause.getMessage();
+            if (message != null && (message.contains("search_context_missing_exception")
+                || message.contains("No search context found"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Build the final search response
+     */
+    private SearchResponseDto<ProductSearchDocument> buildSearchResponse(
+        SearchHits<ProductSearchDocument> results, 
+        SearchRequestDto request, 
+        String nextCursor,
+        long searchTime) {
+        
+        List<SearchHit<ProductSearchDocument>> hits = results.getSearchHits();
+        int totalPages = (int) Math.ceil((double) results.getTotalHits() / request.getSize());
+        boolean cursorPaging = request.getCursor() != null
+            || (request.getSearchAfter() != null && !request.getSearchAfter().isEmpty());
+        
+        SearchResponseDto.SearchMetadata metadata = SearchResponseDto.SearchMetadata.builder()
+            .query(request.getQuery())
+            .totalHits(results.getTotalHits())
+            .page(request.getPage())
+            .size(request.getSize())
+            .totalPages(totalPages)
+            .maxScore(Float.isNaN(results.getMaxScore()) ? null : (double) results.getMaxScore())
+            .searchTime(searchTime)
+            .hasNext(hits.size() == request.getSize()
+                && (cursorPaging || (long) (request.getPage() + 1) * request.getSize() < results.getTotalHits()))
+            .hasPrevious(!cursorPaging && request.getPage() > 0)
+            .searchAfter(hits.isEmpty() ? null : hits.get(hits.size() - 1).getSortValues())
+            .cursor(nextCursor)
+            .build();
+        
+        SearchResponseDto.SearchResponseDtoBuilder<ProductSearchDocument> responseBuilder = SearchResponseDto.<ProductSearchDocument>builder()
+            .results(hits.stream().map(SearchHit::getContent).collect(Collectors.toList()))
+            .metadata(metadata);
+        
+        // Suggestions, facets and highlights come back with the hits, from the same request
+        if (request.getIncludeSuggestions()) {
+            responseBuilder.suggestions(toSuggestions(results.getSuggest()));
+        }
+        
+        if (request.getIncludeFacets()) {
+            responseBuilder.facets(toFacets(results, request.getFilters()));
+        }
+        
+        responseBuilder.highlights(toHighlights(hits));
+        
+        return responseBuilder.build();
+    }
+    
+    /**
+     * Map the completion and spelling suggesters of a search response; completions come first
+     */
+    private List<SearchResponseDto.SearchSuggestion> toSuggestions(Suggest suggest) {
+        if (suggest == null) {
+            return Collections.emptyList();
+        }
+        List<SearchResponseDto.SearchSuggestion> suggestions = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        addSuggestions(suggestions, seen, suggest.getSuggestion(ProductSearchQueryBuilder.COMPLETION_SUGGESTION),
+            SearchResponseDto.SearchSuggestion.SuggestionType.COMPLETION);
+        addSuggestions(suggestions, seen, suggest.getSuggestion(ProductSearchQueryBuilder.SPELLING_SUGGESTION),
+            SearchResponseDto.SearchSuggestion.SuggestionType.SPELL_CHECK);
+        return suggestions;
+    }
+    
+    private void addSuggestions(List<SearchResponseDto.SearchSuggestion> suggestions, Set<String> seen,
+                                Suggest.Suggestion<? extends Suggest.Suggestion.Entry<? extends Suggest.Suggestion.Entry.Option>> suggestion,
+                                SearchResponseDto.SearchSuggestion.SuggestionType type) {
+        if (suggestion == null) {
+            return;
+        }
+        for (Suggest.Suggestion.Entry<? extends Suggest.Suggestion.Entry.Option> entry : suggestion.getEntries()) {
+            for (Suggest.Suggestion.Entry.Option option : entry.getOptions()) {
+                if (option.getText() == null || !seen.add(option.getText().toLowerCase())) {
+                    continue;
+                }
+                suggestions.add(SearchResponseDto.SearchSuggestion.builder()
+                    .text(option.getText())
+                    .score(option.getScore())
+                    .type(type)
+                    .frequency(option instanceof TermSuggestion.Entry.Option term ? (long) term.getFreq() : null)
+                    .build());
+            }
+        }
+    }
+    
+    /**
+     * Map the facet aggregations of a search response, marking the buckets the filters select
+     */
+    private Map<String, List<SearchResponseDto.FacetResult>> toFacets(SearchHits<ProductSearchDocument> results,
+                                                                    SearchRequestDto.SearchFilters filters) {
+        if (!(results.getAggregations() instanceof ElasticsearchAggregations aggregations)) {
+            return Collections.emptyMap();
+        }
+        Map<String, Aggregate> aggregates = new HashMap<>();
+        aggregations.aggregationsAsMap().forEach((name, aggregation) ->
+            aggregates.put(name, aggregation.aggregation().getAggregate()));
+        Aggregate priced = aggregates.remove(ProductSearchQueryBuilder.PRICED_FACETS);
+        if (priced != null && priced.isFilter()) {
+            aggregates.putAll(priced.filter().aggregations());
+        }
+        
+        List<Long> categoryIds = filters != null ? filters.getCategoryIds() : null;
+        List<String> brands = filters != null ? filters.getBrands() : null;
+        Map<String, List<SearchResponseDto.FacetResult>> facets = new LinkedHashMap<>();
+        facets.put(ProductSearchQueryBuilder.CATEGORIES_FACET,
+            termFacet(aggregates.get(ProductSearchQueryBuilder.CATEGORIES_FACET), categoryIds, this::categoryLabel));
+        facets.put(ProductSearchQueryBuilder.BRANDS_FACET,
+            termFacet(aggregates.get(ProductSearchQueryBuilder.BRANDS_FACET), brands, key -> null));
+        facets.put(ProductSearchQueryBuilder.COLORS_FACET,
+            termFacet(aggregates.get(ProductSearchQueryBuilder.COLORS_FACET), null, key -> null));
+        facets.put(ProductSearchQueryBuilder.SIZES_FACET,
+            termFacet(aggregates.get(ProductSearchQueryBuilder.SIZES_FACET), null, key -> null));
+        facets.put(ProductSearchQueryBuilder.PRICE_RANGES_FACET,
+            priceFacet(aggregates.get(ProductSearchQueryBuilder.PRICE_RANGES_FACET), filters));
+        return facets;
+    }
+    
+    private List<SearchResponseDto.FacetResult> termFacet(Aggregate aggregate, List<?> selectedValues,
+                                                          Function<String, String> labels) {
+        if (aggregate == null) {
+            return Collections.emptyList();
+        }
+        Set<String> selected = selectedValues == null ? Set.of()
+            : selectedValues.stream().map(String::valueOf).collect(Collectors.toSet());
+        List<SearchResponseDto.FacetResult> facet = new ArrayList<>();
+        if (aggregate.isLterms()) {
+            aggregate.lterms().buckets().array().forEach(bucket ->
+                facet.add(facetResult(String.valueOf(bucket.key()), bucket.docCount(), selected, labels)));
+        } else if (aggregate.isSterms()) {
+            aggregate.sterms().buckets().array().forEach(bucket ->
+                facet.add(facetResult(bucket.key().stringValue(), bucket.docCount(), selected, labels)));
+        }
+        return facet;
+    }
+    
+    private static SearchResponseDto.FacetResult facetResult(String key, long count, Set<String> selected,
+                                                             Function<String, String> labels) {
+        String label = labels.apply(key);
+        return SearchResponseDto.FacetResult.builder()
+            .key(key)
+            .count(count)
+            .selected(selected.contains(key))
+            .metadata(label != null ? Map.of("label", label) : null)
+            .build();
+    }
+    
+    private String categoryLabel(String key) {
+        return categoryCatalogCache.getSnapshot().toDto(Long.valueOf(key)).map(CategoryDto::getName).orElse(null);
+    }
+    
+    /**
+     * Price buckets keyed "lower-upper" like the catalog's price facets; a bucket is selected when it
+     * overlaps the requested price range
+     */
+    private static List<SearchResponseDto.FacetResult> priceFacet(Aggregate aggregate,
+                                                                SearchRequestDto.SearchFilters filters) {
+        if (aggregate == null || !aggregate.isRange()) {
+            return Collections.emptyList();
+        }
+        BigDecimal minPrice = filters != null ? filters.getMinPrice() : null;
+        BigDecimal maxPrice = filters != null ? filters.getMaxPrice() : null;
+        return aggregate.range().buckets().array().stream()
+            .map(bucket -> {
+                String key = bucket.key();
+                int separator = key.indexOf('-');
+                BigDecimal lower = separator > 0 ? new BigDecimal(key.substring(0, separator)) : null;
+                BigDecimal upper = separator < key.length() - 1 ? new BigDecimal(key.substring(separator + 1)) : null;
+                boolean selected = (minPrice != null || maxPrice != null)
+                    && (minPrice == null || upper == null || upper.compareTo(minPrice) > 0)
+                    && (maxPrice == null || lower == null || lower.compareTo(maxPrice) <= 0);
+                return SearchResponseDto.FacetResult.builder()
+                    .key(key)
+                    .count(bucket.docCount())
+                    .selected(selected)
+                    .metadata(Map.of("label", upper == null && lower != null ? lower.toPlainString() + "+" : key))
+                    .build();
+            })
+            .collect(Collectors.toList());
+    }
+    
+    /**
+     * Highlighted fragments per product ID
+     */
+    private static Map<String, List<String>> toHighlights(List<SearchHit<ProductSearchDocument>> hits) {
+        Map<String, List<String>> highlights = new LinkedHashMap<>();
+        for (SearchHit<ProductSearchDocument> hit : hits) {
+            List<String> fragments = new ArrayList<>();
+            hit.getHighlightFields().values().forEach(fragments::addAll);
+            if (!fragments.isEmpty() && hit.getId() != null) {
+                highlights.put(hit.getId(), fragments);
+            }
+        }
+        return highlights;
+    }
+}
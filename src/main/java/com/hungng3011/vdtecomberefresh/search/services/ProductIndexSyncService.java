@@ -0,0 +1,185 @@
+package com.hungng3011.vdtecomberefresh.search.services;
+
+import com.hungng3011.vdtecomberefresh.product.repositories.ProductRepository;
+import com.hungng3011.vdtecomberefresh.search.events.ProductIndexEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the search index in step with product, stock, category and order writes.
+ *
+ * Writers publish {@link ProductIndexEvent}s inside their transaction and this service receives them after
+ * commit. Changes are coalesced per product ID until the next flush, so a burst of writes to one product (an
+ * edit followed by stock movements, say) costs a single document write, with the last action winning. Each
+ * flush drains the pending changes in batches and applies every batch with one bulk index request and one
+ * delete request. When the bulk request rejects some documents only those are put back, otherwise the whole
+ * batch is; either way they are retried on the next flush. A change that fails {@code max-attempts} times is
+ * dropped and left to the scheduled incremental reindex, so one bad document cannot be retried forever.
+ *
+ * Metrics: {@code search.index.sync.lag} (write to indexed), {@code search.index.sync.pending},
+ * {@code search.index.sync.events{source}}, {@code search.index.sync.failures} and
+ * {@code search.index.sync.dropped} (changes given up on).
+ */
+@Service
+@Slf4j
+public class ProductIndexSyncService {
+    private final ProductIndexingService productIndexingService;
+    private final ProductRepository productRepository;
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Map<Long, PendingChange> pending = new ConcurrentHashMap<>();
+    private final Timer lag;
+    private final Counter failures;
+    private final Counter dropped;
+
+    public ProductIndexSyncService(ProductIndexingService productIndexingService,
+                                   ProductRepository productRepository,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.search.sync.batch-size:500}") int batchSize,
+                                   @Value("${app.search.sync.max-attempts:5}") int maxAttempts) {
+        this.productIndexingService = productIndexingService;
+        this.productRepository = productRepository;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.lag = Timer.builder("search.index.sync.lag")
+                .description("Time from a product write to its search index update")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.failures = Counter.builder("search.index.sync.failures").register(meterRegistry);
+        this.dropped = Counter.builder("search.index.sync.dropped").register(meterRegistry);
+        Gauge.builder("search.index.sync.pending", pending, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Queue the products affected by a committed write
+     * @param event Index change published by the writer
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductIndexEvent(ProductIndexEvent event) {
+        try {
+            List<Long> productIds = new ArrayList<>(event.productIds());
+            if (event.categoryId() != null) {
+                productIds.addAll(productRepository.findIdsByCategoryId(event.categoryId()));
+            }
+            PendingChange change = new PendingChange(event.action(), event.occurredAt(), 0);
+            for (Long productId : productIds) {
+                pending.merge(productId, change, PendingChange::then);
+            }
+            meterRegistry.counter("search.index.sync.events", "source", event.source()).increment();
+        } catch (Exception e) {
+            // The write is already committed; the scheduled incremental reindex picks the products up later
+            log.error("Failed to queue search index event {}", event, e);
+        }
+    }
+
+    /**
+     * Apply the pending index changes in bulk batches
+     */
+    @Scheduled(fixedDelayString = "${app.search.sync.flush-interval:1s}")
+    public void flush() {
+        while (!pending.isEmpty()) {
+            Map<Long, PendingChange> batch = drain();
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<Long> upserts = new ArrayList<>();
+            List<Long> deletes = new ArrayList<>();
+            batch.forEach((productId, change) ->
+                    (change.action() == ProductIndexEvent.Action.DELETE ? deletes : upserts).add(productId));
+
+            try {
+                productIndexingService.syncProducts(upserts, deletes);
+            } catch (BulkFailureException e) {
+                Set<String> rejected = e.getFailedDocuments().keySet();
+                failures.increment();
+                log.error("Search index rejected {} of {} products, retrying them on the next flush: {}",
+                        rejected.size(), batch.size(), e.getFailedDocuments());
+                Instant now = Instant.now();
+                batch.forEach((productId, change) -> {
+                    if (rejected.contains(productId.toString())) {
+                        retry(productId, change);
+                    } else {
+                        lag.record(Duration.between(change.firstOccurredAt(), now));
+                    }
+                });
+                return;
+            } catch (Exception e) {
+                failures.increment();
+                log.error("Failed to sync {} products to the search index, retrying on the next flush", batch.size(), e);
+                batch.forEach(this::retry);
+                return;
+            }
+
+            Instant now = Instant.now();
+            batch.values().forEach(change -> lag.record(Duration.between(change.firstOccurredAt(), now)));
+        }
+    }
+
+    private void retry(Long productId, PendingChange change) {
+        PendingChange failed = change.failed();
+        if (failed.attempts() >= maxAttempts) {
+            dropped.increment();
+            log.error("Giving up on syncing product {} to the search index after {} attempts, "
+                    + "leaving it to the incremental reindex", productId, failed.attempts());
+            return;
+        }
+        // Changes queued since the drain are newer and take precedence over the failed one
+        pending.merge(productId, failed, (newer, previous) -> previous.then(newer));
+    }
+
+    /**
+     * @return Number of products waiting for the next flush
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private Map<Long, PendingChange> drain() {
+        Map<Long, PendingChange> batch = new LinkedHashMap<>();
+        Iterator<Long> productIds = pending.keySet().iterator();
+        while (productIds.hasNext() && batch.size() < batchSize) {
+            Long productId = productIds.next();
+            PendingChange change = pending.remove(productId);
+            if (change != null) {
+                batch.put(productId, change);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * The latest action for a product, when its oldest unapplied write happened, and how many flushes failed to
+     * apply it
+     */
+    record PendingChange(ProductIndexEvent.Action action, Instant firstOccurredAt, int attempts) {
+
+        PendingChange then(PendingChange later) {
+            Instant first = firstOccurredAt.isBefore(later.firstOccurredAt()) ? firstOccurredAt : later.firstOccurredAt();
+            return new PendingChange(later.action(), first, Math.max(attempts, later.attempts()));
+        }
+
+        PendingChange failed() {
+            return new PendingChange(action, firstOccurredAt, attempts + 1);
+        }
+    }
+}
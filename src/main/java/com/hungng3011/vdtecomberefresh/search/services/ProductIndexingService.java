@@ -1,13 +1,28 @@
 package com.hungng3011.vdtecomberefresh.search.services;
 
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import com.hungng3011.vdtecomberefresh.product.entities.Product;
 import com.hungng3011.vdtecomberefresh.product.repositories.ProductRepository;
+import com.hungng3011.vdtecomberefresh.search.cache.SearchResultCache;
 import com.hungng3011.vdtecomberefresh.search.documents.ProductSearchDocument;
 import com.hungng3011.vdtecomberefresh.search.repositories.ProductSearchRepository;
+import com.hungng3011.vdtecomberefresh.search.services.ProductSignalLoader.ProductSignals;
+import com.hungng3011.vdtecomberefresh.search.utils.SearchConstants;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.index.AliasAction;
+import org.springframework.data.elasticsearch.core.index.AliasActionParameters;
+import org.springframework.data.elasticsearch.core.index.AliasActions;
+import org.springframework.data.elasticsearch.core.index.AliasData;
+import org.springframework.data.elasticsearch.core.index.Settings;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -16,7 +31,14 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 /**
@@ -29,6 +51,25 @@ public class ProductIndexingService {
     
     private final ProductRepository productRepository;
     private final ProductSearchRepository productSearchRepository;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final ElasticsearchClient elasticsearchClient;
+    private final ProductSignalLoader productSignalLoader;
+    private final SearchResultCache searchResultCache;
+
+    private static final DateTimeFormatter INDEX_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    @Value("${app.search.reindex.batch-size:1000}")
+    private int reindexBatchSize = 1000;
+
+    @Value("${app.search.reindex.parallelism:4}")
+    private int reindexParallelism = 4;
+
+    @Value("${app.search.ranking.best-seller-min-orders:50}")
+    private int bestSellerMinOrders = 50;
+
+    private final AtomicBoolean reindexRunning = new AtomicBoolean();
+    private final Set<Long> touchedDuringReindex = ConcurrentHashMap.newKeySet();
+    private volatile String reindexTarget;
     
     /**
      * Index a single product
@@ -36,8 +77,9 @@ public class ProductIndexingService {
     @Async
     public void indexProduct(Product product) {
         try {
-            ProductSearchDocument document = convertToSearchDocument(product);
-            productSearchRepository.save(document);
+            ProductSignals signals = productSignalLoader.load(List.of(product.getId()))
+                .getOrDefault(product.getId(), ProductSignals.NONE);
+            productSearchRepository.save(convertToSearchDocument(product, signals));
             
             log.debug("Indexed product: {} (ID: {})", product.getName(), product.getId());
         } catch (Exception e) {
@@ -51,8 +93,9 @@ public class ProductIndexingService {
     @Async
     public void indexProducts(List<Product> products) {
         try {
+            Map<Long, ProductSignals> signals = loadSignals(products);
             List<ProductSearchDocument> documents = products.stream()
-                .map(this::convertToSearchDocument)
+                .map(product -> convertToSearchDocument(product, signals.getOrDefault(product.getId(), ProductSignals.NONE)))
                 .collect(Collectors.toList());
                 
             productSearchRepository.saveAll(documents);
@@ -77,42 +120,189 @@ public class ProductIndexingService {
     }
     
     /**
-     * Full reindex of all products - scheduled to run daily at 2 AM
+     * Full reindex of all products - scheduled to run daily at 2 AM.
+     *
+     * Builds a fresh timestamped index behind the {@code products} alias while searches keep hitting the current
+     * one: the new index is created with refresh disabled and no replicas, filled from parallel keyset slices of
+     * the product table, caught up with the writes synced meanwhile, then given its normal refresh interval and
+     * replicas and swapped in with a single alias update. The previous index is deleted after the swap; on
+     * failure the half-built index is dropped and the current one stays live.
      */
-    @Scheduled(cron = "0 0 2 * * *")
-    @Transactional(readOnly = true)
+    @Scheduled(cron = "${app.search.reindex.cron:0 0 2 * * *}")
     public void fullReindex() {
-        log.info("Starting full product reindex");
-        
+        if (!reindexRunning.compareAndSet(false, true)) {
+            log.warn("Full reindex already running, skipping");
+            return;
+        }
+        String newIndex = SearchConstants.PRODUCTS_INDEX + "_" + LocalDateTime.now().format(INDEX_SUFFIX);
+        log.info("Starting full product reindex into {}", newIndex);
+        long startTime = System.currentTimeMillis();
+
         try {
-            // Clear existing index
-            productSearchRepository.deleteAll();
-            
-            int batchSize = 1000;
-            int page = 0;
-            long totalProcessed = 0;
-            
-            Page<Product> productPage;
-            do {
-                productPage = productRepository.findAll(Pageable.ofSize(batchSize).withPage(page));
-                
-                if (!productPage.isEmpty()) {
-                    indexProducts(productPage.getContent());
-                    totalProcessed += productPage.getNumberOfElements();
-                    
-                    log.info("Processed {} products (Total: {})", 
-                        productPage.getNumberOfElements(), totalProcessed);
-                }
-                
-                page++;
-                
-            } while (productPage.hasNext());
-            
-            log.info("Full reindex completed. Total products indexed: {}", totalProcessed);
-            
+            IndexOperations templateOps = elasticsearchOperations.indexOps(ProductSearchDocument.class);
+            Settings settings = templateOps.createSettings().flatten();
+            String refreshInterval = String.valueOf(settings.getOrDefault("index.refresh_interval", "1s"));
+            String replicas = String.valueOf(settings.getOrDefault("index.number_of_replicas", "1"));
+            settings.put("index.refresh_interval", "-1");
+            settings.put("index.number_of_replicas", "0");
+
+            IndexOperations newIndexOps = elasticsearchOperations.indexOps(IndexCoordinates.of(newIndex));
+            newIndexOps.create(settings, templateOps.createMapping());
+            touchedDuringReindex.clear();
+            reindexTarget = newIndex;
+
+            long totalProcessed = indexAllSlices(newIndex);
+            catchUp(newIndex);
+
+            elasticsearchClient.indices().putSettings(r -> r
+                .index(newIndex)
+                .settings(s -> s
+                    .refreshInterval(t -> t.time(refreshInterval))
+                    .numberOfReplicas(replicas)));
+            newIndexOps.refresh();
+
+            List<String> previousIndices = swapAlias(newIndex);
+            reindexTarget = null;
+            // Writes that reached only the old index between the last catch-up and the swap
+            catchUp(SearchConstants.PRODUCTS_INDEX);
+            searchResultCache.bumpIndexVersion();
+            for (String previousIndex : previousIndices) {
+                elasticsearchOperations.indexOps(IndexCoordinates.of(previousIndex)).delete();
+            }
+
+            log.info("Full reindex completed in {}ms. Total products indexed: {}, replaced: {}",
+                System.currentTimeMillis() - startTime, totalProcessed, previousIndices);
+
+        } catch (Exception e) {
+            log.error("Full reindex into {} failed, keeping the current index", newIndex, e);
+            reindexTarget = null;
+            touchedDuringReindex.clear();
+            try {
+                elasticsearchOperations.indexOps(IndexCoordinates.of(newIndex)).delete();
+            } catch (Exception cleanupError) {
+                log.warn("Failed to delete abandoned index {}", newIndex, cleanupError);
+            }
+        } finally {
+            reindexRunning.set(false);
+        }
+    }
+
+    /**
+     * Split the product ID range into slices and index them concurrently
+     * @return Number of products indexed
+     */
+    private long indexAllSlices(String indexName) throws InterruptedException, ExecutionException {
+        Long minId = productRepository.findMinId();
+        Long maxId = productRepository.findMaxId();
+        if (minId == null || maxId == null) {
+            return 0;
+        }
+
+        int slices = Math.max(1, reindexParallelism);
+        long sliceSpan = (maxId - minId) / slices + 1;
+        ExecutorService executor = Executors.newFixedThreadPool(slices);
+        try {
+            List<Future<Long>> results = new ArrayList<>(slices);
+            for (int slice = 0; slice < slices; slice++) {
+                long after = minId - 1 + slice * sliceSpan;
+                long upTo = Math.min(maxId, after + sliceSpan);
+                results.add(executor.submit(() -> indexSlice(indexName, after, upTo)));
+            }
+            long total = 0;
+            for (Future<Long> result : results) {
+                total += result.get();
+            }
+            return total;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Index the products with IDs in (after, upTo], reading them in keyset pages
+     */
+    private long indexSlice(String indexName, long after, long upTo) {
+        IndexCoordinates index = IndexCoordinates.of(indexName);
+        long cursor = after;
+        long indexed = 0;
+        List<Product> page;
+        do {
+            page = productRepository.findIdRangeAfter(cursor, upTo, PageRequest.of(0, reindexBatchSize));
+            if (!page.isEmpty()) {
+                elasticsearchOperations.bulkIndex(toIndexQueries(page), index);
+                cursor = page.get(page.size() - 1).getId();
+                indexed += page.size();
+            }
+        } while (page.size() == reindexBatchSize);
+
+        log.info("Indexed products ({}, {}] into {}: {}", after, upTo, indexName, indexed);
+        return indexed;
+    }
+
+    /**
+     * Re-read the products synced while a rebuild was running and write them to the given index
+     */
+    private void catchUp(String indexName) {
+        IndexCoordinates index = IndexCoordinates.of(indexName);
+        while (!touchedDuringReindex.isEmpty()) {
+            List<Long> ids = new ArrayList<>(touchedDuringReindex);
+            touchedDuringReindex.removeAll(ids);
+
+            Set<Long> missing = new HashSet<>(ids);
+            List<Product> products = productRepository.findAllById(ids);
+            products.forEach(product -> missing.remove(product.getId()));
+            if (!products.isEmpty()) {
+                elasticsearchOperations.bulkIndex(toIndexQueries(products), index);
+            }
+            missing.forEach(id -> elasticsearchOperations.delete(id.toString(), index));
+            log.info("Caught up {} products changed during the reindex in {}", ids.size(), indexName);
+        }
+    }
+
+    /**
+     * Point the products alias at the new index and off the previous ones in one atomic request
+     * @return The indices that were serving the alias before the swap
+     */
+    private List<String> swapAlias(String newIndex) {
+        IndexOperations aliasOps = elasticsearchOperations.indexOps(IndexCoordinates.of(SearchConstants.PRODUCTS_INDEX));
+        Map<String, Set<AliasData>> current;
+        try {
+            current = aliasOps.getAliases(SearchConstants.PRODUCTS_INDEX);
         } catch (Exception e) {
-            log.error("Full reindex failed", e);
+            current = Map.of();
+        }
+
+        AliasActions actions = new AliasActions(new AliasAction.Add(AliasActionParameters.builder()
+            .withIndices(newIndex)
+            .withAliases(SearchConstants.PRODUCTS_INDEX)
+            .build()));
+        List<String> previousIndices = new ArrayList<>(current.keySet());
+        if (previousIndices.isEmpty() && aliasOps.exists()) {
+            // "products" is still the concrete index created before aliases were used; replace it in the same request
+            actions.add(new AliasAction.RemoveIndex(AliasActionParameters.builder()
+                .withIndices(SearchConstants.PRODUCTS_INDEX)
+                .build()));
+        } else {
+            for (String previousIndex : previousIndices) {
+                actions.add(new AliasAction.Remove(AliasActionParameters.builder()
+                    .withIndices(previousIndex)
+                    .withAliases(SearchConstants.PRODUCTS_INDEX)
+                    .build()));
+            }
         }
+        aliasOps.alias(actions);
+        return previousIndices;
+    }
+
+    private List<IndexQuery> toIndexQueries(List<Product> products) {
+        Map<Long, ProductSignals> signals = loadSignals(products);
+        List<IndexQuery> queries = new ArrayList<>(products.size());
+        for (Product product : products) {
+            ProductSearchDocument document = convertToSearchDocument(product,
+                signals.getOrDefault(product.getId(), ProductSignals.NONE));
+            queries.add(new IndexQueryBuilder().withId(document.getId()).withObject(document).build());
+        }
+        return queries;
     }
     
     /**
@@ -136,6 +326,70 @@ public class ProductIndexingService {
         }
     }
     
+    /**
+     * Apply a batch of coalesced index changes: re-read and index the upserted products in one bulk request, and
+     * remove the deleted ones (plus upserted products that no longer exist) in one delete request. Unlike
+     * {@link #indexProducts}, failures are thrown so the caller can retry the batch, and the index is not
+     * refreshed after the write. Cached result pages are not invalidated either: syncs run every second, so
+     * their short TTLs bound how stale a page can be. Documents the bulk request rejected are reported with a
+     * {@link BulkFailureException} once the deletes have been applied, so only those need retrying.
+     * @param upsertIds Products to re-read and index
+     * @param deleteIds Products to remove from the index
+     * @return Number of documents written or removed
+     */
+    public int syncProducts(Collection<Long> upsertIds, Collection<Long> deleteIds) {
+        if (reindexTarget != null) {
+            // A full reindex is reading the product table; replay these into its index before the alias swap
+            touchedDuringReindex.addAll(upsertIds);
+            touchedDuringReindex.addAll(deleteIds);
+        }
+
+        List<IndexQuery> queries = List.of();
+        Set<Long> missing = new HashSet<>(upsertIds);
+        if (!upsertIds.isEmpty()) {
+            List<Product> products = productRepository.findAllById(upsertIds);
+            products.forEach(product -> missing.remove(product.getId()));
+            queries = toIndexQueries(products);
+        }
+        BulkFailureException rejected = null;
+        if (!queries.isEmpty()) {
+            try {
+                elasticsearchOperations.bulkIndex(queries, ProductSearchDocument.class);
+            } catch (BulkFailureException e) {
+                rejected = e;
+            }
+        }
+
+        List<String> removed = new ArrayList<>(deleteIds.size() + missing.size());
+        deleteIds.forEach(id -> removed.add(id.toString()));
+        missing.forEach(id -> removed.add(id.toString()));
+        if (!removed.isEmpty()) {
+            productSearchRepository.deleteAllById(removed);
+        }
+        if (rejected != null) {
+            throw rejected;
+        }
+        log.debug("Synced search index: {} indexed, {} removed", queries.size(), removed.size());
+        return queries.size() + removed.size();
+    }
+
+    /**
+     * Reindex a set of products by ID in batches, e.g. once after a bulk import
+     */
+    @Transactional(readOnly = true)
+    public void reindexProducts(List<Long> productIds) {
+        int batchSize = 1000;
+        try {
+            for (int from = 0; from < productIds.size(); from += batchSize) {
+                List<Long> ids = productIds.subList(from, Math.min(from + batchSize, productIds.size()));
+                indexProducts(productRepository.findAllById(ids));
+            }
+            log.info("Reindexed {} products", productIds.size());
+        } catch (Exception e) {
+            log.error("Failed to reindex {} products", productIds.size(), e);
+        }
+    }
+
     /**
      * Reindex products by category
      */
@@ -216,10 +470,14 @@ public class ProductIndexingService {
         }
     }
     
+    private Map<Long, ProductSignals> loadSignals(List<Product> products) {
+        return productSignalLoader.load(products.stream().map(Product::getId).toList());
+    }
+
     /**
      * Convert Product entity to ProductSearchDocument
      */
-    private ProductSearchDocument convertToSearchDocument(Product product) {
+    private ProductSearchDocument convertToSearchDocument(Product product, ProductSignals signals) {
         // Build autocomplete text
         String autocompleteText = buildAutocompleteText(product);
         
@@ -229,14 +487,13 @@ public class ProductIndexingService {
         // Extract product attributes
         Map<String, Object> customAttributes = extractCustomAttributes(product);
         
-        // Calculate popularity score (this could be more sophisticated)
-        Float popularityScore = calculatePopularityScore(product);
+        Float popularityScore = calculatePopularityScore(product, signals);
         
         // Build category hierarchy
         List<String> categoryHierarchy = buildCategoryHierarchy(product);
         
         // Build completion suggestions
-        ProductSearchDocument.Completion completion = buildCompletionSuggestions(product);
+        ProductSearchDocument.Completion completion = buildCompletionSuggestions(product, popularityScore);
         
         return ProductSearchDocument.builder()
             .id(product.getId().toString())
@@ -250,14 +507,14 @@ public class ProductIndexingService {
             .salePrice(null) // This would come from a separate pricing entity
             .onSale(false)
             .discountPercentage(0f)
-            .inStock(true) // This would come from inventory system
-            .stockQuantity(100) // This would come from inventory system
-            .lowStock(false)
+            .inStock(signals.inStock())
+            .stockQuantity(signals.stockQuantity())
+            .lowStock(signals.lowStock())
             .brand(extractBrand(product))
             .manufacturer(extractManufacturer(product))
             .tags(extractTags(product))
-            .colors(extractColors(product))
-            .sizes(extractSizes(product))
+            .colors(signals.colors())
+            .sizes(signals.sizes())
             .material(extractMaterial(product))
             .averageRating(0f) // This would come from review aggregation
             .reviewCount(0)
@@ -270,16 +527,17 @@ public class ProductIndexingService {
             .lastIndexed(LocalDateTime.now())
             .autocompleteText(autocompleteText)
             .searchableText(searchableText)
-            .viewCount(0) // This would come from analytics
-            .orderCount(0) // This would come from order history
+            .viewCount((int) Math.min(signals.viewCount(), Integer.MAX_VALUE))
+            .clickCount((int) Math.min(signals.clickCount(), Integer.MAX_VALUE))
+            .orderCount(signals.orderCount())
             .popularityScore(popularityScore)
-            .searchRankingScore(1.0f)
+            .searchRankingScore(signals.rankingScore())
             .customAttributes(customAttributes)
-            .variationIds(new ArrayList<>()) // This would come from product variations
+            .variationIds(signals.variationIds())
             .parentProductId(null)
             .isFeatured(false) // This would be a product attribute
             .isNewArrival(isNewArrival(product))
-            .isBestSeller(false) // This would come from sales data
+            .isBestSeller(signals.orderCount() >= bestSellerMinOrders)
             .location(null) // For future geo-search
             .isActive(true)
             .isVisible(true)
@@ -356,16 +614,13 @@ public class ProductIndexingService {
     /**
      * Calculate popularity score for search ranking
      */
-    private Float calculatePopularityScore(Product product) {
-        // This is a simplified popularity calculation
-        // In a real system, this would consider:
-        // - View count
-        // - Order count
-        // - Review count and ratings
-        // - Recent activity
-        // - Category popularity
-        
-        float score = 1.0f;
+    private Float calculatePopularityScore(Product product, ProductSignals signals) {
+        // Log-damped so a handful of bestsellers do not drown out everything else;
+        // a sale weighs more than a search click, which weighs more than a page view
+        float score = 1.0f
+            + 0.1f * (float) Math.log1p(signals.viewCount())
+            + 0.3f * (float) Math.log1p(signals.clickCount())
+            + 0.6f * (float) Math.log1p(signals.orderCount());
         
         // Boost newer products slightly
         if (product.getCreatedAt() != null) {
@@ -396,9 +651,10 @@ public class ProductIndexingService {
     }
     
     /**
-     * Build completion suggestions for autocomplete
+     * Build completion suggestions for autocomplete, weighted by popularity and tagged with the product's
+     * category so suggestions can be scoped to it
      */
-    private ProductSearchDocument.Completion buildCompletionSuggestions(Product product) {
+    private ProductSearchDocument.Completion buildCompletionSuggestions(Product product, Float popularityScore) {
         List<String> inputs = new ArrayList<>();
         
         if (product.getName() != null) {
@@ -422,20 +678,25 @@ public class ProductIndexingService {
             inputs.add(brand);
         }
         
+        List<String> categories = new ArrayList<>(2);
+        categories.add(ProductSearchDocument.ALL_CATEGORIES);
+        if (product.getCategory() != null && product.getCategory().getId() != null) {
+            categories.add(product.getCategory().getId().toString());
+        }
+        
         return ProductSearchDocument.Completion.builder()
             .input(inputs.toArray(new String[0]))
-            .weight(calculateCompletionWeight(product))
-            .contexts(new HashMap<>())
+            .weight(calculateCompletionWeight(popularityScore))
+            .contexts(Map.of(ProductSearchDocument.CATEGORY_CONTEXT, categories))
             .build();
     }
     
     /**
      * Calculate weight for completion suggestions
      */
-    private Integer calculateCompletionWeight(Product product) {
-        // Higher weight means higher priority in autocomplete
-        // This could be based on popularity, sales, etc.
-        return 10;
+    private Integer calculateCompletionWeight(Float popularityScore) {
+        // Completion weights are integers; keep two decimals of the popularity score so close scores still order
+        return popularityScore != null ? Math.max(1, Math.round(popularityScore * 100)) : 1;
     }
     
     /**
@@ -468,16 +729,6 @@ public class ProductIndexingService {
         return new ArrayList<>();
     }
     
-    private List<String> extractColors(Product product) {
-        // Extract colors from product variations
-        return new ArrayList<>();
-    }
-    
-    private List<String> extractSizes(Product product) {
-        // Extract sizes from product variations
-        return new ArrayList<>();
-    }
-    
     private String extractMaterial(Product product) {
         // Extract material from product attributes
         return null;
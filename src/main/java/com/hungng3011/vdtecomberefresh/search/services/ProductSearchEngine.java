@@ -0,0 +1,47 @@
+package com.hungng3011.vdtecomberefresh.search.services;
+
+import com.hungng3011.vdtecomberefresh.search.documents.ProductSearchDocument;
+import com.hungng3011.vdtecomberefresh.search.dtos.SearchRequestDto;
+import com.hungng3011.vdtecomberefresh.search.dtos.SearchResponseDto;
+import com.hungng3011.vdtecomberefresh.search.exceptions.SearchServiceUnavailableException;
+import com.hungng3011.vdtecomberefresh.search.exceptions.SearchValidationException;
+import com.hungng3011.vdtecomberefresh.search.utils.SearchCursor;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The index behind product search: runs searches, completions and full scans and maps the engine's responses
+ * to the search DTOs. {@link ProductSearchService} adds validation, result caching, the circuit breaker, the
+ * relational fallback and analytics around it.
+ */
+public interface ProductSearchEngine {
+
+    /**
+     * Search one page
+     * @param request Validated request with a sanitized query
+     * @param cursor Position after the previous page, or null for offset paging
+     * @return Hits with their metadata and the cursor of the next page, plus suggestions, facets and highlights
+     *         as requested
+     * @throws SearchValidationException If the cursor's snapshot has expired
+     * @throws SearchServiceUnavailableException If the engine fails
+     */
+    SearchResponseDto<ProductSearchDocument> search(SearchRequestDto request, SearchCursor cursor);
+
+    /**
+     * Product name completions
+     * @param prefix Sanitized text typed so far
+     * @param limit Maximum number of completions
+     * @param categoryId Category to complete from, or null for all
+     * @return Completions, best first
+     */
+    List<SearchResponseDto.SearchSuggestion> complete(String prefix, int limit, Long categoryId);
+
+    /**
+     * Stream every product matching the request's query and filters from one consistent snapshot
+     * @param request Sanitized query and filters; an empty query matches every product
+     * @param consumer Receives each product in ID order
+     * @return Number of products streamed
+     */
+    long scroll(SearchRequestDto request, Consumer<ProductSearchDocument> consumer);
+}
@@ -0,0 +1,440 @@
+package com.hungng3011.vdtecomberefresh.search.services;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SuggestMode;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.AggregationRange;
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.FieldValueFactorModifier;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionBoostMode;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionScoreMode;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch._types.query_dsl.TextQueryType;
+import co.elastic.clients.elasticsearch.core.search.CompletionContext;
+import co.elastic.clients.elasticsearch.core.search.CompletionSuggester;
+import co.elastic.clients.elasticsearch.core.search.Suggester;
+import com.hungng3011.vdtecomberefresh.search.documents.ProductSearchDocument;
+import com.hungng3011.vdtecomberefresh.search.dtos.SearchRequestDto;
+import com.hungng3011.vdtecomberefresh.search.utils.SearchConstants.Boost;
+import com.hungng3011.vdtecomberefresh.search.utils.SearchConstants.Fields;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder;
+import org.springframework.data.elasticsearch.core.query.HighlightQuery;
+import org.springframework.data.elasticsearch.core.query.highlight.Highlight;
+import org.springframework.data.elasticsearch.core.query.highlight.HighlightField;
+import org.springframework.data.elasticsearch.core.query.highlight.HighlightParameters;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translates a {@link SearchRequestDto} into a single Elasticsearch request.
+ *
+ * The text query is the only scoring clause; every filter goes into the bool query's filter context, where
+ * Elasticsearch skips scoring and caches the matching document sets across requests. Text relevance is
+ * multiplied by the document's {@code popularityScore} and by its precomputed click-through
+ * {@code searchRankingScore}, and results are always sorted with the document ID as
+ * the last key so {@code search_after} cursors are stable.
+ *
+ * Facet aggregations, the completion and spelling suggesters and highlighting ride along on the same request
+ * when the caller asks for them, so a search page costs one round trip to the cluster.
+ */
+@Component
+public class ProductSearchQueryBuilder {
+
+    static final String ID_FIELD = "id";
+    private static final String CUSTOM_ATTRIBUTES_PREFIX = "customAttributes.";
+    private static final String DATE_FORMATS = "strict_date_optional_time||yyyy-MM-dd";
+
+    static final String CATEGORIES_FACET = "categories";
+    static final String BRANDS_FACET = "brands";
+    static final String COLORS_FACET = "colors";
+    static final String SIZES_FACET = "sizes";
+    static final String PRICE_RANGES_FACET = "priceRanges";
+    /**
+     * Filter aggregation that applies the price filter to the non-price facets when it is moved to post_filter
+     */
+    static final String PRICED_FACETS = "priced";
+    static final String COMPLETION_SUGGESTION = "completion";
+    static final String SPELLING_SUGGESTION = "spelling";
+    static final int SUGGESTION_SIZE = 5;
+
+    private static final String SUGGEST_FIELD = "suggest";
+    private static final String COLORS_FIELD = "colors";
+    private static final String SIZES_FIELD = "sizes";
+
+    @Value("${app.product.facets.price-buckets:100000,500000,1000000,5000000,10000000}")
+    private List<BigDecimal> priceBuckets = List.of(new BigDecimal("100000"), new BigDecimal("500000"),
+        new BigDecimal("1000000"), new BigDecimal("5000000"), new BigDecimal("10000000"));
+
+    @Value("${app.search.facets.max-values:20}")
+    private int maxFacetValues = 20;
+
+    /**
+     * Build the search request for one page of results
+     * @param request Search request; the query is expected to be sanitized already
+     * @return Query with filters, boosting, sorting and paging applied
+     */
+    public NativeQuery build(SearchRequestDto request) {
+        boolean facets = Boolean.TRUE.equals(request.getIncludeFacets());
+        Query priceFilter = priceFilter(request.getFilters());
+        // With facets, the price filter narrows the hits through post_filter instead of the query, so the
+        // price facet still counts the ranges outside the selected one
+        boolean postFilterPrice = facets && priceFilter != null;
+
+        NativeQueryBuilder builder = NativeQuery.builder()
+            .withQuery(buildQuery(request, !postFilterPrice))
+            .withSort(buildSort(request))
+            .withTrackTotalHits(true);
+        if (postFilterPrice) {
+            builder.withFilter(priceFilter);
+        }
+        if (facets) {
+            addFacetAggregations(builder, postFilterPrice ? priceFilter : null);
+        }
+
+        String text = request.getQuery();
+        if (text != null && !text.isBlank()) {
+            if (Boolean.TRUE.equals(request.getIncludeSuggestions())) {
+                List<Long> categoryIds = request.getFilters() != null ? request.getFilters().getCategoryIds() : null;
+                builder.withSuggester(buildSuggester(text, categoryIds));
+            }
+            if (Boolean.TRUE.equals(request.getHighlightResults())) {
+                builder.withHighlightQuery(buildHighlight());
+            }
+        }
+
+        List<Object> searchAfter = request.getSearchAfter();
+        if (searchAfter != null && !searchAfter.isEmpty()) {
+            // The cursor replaces the offset, so deep pages cost the same as the first one
+            builder.withPageable(PageRequest.of(0, request.getSize())).withSearchAfter(searchAfter);
+        } else {
+            builder.withPageable(PageRequest.of(request.getPage(), request.getSize()));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Build one batch of an export of every matching product: unscored, sorted by ID only and without a total
+     * hit count, which is the cheapest way for Elasticsearch to page through a whole result set
+     * @param request Query and filters
+     * @param searchAfter Sort values of the last product of the previous batch, or null for the first batch
+     * @param batchSize Products per batch
+     * @return The query
+     */
+    public NativeQuery buildScrollQuery(SearchRequestDto request, List<Object> searchAfter, int batchSize) {
+        Query query = Query.of(q -> q.bool(b -> {
+            b.filter(textQuery(request));
+            addFilters(b, request.getFilters(), true);
+            addVisibilityFilters(b);
+            return b;
+        }));
+        NativeQueryBuilder builder = NativeQuery.builder()
+            .withQuery(query)
+            .withSort(Sort.by(Sort.Direction.ASC, ID_FIELD))
+            .withPageable(PageRequest.of(0, batchSize))
+            .withTrackTotalHits(false);
+        if (searchAfter != null) {
+            builder.withSearchAfter(searchAfter);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Build a request that only runs the completion suggester: no hits are fetched, and suggestions come from
+     * the in-memory completion structures rather than the inverted index
+     * @param prefix Sanitized text typed so far
+     * @param limit Maximum number of suggestions
+     * @param categoryIds Categories to suggest products from, or null or empty for all categories
+     * @return The query
+     */
+    public NativeQuery buildCompletionQuery(String prefix, int limit, List<Long> categoryIds) {
+        return NativeQuery.builder()
+            .withSuggester(Suggester.of(s -> s.suggesters(COMPLETION_SUGGESTION, fs -> fs
+                .prefix(prefix)
+                .completion(completion(limit, categoryIds)))))
+            .withMaxResults(0)
+            .withTrackTotalHits(false)
+            .build();
+    }
+
+    /**
+     * @param request Search request
+     * @return Bool query with the text clause in must and the filters in filter context, boosted by popularity
+     */
+    Query buildQuery(SearchRequestDto request) {
+        return buildQuery(request, true);
+    }
+
+    private Query buildQuery(SearchRequestDto request, boolean includePriceFilter) {
+        Query query = Query.of(q -> q.bool(b -> {
+            b.must(textQuery(request));
+            addFilters(b, request.getFilters(), includePriceFilter);
+            addVisibilityFilters(b);
+            return b;
+        }));
+        return boostByRankingSignals(query);
+    }
+
+    private Query textQuery(SearchRequestDto request) {
+        String text = request.getQuery();
+        if (text == null || text.isBlank()) {
+            return Query.of(q -> q.matchAll(m -> m));
+        }
+        SearchRequestDto.SearchType type = request.getSearchType() != null
+            ? request.getSearchType()
+            : SearchRequestDto.SearchType.FUZZY;
+
+        return switch (type) {
+            case EXACT -> Query.of(q -> q.multiMatch(m -> m
+                .query(text)
+                .type(TextQueryType.Phrase)
+                .fields(field(Fields.NAME, Boost.NAME_BOOST), field(Fields.DESCRIPTION, Boost.DESCRIPTION_BOOST))));
+            case WILDCARD -> Query.of(q -> q.wildcard(w -> w
+                .field(Fields.NAME)
+                .value("*" + text.toLowerCase() + "*")
+                .caseInsensitive(true)));
+            case PHRASE_PREFIX -> Query.of(q -> q.matchPhrasePrefix(m -> m
+                .field(Fields.AUTOCOMPLETE_TEXT)
+                .query(text)));
+            case MULTI_MATCH -> Query.of(q -> q.bool(b -> b
+                .should(s -> s.multiMatch(m -> m
+                    .query(text)
+                    .type(TextQueryType.BestFields)
+                    .fields(field(Fields.NAME, Boost.NAME_BOOST), field(Fields.DESCRIPTION, Boost.DESCRIPTION_BOOST),
+                        field(Fields.BRAND, Boost.BRAND_BOOST), field(Fields.TAGS, Boost.TAGS_BOOST))
+                    .fuzziness("AUTO")))
+                .should(s -> s.matchPhrasePrefix(m -> m
+                    .field(Fields.AUTOCOMPLETE_TEXT)
+                    .query(text)
+                    .boost(Boost.AUTOCOMPLETE_BOOST)))
+                .minimumShouldMatch("1")));
+            case FUZZY -> Query.of(q -> q.multiMatch(m -> m
+                .query(text)
+                .fields(field(Fields.NAME, Boost.NAME_BOOST), field(Fields.DESCRIPTION, Boost.DESCRIPTION_BOOST),
+                    field(Fields.BRAND, Boost.BRAND_BOOST), field(Fields.TAGS, Boost.TAGS_BOOST),
+                    Fields.SEARCHABLE_TEXT)
+                .fuzziness("AUTO")));
+        };
+    }
+
+    private void addFilters(BoolQuery.Builder bool, SearchRequestDto.SearchFilters filters, boolean includePriceFilter) {
+        if (filters == null) {
+            return;
+        }
+        if (filters.getCategoryIds() != null && !filters.getCategoryIds().isEmpty()) {
+            bool.filter(terms(Fields.CATEGORY_ID, filters.getCategoryIds()));
+        }
+        Query priceFilter = priceFilter(filters);
+        if (includePriceFilter && priceFilter != null) {
+            bool.filter(priceFilter);
+        }
+        if (filters.getBrands() != null && !filters.getBrands().isEmpty()) {
+            bool.filter(terms(Fields.BRAND, filters.getBrands()));
+        }
+        if (filters.getTags() != null && !filters.getTags().isEmpty()) {
+            bool.filter(terms(Fields.TAGS, filters.getTags()));
+        }
+        // "false" means "do not restrict", not "only out of stock"
+        if (Boolean.TRUE.equals(filters.getInStock())) {
+            bool.filter(f -> f.term(t -> t.field(Fields.IN_STOCK).value(true)));
+        }
+        if (filters.getMinRating() != null) {
+            bool.filter(f -> f.range(r -> r.number(n -> n.field(Fields.AVERAGE_RATING).gte(filters.getMinRating()))));
+        }
+        if (filters.getCreatedAfter() != null || filters.getCreatedBefore() != null) {
+            bool.filter(f -> f.range(r -> r.date(d -> {
+                d.field(Fields.CREATED_AT).format(DATE_FORMATS);
+                if (filters.getCreatedAfter() != null) {
+                    d.gte(filters.getCreatedAfter());
+                }
+                if (filters.getCreatedBefore() != null) {
+                    d.lte(filters.getCreatedBefore());
+                }
+                return d;
+            })));
+        }
+        if (filters.getCustomAttributes() != null) {
+            filters.getCustomAttributes().forEach((name, value) -> {
+                if (value instanceof Collection<?> values) {
+                    bool.filter(terms(CUSTOM_ATTRIBUTES_PREFIX + name, values));
+                } else if (value != null) {
+                    bool.filter(f -> f.term(t -> t.field(CUSTOM_ATTRIBUTES_PREFIX + name).value(fieldValue(value))));
+                }
+            });
+        }
+    }
+
+    private static Query priceFilter(SearchRequestDto.SearchFilters filters) {
+        if (filters == null || (filters.getMinPrice() == null && filters.getMaxPrice() == null)) {
+            return null;
+        }
+        return Query.of(f -> f.range(r -> r.number(n -> {
+            n.field(Fields.BASE_PRICE);
+            if (filters.getMinPrice() != null) {
+                n.gte(filters.getMinPrice().doubleValue());
+            }
+            if (filters.getMaxPrice() != null) {
+                n.lte(filters.getMaxPrice().doubleValue());
+            }
+            return n;
+        })));
+    }
+
+    /**
+     * Add the facet aggregations. Price ranges are counted over the hits before the price filter; the other
+     * facets are counted over the hits after it, nested under a filter aggregation when the price filter was
+     * moved to post_filter.
+     * @param builder Query being built
+     * @param postFilter Price filter applied as post_filter, or null
+     */
+    private void addFacetAggregations(NativeQueryBuilder builder, Query postFilter) {
+        Map<String, Aggregation> facets = Map.of(
+            CATEGORIES_FACET, termsAggregation(Fields.CATEGORY_ID),
+            BRANDS_FACET, termsAggregation(Fields.BRAND),
+            COLORS_FACET, termsAggregation(COLORS_FIELD),
+            SIZES_FACET, termsAggregation(SIZES_FIELD));
+        if (postFilter != null) {
+            builder.withAggregation(PRICED_FACETS, Aggregation.of(a -> a.filter(postFilter).aggregations(facets)));
+        } else {
+            facets.forEach(builder::withAggregation);
+        }
+
+        List<AggregationRange> ranges = new ArrayList<>(priceBuckets.size() + 1);
+        for (int i = 0; i <= priceBuckets.size(); i++) {
+            BigDecimal lower = i > 0 ? priceBuckets.get(i - 1) : null;
+            BigDecimal upper = i < priceBuckets.size() ? priceBuckets.get(i) : null;
+            ranges.add(AggregationRange.of(r -> r
+                .key(priceRangeKey(lower, upper))
+                .from(lower != null ? lower.doubleValue() : null)
+                .to(upper != null ? upper.doubleValue() : null)));
+        }
+        builder.withAggregation(PRICE_RANGES_FACET, Aggregation.of(a -> a.range(r -> r
+            .field(Fields.BASE_PRICE)
+            .ranges(ranges))));
+    }
+
+    private Aggregation termsAggregation(String field) {
+        return Aggregation.of(a -> a.terms(t -> t.field(field).size(maxFacetValues)));
+    }
+
+    /**
+     * @param lower Inclusive lower bound, or null
+     * @param upper Exclusive upper bound, or null
+     * @return The bucket key, in the same "lower-upper" format as the catalog's price facets
+     */
+    static String priceRangeKey(BigDecimal lower, BigDecimal upper) {
+        return (lower != null ? lower.toPlainString() : "") + "-" + (upper != null ? upper.toPlainString() : "");
+    }
+
+    /**
+     * Completion suggestions for the text as a prefix within the filtered categories, and spelling corrections
+     * of its terms from the product names
+     */
+    private static Suggester buildSuggester(String text, List<Long> categoryIds) {
+        return Suggester.of(s -> s
+            .suggesters(COMPLETION_SUGGESTION, fs -> fs
+                .prefix(text)
+                .completion(completion(SUGGESTION_SIZE, categoryIds)))
+            .suggesters(SPELLING_SUGGESTION, fs -> fs
+                .text(text)
+                .term(t -> t.field(Fields.NAME).size(SUGGESTION_SIZE).suggestMode(SuggestMode.Popular))));
+    }
+
+    private static CompletionSuggester completion(int size, List<Long> categoryIds) {
+        List<CompletionContext> contexts = new ArrayList<>();
+        if (categoryIds == null || categoryIds.isEmpty()) {
+            contexts.add(categoryContext(ProductSearchDocument.ALL_CATEGORIES));
+        } else {
+            categoryIds.forEach(id -> contexts.add(categoryContext(id.toString())));
+        }
+        return CompletionSuggester.of(c -> c
+            .field(SUGGEST_FIELD)
+            .size(size)
+            .skipDuplicates(true)
+            .contexts(ProductSearchDocument.CATEGORY_CONTEXT, contexts));
+    }
+
+    private static CompletionContext categoryContext(String category) {
+        return CompletionContext.of(c -> c.context(ctx -> ctx.category(category)));
+    }
+
+    private static HighlightQuery buildHighlight() {
+        HighlightParameters parameters = HighlightParameters.builder()
+            .withPreTags("<em>")
+            .withPostTags("</em>")
+            .withNumberOfFragments(1)
+            .build();
+        return new HighlightQuery(
+            new Highlight(parameters, List.of(new HighlightField(Fields.NAME), new HighlightField(Fields.DESCRIPTION))),
+            ProductSearchDocument.class);
+    }
+
+    private void addVisibilityFilters(BoolQuery.Builder bool) {
+        bool.filter(f -> f.term(t -> t.field("isActive").value(true)));
+        bool.filter(f -> f.term(t -> t.field("isVisible").value(true)));
+    }
+
+    private Query boostByRankingSignals(Query query) {
+        return Query.of(q -> q.functionScore(fs -> fs
+            .query(query)
+            .functions(fn -> fn.fieldValueFactor(fv -> fv
+                .field(Fields.POPULARITY_SCORE)
+                .modifier(FieldValueFactorModifier.Log1p)
+                .missing(1.0)))
+            .functions(fn -> fn.fieldValueFactor(fv -> fv
+                .field(Fields.SEARCH_RANKING_SCORE)
+                .missing(1.0)))
+            .scoreMode(FunctionScoreMode.Multiply)
+            .boostMode(FunctionBoostMode.Multiply)));
+    }
+
+    /**
+     * @param request Search request
+     * @return The requested order, always ending with the document ID so every hit has a unique sort key
+     */
+    Sort buildSort(SearchRequestDto request) {
+        Sort.Direction direction = request.getSortDirection() == SearchRequestDto.SortDirection.ASC
+            ? Sort.Direction.ASC
+            : Sort.Direction.DESC;
+        String sortBy = request.getSortBy() != null ? request.getSortBy().toLowerCase() : "relevance";
+
+        Sort sort = switch (sortBy) {
+            case "price" -> Sort.by(direction, Fields.BASE_PRICE);
+            case "rating" -> Sort.by(direction, Fields.AVERAGE_RATING);
+            case "popularity" -> Sort.by(direction, Fields.POPULARITY_SCORE);
+            case "newest" -> Sort.by(Sort.Direction.DESC, Fields.CREATED_AT);
+            default -> Sort.by(Sort.Direction.DESC, "_score");
+        };
+        return sort.and(Sort.by(Sort.Direction.ASC, ID_FIELD));
+    }
+
+    private static Query terms(String field, Collection<?> values) {
+        List<FieldValue> fieldValues = new ArrayList<>(values.size());
+        values.forEach(value -> fieldValues.add(fieldValue(value)));
+        return Query.of(q -> q.terms(t -> t.field(field).terms(v -> v.value(fieldValues))));
+    }
+
+    private static FieldValue fieldValue(Object value) {
+        if (value instanceof Number number) {
+            return number instanceof Double || number instanceof Float
+                ? FieldValue.of(number.doubleValue())
+                : FieldValue.of(number.longValue());
+        }
+        if (value instanceof Boolean bool) {
+            return FieldValue.of(bool);
+        }
+        return FieldValue.of(String.valueOf(value));
+    }
+
+    private static String field(String name, float boost) {
+        return name + "^" + boost;
+    }
+}
@@ -1,33 +1,49 @@
 package com.hungng3011.vdtecomberefresh.search.services;
 
+import com.hungng3011.vdtecomberefresh.common.dtos.PagedResponse;
+import com.hungng3011.vdtecomberefresh.product.dtos.ProductDto;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.FacetCountDto;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFacetsDto;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto;
+import com.hungng3011.vdtecomberefresh.product.services.ProductFilterService;
+import com.hungng3011.vdtecomberefresh.search.cache.PopularQueryCache;
+import com.hungng3011.vdtecomberefresh.search.cache.SearchResultCache;
 import com.hungng3011.vdtecomberefresh.search.documents.ProductSearchDocument;
 import com.hungng3011.vdtecomberefresh.search.dtos.SearchRequestDto;
 import com.hungng3011.vdtecomberefresh.search.dtos.SearchResponseDto;
 import com.hungng3011.vdtecomberefresh.search.exceptions.SearchServiceUnavailableException;
 import com.hungng3011.vdtecomberefresh.search.exceptions.SearchValidationException;
-import com.hungng3011.vdtecomberefresh.search.repositories.ProductSearchRepository;
+import com.hungng3011.vdtecomberefresh.search.utils.PrefixTrie;
 import com.hungng3011.vdtecomberefresh.search.utils.SearchConstants;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import com.hungng3011.vdtecomberefresh.search.utils.SearchCursor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
- * Enhanced product search service with validation and error handling
+ * Enhanced product search service with validation and error handling.
+ * Searches run on the {@link ProductSearchEngine} behind the result cache and the circuit breaker, falling
+ * back to the relational product filter while the engine is unavailable.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ProductSearchService {
     
-    private final ProductSearchRepository productSearchRepository;
+    private final ProductSearchEngine productSearchEngine;
     private final SearchAnalyticsService searchAnalyticsService;
+    private final ProductFilterService productFilterService;
+    private final PopularQueryCache popularQueryCache;
+    private final SearchResultCache searchResultCache;
+    private final SearchCircuitBreaker searchCircuitBreaker;
+    
+    @Value("${app.search.pagination.max-offset-window:10000}")
+    private int maxOffsetWindow = 10000;
     
     /**
      * Perform comprehensive product search with validation
@@ -35,6 +51,7 @@ public class ProductSearchService {
     public SearchResponseDto<ProductSearchDocument> search(SearchRequestDto request) {
         // Validate request
         validateSearchRequest(request);
+        SearchCursor cursor = request.getCursor() != null ? SearchCursor.decode(request.getCursor()) : null;
         
         // Sanitize query
         String sanitizedQuery = SearchConstants.sanitizeQuery(request.getQuery());
@@ -42,87 +59,185 @@ public class ProductSearchService {
         
         log.info("Performing search with query: '{}', type: {}", request.getQuery(), request.getSearchType());
         
+        SearchResponseDto<ProductSearchDocument> response;
+        try {
+            // Only index results are cached; the fallback is served for as long as the index is unavailable
+            response = searchResultCache.get(request,
+                cacheMiss -> searchCircuitBreaker.execute(() -> productSearchEngine.search(cacheMiss, cursor)));
+        } catch (SearchServiceUnavailableException e) {
+            response = fallbackSearch(request, e);
+        }
+        
+        // Log search analytics, cached or not
+        searchAnalyticsService.logSearch(request, response);
+        
+        return response;
+    }
+    
+    /**
+     * Answer a search from the relational product filter while the index is unavailable: the query matches
+     * product names by trigram, only single-valued category and brand filters and the price range apply, and
+     * there are no scores, suggestions, facets or highlights. The response is marked as degraded.
+     * @param request Validated request with a sanitized query
+     * @param cause Why the index was not searched
+     * @return A page of products
+     * @throws SearchServiceUnavailableException If the request continues a cursor, which only the index can
+     *                                           resume, or the database fails as well
+     */
+    private SearchResponseDto<ProductSearchDocument> fallbackSearch(SearchRequestDto request,
+                                                                    SearchServiceUnavailableException cause) {
+        if (request.getCursor() != null) {
+            throw cause;
+        }
+        log.warn("Search index unavailable, answering query '{}' from the database: {}",
+            request.getQuery(), cause.getMessage());
         long startTime = System.currentTimeMillis();
         
+        ProductFilterDto filter = toFacetContext(request.getFilters());
+        filter.setName(request.getQuery());
+        filter.setPage(request.getPage());
+        filter.setSize(request.getSize());
+        String sortBy = request.getSortBy() != null ? request.getSortBy().toLowerCase() : "relevance";
+        switch (sortBy) {
+            case "price" -> {
+                filter.setSortBy(ProductFilterDto.ProductSortField.BASE_PRICE);
+                filter.setSortDirection(request.getSortDirection() == SearchRequestDto.SortDirection.ASC
+                    ? ProductFilterDto.SortDirection.ASC : ProductFilterDto.SortDirection.DESC);
+            }
+            case "newest" -> {
+                filter.setSortBy(ProductFilterDto.ProductSortField.CREATED_AT);
+                filter.setSortDirection(ProductFilterDto.SortDirection.DESC);
+            }
+            default -> filter.setSortBy(ProductFilterDto.ProductSortField.ID);
+        }
+        
+        PagedResponse<ProductDto> page;
         try {
-            Page<ProductSearchDocument> results = performSearch(request);
-            
-            // Build response
-            SearchResponseDto<ProductSearchDocument> response = buildSearchResponse(
-                results, 
-                request, 
-                System.currentTimeMillis() - startTime
-            );
-            
-            // Log search analytics
-            searchAnalyticsService.logSearch(request, response);
-            
-            return response;
-            
+            page = productFilterService.filterProducts(filter);
         } catch (Exception e) {
-            log.error("Error performing search for query: '{}'", request.getQuery(), e);
-            throw new SearchServiceUnavailableException("Search service temporarily unavailable", e);
+            log.error("Fallback search failed for query: '{}'", request.getQuery(), e);
+            cause.addSuppressed(e);
+            throw cause;
         }
+        
+        PagedResponse.PaginationMetadata pagination = page.getPagination();
+        SearchResponseDto.SearchMetadata metadata = SearchResponseDto.SearchMetadata.builder()
+            .query(request.getQuery())
+            .totalHits(pagination.getTotalElements())
+            .page(pagination.getPage())
+            .size(pagination.getSize())
+            .totalPages(pagination.getTotalPages())
+            .searchTime(System.currentTimeMillis() - startTime)
+            .hasNext(pagination.isHasNext())
+            .hasPrevious(pagination.isHasPrevious())
+            .degraded(true)
+            .build();
+        
+        return SearchResponseDto.<ProductSearchDocument>builder()
+            .results(page.getContent().stream().map(ProductSearchService::toSearchDocument).collect(Collectors.toList()))
+            .metadata(metadata)
+            .build();
+    }
+    
+    private static ProductSearchDocument toSearchDocument(ProductDto product) {
+        List<String> images = product.getImages() != null ? product.getImages() : List.of();
+        return ProductSearchDocument.builder()
+            .id(String.valueOf(product.getId()))
+            .name(product.getName())
+            .description(product.getDescription())
+            .categoryId(product.getCategory() != null ? product.getCategory().getId() : product.getCategoryId())
+            .categoryName(product.getCategory() != null ? product.getCategory().getName() : null)
+            .basePrice(product.getBasePrice())
+            .imageUrls(images)
+            .primaryImageUrl(images.isEmpty() ? null : images.get(0))
+            .build();
+    }
+    
+    /**
+     * Stream every product matching the request's query and filters, for catalog feeds.
+     * The request's paging, sorting, suggestion and facet options are ignored.
+     * @param request Query and filters; an empty query matches every product
+     * @param consumer Receives each product in ID order
+     * @return Number of products streamed
+     */
+    public long scrollAll(SearchRequestDto request, Consumer<ProductSearchDocument> consumer) {
+        request.setQuery(SearchConstants.sanitizeQuery(request.getQuery()));
+        return productSearchEngine.scroll(request, consumer);
     }
     
     /**
      * Get search suggestions with validation
      */
     public List<SearchResponseDto.SearchSuggestion> getSuggestions(String query, int limit) {
+        return getSuggestions(query, limit, null);
+    }
+    
+    /**
+     * Get autocomplete suggestions: popular queries with the prefix from memory first, then product names from
+     * the completion suggester when those do not fill the limit
+     * @param query Text typed so far
+     * @param limit Maximum number of suggestions
+     * @param categoryId Category to suggest products from, or null for all; popular queries are not tied to a
+     *                   category, so a scoped request always asks Elasticsearch
+     * @return Suggestions, popular queries first
+     */
+    public List<SearchResponseDto.SearchSuggestion> getSuggestions(String query, int limit, Long categoryId) {
         // Validate suggestion request
         SearchConstants.validateSuggestionRequest(query, limit);
         
         String sanitizedQuery = SearchConstants.sanitizeQuery(query);
-        log.info("Getting suggestions for query: '{}'", sanitizedQuery);
+        log.debug("Getting suggestions for query: '{}'", sanitizedQuery);
         
-        try {
-            Pageable pageable = PageRequest.of(0, Math.min(limit, SearchConstants.MAX_SUGGESTION_LIMIT));
-            Page<ProductSearchDocument> suggestions = productSearchRepository.findByAutocompleteTextContaining(sanitizedQuery, pageable);
-            
-            return suggestions.stream()
-                .map(doc -> SearchResponseDto.SearchSuggestion.builder()
-                    .text(doc.getName())
-                    .score(1.0) // Fixed score for simplified version
+        List<SearchResponseDto.SearchSuggestion> suggestions = new ArrayList<>(limit);
+        Set<String> seen = new HashSet<>();
+        if (categoryId == null) {
+            for (PrefixTrie.Completion<Long> popular : popularQueryCache.complete(sanitizedQuery, limit)) {
+                seen.add(popular.phrase().toLowerCase());
+                suggestions.add(SearchResponseDto.SearchSuggestion.builder()
+                    .text(popular.phrase())
                     .type(SearchResponseDto.SearchSuggestion.SuggestionType.COMPLETION)
-                    .frequency(1L)
-                    .build())
-                .collect(Collectors.toList());
-                
+                    .frequency(popular.value())
+                    .build());
+            }
+            if (suggestions.size() >= limit) {
+                return suggestions;
+            }
+        }
+        
+        try {
+            List<SearchResponseDto.SearchSuggestion> completions = searchCircuitBreaker.execute(() ->
+                productSearchEngine.complete(sanitizedQuery, limit, categoryId));
+            for (SearchResponseDto.SearchSuggestion completion : completions) {
+                if (seen.add(completion.getText().toLowerCase())) {
+                    suggestions.add(completion);
+                }
+            }
         } catch (Exception e) {
+            // Autocomplete degrades to the popular queries alone
             log.error("Error getting suggestions for query: '{}'", sanitizedQuery, e);
-            return Collections.emptyList();
         }
+        return suggestions.size() > limit ? new ArrayList<>(suggestions.subList(0, limit)) : suggestions;
     }
     
     /**
-     * Get search facets for filtering
+     * Get search facets for filtering.
+     * Counts come from the cached relational facet engine for the request's category, price and brand filters;
+     * the text query itself does not narrow them.
      */
     public Map<String, List<SearchResponseDto.FacetResult>> getFacets(SearchRequestDto request) {
         log.info("Getting facets for search request");
         
         try {
-            Map<String, List<SearchResponseDto.FacetResult>> facets = new HashMap<>();
-            
-            // Category facets
-            List<Object[]> categoryFacets = productSearchRepository.findCategoryFacets();
-            facets.put("categories", categoryFacets.stream()
-                .map(row -> SearchResponseDto.FacetResult.builder()
-                    .key(row[0].toString())
-                    .count(((Number) row[1]).longValue())
-                    .selected(false)
-                    .build())
-                .collect(Collectors.toList()));
-            
-            // Brand facets
-            List<Object[]> brandFacets = productSearchRepository.findBrandFacets();
-            facets.put("brands", brandFacets.stream()
-                .map(row -> SearchResponseDto.FacetResult.builder()
-                    .key(row[0].toString())
-                    .count(((Number) row[1]).longValue())
-                    .selected(false)
-                    .build())
-                .collect(Collectors.toList()));
+            ProductFacetsDto productFacets = productFilterService.getFacets(toFacetContext(request.getFilters()));
             
+            Map<String, List<SearchResponseDto.FacetResult>> facets = new LinkedHashMap<>();
+            facets.put("categories", toFacetResults(productFacets.getCategories()));
+            facets.put("brands", toFacetResults(productFacets.getBrands()));
+            facets.put("priceRanges", toFacetResults(productFacets.getPriceRanges()));
+            if (productFacets.getAttributes() != null) {
+                productFacets.getAttributes().forEach((field, values) ->
+                    facets.put("attributes." + field, toFacetResults(values)));
+            }
             return facets;
             
         } catch (Exception e) {
@@ -132,108 +247,40 @@ public class ProductSearchService {
     }
     
     /**
-     * Perform the actual search based on request parameters
+     * Translate search filters to the relational filter context; multi-valued filters only narrow the
+     * context when a single value is selected
      */
-    private Page<ProductSearchDocument> performSearch(SearchRequestDto request) {
-        Pageable pageable = createPageable(request);
-        
-        if (request.getQuery() == null || request.getQuery().trim().isEmpty()) {
-            return applyFilters(productSearchRepository.findAll(pageable), request);
+    private ProductFilterDto toFacetContext(SearchRequestDto.SearchFilters filters) {
+        ProductFilterDto context = new ProductFilterDto();
+        if (filters == null) {
+            return context;
         }
-        
-        String query = request.getQuery().trim();
-        Page<ProductSearchDocument> results;
-        
-        switch (request.getSearchType()) {
-            case EXACT -> results = productSearchRepository.findByNameContaining(query, pageable);
-            case FUZZY -> results = productSearchRepository.findBySearchableTextContaining(query, pageable);
-            case WILDCARD -> results = productSearchRepository.findBySearchableTextContaining(query, pageable);
-            case PHRASE_PREFIX -> results = productSearchRepository.findByAutocompleteTextContaining(query, pageable);
-            case MULTI_MATCH -> results = productSearchRepository.findByMultipleFields(query, pageable);
-            default -> results = productSearchRepository.findBySearchableTextContaining(query, pageable);
+        if (filters.getCategoryIds() != null && filters.getCategoryIds().size() == 1) {
+            context.setCategoryId(filters.getCategoryIds().get(0));
         }
-        
-        return applyFilters(results, request);
-    }
-    
-    /**
-     * Apply filters to search results
-     */
-    private Page<ProductSearchDocument> applyFilters(Page<ProductSearchDocument> results, SearchRequestDto request) {
-        if (request.getFilters() == null) {
-            return results;
+        context.setMinPrice(filters.getMinPrice());
+        context.setMaxPrice(filters.getMaxPrice());
+        if (filters.getBrands() != null && filters.getBrands().size() == 1) {
+            context.setDynamicFields(List.of(ProductFilterDto.DynamicFieldFilterDto.builder()
+                .fieldName("brand")
+                .value(filters.getBrands().get(0))
+                .build()));
         }
-        
-        // Note: This is a simplified implementation. In a real scenario, 
-        // you'd want to apply filters at the database/Elasticsearch level for better performance
-        return results; // Return original for now
+        return context;
     }
     
-    /**
-     * Create pageable with sorting
-     */
-    private Pageable createPageable(SearchRequestDto request) {
-        Sort sort = createSort(request);
-        return PageRequest.of(request.getPage(), request.getSize(), sort);
-    }
-    
-    /**
-     * Create sorting options
-     */
-    private Sort createSort(SearchRequestDto request) {
-        String sortBy = request.getSortBy();
-        Sort.Direction direction = request.getSortDirection() == SearchRequestDto.SortDirection.DESC 
-            ? Sort.Direction.DESC 
-            : Sort.Direction.ASC;
-        
-        return switch (sortBy.toLowerCase()) {
-            case "price" -> Sort.by(direction, "basePrice");
-            case "name" -> Sort.by(direction, "name");
-            case "rating" -> Sort.by(direction, "averageRating");
-            case "popularity" -> Sort.by(direction, "popularityScore");
-            case "newest" -> Sort.by(Sort.Direction.DESC, "createdAt");
-            default -> Sort.by(Sort.Direction.DESC, "searchRankingScore");
-        };
-    }
-    
-    /**
-     * Build the final search response
-     */
-    private SearchResponseDto<ProductSearchDocument> buildSearchResponse(
-        Page<ProductSearchDocument> results, 
-        SearchRequestDto request, 
-        long searchTime) {
-        
-        SearchResponseDto.SearchMetadata metadata = SearchResponseDto.SearchMetadata.builder()
-            .query(request.getQuery())
-            .totalHits(results.getTotalElements())
-            .page(request.getPage())
-            .size(request.getSize())
-            .totalPages(results.getTotalPages())
-            .maxScore(1.0) // Simplified - not available in Page interface
-            .searchTime(searchTime)
-            .hasNext(results.hasNext())
-            .hasPrevious(results.hasPrevious())
-            .build();
-        
-        SearchResponseDto.SearchResponseDtoBuilder<ProductSearchDocument> responseBuilder = SearchResponseDto.<ProductSearchDocument>builder()
-            .results(results.getContent())
-            .metadata(metadata);
-        
-        // Add suggestions if requested
-        if (request.getIncludeSuggestions()) {
-            responseBuilder.suggestions(getSuggestions(request.getQuery(), 5));
-        }
-        
-        // Add facets if requested
-        if (request.getIncludeFacets()) {
-            responseBuilder.facets(getFacets(request));
+    private List<SearchResponseDto.FacetResult> toFacetResults(List<FacetCountDto> counts) {
+        if (counts == null) {
+            return Collections.emptyList();
         }
-        
-        // Add empty highlights for now
-        responseBuilder.highlights(new HashMap<>());
-        
-        return responseBuilder.build();
+        return counts.stream()
+            .map(count -> SearchResponseDto.FacetResult.builder()
+                .key(count.getKey())
+                .count(count.getCount())
+                .selected(count.getSelected())
+                .metadata(count.getLabel() != null ? Map.of("label", count.getLabel()) : null)
+                .build())
+            .collect(Collectors.toList());
     }
     
     /**
@@ -255,5 +302,12 @@ public class ProductSearchService {
         if (request.getSize() <= 0) {
             throw new SearchValidationException("Page size must be greater than zero");
         }
+        
+        boolean cursorPaging = request.getCursor() != null
+            || (request.getSearchAfter() != null && !request.getSearchAfter().isEmpty());
+        if (!cursorPaging && (long) (request.getPage() + 1) * request.getSize() > maxOffsetWindow) {
+            throw new SearchValidationException("Results beyond the first " + maxOffsetWindow
+                + " can only be reached with the cursor of the previous page");
+        }
     }
 }
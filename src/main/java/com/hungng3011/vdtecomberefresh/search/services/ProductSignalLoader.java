@@ -0,0 +1,139 @@
+package com.hungng3011.vdtecomberefresh.search.services;
+
+import com.hungng3011.vdtecomberefresh.order.enums.OrderStatus;
+import com.hungng3011.vdtecomberefresh.order.repositories.OrderRepository;
+import com.hungng3011.vdtecomberefresh.product.repositories.VariationRepository;
+import com.hungng3011.vdtecomberefresh.stock.repositories.StockRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads the stock, sales, engagement and variation data that search documents are ranked and filtered on.
+ *
+ * Everything is read for a whole batch of products at once: one grouped stock query, one grouped order
+ * query, one variation query and two Redis lookups, however many products the batch holds.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSignalLoader {
+
+    /**
+     * Orders that count as a sale; unpaid, failed and cancelled orders do not
+     */
+    static final Set<OrderStatus> SALE_STATUSES = EnumSet.of(
+        OrderStatus.PAID, OrderStatus.CONFIRMED, OrderStatus.PROCESSING, OrderStatus.SHIPPED, OrderStatus.DELIVERED);
+
+    private static final Set<String> COLOR_TYPES = Set.of("color", "colour");
+    private static final Set<String> SIZE_TYPES = Set.of("size");
+
+    private final StockRepository stockRepository;
+    private final OrderRepository orderRepository;
+    private final VariationRepository variationRepository;
+    private final SearchAnalyticsService searchAnalyticsService;
+
+    /**
+     * Load the signals of a batch of products
+     * @param productIds Products being indexed
+     * @return Signals per product ID; every requested ID has an entry
+     */
+    public Map<Long, ProductSignals> load(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, ProductSignals.Builder> builders = new HashMap<>();
+        productIds.forEach(id -> builders.put(id, new ProductSignals.Builder()));
+
+        for (Object[] row : stockRepository.summarizeByProductIds(productIds)) {
+            ProductSignals.Builder builder = builders.get((Long) row[0]);
+            builder.stockQuantity = ((Number) row[1]).intValue();
+            builder.lowStockThreshold = ((Number) row[2]).intValue();
+        }
+
+        for (Object[] row : orderRepository.countOrdersByProductIds(productIds, SALE_STATUSES)) {
+            builders.get((Long) row[0]).orderCount = ((Number) row[1]).intValue();
+        }
+
+        for (Object[] row : variationRepository.findLabelsByProductIds(productIds)) {
+            ProductSignals.Builder builder = builders.get((Long) row[0]);
+            builder.variationIds.add(String.valueOf(row[1]));
+            String type = row[2] != null ? row[2].toString().trim().toLowerCase() : "";
+            String name = row[3] != null ? row[3].toString().trim() : "";
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (COLOR_TYPES.contains(type) && !builder.colors.contains(name)) {
+                builder.colors.add(name);
+            } else if (SIZE_TYPES.contains(type) && !builder.sizes.contains(name)) {
+                builder.sizes.add(name);
+            }
+        }
+
+        searchAnalyticsService.getProductEngagement(productIds).forEach((id, engagement) -> {
+            ProductSignals.Builder builder = builders.get(id);
+            builder.viewCount = engagement.views();
+            builder.clickCount = engagement.clicks();
+            if (engagement.rankingScore() != null) {
+                builder.rankingScore = engagement.rankingScore();
+            }
+        });
+
+        Map<Long, ProductSignals> signals = new HashMap<>();
+        builders.forEach((id, builder) -> signals.put(id, builder.build()));
+        log.debug("Loaded search signals for {} products", signals.size());
+        return signals;
+    }
+
+    /**
+     * Ranking and filtering data for one product
+     * @param stockQuantity Units in stock across all SKUs
+     * @param lowStock Whether the product is in stock but at or under its low stock threshold
+     * @param orderCount Number of orders that sold the product
+     * @param viewCount Product page views
+     * @param clickCount Clicks from search results
+     * @param rankingScore Click-through ranking multiplier, 1 for products without enough clicks data
+     * @param colors Names of the product's color variations
+     * @param sizes Names of the product's size variations
+     * @param variationIds IDs of all of the product's variations
+     */
+    public record ProductSignals(int stockQuantity, boolean lowStock, int orderCount, long viewCount,
+                                 long clickCount, float rankingScore, List<String> colors, List<String> sizes,
+                                 List<String> variationIds) {
+
+        /**
+         * Signals of a product with no stock, orders, activity or variations
+         */
+        public static final ProductSignals NONE = new Builder().build();
+
+        public boolean inStock() {
+            return stockQuantity > 0;
+        }
+
+        private static final class Builder {
+            private int stockQuantity;
+            private int lowStockThreshold;
+            private int orderCount;
+            private long viewCount;
+            private long clickCount;
+            private float rankingScore = 1.0f;
+            private final List<String> colors = new ArrayList<>();
+            private final List<String> sizes = new ArrayList<>();
+            private final List<String> variationIds = new ArrayList<>();
+
+            private ProductSignals build() {
+                boolean lowStock = stockQuantity > 0 && stockQuantity <= lowStockThreshold;
+                return new ProductSignals(stockQuantity, lowStock, orderCount, viewCount, clickCount, rankingScore,
+                    List.copyOf(colors), List.copyOf(sizes), List.copyOf(variationIds));
+            }
+        }
+    }
+}
@@ -3,78 +3,441 @@ package com.hungng3011.vdtecomberefresh.search.services;
 import com.hungng3011.vdtecomberefresh.search.documents.ProductSearchDocument;
 import com.hungng3011.vdtecomberefresh.search.dtos.SearchRequestDto;
 import com.hungng3011.vdtecomberefresh.search.dtos.SearchResponseDto;
-import lombok.RequiredArgsConstructor;
+import com.hungng3011.vdtecomberefresh.search.utils.HeavyHitters;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Service for tracking and analyzing search behavior
+ * Service for tracking and analyzing search behavior.
+ *
+ * Searches and product views are not written to Redis on the request thread. {@link #logSearch} and
+ * {@link #logProductView} only offer a small event to a bounded queue; when the queue is full the event is dropped
+ * and counted rather than slowing the request down.
+ * Each flush drains the queue in batches, adds up the increments per query and per day, and writes the daily
+ * totals of a batch in a single pipelined round trip; queued views are added up per product the same way. A batch
+ * that fails to write is dropped; these are counters, not records.
+ *
+ * Popular and failed (zero result) queries are counted in process by {@link HeavyHitters}, so each node keeps
+ * its current top queries in bounded memory however long the tail. At the merge interval the occurrences each
+ * node saw since its last merge are added to hourly and daily sorted sets in Redis, one pipelined round trip,
+ * and each set is trimmed to {@code top-k.retained} queries once per merge rather than once per search. The top
+ * queries of the current hour are read from its hourly set, those of the last day and week from the union of
+ * the last 24 hourly or 7 daily sets.
+ *
+ * Each search also records which products it showed. A product shown at position {@code k} adds
+ * {@link #examinationProbability(int)} to its examinations, the expected number of times a user looked at it,
+ * so clicks over examinations is a click-through rate with position bias taken out. Continuation pages from a
+ * cursor have no known position and are not counted. Examinations and clicks with a position are kept in daily
+ * sorted sets, read over the last {@code window-days} days, with catalog-wide daily totals in the daily stats
+ * hash; products shown or clicked are also added to a set of products waiting to be rescored.
+ *
+ * Metrics: {@code search.analytics.queue} (searches waiting), {@code search.analytics.dropped} (queue overflow),
+ * {@code search.analytics.flush} (time per pipelined batch), {@code search.analytics.merge} (time per top query
+ * merge) and {@code search.analytics.flush.failures}.
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class SearchAnalyticsService {
     
     private final RedisTemplate<String, Object> redisTemplate;
+    private final int batchSize;
+    private final BlockingQueue<SearchEvent> events;
+    private final BlockingQueue<String> productViews;
+    private final Counter dropped;
+    private final Counter flushFailures;
+    private final Timer flushTimer;
+    private final Timer mergeTimer;
+    private final int retainedQueries;
+    private final HeavyHitters popularQueries;
+    private final HeavyHitters failedQueries;
+    private final int clickWindowDays;
+    private final Duration clickRetention;
+    private String mergeHour;
     
     private static final String SEARCH_ANALYTICS_PREFIX = "search:analytics:";
-    private static final String POPULAR_QUERIES_KEY = SEARCH_ANALYTICS_PREFIX + "popular:queries";
-    private static final String FAILED_QUERIES_KEY = SEARCH_ANALYTICS_PREFIX + "failed:queries";
+    private static final String POPULAR_QUERIES_PREFIX = SEARCH_ANALYTICS_PREFIX + "popular:";
+    private static final String FAILED_QUERIES_PREFIX = SEARCH_ANALYTICS_PREFIX + "failed:";
     private static final String USER_SEARCHES_PREFIX = SEARCH_ANALYTICS_PREFIX + "user:";
     private static final String DAILY_STATS_PREFIX = SEARCH_ANALYTICS_PREFIX + "daily:";
+    // Per-product counters are sorted set scores, so a batch of products is read with one ZMSCORE
+    private static final String PRODUCT_VIEWS_KEY = SEARCH_ANALYTICS_PREFIX + "product:views";
+    private static final String PRODUCT_CLICKS_KEY = SEARCH_ANALYTICS_PREFIX + "product:clicks";
+    // Click-through rate inputs per day: clicks with a known position and examinations
+    private static final String RANKED_CLICKS_PREFIX = SEARCH_ANALYTICS_PREFIX + "product:clicks:day:";
+    private static final String EXAMINATIONS_PREFIX = SEARCH_ANALYTICS_PREFIX + "product:examinations:day:";
+    private static final String PRODUCTS_TO_RANK_KEY = SEARCH_ANALYTICS_PREFIX + "product:ranking:pending";
+    private static final String PRODUCT_RANKING_KEY = SEARCH_ANALYTICS_PREFIX + "product:ranking";
+    private static final String RANKED_CLICKS_FIELD = "search_clicks";
+    private static final String EXAMINATIONS_FIELD = "examinations";
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH");
+    // Hourly and daily sets outlive the unions of the last day and week that read them
+    private static final Duration HOURLY_RETENTION = Duration.ofHours(26);
+    private static final Duration DAILY_RETENTION = Duration.ofDays(8);
+    private static final Duration UNION_TTL = Duration.ofSeconds(30);
+
+    /**
+     * Period covered by a top query ranking
+     */
+    public enum QueryWindow {
+        /** The current clock hour */
+        HOUR,
+        /** The last 24 clock hours */
+        DAY,
+        /** The last 7 days */
+        WEEK
+    }
+
+    public SearchAnalyticsService(RedisTemplate<String, Object> redisTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.search.analytics.queue-capacity:10000}") int queueCapacity,
+                                  @Value("${app.search.analytics.batch-size:2000}") int batchSize,
+                                  @Value("${app.search.analytics.top-k.capacity:1000}") int topQueryCapacity,
+                                  @Value("${app.search.analytics.top-k.retained:2000}") int retainedQueries,
+                                  @Value("${app.search.analytics.top-k.sketch-width:2048}") int sketchWidth,
+                                  @Value("${app.search.analytics.top-k.sketch-depth:4}") int sketchDepth,
+                                  @Value("${app.search.ranking.clicks.window-days:28}") int clickWindowDays) {
+        this.redisTemplate = redisTemplate;
+        this.clickWindowDays = clickWindowDays;
+        this.clickRetention = Duration.ofDays(clickWindowDays + 1L);
+        this.batchSize = batchSize;
+        this.retainedQueries = retainedQueries;
+        this.popularQueries = new HeavyHitters(topQueryCapacity, sketchWidth, sketchDepth);
+        this.failedQueries = new HeavyHitters(topQueryCapacity, sketchWidth, sketchDepth);
+        this.mergeHour = LocalDateTime.now().format(HOUR_FORMAT);
+        this.events = new ArrayBlockingQueue<>(queueCapacity);
+        this.productViews = new ArrayBlockingQueue<>(queueCapacity);
+        this.dropped = Counter.builder("search.analytics.dropped")
+            .description("Search and product view events dropped because their queue was full")
+            .register(meterRegistry);
+        this.flushFailures = Counter.builder("search.analytics.flush.failures").register(meterRegistry);
+        this.flushTimer = Timer.builder("search.analytics.flush").register(meterRegistry);
+        this.mergeTimer = Timer.builder("search.analytics.merge").register(meterRegistry);
+        Gauge.builder("search.analytics.queue", events, Collection::size).register(meterRegistry);
+    }
     
     /**
-     * Log a search query and its results
+     * Queue a search and its result count for the next flush; never blocks
+     * @param request The search request
+     * @param response The response returned to the client
      */
     public void logSearch(SearchRequestDto request, SearchResponseDto<ProductSearchDocument> response) {
         try {
-            String query = request.getQuery();
-            String today = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-            
-            // Track popular queries
-            if (query != null && !query.trim().isEmpty() && response.getMetadata().getTotalHits() > 0) {
-                redisTemplate.opsForZSet().incrementScore(POPULAR_QUERIES_KEY, query, 1);
-                
-                // Keep only top 1000 popular queries
-                redisTemplate.opsForZSet().removeRange(POPULAR_QUERIES_KEY, 0, -1001);
+            SearchResponseDto.SearchMetadata metadata = response.getMetadata();
+            long totalHits = metadata.getTotalHits() != null ? metadata.getTotalHits() : 0L;
+            long searchTime = metadata.getSearchTime() != null ? metadata.getSearchTime() : 0L;
+            List<String> shownProductIds = request.getCursor() == null && response.getResults() != null
+                ? response.getResults().stream().map(ProductSearchDocument::getId).toList()
+                : List.of();
+            int firstPosition = request.getPage() != null && request.getSize() != null
+                ? request.getPage() * request.getSize() + 1
+                : 1;
+            SearchEvent event = new SearchEvent(request.getQuery(), totalHits, searchTime,
+                LocalDateTime.now().format(DAY_FORMAT), shownProductIds, firstPosition);
+            if (!events.offer(event)) {
+                dropped.increment();
             }
-            
-            // Track failed queries (no results)
-            if (response.getMetadata().getTotalHits() == 0) {
-                redisTemplate.opsForZSet().incrementScore(FAILED_QUERIES_KEY, query, 1);
-                
-                // Keep only top 500 failed queries
-                redisTemplate.opsForZSet().removeRange(FAILED_QUERIES_KEY, 0, -501);
+        } catch (Exception e) {
+            log.error("Failed to queue search analytics", e);
+        }
+    }
+
+    /**
+     * Write the queued searches and product views to Redis, one pipelined round trip per batch
+     */
+    @Scheduled(fixedDelayString = "${app.search.analytics.flush-interval:1s}")
+    public void flush() {
+        List<SearchEvent> batch = new ArrayList<>(Math.min(batchSize, events.size()));
+        while (events.drainTo(batch, batchSize) > 0) {
+            SearchBatch aggregated = SearchBatch.of(batch);
+            synchronized (popularQueries) {
+                aggregated.popular().forEach(popularQueries::add);
+                aggregated.failed().forEach(failedQueries::add);
             }
-            
-            // Track daily statistics
-            String dailyKey = DAILY_STATS_PREFIX + today;
-            redisTemplate.opsForHash().increment(dailyKey, "total_searches", 1);
-            redisTemplate.opsForHash().increment(dailyKey, "total_results", response.getMetadata().getTotalHits());
-            
-            if (response.getMetadata().getTotalHits() == 0) {
-                redisTemplate.opsForHash().increment(dailyKey, "zero_result_searches", 1);
+            try {
+                flushTimer.record(() -> write(aggregated));
+                log.debug("Logged search analytics for {} searches, {} distinct queries",
+                    batch.size(), aggregated.popular().size() + aggregated.failed().size());
+            } catch (Exception e) {
+                flushFailures.increment();
+                log.error("Failed to write analytics for {} searches", batch.size(), e);
             }
-            
-            // Set expiration for daily stats (keep for 90 days)
-            redisTemplate.expire(dailyKey, 90, TimeUnit.DAYS);
-            
-            // Track search time performance
-            redisTemplate.opsForHash().increment(dailyKey, "total_search_time", response.getMetadata().getSearchTime());
-            
-            log.debug("Logged search analytics for query: '{}', results: {}, time: {}ms", 
-                query, response.getMetadata().getTotalHits(), response.getMetadata().getSearchTime());
-                
+            batch.clear();
+        }
+
+        List<String> views = new ArrayList<>(Math.min(batchSize, productViews.size()));
+        while (productViews.drainTo(views, batchSize) > 0) {
+            Map<String, Long> viewsPerProduct = new HashMap<>();
+            views.forEach(productId -> viewsPerProduct.merge(productId, 1L, Long::sum));
+            try {
+                flushTimer.record(() -> writeViews(viewsPerProduct));
+            } catch (Exception e) {
+                flushFailures.increment();
+                log.error("Failed to write {} product views", views.size(), e);
+            }
+            views.clear();
+        }
+    }
+
+    /**
+     * Add the popular and failed query counts seen since the previous merge to the shared hourly and daily sets
+     */
+    @Scheduled(fixedDelayString = "${app.search.analytics.top-k.merge-interval:1m}")
+    public void mergeTopQueries() {
+        LocalDateTime now = LocalDateTime.now();
+        String hour = now.format(HOUR_FORMAT);
+        Map<String, Long> popular;
+        Map<String, Long> failed;
+        synchronized (popularQueries) {
+            popular = popularQueries.drainUnmerged();
+            failed = failedQueries.drainUnmerged();
+            // Rankings start over each hour, so a node's candidates follow what is searched now
+            if (!hour.equals(mergeHour)) {
+                popularQueries.clear();
+                failedQueries.clear();
+                mergeHour = hour;
+            }
+        }
+        if (popular.isEmpty() && failed.isEmpty()) {
+            return;
+        }
+
+        String day = now.format(DAY_FORMAT);
+        try {
+            mergeTimer.record(() -> redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> redis = (RedisOperations<String, Object>) operations;
+                    mergeInto(redis, POPULAR_QUERIES_PREFIX, hour, day, popular);
+                    mergeInto(redis, FAILED_QUERIES_PREFIX, hour, day, failed);
+                    return null;
+                }
+            }));
+        } catch (Exception e) {
+            flushFailures.increment();
+            log.error("Failed to merge {} popular and {} failed query counts", popular.size(), failed.size(), e);
+        }
+    }
+
+    /**
+     * @return Number of searches waiting for the next flush
+     */
+    public int getPendingCount() {
+        return events.size();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    private void write(SearchBatch batch) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> redis = (RedisOperations<String, Object>) operations;
+                batch.daily().forEach((day, stats) -> {
+                    String dailyKey = DAILY_STATS_PREFIX + day;
+                    redis.opsForHash().increment(dailyKey, "total_searches", stats.searches);
+                    redis.opsForHash().increment(dailyKey, "total_results", stats.results);
+                    if (stats.zeroResultSearches > 0) {
+                        redis.opsForHash().increment(dailyKey, "zero_result_searches", stats.zeroResultSearches);
+                    }
+                    redis.opsForHash().increment(dailyKey, "total_search_time", stats.searchTime);
+                    // Keep daily stats for 90 days
+                    redis.expire(dailyKey, 90, TimeUnit.DAYS);
+                });
+                batch.examinations().forEach((day, examinations) -> {
+                    String examinationsKey = EXAMINATIONS_PREFIX + day;
+                    double total = 0;
+                    for (Map.Entry<String, Double> product : examinations.entrySet()) {
+                        redis.opsForZSet().incrementScore(examinationsKey, product.getKey(), product.getValue());
+                        total += product.getValue();
+                    }
+                    redis.expire(examinationsKey, clickRetention);
+                    redis.opsForHash().increment(DAILY_STATS_PREFIX + day, EXAMINATIONS_FIELD, total);
+                    redis.opsForSet().add(PRODUCTS_TO_RANK_KEY, examinations.keySet().toArray());
+                });
+                return null;
+            }
+        });
+    }
+
+    private void writeViews(Map<String, Long> viewsPerProduct) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> redis = (RedisOperations<String, Object>) operations;
+                viewsPerProduct.forEach((productId, count) ->
+                    redis.opsForZSet().incrementScore(PRODUCT_VIEWS_KEY, productId, count));
+                return null;
+            }
+        });
+    }
+
+    private void mergeInto(RedisOperations<String, Object> redis, String prefix, String hour, String day,
+                           Map<String, Long> counts) {
+        if (counts.isEmpty()) {
+            return;
+        }
+        incrementAndTrim(redis, prefix + "hour:" + hour, counts, HOURLY_RETENTION);
+        incrementAndTrim(redis, prefix + "day:" + day, counts, DAILY_RETENTION);
+    }
+
+    private void incrementAndTrim(RedisOperations<String, Object> redis, String key, Map<String, Long> increments,
+                                  Duration retention) {
+        increments.forEach((query, count) -> redis.opsForZSet().incrementScore(key, query, count));
+        redis.opsForZSet().removeRange(key, 0, -(retainedQueries + 1));
+        redis.expire(key, retention);
+    }
+
+    /**
+     * Rank a window's queries with one round trip: windows longer than an hour are summed into a short-lived
+     * union set first
+     */
+    @SuppressWarnings("unchecked")
+    private QueryRanking rankQueries(String prefix, QueryWindow window, int limit) {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            Set<ZSetOperations.TypedTuple<Object>> queries;
+            long distinct;
+            if (window == QueryWindow.HOUR) {
+                String key = prefix + "hour:" + now.format(HOUR_FORMAT);
+                List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                        RedisOperations<String, Object> redis = (RedisOperations<String, Object>) operations;
+                        redis.opsForZSet().reverseRangeWithScores(key, 0, limit - 1);
+                        redis.opsForZSet().zCard(key);
+                        return null;
+                    }
+                });
+                queries = (Set<ZSetOperations.TypedTuple<Object>>) results.get(0);
+                distinct = results.get(1) != null ? (Long) results.get(1) : 0L;
+            } else {
+                List<String> keys = window == QueryWindow.DAY
+                    ? bucketKeys(prefix + "hour:", now, 24, HOUR_FORMAT, true)
+                    : bucketKeys(prefix + "day:", now, 7, DAY_FORMAT, false);
+                String union = prefix + "top:" + window.name().toLowerCase(Locale.ROOT);
+                List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                        RedisOperations<String, Object> redis = (RedisOperations<String, Object>) operations;
+                        redis.opsForZSet().unionAndStore(keys.get(0), keys.subList(1, keys.size()), union);
+                        redis.expire(union, UNION_TTL);
+                        redis.opsForZSet().reverseRangeWithScores(union, 0, limit - 1);
+                        return null;
+                    }
+                });
+                distinct = results.get(0) != null ? (Long) results.get(0) : 0L;
+                queries = (Set<ZSetOperations.TypedTuple<Object>>) results.get(2);
+            }
+
+            Map<String, Long> counts = new LinkedHashMap<>();
+            if (queries != null) {
+                queries.forEach(query -> counts.put(String.valueOf(query.getValue()),
+                    query.getScore() != null ? query.getScore().longValue() : 0L));
+            }
+            return new QueryRanking(counts, distinct);
         } catch (Exception e) {
-            log.error("Failed to log search analytics", e);
+            log.error("Failed to rank queries under {} for the last {}", prefix, window, e);
+            return new QueryRanking(new LinkedHashMap<>(), 0);
         }
     }
+
+    private static List<String> bucketKeys(String prefix, LocalDateTime now, int buckets, DateTimeFormatter format,
+                                           boolean hourly) {
+        List<String> keys = new ArrayList<>(buckets);
+        for (int i = 0; i < buckets; i++) {
+            LocalDateTime bucket = hourly ? now.minusHours(i) : now.minusDays(i);
+            keys.add(prefix + bucket.format(format));
+        }
+        return keys;
+    }
+
+    /**
+     * The top queries of a window and the number of distinct queries ranked in it
+     */
+    private record QueryRanking(Map<String, Long> top, long distinct) {
+    }
+
+    /**
+     * One search as queued by {@link #logSearch}
+     */
+    record SearchEvent(String query, long totalHits, long searchTime, String day, List<String> shownProductIds,
+                       int firstPosition) {
+    }
+
+    /**
+     * A drained batch added up: searches per query with and without results, totals per day and examinations
+     * per day and product
+     */
+    record SearchBatch(Map<String, Long> popular, Map<String, Long> failed, Map<String, DailyStats> daily,
+                       Map<String, Map<String, Double>> examinations) {
+
+        static SearchBatch of(List<SearchEvent> events) {
+            SearchBatch batch = new SearchBatch(new HashMap<>(), new HashMap<>(), new TreeMap<>(), new HashMap<>());
+            for (SearchEvent event : events) {
+                for (int i = 0; i < event.shownProductIds().size(); i++) {
+                    batch.examinations().computeIfAbsent(event.day(), day -> new HashMap<>())
+                        .merge(event.shownProductIds().get(i), examinationProbability(event.firstPosition() + i),
+                            Double::sum);
+                }
+                boolean hasQuery = event.query() != null && !event.query().trim().isEmpty();
+                if (hasQuery) {
+                    (event.totalHits() > 0 ? batch.popular() : batch.failed()).merge(event.query(), 1L, Long::sum);
+                }
+                DailyStats stats = batch.daily().computeIfAbsent(event.day(), day -> new DailyStats());
+                stats.searches++;
+                stats.results += event.totalHits();
+                stats.searchTime += event.searchTime();
+                if (event.totalHits() == 0) {
+                    stats.zeroResultSearches++;
+                }
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * Position bias model: the chance that a user looks at the result shown at a position, {@code 1 / log2(k + 1)}
+     * for position {@code k}, as in DCG
+     * @param position 1-based position in the result list
+     * @return Probability between 0 and 1
+     */
+    static double examinationProbability(int position) {
+        return 1.0 / (Math.log(position + 1) / Math.log(2));
+    }
+
+    static final class DailyStats {
+        long searches;
+        long results;
+        long zeroResultSearches;
+        long searchTime;
+    }
     
     /**
      * Log user search behavior
@@ -104,28 +467,32 @@ public class SearchAnalyticsService {
     
     /**
      * Get popular search queries
+     * @param window Period to rank
+     * @param limit Maximum number of queries
+     * @return Queries that found results, most searched first
      */
-    public List<String> getPopularQueries(int limit) {
-        try {
-            Set<Object> queries = redisTemplate.opsForZSet().reverseRange(POPULAR_QUERIES_KEY, 0, limit - 1);
-            return queries != null ? new ArrayList<>(queries.stream().map(Object::toString).toList()) : new ArrayList<>();
-        } catch (Exception e) {
-            log.error("Failed to get popular queries", e);
-            return new ArrayList<>();
-        }
+    public List<String> getPopularQueries(QueryWindow window, int limit) {
+        return new ArrayList<>(getPopularQueryCounts(window, limit).keySet());
+    }
+    
+    /**
+     * Get popular search queries with the number of searches that found results for each
+     * @param window Period to rank
+     * @param limit Maximum number of queries
+     * @return Search counts by query, most searched first; empty when Redis is unavailable
+     */
+    public Map<String, Long> getPopularQueryCounts(QueryWindow window, int limit) {
+        return rankQueries(POPULAR_QUERIES_PREFIX, window, limit).top();
     }
     
     /**
      * Get failed search queries that need attention
+     * @param window Period to rank
+     * @param limit Maximum number of queries
+     * @return Queries that found nothing, most searched first
      */
-    public List<String> getFailedQueries(int limit) {
-        try {
-            Set<Object> queries = redisTemplate.opsForZSet().reverseRange(FAILED_QUERIES_KEY, 0, limit - 1);
-            return queries != null ? new ArrayList<>(queries.stream().map(Object::toString).toList()) : new ArrayList<>();
-        } catch (Exception e) {
-            log.error("Failed to get failed queries", e);
-            return new ArrayList<>();
-        }
+    public List<String> getFailedQueries(QueryWindow window, int limit) {
+        return new ArrayList<>(rankQueries(FAILED_QUERIES_PREFIX, window, limit).top().keySet());
     }
     
     /**
@@ -183,7 +550,7 @@ public class SearchAnalyticsService {
      */
     public List<String> getSearchSuggestions(String prefix, int limit) {
         try {
-            List<String> popularQueries = getPopularQueries(100);
+            List<String> popularQueries = getPopularQueries(QueryWindow.WEEK, 100);
             
             return popularQueries.stream()
                 .filter(query -> query.toLowerCase().startsWith(prefix.toLowerCase()))
@@ -197,30 +564,252 @@ public class SearchAnalyticsService {
     }
     
     /**
-     * Track when a user clicks on a search result
+     * Track when a user clicks on a search result, with one Redis round trip. Only clicks with a position count
+     * towards the product's click-through rate.
+     * @param query The search query
+     * @param productId The clicked product
+     * @param position 1-based position of the product in the results
      */
     public void logSearchResultClick(String query, String productId, int position) {
         try {
             String clickKey = SEARCH_ANALYTICS_PREFIX + "clicks:" + query;
+            String day = LocalDateTime.now().format(DAY_FORMAT);
             
             Map<String, Object> clickData = new HashMap<>();
             clickData.put("product_id", productId);
             clickData.put("position", position);
             clickData.put("timestamp", LocalDateTime.now().toString());
             
-            redisTemplate.opsForList().leftPush(clickKey, clickData);
-            
-            // Keep only last 100 clicks per query
-            redisTemplate.opsForList().trim(clickKey, 0, 99);
-            
-            // Set expiration (keep for 30 days)
-            redisTemplate.expire(clickKey, 30, TimeUnit.DAYS);
-            
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> redis = (RedisOperations<String, Object>) operations;
+                    redis.opsForList().leftPush(clickKey, clickData);
+                    // Keep only last 100 clicks per query, for 30 days
+                    redis.opsForList().trim(clickKey, 0, 99);
+                    redis.expire(clickKey, 30, TimeUnit.DAYS);
+                    redis.opsForZSet().incrementScore(PRODUCT_CLICKS_KEY, productId, 1);
+                    if (position >= 1) {
+                        String rankedClicksKey = RANKED_CLICKS_PREFIX + day;
+                        redis.opsForZSet().incrementScore(rankedClicksKey, productId, 1);
+                        redis.expire(rankedClicksKey, clickRetention);
+                        redis.opsForHash().increment(DAILY_STATS_PREFIX + day, RANKED_CLICKS_FIELD, 1);
+                        redis.opsForSet().add(PRODUCTS_TO_RANK_KEY, productId);
+                    }
+                    return null;
+                }
+            });
         } catch (Exception e) {
             log.error("Failed to log search result click", e);
         }
     }
     
+    /**
+     * Queue a view of a product detail page for the next flush; never blocks
+     * @param productId The viewed product
+     */
+    public void logProductView(Long productId) {
+        if (productId != null && !productViews.offer(productId.toString())) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Get view and search click counts and click ranking scores for a batch of products with three Redis round
+     * trips
+     * @param productIds Products to look up
+     * @return Counts per product ID; products without any activity or ranking score are absent
+     */
+    public Map<Long, ProductEngagement> getProductEngagement(Collection<Long> productIds) {
+        Map<Long, ProductEngagement> engagement = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return engagement;
+        }
+        try {
+            List<Long> ids = new ArrayList<>(productIds);
+            Object[] members = ids.stream().map(String::valueOf).toArray();
+            List<Double> views = redisTemplate.opsForZSet().score(PRODUCT_VIEWS_KEY, members);
+            List<Double> clicks = redisTemplate.opsForZSet().score(PRODUCT_CLICKS_KEY, members);
+            List<Double> rankingScores = redisTemplate.opsForZSet().score(PRODUCT_RANKING_KEY, members);
+
+            for (int i = 0; i < ids.size(); i++) {
+                long viewCount = countAt(views, i);
+                long clickCount = countAt(clicks, i);
+                Double rankingScore = rankingScores != null && i < rankingScores.size() ? rankingScores.get(i) : null;
+                if (viewCount > 0 || clickCount > 0 || rankingScore != null) {
+                    engagement.put(ids.get(i), new ProductEngagement(viewCount, clickCount,
+                        rankingScore != null ? rankingScore.floatValue() : null));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to get engagement for {} products", productIds.size(), e);
+        }
+        return engagement;
+    }
+
+    private static long countAt(List<Double> scores, int index) {
+        if (scores == null || index >= scores.size() || scores.get(index) == null) {
+            return 0;
+        }
+        return scores.get(index).longValue();
+    }
+
+    /**
+     * How often a product was viewed and clicked in search results
+     * @param views Product page views
+     * @param clicks Clicks from search results
+     * @param rankingScore Click ranking score last computed for the product, or null if none
+     */
+    public record ProductEngagement(long views, long clicks, Float rankingScore) {
+    }
+
+    /**
+     * Take products shown or clicked in search since they were last taken, for rescoring
+     * @param limit Maximum number of products
+     * @return Product IDs, fewer than {@code limit} once none are left; empty when Redis is unavailable
+     */
+    public List<Long> takeProductsToRank(int limit) {
+        List<Long> productIds = new ArrayList<>();
+        try {
+            List<Object> members = redisTemplate.opsForSet().pop(PRODUCTS_TO_RANK_KEY, limit);
+            if (members != null) {
+                for (Object member : members) {
+                    try {
+                        productIds.add(Long.valueOf(String.valueOf(member)));
+                    } catch (NumberFormatException e) {
+                        log.warn("Ignoring click statistics for product ID {}", member);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to take products to rank", e);
+        }
+        return productIds;
+    }
+
+    /**
+     * Read the clicks with a position and the examinations of all products over the click window, with one Redis
+     * round trip
+     * @return Catalog-wide totals; zero when Redis is unavailable
+     */
+    @SuppressWarnings("unchecked")
+    public ClickTotals getClickTotals() {
+        List<String> days = bucketKeys(DAILY_STATS_PREFIX, LocalDateTime.now(), clickWindowDays, DAY_FORMAT, false);
+        try {
+            List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> redis = (RedisOperations<String, Object>) operations;
+                    days.forEach(day -> redis.opsForHash().multiGet(day, List.of(RANKED_CLICKS_FIELD, EXAMINATIONS_FIELD)));
+                    return null;
+                }
+            });
+            long clicks = 0;
+            double examinations = 0;
+            for (Object result : results) {
+                List<Object> fields = (List<Object>) result;
+                if (fields != null && fields.size() == 2) {
+                    clicks += (long) toDouble(fields.get(0));
+                    examinations += toDouble(fields.get(1));
+                }
+            }
+            return new ClickTotals(clicks, examinations);
+        } catch (Exception e) {
+            log.error("Failed to read search click totals", e);
+            return new ClickTotals(0, 0);
+        }
+    }
+
+    /**
+     * Read clicks with a position and examinations over the click window, and ranking scores, of the given
+     * products with one Redis round trip
+     * @param productIds Products to read
+     * @return Statistics per product ID, for products with any examinations; empty when Redis is unavailable
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Long, ClickStats> getClickStats(Collection<Long> productIds) {
+        Map<Long, ClickStats> stats = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return stats;
+        }
+        List<Long> ids = new ArrayList<>(productIds);
+        Object[] members = ids.stream().map(String::valueOf).toArray();
+        LocalDateTime now = LocalDateTime.now();
+        List<String> clickKeys = bucketKeys(RANKED_CLICKS_PREFIX, now, clickWindowDays, DAY_FORMAT, false);
+        List<String> examinationKeys = bucketKeys(EXAMINATIONS_PREFIX, now, clickWindowDays, DAY_FORMAT, false);
+        try {
+            List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> redis = (RedisOperations<String, Object>) operations;
+                    redis.opsForZSet().score(PRODUCT_RANKING_KEY, members);
+                    clickKeys.forEach(key -> redis.opsForZSet().score(key, members));
+                    examinationKeys.forEach(key -> redis.opsForZSet().score(key, members));
+                    return null;
+                }
+            });
+            List<Double> rankingScores = (List<Double>) results.get(0);
+            for (int i = 0; i < ids.size(); i++) {
+                long clicks = 0;
+                double examinations = 0;
+                for (int day = 0; day < clickWindowDays; day++) {
+                    clicks += countAt((List<Double>) results.get(1 + day), i);
+                    List<Double> examined = (List<Double>) results.get(1 + clickWindowDays + day);
+                    if (examined != null && i < examined.size() && examined.get(i) != null) {
+                        examinations += examined.get(i);
+                    }
+                }
+                if (examinations > 0) {
+                    Double rankingScore = rankingScores != null && i < rankingScores.size() ? rankingScores.get(i) : null;
+                    stats.put(ids.get(i), new ClickStats(clicks, examinations,
+                        rankingScore != null ? rankingScore.floatValue() : null));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to read click statistics of {} products", ids.size(), e);
+        }
+        return stats;
+    }
+
+    /**
+     * Store click ranking scores, read back when products are indexed, with one Redis round trip
+     * @param scores Scores per product ID
+     */
+    public void saveRankingScores(Map<Long, Float> scores) {
+        if (scores.isEmpty()) {
+            return;
+        }
+        Set<ZSetOperations.TypedTuple<Object>> tuples = new HashSet<>();
+        scores.forEach((productId, score) ->
+            tuples.add(ZSetOperations.TypedTuple.of(productId.toString(), score.doubleValue())));
+        redisTemplate.opsForZSet().add(PRODUCT_RANKING_KEY, tuples);
+    }
+
+    private static double toDouble(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        return value instanceof Number number ? number.doubleValue() : Double.parseDouble(String.valueOf(value));
+    }
+
+    /**
+     * Search clicks of a product against how often it was looked at
+     * @param clicks Clicks from search results
+     * @param examinations Times the product was shown, each weighted by the chance it was looked at there
+     * @param rankingScore Click ranking score last computed, or null if none
+     */
+    public record ClickStats(long clicks, double examinations, Float rankingScore) {
+    }
+
+    /**
+     * Clicks with a position and examinations of the whole catalog over the click window
+     * @param clicks Clicks from search results
+     * @param examinations Examinations of all products
+     */
+    public record ClickTotals(long clicks, double examinations) {
+    }
+
     /**
      * Get aggregated search analytics dashboard data
      */
@@ -232,18 +821,16 @@ public class SearchAnalyticsService {
             String today = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
             dashboard.put("today_stats", getDailyStats(today));
             
-            // Get popular queries
-            dashboard.put("popular_queries", getPopularQueries(10));
-            
-            // Get failed queries that need attention
-            dashboard.put("failed_queries", getFailedQueries(10));
-            
-            // Get query count stats
-            Long popularQueryCount = redisTemplate.opsForZSet().count(POPULAR_QUERIES_KEY, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
-            Long failedQueryCount = redisTemplate.opsForZSet().count(FAILED_QUERIES_KEY, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+            // Get this week's popular queries and failed queries that need attention
+            QueryRanking popular = rankQueries(POPULAR_QUERIES_PREFIX, QueryWindow.WEEK, 10);
+            QueryRanking failed = rankQueries(FAILED_QUERIES_PREFIX, QueryWindow.WEEK, 10);
+            dashboard.put("popular_queries", new ArrayList<>(popular.top().keySet()));
+            dashboard.put("failed_queries", new ArrayList<>(failed.top().keySet()));
+            dashboard.put("popular_queries_last_hour", getPopularQueries(QueryWindow.HOUR, 10));
             
-            dashboard.put("total_unique_queries", popularQueryCount);
-            dashboard.put("total_failed_queries", failedQueryCount);
+            // Distinct queries ranked this week, at most top-k.retained per day
+            dashboard.put("total_unique_queries", popular.distinct());
+            dashboard.put("total_failed_queries", failed.distinct());
             
             return dashboard;
             
@@ -0,0 +1,242 @@
+package com.hungng3011.vdtecomberefresh.search.services;
+
+import com.hungng3011.vdtecomberefresh.search.exceptions.SearchServiceUnavailableException;
+import com.hungng3011.vdtecomberefresh.search.exceptions.SearchValidationException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Latency budget, bulkhead and circuit breaker around interactive Elasticsearch calls.
+ *
+ * - Calls run on a small dedicated pool with a bounded queue, so however slow Elasticsearch gets, at most
+ *   {@code max-concurrent + queue-capacity} calls wait on it; further calls are rejected at once. The request
+ *   thread waits at most the latency budget; a call still running past it is abandoned to the pool.
+ * - Failures and calls over budget are recorded in a sliding window of the last {@code window-size} calls. Once
+ *   at least {@code minimum-calls} are recorded and the failure rate reaches {@code failure-rate-threshold}
+ *   percent, the breaker opens and calls fail immediately for {@code open-duration}. It then lets
+ *   {@code half-open-calls} trial calls through: if they all succeed it closes, otherwise it opens again.
+ *
+ * Every refusal surfaces as {@link SearchServiceUnavailableException}, which callers answer from their
+ * fallback. {@link SearchValidationException} is the caller's problem rather than the cluster's; it is
+ * rethrown and counted as a success.
+ *
+ * The state is published as {@code search.circuit.state} (0 closed, 1 half-open, 2 open) and call outcomes as
+ * {@code search.circuit.calls{outcome}}.
+ */
+@Component
+@Slf4j
+public class SearchCircuitBreaker {
+
+    enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final Duration latencyBudget;
+    private final Duration openDuration;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final int halfOpenCalls;
+    private final ThreadPoolExecutor executor;
+
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    private final Counter successes;
+    private final Counter failures;
+    private final Counter timeouts;
+    private final Counter rejected;
+    private final Counter shortCircuited;
+
+    public SearchCircuitBreaker(MeterRegistry meterRegistry,
+                                @Value("${app.search.resilience.latency-budget:1500ms}") Duration latencyBudget,
+                                @Value("${app.search.resilience.max-concurrent:16}") int maxConcurrent,
+                                @Value("${app.search.resilience.queue-capacity:32}") int queueCapacity,
+                                @Value("${app.search.resilience.window-size:20}") int windowSize,
+                                @Value("${app.search.resilience.minimum-calls:10}") int minimumCalls,
+                                @Value("${app.search.resilience.failure-rate-threshold:50}") int failureRateThreshold,
+                                @Value("${app.search.resilience.open-duration:10s}") Duration openDuration,
+                                @Value("${app.search.resilience.half-open-calls:3}") int halfOpenCalls) {
+        this.latencyBudget = latencyBudget;
+        this.openDuration = openDuration;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.halfOpenCalls = halfOpenCalls;
+        this.window = new boolean[windowSize];
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                Thread thread = new Thread(runnable, "search-es-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.executor.allowCoreThreadTimeOut(true);
+
+        Gauge.builder("search.circuit.state", this, breaker -> breaker.getState().ordinal())
+            .register(meterRegistry);
+        this.successes = calls(meterRegistry, "success");
+        this.failures = calls(meterRegistry, "failure");
+        this.timeouts = calls(meterRegistry, "timeout");
+        this.rejected = calls(meterRegistry, "rejected");
+        this.shortCircuited = calls(meterRegistry, "short_circuited");
+    }
+
+    /**
+     * Run an Elasticsearch call within the latency budget, unless the breaker is open or the bulkhead is full
+     * @param call The call
+     * @return The call's result
+     * @throws SearchServiceUnavailableException If the call was refused, failed or ran over budget
+     * @throws SearchValidationException If the call rejected its input
+     */
+    public <T> T execute(Supplier<T> call) {
+        if (!tryAcquirePermission()) {
+            shortCircuited.increment();
+            throw new SearchServiceUnavailableException("Search circuit breaker is open");
+        }
+
+        Future<T> future;
+        try {
+            future = executor.submit(call::get);
+        } catch (RejectedExecutionException e) {
+            // Not the cluster's fault as such, so the breaker's window is left alone
+            releasePermission();
+            rejected.increment();
+            throw new SearchServiceUnavailableException("Too many concurrent searches", e);
+        }
+
+        try {
+            T result = future.get(latencyBudget.toMillis(), TimeUnit.MILLISECONDS);
+            record(true);
+            successes.increment();
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            record(false);
+            timeouts.increment();
+            throw new SearchServiceUnavailableException("Search exceeded its latency budget of " + latencyBudget, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SearchValidationException validation) {
+                record(true);
+                successes.increment();
+                throw validation;
+            }
+            record(false);
+            failures.increment();
+            throw new SearchServiceUnavailableException("Search service temporarily unavailable", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            releasePermission();
+            throw new SearchServiceUnavailableException("Interrupted while waiting for search", e);
+        }
+    }
+
+    /**
+     * @return The breaker's state, moving from open to half-open once the open duration has passed
+     */
+    synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openDuration.toNanos()) {
+            state = State.HALF_OPEN;
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccesses = 0;
+            log.info("Search circuit breaker half-open, trying {} calls", halfOpenCalls);
+        }
+        return state;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private synchronized boolean tryAcquirePermission() {
+        return switch (getState()) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (halfOpenPermits == 0) {
+                    yield false;
+                }
+                halfOpenPermits--;
+                yield true;
+            }
+        };
+    }
+
+    private synchronized void releasePermission() {
+        if (state == State.HALF_OPEN) {
+            halfOpenPermits++;
+        }
+    }
+
+    private synchronized void record(boolean success) {
+        if (state == State.HALF_OPEN) {
+            if (!success) {
+                open("a trial call failed");
+            } else if (++halfOpenSuccesses >= halfOpenCalls) {
+                state = State.CLOSED;
+                resetWindow();
+                log.info("Search circuit breaker closed");
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // A call admitted before the breaker opened
+            return;
+        }
+
+        if (windowCount == window.length) {
+            if (!window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = success;
+        if (!success) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+
+        if (windowCount >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCount) {
+            open(windowFailures + " of the last " + windowCount + " calls failed");
+        }
+    }
+
+    private void open(String reason) {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        resetWindow();
+        log.warn("Search circuit breaker opened for {}: {}", openDuration, reason);
+    }
+
+    private void resetWindow() {
+        windowIndex = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+
+    private static Counter calls(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("search.circuit.calls").tag("outcome", outcome).register(meterRegistry);
+    }
+}
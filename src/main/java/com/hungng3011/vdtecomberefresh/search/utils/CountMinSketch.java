@@ -0,0 +1,84 @@
+package com.hungng3011.vdtecomberefresh.search.utils;
+
+import java.util.Arrays;
+
+/**
+ * Count-Min Sketch: approximate counts of any number of distinct strings in {@code width * depth} counters.
+ *
+ * Each string increments one counter per row, picked by a different hash, and its estimate is the smallest of
+ * those counters. Estimates never undercount; with probability {@code 1 - e^-depth} they overcount by at most
+ * {@code e / width} of the total added. Not thread-safe.
+ */
+public final class CountMinSketch {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int width;
+    private final long[][] counts;
+
+    /**
+     * @param width Counters per row; the error bound shrinks with it
+     * @param depth Rows; the chance of exceeding the error bound shrinks with it
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width < 1 || depth < 1) {
+            throw new IllegalArgumentException("Sketch width and depth must be positive");
+        }
+        this.width = width;
+        this.counts = new long[depth][width];
+    }
+
+    /**
+     * Count occurrences of a string
+     * @param item The string
+     * @param count Occurrences to add
+     */
+    public void add(String item, long count) {
+        long hash = hash(item);
+        for (int row = 0; row < counts.length; row++) {
+            counts[row][index(hash, row)] += count;
+        }
+    }
+
+    /**
+     * @param item The string
+     * @return Occurrences added for the string, possibly overcounted by collisions; 0 if never added
+     */
+    public long estimate(String item) {
+        long hash = hash(item);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < counts.length; row++) {
+            estimate = Math.min(estimate, counts[row][index(hash, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Forget every count
+     */
+    public void clear() {
+        for (long[] row : counts) {
+            Arrays.fill(row, 0);
+        }
+    }
+
+    // Row hashes are derived from two halves of one 64-bit hash (Kirsch-Mitzenmacher)
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return Math.floorMod(h1 + row * h2, width);
+    }
+
+    private static long hash(String item) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < item.length(); i++) {
+            hash ^= item.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        // FNV-1a mixes the low bits poorly for short strings; finish with the SplitMix64 finalizer
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+}
@@ -0,0 +1,142 @@
+package com.hungng3011.vdtecomberefresh.search.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Most frequent strings of a stream in bounded memory: space-saving top-K candidates in front of a
+ * {@link CountMinSketch}.
+ *
+ * At most {@code capacity} candidates are tracked exactly from the moment they are admitted. Every string is
+ * also counted in the sketch; once the candidates are full, a new string replaces the least frequent candidate
+ * only when its sketch estimate exceeds that candidate's count, so the long tail does not churn the candidates.
+ * An admitted string starts from the smaller of its estimate and the evicted count plus its own occurrences,
+ * both upper bounds on its true count.
+ *
+ * Occurrences added since the last {@link #drainUnmerged()} are kept per candidate so they can be merged into a
+ * shared store; those of an evicted candidate are dropped with it. Not thread-safe.
+ */
+public final class HeavyHitters {
+
+    private final int capacity;
+    private final CountMinSketch sketch;
+    private final Map<String, Candidate> candidates = new HashMap<>();
+    private final TreeSet<Candidate> byCount = new TreeSet<>(
+            Comparator.comparingLong((Candidate candidate) -> candidate.count).thenComparing(candidate -> candidate.item));
+
+    /**
+     * @param capacity Most strings tracked
+     * @param sketchWidth Counters per sketch row
+     * @param sketchDepth Sketch rows
+     */
+    public HeavyHitters(int capacity, int sketchWidth, int sketchDepth) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Heavy hitter capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.sketch = new CountMinSketch(sketchWidth, sketchDepth);
+    }
+
+    /**
+     * Count occurrences of a string
+     * @param item The string
+     * @param count Occurrences to add
+     */
+    public void add(String item, long count) {
+        sketch.add(item, count);
+        Candidate candidate = candidates.get(item);
+        if (candidate != null) {
+            byCount.remove(candidate);
+            candidate.count += count;
+            candidate.unmerged += count;
+            byCount.add(candidate);
+            return;
+        }
+
+        long estimate = sketch.estimate(item);
+        if (candidates.size() >= capacity) {
+            Candidate smallest = byCount.first();
+            if (estimate <= smallest.count) {
+                return;
+            }
+            byCount.pollFirst();
+            candidates.remove(smallest.item);
+            estimate = Math.min(estimate, smallest.count + count);
+        }
+        candidate = new Candidate(item, estimate, count);
+        candidates.put(item, candidate);
+        byCount.add(candidate);
+    }
+
+    /**
+     * Most frequent strings
+     * @param limit Maximum number of strings
+     * @return Strings with their counts, most frequent first
+     */
+    public List<HeavyHitter> top(int limit) {
+        List<HeavyHitter> top = new ArrayList<>(Math.min(limit, candidates.size()));
+        Iterator<Candidate> descending = byCount.descendingIterator();
+        while (descending.hasNext() && top.size() < limit) {
+            Candidate candidate = descending.next();
+            top.add(new HeavyHitter(candidate.item, candidate.count));
+        }
+        return top;
+    }
+
+    /**
+     * Take the occurrences added to each candidate since the previous call
+     * @return Occurrences by string, only for candidates with any
+     */
+    public Map<String, Long> drainUnmerged() {
+        Map<String, Long> unmerged = new LinkedHashMap<>();
+        for (Candidate candidate : candidates.values()) {
+            if (candidate.unmerged > 0) {
+                unmerged.put(candidate.item, candidate.unmerged);
+                candidate.unmerged = 0;
+            }
+        }
+        return unmerged;
+    }
+
+    /**
+     * Forget every string and count
+     */
+    public void clear() {
+        candidates.clear();
+        byCount.clear();
+        sketch.clear();
+    }
+
+    /**
+     * @return Number of strings tracked
+     */
+    public int size() {
+        return candidates.size();
+    }
+
+    /**
+     * A frequent string
+     * @param item The string
+     * @param count Its approximate number of occurrences, never an undercount
+     */
+    public record HeavyHitter(String item, long count) {
+    }
+
+    private static final class Candidate {
+        private final String item;
+        private long count;
+        private long unmerged;
+
+        private Candidate(String item, long count, long unmerged) {
+            this.item = item;
+            this.count = count;
+            this.unmerged = unmerged;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.hungng3011.vdtecomberefresh.search.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable prefix trie over a ranked list of phrases.
+ *
+ * Every node keeps the best {@code maxCompletions} phrases below it, so completing a prefix walks one node per
+ * character and copies a precomputed list; nothing below the prefix is visited. Phrases are matched
+ * case-insensitively and must be given best first.
+ *
+ * @param <T> Value stored with each phrase
+ */
+public final class PrefixTrie<T> {
+
+    private final Node<T> root = new Node<>();
+    private final int maxCompletions;
+    private final int size;
+
+    private PrefixTrie(Map<String, T> rankedPhrases, int maxCompletions) {
+        this.maxCompletions = maxCompletions;
+        Set<String> seen = new HashSet<>();
+        for (Map.Entry<String, T> phrase : rankedPhrases.entrySet()) {
+            String key = normalize(phrase.getKey());
+            // Phrases differing only in case or surrounding spaces keep the better ranked one
+            if (key.isEmpty() || !seen.add(key)) {
+                continue;
+            }
+            Completion<T> completion = new Completion<>(phrase.getKey().trim(), phrase.getValue());
+            Node<T> node = root;
+            node.offer(completion, maxCompletions);
+            for (int i = 0; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new Node<>());
+                node.offer(completion, maxCompletions);
+            }
+        }
+        this.size = seen.size();
+    }
+
+    /**
+     * Build a trie
+     * @param rankedPhrases Phrases with their values, in ranking order (best first)
+     * @param maxCompletions Most completions returned for any prefix
+     * @return The trie
+     */
+    public static <T> PrefixTrie<T> of(Map<String, T> rankedPhrases, int maxCompletions) {
+        return new PrefixTrie<>(rankedPhrases, maxCompletions);
+    }
+
+    /**
+     * Best phrases starting with a prefix
+     * @param prefix Text typed so far
+     * @param limit Maximum number of completions; at most the trie's {@code maxCompletions}
+     * @return Completions in ranking order, empty when none match
+     */
+    public List<Completion<T>> complete(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Node<T> node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        return List.copyOf(node.best.subList(0, Math.min(limit, node.best.size())));
+    }
+
+    /**
+     * @return Most completions stored per prefix
+     */
+    public int getMaxCompletions() {
+        return maxCompletions;
+    }
+
+    /**
+     * @return Number of phrases in the trie
+     */
+    public int size() {
+        return size;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A phrase and its value
+     * @param phrase Phrase as given, trimmed
+     * @param value Value stored with it
+     */
+    public record Completion<T>(String phrase, T value) {
+    }
+
+    private static final class Node<T> {
+        private final Map<Character, Node<T>> children = new HashMap<>();
+        private final List<Completion<T>> best = new ArrayList<>(1);
+
+        // Phrases arrive best first, so the first ones offered are the node's best
+        private void offer(Completion<T> completion, int maxCompletions) {
+            if (best.size() < maxCompletions) {
+                best.add(completion);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.hungng3011.vdtecomberefresh.search.utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hungng3011.vdtecomberefresh.search.exceptions.SearchValidationException;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Position in a paged search, handed to clients as an opaque token.
+ *
+ * The token is the URL-safe Base64 of a small JSON object holding the point-in-time ID (absent until the
+ * second page is requested) and the sort values of the last hit returned. Clients must send it back with the
+ * same query, filters and sort that produced it.
+ *
+ * @param pointInTimeId Elasticsearch point-in-time the pages are read from, or null
+ * @param searchAfter Sort values of the last hit of the previous page
+ */
+public record SearchCursor(String pointInTimeId, List<Object> searchAfter) {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String PIT = "pit";
+    private static final String AFTER = "after";
+
+    /**
+     * @return The opaque token
+     */
+    public String encode() {
+        Map<String, Object> body = new HashMap<>();
+        if (pointInTimeId != null) {
+            body.put(PIT, pointInTimeId);
+        }
+        body.put(AFTER, searchAfter);
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(body));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to encode search cursor", e);
+        }
+    }
+
+    /**
+     * @param token Token from a previous response
+     * @return The cursor
+     * @throws SearchValidationException If the token was not produced by {@link #encode()}
+     */
+    public static SearchCursor decode(String token) {
+        try {
+            Map<String, Object> body = MAPPER.readValue(Base64.getUrlDecoder().decode(token),
+                new TypeReference<Map<String, Object>>() {});
+            Object after = body.get(AFTER);
+            if (!(after instanceof List<?> values) || values.isEmpty()) {
+                throw new IllegalArgumentException("Missing sort values");
+            }
+            return new SearchCursor((String) body.get(PIT), new ArrayList<>(values));
+        } catch (Exception e) {
+            throw new SearchValidationException("Invalid search cursor", e);
+        }
+    }
+}
@@ -12,11 +12,14 @@ import com.hungng3011.vdtecomberefresh.stock.mappers.StockHistoryMapper;
 import com.hungng3011.vdtecomberefresh.stock.mappers.StockMapper;
 import com.hungng3011.vdtecomberefresh.stock.repositories.StockHistoryRepository;
 import com.hungng3011.vdtecomberefresh.stock.repositories.StockRepository;
+import com.hungng3011.vdtecomberefresh.product.cache.ProductFacetCache;
 import com.hungng3011.vdtecomberefresh.product.mappers.VariationMapper;
 import com.hungng3011.vdtecomberefresh.product.repositories.ProductRepository;
 import com.hungng3011.vdtecomberefresh.product.entities.Product;
+import com.hungng3011.vdtecomberefresh.search.events.ProductIndexEvent;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -25,6 +28,7 @@ import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -37,6 +41,8 @@ public class StockService {
     private final StockHistoryMapper stockHistoryMapper;
     private final VariationMapper variationMapper;
     private final ProductRepository productRepository;
+    private final ProductFacetCache productFacetCache;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<StockDto> getAll() {
         try {
@@ -89,6 +95,8 @@ public class StockService {
             // Create initial history entry
             createHistoryEntry(savedStock, 0, savedStock.getQuantity(),
                     StockActionState.RESTOCK, "Initial stock creation");
+            evictFacetsIfAvailabilityChanged(savedStock, false);
+            publishIndexEvent(savedStock);
             
             log.info("Successfully created stock with id: {} for product: {}", 
                     savedStock.getId(), savedStock.getProduct().getId());
@@ -115,6 +123,9 @@ public class StockService {
             }
 
             Integer oldQuantity = existingStock.getQuantity();
+            boolean wasAvailable = isAvailable(existingStock);
+            // Saving merges into the managed entry, so its previous product has to be read first
+            Product previousProduct = existingStock.getProduct();
             stockDto.setId(id);
             
             // Fetch the product entity if productId is provided
@@ -137,6 +148,18 @@ public class StockService {
                 createHistoryEntry(updatedStock, oldQuantity, updatedStock.getQuantity(),
                         StockActionState.ADJUSTMENT, "Manual update");
             }
+            if (previousProduct != null && updatedStock.getProduct() != null
+                    && !Objects.equals(previousProduct.getId(), updatedStock.getProduct().getId())) {
+                // The entry moved: both products' documents and categories' counts change
+                log.info("Stock id: {} moved from product {} to product {}", id, previousProduct.getId(),
+                        updatedStock.getProduct().getId());
+                evictFacets(previousProduct);
+                evictFacets(updatedStock.getProduct());
+                publishIndexEvent(previousProduct);
+            } else {
+                evictFacetsIfAvailabilityChanged(updatedStock, wasAvailable);
+            }
+            publishIndexEvent(updatedStock);
 
             log.info("Successfully updated stock with id: {}", id);
             return stockMapper.toDto(updatedStock);
@@ -154,6 +177,11 @@ public class StockService {
                 log.warn("Stock with id {} not found for deletion", id);
                 return;
             }
+            stockRepository.findById(id).ifPresent(stock -> {
+                // The deleted entry no longer counts towards availability
+                evictFacetsIfAvailabilityChanged(stock, isAvailable(stock), false);
+                publishIndexEvent(stock);
+            });
             stockRepository.deleteById(id);
             log.info("Successfully deleted stock with id: {}", id);
         } catch (Exception e) {
@@ -171,6 +199,7 @@ public class StockService {
                     .orElseThrow(() -> new IllegalArgumentException("Stock not found with id: " + stockId));
 
             Integer oldQuantity = stock.getQuantity();
+            boolean wasAvailable = isAvailable(stock);
             Integer newQuantity;
 
             switch (action) {
@@ -205,6 +234,8 @@ public class StockService {
 
             Stock updatedStock = stockRepository.save(stock);
             createHistoryEntry(updatedStock, oldQuantity, newQuantity, action, reference);
+            evictFacetsIfAvailabilityChanged(updatedStock, wasAvailable);
+            publishIndexEvent(updatedStock);
 
             log.info("Successfully performed {} action on stock id: {}", action, stockId);
             return stockMapper.toDto(updatedStock);
@@ -223,12 +254,15 @@ public class StockService {
             Stock stock = stockRepository.findById(stockId)
                     .orElseThrow(() -> new IllegalArgumentException("Stock not found with id: " + stockId));
 
+            boolean wasAvailable = isAvailable(stock);
             // Force update of status
             stock.updateStatus();
 
             Stock updatedStock = stockRepository.save(stock);
             createHistoryEntry(updatedStock, updatedStock.getQuantity(), updatedStock.getQuantity(),
                     StockActionState.ADJUSTMENT, "Pre-order setup");
+            evictFacetsIfAvailabilityChanged(updatedStock, wasAvailable);
+            publishIndexEvent(updatedStock);
 
             log.info("Successfully set up pre-order for stock id: {}", stockId);
             return stockMapper.toDto(updatedStock);
@@ -238,6 +272,44 @@ public class StockService {
         }
     }
 
+    /**
+     * Product facet counts include the number of products in stock, so they are invalidated whenever a
+     * stock entry starts or stops being sellable; quantity changes that keep it sellable leave them alone.
+     */
+    private void evictFacetsIfAvailabilityChanged(Stock stock, boolean wasAvailable) {
+        evictFacetsIfAvailabilityChanged(stock, wasAvailable, isAvailable(stock));
+    }
+
+    private void evictFacetsIfAvailabilityChanged(Stock stock, boolean wasAvailable, boolean available) {
+        if (available != wasAvailable) {
+            evictFacets(stock.getProduct());
+        }
+    }
+
+    private void evictFacets(Product product) {
+        if (product == null || product.getCategory() == null) {
+            return;
+        }
+        productFacetCache.evictCategory(product.getCategory().getId());
+    }
+
+    /**
+     * Stock levels are part of the product's search document
+     */
+    private void publishIndexEvent(Stock stock) {
+        publishIndexEvent(stock.getProduct());
+    }
+
+    private void publishIndexEvent(Product product) {
+        if (product != null && product.getId() != null) {
+            eventPublisher.publishEvent(ProductIndexEvent.upsert("stock", product.getId()));
+        }
+    }
+
+    private static boolean isAvailable(Stock stock) {
+        return stock.getQuantity() != null && stock.getQuantity() > 0 && stock.getStatus() != StockStatus.DISCONTINUED;
+    }
+
     private void createHistoryEntry(Stock stock, Integer quantityBefore, Integer quantityAfter,
                                     StockActionState action, String reference) {
         try {
@@ -21,7 +21,8 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class StockHistory {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_history_seq")
+    @SequenceGenerator(name = "stock_history_seq", sequenceName = "stock_history_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
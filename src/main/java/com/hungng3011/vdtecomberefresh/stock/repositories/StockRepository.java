@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.math.BigDecimal;
@@ -89,4 +90,15 @@ public interface StockRepository extends JpaRepository<Stock, Long> {
     
     @Query("SELECT COUNT(DISTINCT s.product.id) FROM Stock s WHERE s.quantity > 0")
     long countDistinctProductsInStock();
+
+    /**
+     * Stock totals per product for search indexing, leaving out discontinued entries
+     * @param productIds Products to summarize
+     * @return Rows of [productId, total quantity, total low stock threshold]; products without stock are absent
+     */
+    @Query("SELECT s.product.id, SUM(s.quantity), SUM(s.lowStockThreshold) FROM Stock s " +
+           "WHERE s.product.id IN :productIds " +
+           "AND s.status <> com.hungng3011.vdtecomberefresh.stock.enums.StockStatus.DISCONTINUED " +
+           "GROUP BY s.product.id")
+    List<Object[]> summarizeByProductIds(@Param("productIds") Collection<Long> productIds);
 }
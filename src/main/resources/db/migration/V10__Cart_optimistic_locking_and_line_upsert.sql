@@ -0,0 +1,42 @@
+-- Optimistic locking for carts and cart items
+ALTER TABLE cart ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE cart_item ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- Canonical variation signature (sorted, comma-separated variation IDs) identifying a cart line
+ALTER TABLE cart_item ADD COLUMN IF NOT EXISTS variation_signature VARCHAR(255) NOT NULL DEFAULT '';
+
+UPDATE cart_item ci
+SET variation_signature = sig.signature
+FROM (
+    SELECT civ.cart_item_id, string_agg(civ.variation_id::text, ',' ORDER BY civ.variation_id) AS signature
+    FROM cart_item_variation civ
+    GROUP BY civ.cart_item_id
+) sig
+WHERE sig.cart_item_id = ci.id;
+
+-- Merge duplicate lines created by racing add-to-cart requests into the oldest row
+WITH ranked AS (
+    SELECT id,
+           FIRST_VALUE(id) OVER w AS keep_id,
+           SUM(quantity) OVER (PARTITION BY cart_id, product_id, variation_signature) AS total_quantity
+    FROM cart_item
+    WINDOW w AS (PARTITION BY cart_id, product_id, variation_signature ORDER BY id)
+)
+UPDATE cart_item ci
+SET quantity = r.total_quantity
+FROM ranked r
+WHERE ci.id = r.id AND r.id = r.keep_id;
+
+DELETE FROM cart_item_variation civ
+USING cart_item a, cart_item b
+WHERE civ.cart_item_id = a.id
+  AND a.cart_id = b.cart_id AND a.product_id = b.product_id
+  AND a.variation_signature = b.variation_signature AND a.id > b.id;
+
+DELETE FROM cart_item a
+USING cart_item b
+WHERE a.cart_id = b.cart_id AND a.product_id = b.product_id
+  AND a.variation_signature = b.variation_signature AND a.id > b.id;
+
+ALTER TABLE cart_item
+    ADD CONSTRAINT uk_cart_item_line UNIQUE (cart_id, product_id, variation_signature);
@@ -0,0 +1,30 @@
+-- Move entity IDs from IDENTITY columns to pooled sequences (allocationSize = 50, pooled-lo optimizer)
+-- so Hibernate can batch inserts. Each sequence starts after the current max ID; Hibernate then uses
+-- every value it draws as the low end of a block of 50 IDs.
+-- Run before deploying the matching entity mappings.
+DO $$
+DECLARE
+    t record;
+BEGIN
+    FOR t IN SELECT * FROM (VALUES
+            ('products', 'products_seq'),
+            ('product_dynamic_values', 'product_dynamic_values_seq'),
+            ('variations', 'variations_seq'),
+            ('variation_dynamic_values', 'variation_dynamic_values_seq'),
+            ('stock', 'stock_seq'),
+            ('stock_history', 'stock_history_seq'),
+            ('cart', 'cart_seq'),
+            ('cart_item', 'cart_item_seq'),
+            ('payment_history', 'payment_history_seq'),
+            ('profiles', 'profiles_seq'),
+            ('order_item', 'order_item_seq')
+        ) AS v(table_name, sequence_name)
+    LOOP
+        EXECUTE format('CREATE SEQUENCE IF NOT EXISTS %I INCREMENT BY 50', t.sequence_name);
+        EXECUTE format('ALTER SEQUENCE %I INCREMENT BY 50', t.sequence_name);
+        EXECUTE format('SELECT setval(%L, COALESCE((SELECT MAX(id) FROM %I), 0) + 1, false)',
+                       t.sequence_name, t.table_name);
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN id DROP IDENTITY IF EXISTS', t.table_name);
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN id DROP DEFAULT', t.table_name);
+    END LOOP;
+END $$;
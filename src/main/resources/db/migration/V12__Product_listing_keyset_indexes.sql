@@ -0,0 +1,12 @@
+-- Composite indexes for keyset pagination of the product listing on (sort key, id).
+-- A page after a cursor is read as e.g. WHERE (name, id) > (?, ?) ORDER BY name, id,
+-- which is a range scan on the matching index in either direction.
+UPDATE products SET created_at = COALESCE(updated_at, now()) WHERE created_at IS NULL;
+ALTER TABLE products ALTER COLUMN created_at SET NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_product_name_id ON products (name, id);
+CREATE INDEX IF NOT EXISTS idx_product_base_price_id ON products (base_price, id);
+CREATE INDEX IF NOT EXISTS idx_product_created_at_id ON products (created_at, id);
+
+-- Superseded by idx_product_name_id
+DROP INDEX IF EXISTS idx_product_name;
@@ -0,0 +1,15 @@
+-- Trigram indexes for the product filter. The filter lower-cases both sides and matches with
+-- =, LIKE 'term%', LIKE '%term' or LIKE '%term%'; pg_trgm GIN indexes on the lower() expressions
+-- serve all four shapes (equality needs pg_trgm 1.6 / PostgreSQL 14+).
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_product_name_trgm
+    ON products USING gin (lower(name) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_product_description_trgm
+    ON products USING gin (lower(description) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_product_dynamic_value_trgm
+    ON product_dynamic_values USING gin (lower(value) gin_trgm_ops);
+
+-- Dynamic field filters resolve the field by lower-cased name
+CREATE INDEX IF NOT EXISTS idx_category_dynamic_field_name_lower
+    ON category_dynamic_fields (lower(field_name));
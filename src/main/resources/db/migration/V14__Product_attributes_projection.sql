@@ -0,0 +1,33 @@
+-- Typed projection of product dynamic values for multi-attribute filtering. product_dynamic_values
+-- stays the source of truth; the application rewrites products.attributes whenever a product's
+-- dynamic values change (see ProductAttributes). Keys are lower-cased field names; NUMBER values
+-- become JSON numbers, BOOLEAN values JSON booleans, everything else lower-cased strings.
+ALTER TABLE products ADD COLUMN IF NOT EXISTS attributes jsonb;
+
+UPDATE products p
+SET attributes = projected.attributes
+FROM (
+    SELECT v.product_id,
+           jsonb_object_agg(
+               lower(trim(f.field_name)),
+               CASE
+                   WHEN f.field_type = 'NUMBER'
+                        AND trim(v.value) ~ '^[+-]?([0-9]+\.?[0-9]*|\.[0-9]+)([eE][+-]?[0-9]+)?$'
+                       THEN to_jsonb(trim(v.value)::numeric)
+                   WHEN f.field_type = 'BOOLEAN' AND lower(trim(v.value)) IN ('true', 'false')
+                       THEN to_jsonb(lower(trim(v.value))::boolean)
+                   ELSE to_jsonb(lower(trim(v.value)))
+               END
+               ORDER BY v.id) AS attributes
+    FROM product_dynamic_values v
+    JOIN category_dynamic_fields f ON f.id = v.field_id
+    WHERE v.value IS NOT NULL
+    GROUP BY v.product_id
+) projected
+WHERE p.id = projected.product_id;
+
+UPDATE products SET attributes = '{}'::jsonb WHERE attributes IS NULL;
+
+-- Default jsonb_ops: serves key existence and equality (@@ / @?) directly; numeric ranges are
+-- narrowed by key existence and rechecked
+CREATE INDEX IF NOT EXISTS idx_product_attributes ON products USING gin (attributes);
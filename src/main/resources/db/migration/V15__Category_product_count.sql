@@ -0,0 +1,8 @@
+-- Denormalized product counter per category, maintained by product writes and
+-- corrected by the scheduled reconciliation job.
+ALTER TABLE categories ADD COLUMN IF NOT EXISTS product_count BIGINT NOT NULL DEFAULT 0;
+
+UPDATE categories c
+SET product_count = counts.product_count
+FROM (SELECT category_id, COUNT(*) AS product_count FROM products GROUP BY category_id) counts
+WHERE counts.category_id = c.id;
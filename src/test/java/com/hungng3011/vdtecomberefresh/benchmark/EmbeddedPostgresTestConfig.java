@@ -0,0 +1,28 @@
+package com.hungng3011.vdtecomberefresh.benchmark;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Runs the JPA slice against a throwaway local PostgreSQL instead of H2, so benchmarks and
+ * query plan checks see the real database behaviour (sequences, batching, jsonb, indexes).
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class EmbeddedPostgresTestConfig {
+
+    @Bean(destroyMethod = "close")
+    EmbeddedPostgres embeddedPostgres() throws IOException {
+        return EmbeddedPostgres.builder().start();
+    }
+
+    @Bean
+    DataSource dataSource(EmbeddedPostgres embeddedPostgres) {
+        // Same driver setting as the application datasource
+        return embeddedPostgres.getPostgresDatabase(Map.of("reWriteBatchedInserts", "true"));
+    }
+}
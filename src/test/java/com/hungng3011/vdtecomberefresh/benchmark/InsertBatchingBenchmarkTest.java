@@ -0,0 +1,204 @@
+package com.hungng3011.vdtecomberefresh.benchmark;
+
+import com.hungng3011.vdtecomberefresh.VdtEcomBeRefreshApplication;
+import com.hungng3011.vdtecomberefresh.cart.entities.Cart;
+import com.hungng3011.vdtecomberefresh.cart.entities.CartItem;
+import com.hungng3011.vdtecomberefresh.category.entities.Category;
+import com.hungng3011.vdtecomberefresh.category.entities.CategoryDynamicField;
+import com.hungng3011.vdtecomberefresh.category.enums.AppliesTo;
+import com.hungng3011.vdtecomberefresh.category.enums.FieldType;
+import com.hungng3011.vdtecomberefresh.product.entities.Product;
+import com.hungng3011.vdtecomberefresh.product.entities.ProductDynamicValue;
+import com.hungng3011.vdtecomberefresh.product.entities.Variation;
+import com.hungng3011.vdtecomberefresh.stock.entities.Stock;
+import com.hungng3011.vdtecomberefresh.stock.entities.StockHistory;
+import com.hungng3011.vdtecomberefresh.stock.enums.StockActionState;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Insert throughput with and without JDBC batching for the main write paths.
+ *
+ * The unbatched run forces a JDBC batch size of 1, which issues one statement per row like the previous
+ * IDENTITY mapping did; the batched run uses the configured pooled sequences and batch size.
+ * Run with {@code mvn test -Pbenchmark} (row count via {@code -Dbenchmark.rows=...}).
+ */
+@Tag("benchmark")
+@DataJpaTest
+@ContextConfiguration(classes = VdtEcomBeRefreshApplication.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(EmbeddedPostgresTestConfig.class)
+@TestPropertySource(properties = {
+        "spring.config.on-not-found=ignore",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+class InsertBatchingBenchmarkTest {
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 2000);
+    private static final int CART_SIZE = 5;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Long categoryId;
+    private Long fieldId;
+    private Long stockId;
+    private List<Long> cartProductIds;
+
+    @BeforeEach
+    void setUp() {
+        Category category = new Category();
+        category.setName("Benchmark");
+        CategoryDynamicField field = new CategoryDynamicField();
+        field.setCategory(category);
+        field.setFieldName("Color");
+        field.setFieldType(FieldType.TEXT);
+        field.setAppliesTo(AppliesTo.PRODUCT);
+        category.setDynamicFields(new ArrayList<>(List.of(field)));
+        entityManager.persist(category);
+
+        cartProductIds = new ArrayList<>();
+        for (int i = 0; i < CART_SIZE; i++) {
+            Product product = newProduct(category, "Cart product " + i);
+            entityManager.persist(product);
+            cartProductIds.add(product.getId());
+        }
+
+        Stock stock = new Stock();
+        stock.setSku("BENCH-SKU");
+        stock.setProduct(entityManager.getReference(Product.class, cartProductIds.get(0)));
+        stock.setQuantity(0);
+        stock.setLowStockThreshold(0);
+        entityManager.persist(stock);
+        entityManager.flush();
+        entityManager.clear();
+
+        categoryId = category.getId();
+        fieldId = field.getId();
+        stockId = stock.getId();
+    }
+
+    @Test
+    void productCreation() {
+        compare("product creation", () -> {
+            Category category = entityManager.getReference(Category.class, categoryId);
+            CategoryDynamicField field = entityManager.getReference(CategoryDynamicField.class, fieldId);
+            for (int i = 0; i < ROWS; i++) {
+                Product product = newProduct(category, "Product " + i);
+                entityManager.persist(product);
+                entityManager.persist(new ProductDynamicValue(null, product, field, "Blue"));
+                entityManager.persist(new Variation(null, product, "Size", "M", BigDecimal.ZERO, null));
+            }
+            return ROWS * 3;
+        });
+    }
+
+    @Test
+    void stockHistory() {
+        compare("stock history", () -> {
+            Stock stock = entityManager.getReference(Stock.class, stockId);
+            for (int i = 0; i < ROWS; i++) {
+                StockHistory history = new StockHistory();
+                history.setStock(stock);
+                history.setQuantityBefore(i);
+                history.setQuantityAfter(i + 1);
+                history.setAction(StockActionState.RESTOCK);
+                history.setUpdatedBy("benchmark");
+                entityManager.persist(history);
+            }
+            return ROWS;
+        });
+    }
+
+    @Test
+    void cartWrites() {
+        compare("cart writes", () -> {
+            int carts = ROWS / CART_SIZE;
+            for (int i = 0; i < carts; i++) {
+                Cart cart = new Cart();
+                cart.setUserEmail("bench" + i + "@example.com");
+                for (Long productId : cartProductIds) {
+                    CartItem item = new CartItem();
+                    item.setProduct(entityManager.getReference(Product.class, productId));
+                    item.setStockSku("");
+                    item.setQuantity(1);
+                    item.setUnitPrice(BigDecimal.TEN);
+                    cart.addItem(item);
+                }
+                entityManager.persist(cart);
+            }
+            return carts * (CART_SIZE + 1);
+        });
+    }
+
+    private void compare(String name, Workload workload) {
+        // Warm up connection, sequences and statement caches
+        run(1, workload);
+        run(null, workload);
+
+        Run unbatched = run(1, workload);
+        Run batched = run(null, workload);
+
+        System.out.printf("%-16s unbatched: %6d rows in %6d ms (%8.0f rows/s, %6d statements)%n",
+                name, unbatched.rows(), unbatched.millis(), unbatched.rowsPerSecond(), unbatched.statements());
+        System.out.printf("%-16s batched:   %6d rows in %6d ms (%8.0f rows/s, %6d statements) -> %.1fx%n",
+                name, batched.rows(), batched.millis(), batched.rowsPerSecond(), batched.statements(),
+                batched.rowsPerSecond() / unbatched.rowsPerSecond());
+
+        assertTrue(batched.statements() * 10 < unbatched.statements(),
+                "Batching should cut the number of statements by at least an order of magnitude");
+    }
+
+    private Run run(Integer jdbcBatchSize, Workload workload) {
+        Session session = entityManager.unwrap(Session.class);
+        Statistics statistics = session.getSessionFactory().getStatistics();
+        session.setJdbcBatchSize(jdbcBatchSize);
+        statistics.clear();
+
+        long start = System.nanoTime();
+        int rows = workload.write();
+        entityManager.flush();
+        long elapsed = System.nanoTime() - start;
+
+        entityManager.clear();
+        return new Run(rows, elapsed / 1_000_000, statistics.getPrepareStatementCount());
+    }
+
+    private static Product newProduct(Category category, String name) {
+        Product product = new Product();
+        product.setCategory(category);
+        product.setName(name);
+        product.setBasePrice(BigDecimal.valueOf(100));
+        product.setImages(List.of("image.jpg"));
+        return product;
+    }
+
+    @FunctionalInterface
+    private interface Workload {
+        int write();
+    }
+
+    private record Run(int rows, long millis, long statements) {
+        double rowsPerSecond() {
+            return rows * 1000.0 / Math.max(millis, 1);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.hungng3011.vdtecomberefresh.benchmark;
+
+import com.hungng3011.vdtecomberefresh.VdtEcomBeRefreshApplication;
+import com.hungng3011.vdtecomberefresh.category.entities.Category;
+import com.hungng3011.vdtecomberefresh.category.entities.CategoryDynamicField;
+import com.hungng3011.vdtecomberefresh.category.enums.AppliesTo;
+import com.hungng3011.vdtecomberefresh.category.enums.FieldType;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto.FieldMatchType;
+import com.hungng3011.vdtecomberefresh.product.repositories.ProductFilterSpecifications;
+import com.hungng3011.vdtecomberefresh.product.repositories.ProductRepository;
+import com.hungng3011.vdtecomberefresh.product.entities.Product;
+import jakarta.persistence.EntityManager;
+import org.hibernate.query.Query;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Product filter latency on a large catalog: the previous static query shape against the per-request
+ * query from {@link ProductFilterSpecifications}, both with the trigram indexes in place.
+ *
+ * The legacy shape is the JPQL of the removed {@code findByComprehensiveCriteria} query.
+ * Run with {@code mvn test -Pbenchmark} (catalog size via {@code -Dbenchmark.products=...}).
+ */
+@Tag("benchmark")
+@DataJpaTest
+@ContextConfiguration(classes = VdtEcomBeRefreshApplication.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(EmbeddedPostgresTestConfig.class)
+@TestPropertySource(properties = {
+        "spring.config.on-not-found=ignore",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+class ProductFilterBenchmarkTest {
+    private static final int PRODUCTS = Integer.getInteger("benchmark.products", 1_000_000);
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 20);
+    private static final int PAGE_SIZE = 20;
+
+    private static final String LEGACY_CRITERIA = "WHERE " +
+            "(:name IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%'))) AND " +
+            "(:description IS NULL OR LOWER(p.description) LIKE LOWER(CONCAT('%', :description, '%'))) AND " +
+            "(:categoryId IS NULL OR p.category.id = :categoryId) AND " +
+            "(:minPrice IS NULL OR p.basePrice >= :minPrice) AND " +
+            "(:maxPrice IS NULL OR p.basePrice <= :maxPrice) AND " +
+            "(:fieldName IS NULL OR " +
+            "  EXISTS (SELECT 1 FROM ProductDynamicValue pdv " +
+            "          JOIN pdv.field pf " +
+            "          WHERE pdv.product = p AND " +
+            "                LOWER(pf.fieldName) = LOWER(:fieldName) AND " +
+            "                CASE :matchType " +
+            "                  WHEN 'EQUALS' THEN LOWER(pdv.value) = LOWER(:fieldValue) " +
+            "                  WHEN 'CONTAINS' THEN LOWER(pdv.value) LIKE LOWER(CONCAT('%', :fieldValue, '%')) " +
+            "                  WHEN 'STARTS_WITH' THEN LOWER(pdv.value) LIKE LOWER(CONCAT(:fieldValue, '%')) " +
+            "                  WHEN 'ENDS_WITH' THEN LOWER(pdv.value) LIKE LOWER(CONCAT('%', :fieldValue)) " +
+            "                  ELSE TRUE " +
+            "                END))";
+    private static final String LEGACY_SELECT = "SELECT DISTINCT p FROM Product p " +
+            "LEFT JOIN p.dynamicValues dv LEFT JOIN dv.field df " + LEGACY_CRITERIA + " ORDER BY p.id";
+    private static final String LEGACY_COUNT = "SELECT COUNT(DISTINCT p) FROM Product p " +
+            "LEFT JOIN p.dynamicValues dv LEFT JOIN dv.field df " + LEGACY_CRITERIA;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void filterLatency() {
+        long start = System.nanoTime();
+        Category category = new Category();
+        category.setName("Benchmark");
+        CategoryDynamicField color = new CategoryDynamicField();
+        color.setCategory(category);
+        color.setFieldName("Color");
+        color.setFieldType(FieldType.TEXT);
+        color.setAppliesTo(AppliesTo.PRODUCT);
+        category.setDynamicFields(new ArrayList<>(List.of(color)));
+        entityManager.persist(category);
+        entityManager.flush();
+
+        jdbcTemplate.update("INSERT INTO products (id, category_id, name, description, base_price, created_at) " +
+                "SELECT i, ?, 'Product ' || i || ' ' || (ARRAY['Phone','Laptop','Tablet','Watch','Camera'])[i % 5 + 1], " +
+                "'Description for item ' || md5(i::text), (i % 1000) + 1, now() " +
+                "FROM generate_series(1, ?) AS i", category.getId(), PRODUCTS);
+        jdbcTemplate.update("INSERT INTO product_dynamic_values (id, product_id, field_id, value) " +
+                "SELECT i, i, ?, 'shade-' || md5(i::text) FROM generate_series(1, ?) AS i", color.getId(), PRODUCTS);
+        ScriptUtils.executeSqlScript(DataSourceUtils.getConnection(dataSource),
+                new ClassPathResource("db/migration/V13__Product_filter_trigram_indexes.sql"));
+        jdbcTemplate.execute("ANALYZE");
+        System.out.printf("Loaded %d products with trigram indexes in %d s%n",
+                PRODUCTS, (System.nanoTime() - start) / 1_000_000_000);
+
+        String selectiveName = "42424";
+        compare("name contains", expectedMatches("lower(name) LIKE '%42424%'"),
+                () -> legacy(selectiveName, null, null, null, "EQUALS"),
+                () -> filter(ProductFilterDto.builder().name(selectiveName).build()));
+
+        String descriptionTerm = md5Fragment(777);
+        compare("description contains", expectedMatches("lower(description) LIKE '%" + descriptionTerm + "%'"),
+                () -> legacy(null, descriptionTerm, null, null, "EQUALS"),
+                () -> filter(ProductFilterDto.builder().description(descriptionTerm).build()));
+
+        String shade = "shade-" + md5Fragment(31337);
+        compare("attribute starts with", expectedMatches("EXISTS (SELECT 1 FROM product_dynamic_values v " +
+                        "WHERE v.product_id = products.id AND lower(v.value) LIKE '" + shade + "%')"),
+                () -> legacy(null, null, "color", shade, "STARTS_WITH"),
+                () -> filter(ProductFilterDto.builder()
+                        .dynamicFields(List.of(ProductFilterDto.DynamicFieldFilterDto.builder()
+                                .fieldName("color").value(shade).matchType(FieldMatchType.STARTS_WITH).build()))
+                        .build()));
+    }
+
+    private void compare(String name, long expected, Supplier<Long> legacy, Supplier<Long> generated) {
+        assertEquals(expected, legacy.get(), name + " (legacy) total");
+        assertEquals(expected, generated.get(), name + " (generated) total");
+
+        double legacyMillis = time(legacy);
+        double generatedMillis = time(generated);
+        System.out.printf("%-22s legacy: %8.2f ms/query   generated: %8.2f ms/query -> %.1fx%n",
+                name, legacyMillis, generatedMillis, legacyMillis / generatedMillis);
+        assertTrue(generatedMillis < legacyMillis, name + ": generated query should be faster than the legacy shape");
+    }
+
+    private double time(Supplier<Long> query) {
+        query.get();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            query.get();
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / ITERATIONS;
+    }
+
+    /**
+     * Page plus total, as the filter endpoint returns
+     */
+    private long filter(ProductFilterDto filter) {
+        entityManager.clear();
+        return productRepository.findAll(ProductFilterSpecifications.from(filter),
+                PageRequest.of(0, PAGE_SIZE, Sort.by("id"))).getTotalElements();
+    }
+
+    /**
+     * The removed findByComprehensiveCriteria query, page plus total. Nulls are bound with explicit types,
+     * otherwise PostgreSQL cannot resolve LOWER() for an absent parameter.
+     */
+    @SuppressWarnings("unchecked")
+    private long legacy(String name, String description, String fieldName, String fieldValue, String matchType) {
+        entityManager.clear();
+        Query<Product> select = entityManager.createQuery(LEGACY_SELECT, Product.class)
+                .unwrap(Query.class)
+                .setMaxResults(PAGE_SIZE);
+        Query<Long> count = entityManager.createQuery(LEGACY_COUNT, Long.class).unwrap(Query.class);
+        for (Query<?> query : List.of(select, count)) {
+            query.setParameter("name", name, String.class)
+                    .setParameter("description", description, String.class)
+                    .setParameter("categoryId", null, Long.class)
+                    .setParameter("minPrice", null, BigDecimal.class)
+                    .setParameter("maxPrice", null, BigDecimal.class)
+                    .setParameter("fieldName", fieldName, String.class)
+                    .setParameter("fieldValue", fieldValue, String.class)
+                    .setParameter("matchType", matchType, String.class);
+        }
+        select.getResultList();
+        return count.getSingleResult();
+    }
+
+    private long expectedMatches(String predicate) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM products WHERE " + predicate, Long.class);
+    }
+
+    private String md5Fragment(int i) {
+        return jdbcTemplate.queryForObject("SELECT substr(md5(?::text), 1, 10)", String.class, String.valueOf(i));
+    }
+}
@@ -0,0 +1,159 @@
+package com.hungng3011.vdtecomberefresh.benchmark;
+
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.hungng3011.vdtecomberefresh.search.dtos.SearchRequestDto;
+import com.hungng3011.vdtecomberefresh.search.services.ProductSearchQueryBuilder;
+import com.hungng3011.vdtecomberefresh.search.utils.SearchConstants;
+import jakarta.json.stream.JsonGenerator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cost of turning a search request into the bytes sent to Elasticsearch: the string template of the removed
+ * {@code ProductSearchRepository.findByMultiFieldSearch} query against the typed native query built by
+ * {@link ProductSearchQueryBuilder}, each put into the client's search request and serialized the way the
+ * transport does.
+ *
+ * Spring Data sends a string query as a base64 {@code wrapper} query that the cluster parses again on every
+ * request; the typed query, aggregations and suggesters are written out directly. The native request also
+ * carries filters, boosting, the suggesters and (with facets) the aggregations that the template left to
+ * follow-up requests, so bytes per request are reported alongside time. Sorting and highlighting are left out
+ * of both. Needs no cluster.
+ * Run with {@code mvn test -Pbenchmark} (iterations via {@code -Dbenchmark.iterations=...}).
+ */
+@Tag("benchmark")
+class SearchQueryBenchmarkTest {
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 200_000);
+    private static final int WARMUP = ITERATIONS / 4;
+
+    private static final String LEGACY_TEMPLATE = """
+        {
+          "bool": {
+            "should": [
+              {
+                "multi_match": {
+                  "query": "?0",
+                  "fields": ["name^3", "description^2", "brand^2", "tags^1.5", "keywords^1.5", "autocompleteText^2"],
+                  "type": "best_fields",
+                  "fuzziness": "AUTO"
+                }
+              },
+              {
+                "match_phrase_prefix": {
+                  "autocompleteText": {
+                    "query": "?0",
+                    "boost": 2
+                  }
+                }
+              }
+            ],
+            "minimum_should_match": 1
+          }
+        }
+        """;
+
+    private final JsonpMapper mapper = new JacksonJsonpMapper();
+    private final ProductSearchQueryBuilder queryBuilder = new ProductSearchQueryBuilder();
+
+    @Test
+    void queryBuildAndSerializationCost() {
+        compare("plain query", request(false, null));
+        compare("filtered query", request(false, SearchRequestDto.SearchFilters.builder()
+                .categoryIds(List.of(3L, 5L))
+                .minPrice(new BigDecimal("100000"))
+                .inStock(true)
+                .build()));
+        compare("with facets", request(true, null));
+    }
+
+    private void compare(String name, SearchRequestDto request) {
+        Function<SearchRequestDto, SearchRequest> legacy = SearchQueryBenchmarkTest::templateRequest;
+        Function<SearchRequestDto, SearchRequest> typed = this::nativeRequest;
+
+        int legacyBytes = serialize(legacy.apply(request)).length;
+        int typedBytes = serialize(typed.apply(request)).length;
+        assertTrue(legacyBytes > 0 && typedBytes > 0, name + ": both requests should serialize");
+
+        double legacyMicros = time(legacy, request);
+        double typedMicros = time(typed, request);
+        System.out.printf("%-16s template: %6.2f us/request %5d bytes   typed: %6.2f us/request %5d bytes%n",
+                name, legacyMicros, legacyBytes, typedMicros, typedBytes);
+    }
+
+    private double time(Function<SearchRequestDto, SearchRequest> build, SearchRequestDto request) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += serialize(build.apply(request)).length;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += serialize(build.apply(request)).length;
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(sink > 0);
+        return elapsed / 1_000.0 / ITERATIONS;
+    }
+
+    /**
+     * Fill in the template and wrap it, as the repository did for {@code @Query} methods
+     */
+    private static SearchRequest templateRequest(SearchRequestDto request) {
+        String source = LEGACY_TEMPLATE.replace("?0", request.getQuery());
+        String wrapped = Base64.getEncoder().encodeToString(source.getBytes(StandardCharsets.UTF_8));
+        return SearchRequest.of(s -> s
+                .index(SearchConstants.PRODUCTS_INDEX)
+                .from(request.getPage() * request.getSize())
+                .size(request.getSize())
+                .query(q -> q.wrapper(w -> w.query(wrapped))));
+    }
+
+    private SearchRequest nativeRequest(SearchRequestDto request) {
+        NativeQuery query = queryBuilder.build(request);
+        return SearchRequest.of(s -> {
+            s.index(SearchConstants.PRODUCTS_INDEX)
+                    .from(request.getPage() * request.getSize())
+                    .size(request.getSize())
+                    .query(query.getQuery())
+                    .aggregations(query.getAggregations());
+            if (query.getFilter() != null) {
+                s.postFilter(query.getFilter());
+            }
+            if (query.getSuggester() != null) {
+                s.suggest(query.getSuggester());
+            }
+            return s;
+        });
+    }
+
+    /**
+     * Write the request body, as the transport does for every search
+     */
+    private byte[] serialize(SearchRequest searchRequest) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+        try (JsonGenerator generator = mapper.jsonProvider().createGenerator(body)) {
+            searchRequest.serialize(generator, mapper);
+        }
+        return body.toByteArray();
+    }
+
+    private static SearchRequestDto request(boolean facets, SearchRequestDto.SearchFilters filters) {
+        return SearchRequestDto.builder()
+                .query("wireless headphones")
+                .size(20)
+                .includeFacets(facets)
+                .filters(filters)
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+package com.hungng3011.vdtecomberefresh.cart.services;
+
+import com.hungng3011.vdtecomberefresh.cart.dtos.AddToCartRequest;
+import com.hungng3011.vdtecomberefresh.cart.dtos.CartItemDto;
+import com.hungng3011.vdtecomberefresh.cart.entities.CartItem;
+import com.hungng3011.vdtecomberefresh.cart.mappers.CartItemMapper;
+import com.hungng3011.vdtecomberefresh.cart.repositories.CartItemRepository;
+import com.hungng3011.vdtecomberefresh.cart.repositories.CartRepository;
+import com.hungng3011.vdtecomberefresh.product.entities.Product;
+import com.hungng3011.vdtecomberefresh.product.repositories.ProductRepository;
+import com.hungng3011.vdtecomberefresh.stock.StockService;
+import com.hungng3011.vdtecomberefresh.stock.dtos.StockDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CartItemServiceTest {
+
+    @Mock
+    private CartItemRepository cartItemRepository;
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private CartItemMapper cartItemMapper;
+
+    @Mock
+    private StockService stockService;
+
+    @InjectMocks
+    private CartItemService cartItemService;
+
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        product = new Product();
+        product.setId(7L);
+        product.setName("Phone");
+        product.setBasePrice(new BigDecimal("10.00"));
+
+        StockDto stock = new StockDto();
+        stock.setQuantity(5);
+        when(cartRepository.existsById(1L)).thenReturn(true);
+        when(productRepository.findById(7L)).thenReturn(Optional.of(product));
+        when(stockService.getByProductId(7L)).thenReturn(List.of(stock));
+    }
+
+    @Test
+    void addItemToCart_shouldUpsertTheLineInsteadOfLoadingAndSavingIt() {
+        CartItem item = line(3);
+        CartItemDto itemDto = new CartItemDto();
+        when(cartItemRepository.upsertLine(1L, 7L, "", null, 2, new BigDecimal("10.00"))).thenReturn(10L);
+        when(cartItemRepository.findById(10L)).thenReturn(Optional.of(item));
+        when(cartItemMapper.toDto(item)).thenReturn(itemDto);
+
+        CartItemDto result = cartItemService.addItemToCart(1L, new AddToCartRequest(7L, 2, null, null));
+
+        assertEquals(itemDto, result);
+        verify(cartItemRepository, never()).findLine(any(), any(), any());
+        verify(cartItemRepository, never()).save(any(CartItem.class));
+    }
+
+    @Test
+    void addItemToCart_shouldRejectTheAdd_whenTheMergedQuantityExceedsStock() {
+        when(cartItemRepository.upsertLine(1L, 7L, "", null, 2, new BigDecimal("10.00"))).thenReturn(10L);
+        when(cartItemRepository.findById(10L)).thenReturn(Optional.of(line(6)));
+
+        // Thrown inside the transaction, so the upsert is rolled back
+        assertThrows(IllegalStateException.class,
+                () -> cartItemService.addItemToCart(1L, new AddToCartRequest(7L, 2, null, null)));
+        verifyNoInteractions(cartItemMapper);
+    }
+
+    private static CartItem line(int quantity) {
+        CartItem item = new CartItem();
+        item.setId(10L);
+        item.setQuantity(quantity);
+        return item;
+    }
+}
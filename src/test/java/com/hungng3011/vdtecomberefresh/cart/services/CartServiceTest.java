@@ -1,20 +1,35 @@
 package com.hungng3011.vdtecomberefresh.cart.services;
 
 import com.hungng3011.vdtecomberefresh.cart.dtos.CartDto;
+import com.hungng3011.vdtecomberefresh.cart.dtos.CartItemDeltaDto;
+import com.hungng3011.vdtecomberefresh.cart.dtos.CartLineDto;
+import com.hungng3011.vdtecomberefresh.cart.dtos.CartSummaryDto;
+import com.hungng3011.vdtecomberefresh.cart.dtos.CartTotalsDto;
+import com.hungng3011.vdtecomberefresh.cart.dtos.CartItemDto;
 import com.hungng3011.vdtecomberefresh.cart.entities.Cart;
+import com.hungng3011.vdtecomberefresh.cart.entities.CartItem;
 import com.hungng3011.vdtecomberefresh.cart.mappers.CartMapper;
+import com.hungng3011.vdtecomberefresh.cart.repositories.CartItemRepository;
 import com.hungng3011.vdtecomberefresh.cart.repositories.CartRepository;
+import com.hungng3011.vdtecomberefresh.product.dtos.VariationDto;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -26,6 +41,15 @@ class CartServiceTest {
     @Mock
     private CartMapper cartMapper;
 
+    @Mock
+    private CartItemRepository cartItemRepository;
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
     @InjectMocks
     private CartService cartService;
 
@@ -126,4 +150,136 @@ class CartServiceTest {
 
         verify(cartRepository, times(1)).deleteById(1L);
     }
-}
\ No newline at end of file
+
+    @Test
+    void signatureOf_shouldBeOrderIndependent() {
+        assertEquals("3,5,9", CartItem.signatureOf(List.of(9L, 3L, 5L)));
+        assertEquals("3,5,9", CartItem.signatureOf(List.of(5L, 9L, 3L, 5L)));
+        assertEquals("", CartItem.signatureOf(List.of()));
+        assertEquals("", CartItem.signatureOf(null));
+    }
+
+    @Test
+    void addItemToCartByEmail_shouldUpsertLineInSingleStatement() {
+        CartItemDto itemDto = new CartItemDto();
+        itemDto.setProductId(7L);
+        itemDto.setQuantity(2);
+        itemDto.setUnitPrice(new BigDecimal("10.00"));
+        VariationDto blue = new VariationDto();
+        blue.setId(5L);
+        VariationDto large = new VariationDto();
+        large.setId(3L);
+        itemDto.setSelectedVariations(List.of(blue, large));
+
+        CartLineDto line = new CartLineDto(10L, 7L, "Phone", "3,5", "", 2, new BigDecimal("10.00"));
+        CartTotalsDto totals = new CartTotalsDto(1, 2, new BigDecimal("20.00"));
+        when(cartRepository.findActiveCartIdByUserEmail("user@example.com")).thenReturn(Optional.of(1L));
+        when(cartItemRepository.upsertLine(1L, 7L, "3,5", null, 2, new BigDecimal("10.00"))).thenReturn(10L);
+        when(cartItemRepository.findLineById(10L)).thenReturn(Optional.of(line));
+        when(cartItemRepository.getTotalsByCartId(1L)).thenReturn(totals);
+
+        CartItemDeltaDto result = cartService.addItemToCartByEmail("user@example.com", itemDto);
+
+        assertEquals(1L, result.getCartId());
+        assertEquals(line, result.getItem());
+        assertEquals(totals, result.getTotals());
+        verify(cartItemRepository, times(1)).upsertLine(1L, 7L, "3,5", null, 2, new BigDecimal("10.00"));
+        verify(cartItemRepository, never()).save(any(CartItem.class));
+        // Only the line and the totals are read back, never the whole cart
+        verify(cartRepository, never()).findById(any());
+        verifyNoInteractions(cartMapper);
+    }
+
+    @Test
+    void addItemToCartByEmail_shouldReturnTheLine_whenAddingToANewCart() {
+        CartItemDto itemDto = new CartItemDto();
+        itemDto.setProductId(7L);
+        itemDto.setQuantity(1);
+        Cart newCart = new Cart();
+        newCart.setId(1L);
+        CartDto emptyCart = new CartDto();
+        emptyCart.setId(1L);
+        CartLineDto line = new CartLineDto(10L, 7L, "Phone", "", "", 1, new BigDecimal("10.00"));
+        CartTotalsDto totals = new CartTotalsDto(1, 1, new BigDecimal("10.00"));
+
+        when(cartRepository.findActiveCartIdByUserEmail("user@example.com")).thenReturn(Optional.empty());
+        when(cartRepository.findActiveCartByUserEmail("user@example.com")).thenReturn(Optional.empty());
+        when(cartMapper.toEntity(any(CartDto.class))).thenReturn(newCart);
+        when(cartRepository.save(newCart)).thenReturn(newCart);
+        when(cartMapper.toDto(newCart)).thenReturn(emptyCart);
+        when(cartItemRepository.upsertLine(1L, 7L, "", null, 1, null)).thenReturn(10L);
+        when(cartItemRepository.findLineById(10L)).thenReturn(Optional.of(line));
+        when(cartItemRepository.getTotalsByCartId(1L)).thenReturn(totals);
+
+        CartItemDeltaDto result = cartService.addItemToCartByEmail("user@example.com", itemDto);
+
+        // The line is read from the database, not from the cart created in the persistence context
+        assertEquals(line, result.getItem());
+        assertEquals(totals, result.getTotals());
+        verify(cartRepository, never()).findById(any());
+    }
+
+    @Test
+    void addItemToCartByEmail_shouldNotAddTwice_whenIdempotencyKeyWasSeen() {
+        CartItemDto itemDto = new CartItemDto();
+        itemDto.setProductId(7L);
+        itemDto.setQuantity(1);
+
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq("cart:idempotency:user@example.com:retry-1"), anyString(), any(Duration.class)))
+                .thenReturn(false);
+        CartItem existing = new CartItem();
+        existing.setId(10L);
+        CartLineDto line = new CartLineDto(10L, 7L, "Phone", "", "", 1, new BigDecimal("10.00"));
+        CartTotalsDto totals = new CartTotalsDto(1, 1, new BigDecimal("10.00"));
+        when(cartRepository.findActiveCartIdByUserEmail("user@example.com")).thenReturn(Optional.of(1L));
+        when(cartItemRepository.findLine(1L, 7L, "")).thenReturn(Optional.of(existing));
+        when(cartItemRepository.findLineById(10L)).thenReturn(Optional.of(line));
+        when(cartItemRepository.getTotalsByCartId(1L)).thenReturn(totals);
+
+        CartItemDeltaDto result = cartService.addItemToCartByEmail("user@example.com", itemDto, "retry-1");
+
+        assertEquals(line, result.getItem());
+        assertEquals(totals, result.getTotals());
+        verify(cartItemRepository, never()).upsertLine(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void removeItemFromCartByEmail_shouldReturnDeltaWithoutHydratingCart() {
+        CartItem item = new CartItem();
+        item.setId(10L);
+        item.setCart(cart);
+        CartTotalsDto totals = new CartTotalsDto(1, 3, new BigDecimal("30.00"));
+
+        when(cartRepository.findActiveCartIdByUserEmail("user@example.com")).thenReturn(Optional.of(1L));
+        when(cartItemRepository.findById(10L)).thenReturn(Optional.of(item));
+        when(cartItemRepository.getTotalsByCartId(1L)).thenReturn(totals);
+
+        CartItemDeltaDto delta = cartService.removeItemFromCartByEmail("user@example.com", 10L);
+
+        assertEquals(1L, delta.getCartId());
+        assertEquals(10L, delta.getRemovedItemId());
+        assertNull(delta.getItem());
+        assertEquals(totals, delta.getTotals());
+        verify(cartItemRepository, times(1)).delete(item);
+        verify(cartRepository, never()).findById(any());
+        verify(cartMapper, never()).toDto(any(Cart.class));
+    }
+
+    @Test
+    void getCartSummaryByEmail_shouldComputeTotalsFromLines() {
+        List<CartLineDto> lines = List.of(
+                new CartLineDto(10L, 7L, "Phone", "3,5", "SKU-1", 2, new BigDecimal("10.00")),
+                new CartLineDto(11L, 8L, "Case", "", "SKU-2", 1, new BigDecimal("5.50")));
+
+        when(cartRepository.findActiveCartIdByUserEmail("user@example.com")).thenReturn(Optional.of(1L));
+        when(cartItemRepository.findLinesByCartId(1L)).thenReturn(lines);
+
+        CartSummaryDto summary = cartService.getCartSummaryByEmail("user@example.com");
+
+        assertEquals(1L, summary.getCartId());
+        assertEquals(2, summary.getTotals().getItemCount());
+        assertEquals(3, summary.getTotals().getTotalQuantity());
+        assertEquals(new BigDecimal("25.50"), summary.getTotals().getTotalPrice());
+    }
+}
@@ -0,0 +1,108 @@
+package com.hungng3011.vdtecomberefresh.category.cache;
+
+import com.hungng3011.vdtecomberefresh.category.dtos.CategoryDto;
+import com.hungng3011.vdtecomberefresh.category.entities.Category;
+import com.hungng3011.vdtecomberefresh.category.entities.CategoryDynamicField;
+import com.hungng3011.vdtecomberefresh.category.enums.AppliesTo;
+import com.hungng3011.vdtecomberefresh.category.enums.FieldType;
+import com.hungng3011.vdtecomberefresh.category.repositories.CategoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CategoryCatalogCacheTest {
+
+    @Mock
+    private CategoryRepository categoryRepository;
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    private CategoryCatalogCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new CategoryCatalogCache(categoryRepository, redisTemplate, listenerContainer, Duration.ofMinutes(1));
+
+        Category phones = new Category(1L, "Phones", new ArrayList<>(), null, 3L);
+        phones.getDynamicFields().add(new CategoryDynamicField(10L, phones, "Brand", FieldType.TEXT,
+                AppliesTo.PRODUCT, true));
+        Category laptops = new Category(2L, "Laptops", new ArrayList<>(), null, 0L);
+        when(categoryRepository.findAllWithDynamicFields()).thenReturn(List.of(phones, laptops));
+    }
+
+    @Test
+    void getSnapshot_ShouldLoadCategoriesWithFieldsAndCountsOnce() {
+        List<CategoryDto> categories = cache.getSnapshot().toDtos();
+        cache.getSnapshot();
+
+        assertEquals(2, categories.size());
+        assertEquals(3L, categories.get(0).getProductCount());
+        assertEquals("Brand", categories.get(0).getDynamicFields().get(0).getFieldName());
+        assertEquals(0L, categories.get(1).getProductCount());
+        verify(categoryRepository, times(1)).findAllWithDynamicFields();
+    }
+
+    @Test
+    void findDynamicField_ShouldReturnTheDefinitionFromSnapshot() {
+        CategoryCatalogSnapshot.FieldDefinition field = cache.findDynamicField(10L).orElseThrow();
+
+        assertEquals("Brand", field.fieldName());
+        assertEquals(FieldType.TEXT, field.fieldType());
+        assertEquals(1L, field.categoryId());
+        assertTrue(cache.findDynamicField(99L).isEmpty());
+    }
+
+    @Test
+    void refresh_ShouldRebuildUnderNextVersionAndBroadcastIt() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.increment(CategoryCatalogCache.VERSION_KEY)).thenReturn(5L);
+        cache.getSnapshot();
+
+        cache.refresh();
+
+        assertEquals(5L, cache.getSnapshot().getVersion());
+        verify(categoryRepository, times(2)).findAllWithDynamicFields();
+        verify(redisTemplate).convertAndSend(CategoryCatalogCache.INVALIDATION_CHANNEL, "version:5");
+    }
+
+    @Test
+    void onMessage_ShouldRebuildOnlyForNewerVersions() {
+        cache.getSnapshot();
+
+        cache.onMessage(message("\"version:3\""), null);
+        cache.onMessage(message("version:2"), null);
+
+        assertEquals(3L, cache.getSnapshot().getVersion());
+        verify(categoryRepository, times(2)).findAllWithDynamicFields();
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(CategoryCatalogCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
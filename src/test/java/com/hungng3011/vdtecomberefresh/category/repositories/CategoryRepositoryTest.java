@@ -0,0 +1,101 @@
+package com.hungng3011.vdtecomberefresh.category.repositories;
+
+import com.hungng3011.vdtecomberefresh.VdtEcomBeRefreshApplication;
+import com.hungng3011.vdtecomberefresh.benchmark.EmbeddedPostgresTestConfig;
+import com.hungng3011.vdtecomberefresh.category.entities.Category;
+import com.hungng3011.vdtecomberefresh.product.entities.Product;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the product counter updates against PostgreSQL
+ */
+@DataJpaTest
+@ContextConfiguration(classes = VdtEcomBeRefreshApplication.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(EmbeddedPostgresTestConfig.class)
+@TestPropertySource(properties = {
+        "spring.config.on-not-found=ignore",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+class CategoryRepositoryTest {
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Category phones;
+    private Category laptops;
+
+    @BeforeEach
+    void setUp() {
+        phones = category("Phones");
+        laptops = category("Laptops");
+        product(phones, "Galaxy");
+        product(phones, "Pixel");
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void newCategory_ShouldStartWithZeroProducts() {
+        assertEquals(0L, productCount(phones));
+    }
+
+    @Test
+    void adjustProductCount_ShouldAddToTheCounter() {
+        categoryRepository.adjustProductCount(phones.getId(), 2);
+        categoryRepository.adjustProductCount(phones.getId(), -1);
+
+        assertEquals(1L, productCount(phones));
+        assertEquals(0L, productCount(laptops));
+    }
+
+    @Test
+    void reconcileProductCounts_ShouldOnlyCorrectDriftedCounters() {
+        categoryRepository.adjustProductCount(laptops.getId(), 5);
+
+        int corrected = categoryRepository.reconcileProductCounts();
+
+        assertEquals(2, corrected);
+        assertEquals(2L, productCount(phones));
+        assertEquals(0L, productCount(laptops));
+        assertEquals(0, categoryRepository.reconcileProductCounts());
+    }
+
+    private long productCount(Category category) {
+        entityManager.clear();
+        return categoryRepository.findById(category.getId()).orElseThrow().getProductCount();
+    }
+
+    private Category category(String name) {
+        Category category = new Category();
+        category.setName(name);
+        category.setDynamicFields(new ArrayList<>());
+        entityManager.persist(category);
+        return category;
+    }
+
+    private void product(Category category, String name) {
+        Product product = new Product();
+        product.setCategory(category);
+        product.setName(name);
+        product.setBasePrice(new BigDecimal("1000"));
+        entityManager.persist(product);
+    }
+}
@@ -0,0 +1,224 @@
+package com.hungng3011.vdtecomberefresh.product.cache;
+
+import com.hungng3011.vdtecomberefresh.product.dtos.ProductDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProductAggregateCacheTest {
+
+    private static final String KEY = ProductAggregateCache.KEY_PREFIX + "0:1:v0";
+    private static final String VERSION_KEY = ProductAggregateCache.VERSION_KEY_PREFIX + "1";
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<Long, ProductDto> loader = id -> {
+        loads.incrementAndGet();
+        ProductDto product = new ProductDto();
+        product.setId(id);
+        product.setName("Galaxy S24");
+        return product;
+    };
+
+    private ProductAggregateCache cache;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        cache = cache(Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void get_ShouldLoadOnceThroughRedisAndServeRepeatsFromMemory() {
+        ProductDto first = cache.get(1L, loader);
+        ProductDto second = cache.get(1L, loader);
+
+        assertEquals(1, loads.get());
+        assertEquals("Galaxy S24", second.getName());
+        assertEquals(first, second);
+        verify(valueOperations, times(1)).get(KEY);
+        verify(valueOperations).set(KEY, first, Duration.ofMinutes(10));
+        assertEquals(1.0, meterRegistry.counter("product.aggregate.l2.requests", "result", "miss").count());
+    }
+
+    @Test
+    void get_ShouldReadOtherNodesProductsFromRedis() {
+        ProductDto cached = new ProductDto();
+        cached.setId(1L);
+        cached.setName("Pixel 9");
+        when(valueOperations.get(VERSION_KEY)).thenReturn(null);
+        when(valueOperations.get(KEY)).thenReturn(cached);
+
+        ProductDto product = cache.get(1L, loader);
+
+        assertEquals(0, loads.get());
+        assertEquals("Pixel 9", product.getName());
+        verify(valueOperations, never()).set(anyString(), any(), any(Duration.class));
+        assertEquals(1.0, meterRegistry.counter("product.aggregate.l2.requests", "result", "hit").count());
+    }
+
+    @Test
+    void get_ShouldNotCacheMissingProductsInRedis() {
+        assertNull(cache.get(1L, id -> null));
+
+        verify(valueOperations, never()).set(anyString(), any(), any(Duration.class));
+    }
+
+    @Test
+    void get_ShouldLoadAgainOnceTheLocalEntryExpires() throws InterruptedException {
+        cache = cache(Duration.ofMillis(50));
+        cache.get(1L, loader);
+
+        Thread.sleep(100);
+        cache.get(1L, loader);
+
+        assertEquals(2, loads.get());
+        verify(valueOperations, times(2)).get(KEY);
+    }
+
+    @Test
+    void evict_ShouldMoveTheProductToANewVersionAndTellOtherNodes() {
+        when(valueOperations.get(VERSION_KEY)).thenReturn(null, 1L);
+        cache.get(1L, loader);
+
+        cache.evict(1L);
+        cache.get(1L, loader);
+
+        assertEquals(2, loads.get());
+        verify(valueOperations).increment(VERSION_KEY);
+        verify(valueOperations).get(ProductAggregateCache.KEY_PREFIX + "0:1:v1");
+        verify(redisTemplate).convertAndSend(ProductAggregateCache.INVALIDATION_CHANNEL, "evict:1");
+    }
+
+    @Test
+    void evict_ShouldLeaveALoadThatReadTheOldRowUnderAKeyNobodyReads() {
+        // A load reads version 0 before the writer commits; its Redis write is keyed by that version even if it
+        // only lands after the commit bumped the version
+        when(valueOperations.get(VERSION_KEY)).thenReturn(0L, 1L);
+        ProductDto stale = cache.get(1L, loader);
+        verify(valueOperations).set(KEY, stale, Duration.ofMinutes(10));
+
+        // Readers after the commit look under the new version and never see it
+        cache.evict(1L);
+        cache.get(1L, loader);
+
+        verify(valueOperations).get(ProductAggregateCache.KEY_PREFIX + "0:1:v1");
+        verify(valueOperations, times(1)).get(KEY);
+    }
+
+    @Test
+    void get_ShouldNotCacheInRedisWhenTheVersionCannotBeRead() {
+        when(valueOperations.get(VERSION_KEY)).thenThrow(new IllegalStateException("redis down"));
+
+        cache.get(1L, loader);
+
+        assertEquals(1, loads.get());
+        verify(valueOperations, never()).set(anyString(), any(), any(Duration.class));
+    }
+
+    @Test
+    void evict_ShouldWaitForTheWriteToCommit() {
+        cache.get(1L, loader);
+        TransactionSynchronizationManager.initSynchronization();
+
+        cache.evict(1L);
+        cache.get(1L, loader);
+        assertEquals(1, loads.get());
+        verify(valueOperations, never()).increment(anyString());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        cache.get(1L, loader);
+
+        assertEquals(2, loads.get());
+        verify(valueOperations).increment(VERSION_KEY);
+    }
+
+    @Test
+    void invalidateAll_ShouldMoveEveryNodeToTheNextGeneration() {
+        when(valueOperations.increment(ProductAggregateCache.GENERATION_KEY)).thenReturn(1L);
+        cache.get(1L, loader);
+
+        cache.invalidateAll();
+        cache.get(1L, loader);
+
+        assertEquals(2, loads.get());
+        verify(valueOperations).get(ProductAggregateCache.KEY_PREFIX + "1:1:v0");
+        verify(redisTemplate).convertAndSend(ProductAggregateCache.INVALIDATION_CHANNEL, "generation:1");
+    }
+
+    @Test
+    void onMessage_ShouldDropProductsEvictedByOtherNodes() {
+        cache.get(1L, loader);
+        cache.get(2L, loader);
+
+        cache.onMessage(message("\"evict:1\""), null);
+        cache.get(1L, loader);
+        cache.get(2L, loader);
+        assertEquals(3, loads.get());
+
+        // Stale or repeated generations leave the local entries alone
+        cache.onMessage(message("generation:0"), null);
+        cache.get(2L, loader);
+        assertEquals(3, loads.get());
+
+        cache.onMessage(message("generation:4"), null);
+        cache.get(2L, loader);
+        assertEquals(4, loads.get());
+        verify(valueOperations).get(eq(ProductAggregateCache.KEY_PREFIX + "4:2:v0"));
+    }
+
+    private ProductAggregateCache cache(Duration l1Ttl) {
+        ProductAggregateCache created = new ProductAggregateCache(redisTemplate, listenerContainer, meterRegistry,
+                100, l1Ttl, Duration.ofMinutes(10));
+        created.init();
+        return created;
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(ProductAggregateCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,181 @@
+package com.hungng3011.vdtecomberefresh.product.repositories;
+
+import com.hungng3011.vdtecomberefresh.VdtEcomBeRefreshApplication;
+import com.hungng3011.vdtecomberefresh.benchmark.EmbeddedPostgresTestConfig;
+import com.hungng3011.vdtecomberefresh.category.entities.Category;
+import com.hungng3011.vdtecomberefresh.category.entities.CategoryDynamicField;
+import com.hungng3011.vdtecomberefresh.category.enums.AppliesTo;
+import com.hungng3011.vdtecomberefresh.category.enums.FieldType;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto;
+import com.hungng3011.vdtecomberefresh.product.entities.Product;
+import com.hungng3011.vdtecomberefresh.product.entities.ProductDynamicValue;
+import com.hungng3011.vdtecomberefresh.stock.entities.Stock;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the facet aggregate queries against PostgreSQL and checks their counts
+ */
+@DataJpaTest
+@ContextConfiguration(classes = VdtEcomBeRefreshApplication.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({EmbeddedPostgresTestConfig.class, ProductFacetRepository.class})
+@TestPropertySource(properties = {
+        "spring.config.on-not-found=ignore",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+class ProductFacetRepositoryTest {
+
+    @Autowired
+    private ProductFacetRepository productFacetRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Category phones;
+    private Category laptops;
+
+    @BeforeEach
+    void setUp() {
+        phones = category("Phones");
+        laptops = category("Laptops");
+        CategoryDynamicField phoneBrand = field(phones, "Brand", FieldType.TEXT);
+        CategoryDynamicField phoneRam = field(phones, "RAM", FieldType.NUMBER);
+        CategoryDynamicField laptopBrand = field(laptops, " brand ", FieldType.TEXT);
+
+        Product galaxy = product(phones, "Galaxy", "9000000");
+        value(galaxy, phoneBrand, "Samsung");
+        value(galaxy, phoneRam, "8");
+        stock(galaxy, "GALAXY-1", 0);
+        stock(galaxy, "GALAXY-2", 4);
+
+        Product pixel = product(phones, "Pixel", "450000");
+        value(pixel, phoneBrand, "Google");
+        value(pixel, phoneRam, "8");
+        stock(pixel, "PIXEL-1", 0);
+
+        Product note = product(phones, "Note", "12000000");
+        value(note, phoneBrand, "SAMSUNG ");
+
+        Product book = product(laptops, "Book", "25000000");
+        value(book, laptopBrand, "Samsung");
+        stock(book, "BOOK-1", 2);
+
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void countByCategory_ShouldCountMatchingProductsPerCategory() {
+        ProductFilterDto filter = ProductFilterDto.builder().minPrice(new BigDecimal("1000000")).build();
+
+        Map<String, Long> counts = productFacetRepository.countByCategory(filter).stream()
+                .collect(Collectors.toMap(row -> (String) row.get(1), row -> ((Number) row.get(2)).longValue()));
+
+        assertEquals(Map.of("Phones", 2L, "Laptops", 1L), counts);
+    }
+
+    @Test
+    void countByPriceBucket_ShouldCountEachBucketIncludingItsLowerBound() {
+        ProductFilterDto filter = ProductFilterDto.builder().categoryId(phones.getId()).build();
+
+        List<Long> counts = productFacetRepository.countByPriceBucket(filter,
+                List.of(new BigDecimal("450000"), new BigDecimal("10000000")));
+
+        assertEquals(List.of(0L, 2L, 1L), counts);
+    }
+
+    @Test
+    void countByAttributeValue_ShouldGroupNormalizedNamesAndValues() {
+        ProductFilterDto filter = new ProductFilterDto();
+
+        Map<String, Long> counts = productFacetRepository.countByAttributeValue(filter).stream()
+                .collect(Collectors.toMap(this::attributeKey, row -> ((Number) row.get(2)).longValue()));
+
+        assertEquals(Map.of("brand=samsung", 3L, "brand=google", 1L, "ram=8", 2L), counts);
+    }
+
+    @Test
+    void countByAttributeValue_ShouldApplyTheFilterContext() {
+        ProductFilterDto filter = ProductFilterDto.builder()
+                .categoryId(phones.getId())
+                .maxPrice(new BigDecimal("10000000"))
+                .build();
+
+        Map<String, Long> counts = productFacetRepository.countByAttributeValue(filter).stream()
+                .collect(Collectors.toMap(this::attributeKey, row -> ((Number) row.get(2)).longValue()));
+
+        assertEquals(Map.of("brand=samsung", 1L, "brand=google", 1L, "ram=8", 2L), counts);
+    }
+
+    @Test
+    void countInStock_ShouldCountProductsWithAnySellableStock() {
+        assertEquals(2L, productFacetRepository.countInStock(new ProductFilterDto()));
+        assertEquals(1L, productFacetRepository.countInStock(
+                ProductFilterDto.builder().categoryId(phones.getId()).build()));
+    }
+
+    private String attributeKey(Tuple row) {
+        return row.get(0) + "=" + row.get(1);
+    }
+
+    private Category category(String name) {
+        Category category = new Category();
+        category.setName(name);
+        category.setDynamicFields(new ArrayList<>());
+        entityManager.persist(category);
+        return category;
+    }
+
+    private CategoryDynamicField field(Category category, String name, FieldType type) {
+        CategoryDynamicField field = new CategoryDynamicField();
+        field.setCategory(category);
+        field.setFieldName(name);
+        field.setFieldType(type);
+        field.setAppliesTo(AppliesTo.PRODUCT);
+        category.getDynamicFields().add(field);
+        entityManager.persist(field);
+        return field;
+    }
+
+    private Product product(Category category, String name, String price) {
+        Product product = new Product();
+        product.setCategory(category);
+        product.setName(name);
+        product.setBasePrice(new BigDecimal(price));
+        entityManager.persist(product);
+        return product;
+    }
+
+    private void value(Product product, CategoryDynamicField field, String value) {
+        entityManager.persist(new ProductDynamicValue(null, product, field, value));
+    }
+
+    private void stock(Product product, String sku, int quantity) {
+        Stock stock = new Stock();
+        stock.setSku(sku);
+        stock.setProduct(product);
+        stock.setQuantity(quantity);
+        stock.setLowStockThreshold(1);
+        stock.setUpdatedAt(LocalDateTime.now());
+        entityManager.persist(stock);
+    }
+}
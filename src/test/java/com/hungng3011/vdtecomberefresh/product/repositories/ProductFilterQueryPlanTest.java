@@ -0,0 +1,267 @@
+package com.hungng3011.vdtecomberefresh.product.repositories;
+
+import com.hungng3011.vdtecomberefresh.VdtEcomBeRefreshApplication;
+import com.hungng3011.vdtecomberefresh.benchmark.EmbeddedPostgresTestConfig;
+import com.hungng3011.vdtecomberefresh.category.entities.Category;
+import com.hungng3011.vdtecomberefresh.category.entities.CategoryDynamicField;
+import com.hungng3011.vdtecomberefresh.category.enums.AppliesTo;
+import com.hungng3011.vdtecomberefresh.category.enums.FieldType;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto.FieldMatchType;
+import com.hungng3011.vdtecomberefresh.product.entities.Product;
+import com.hungng3011.vdtecomberefresh.product.entities.ProductDynamicValue;
+import jakarta.persistence.EntityManager;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks on PostgreSQL that every filter query shape generated by {@link ProductFilterSpecifications}
+ * can be answered from the trigram indexes in {@code V13__Product_filter_trigram_indexes.sql} or the
+ * attribute projection index in {@code V14__Product_attributes_projection.sql}.
+ *
+ * Criteria values are inlined so the captured SQL can be passed straight to EXPLAIN. Filler rows give
+ * the planner realistic statistics, so a selective predicate that no index can serve shows up as a
+ * sequential scan.
+ */
+@DataJpaTest
+@ContextConfiguration(classes = VdtEcomBeRefreshApplication.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(EmbeddedPostgresTestConfig.class)
+@TestPropertySource(properties = {
+        "spring.config.on-not-found=ignore",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.criteria.value_handling_mode=inline",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.hungng3011.vdtecomberefresh.product.repositories.ProductFilterQueryPlanTest$CapturingInspector"
+})
+class ProductFilterQueryPlanTest {
+    private static final int FILLER_PRODUCTS = 20_000;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        Category category = new Category();
+        category.setName("Smartphones");
+        CategoryDynamicField color = new CategoryDynamicField();
+        color.setCategory(category);
+        color.setFieldName("Color");
+        color.setFieldType(FieldType.TEXT);
+        color.setAppliesTo(AppliesTo.PRODUCT);
+        CategoryDynamicField ram = new CategoryDynamicField();
+        ram.setCategory(category);
+        ram.setFieldName("RAM");
+        ram.setFieldType(FieldType.NUMBER);
+        ram.setAppliesTo(AppliesTo.PRODUCT);
+        category.setDynamicFields(new ArrayList<>(List.of(color, ram)));
+        entityManager.persist(category);
+
+        persistProduct(category, color, ram, "Galaxy Phone 100%", "Android flagship", "Midnight Blue", "12");
+        persistProduct(category, color, ram, "Pixel Phone", "Pure Android", "Sky Blue", "8");
+        persistProduct(category, color, ram, "Feature handset", "Buttons", "Red", "0.5");
+        entityManager.flush();
+        entityManager.clear();
+
+        jdbcTemplate.update("INSERT INTO products (id, category_id, name, description, base_price, created_at) " +
+                "SELECT 1000000 + i, ?, 'Filler item ' || i, 'Generic accessory', 1000, now() " +
+                "FROM generate_series(1, ?) AS i", category.getId(), FILLER_PRODUCTS);
+        jdbcTemplate.update("INSERT INTO product_dynamic_values (id, product_id, field_id, value) " +
+                "SELECT 1000000 + i, 1000000 + i, ?, 'Grey ' || i " +
+                "FROM generate_series(1, ?) AS i", color.getId(), FILLER_PRODUCTS);
+        jdbcTemplate.update("INSERT INTO product_dynamic_values (id, product_id, field_id, value) " +
+                "SELECT 2000000 + i, 1000000 + i, ?, (i % 4) + 1 " +
+                "FROM generate_series(1, ?) AS i", ram.getId(), FILLER_PRODUCTS);
+
+        // Build the indexes over existing rows, as the migration would; rows inserted into a fresh GIN
+        // index sit in its pending list until the next vacuum. V14 also backfills the attribute projection.
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/migration/V13__Product_filter_trigram_indexes.sql"));
+        ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/migration/V14__Product_attributes_projection.sql"));
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    void nameFilter_ShouldUseTrigramIndex() {
+        ProductFilterDto filter = ProductFilterDto.builder().name("PHONE").build();
+
+        assertMatches(filter, "Galaxy Phone 100%", "Pixel Phone");
+        assertPlanUses("idx_product_name_trgm");
+    }
+
+    @Test
+    void nameFilter_ShouldMatchLikeWildcardsLiterally() {
+        ProductFilterDto filter = ProductFilterDto.builder().name("100%").build();
+
+        assertMatches(filter, "Galaxy Phone 100%");
+        assertPlanUses("idx_product_name_trgm");
+    }
+
+    @Test
+    void descriptionFilter_ShouldUseTrigramIndex() {
+        ProductFilterDto filter = ProductFilterDto.builder().description("android").build();
+
+        assertMatches(filter, "Galaxy Phone 100%", "Pixel Phone");
+        assertPlanUses("idx_product_description_trgm");
+    }
+
+    @Test
+    void dynamicFieldFilter_PatternMatchTypes_ShouldUseTrigramIndex() {
+        assertDynamicFieldMatch(FieldMatchType.CONTAINS, "blue", "Galaxy Phone 100%", "Pixel Phone");
+        assertDynamicFieldMatch(FieldMatchType.STARTS_WITH, "sky", "Pixel Phone");
+        assertDynamicFieldMatch(FieldMatchType.ENDS_WITH, "red", "Feature handset");
+    }
+
+    @Test
+    void dynamicFieldFilter_Equals_ShouldUseAttributeIndex() {
+        ProductFilterDto filter = ProductFilterDto.builder()
+                .dynamicFields(List.of(dynamicField("color", "Midnight Blue", FieldMatchType.EQUALS)))
+                .build();
+
+        assertMatches(filter, "Galaxy Phone 100%");
+        assertPlanUses("idx_product_attributes");
+    }
+
+    @Test
+    void dynamicFieldFilter_SeveralAttributesWithNumericRange_ShouldBeOneIndexedPredicate() {
+        ProductFilterDto filter = ProductFilterDto.builder()
+                .dynamicFields(List.of(
+                        dynamicField("Color", "sky blue", FieldMatchType.EQUALS),
+                        ProductFilterDto.DynamicFieldFilterDto.builder()
+                                .fieldName("ram").minValue(BigDecimal.valueOf(6)).maxValue(BigDecimal.valueOf(16))
+                                .build()))
+                .build();
+
+        assertMatches(filter, "Pixel Phone");
+        String sql = lastSelect();
+        assertFalse(sql.contains("product_dynamic_values"), "No EAV lookup expected: " + sql);
+        assertPlanUses("idx_product_attributes");
+    }
+
+    @Test
+    void dynamicFieldFilter_NumericRange_ShouldCompareNumerically() {
+        ProductFilterDto filter = ProductFilterDto.builder()
+                .dynamicFields(List.of(ProductFilterDto.DynamicFieldFilterDto.builder()
+                        .fieldName("RAM").minValue(new BigDecimal("10")).build()))
+                .build();
+
+        // A text comparison would also match "8" > "10"
+        assertMatches(filter, "Galaxy Phone 100%");
+        assertPlanUses("idx_product_attributes");
+    }
+
+    @Test
+    void combinedFilter_ShouldOnlyContainPresentCriteria() {
+        ProductFilterDto filter = ProductFilterDto.builder()
+                .name("phone")
+                .minPrice(BigDecimal.valueOf(150))
+                .maxPrice(BigDecimal.valueOf(250))
+                .dynamicFields(List.of(dynamicField("Color", "blue", FieldMatchType.CONTAINS)))
+                .build();
+
+        assertMatches(filter, "Pixel Phone");
+        String sql = lastSelect();
+        assertFalse(sql.contains(" is null"), "No optional-parameter predicates expected: " + sql);
+        assertFalse(sql.contains("case"), "No CASE on the match type expected: " + sql);
+        // The planner may drive from either the price or the name index here
+        assertFalse(explain(sql).contains("Seq Scan on products"), "Unexpected sequential scan:\n" + explain(sql));
+    }
+
+    private void assertDynamicFieldMatch(FieldMatchType matchType, String value, String... expectedNames) {
+        ProductFilterDto filter = ProductFilterDto.builder()
+                .dynamicFields(List.of(dynamicField("color", value, matchType)))
+                .build();
+
+        assertMatches(filter, expectedNames);
+        assertPlanUses("idx_product_dynamic_value_trgm");
+    }
+
+    private ProductFilterDto.DynamicFieldFilterDto dynamicField(String fieldName, String value, FieldMatchType matchType) {
+        return ProductFilterDto.DynamicFieldFilterDto.builder()
+                .fieldName(fieldName)
+                .value(value)
+                .matchType(matchType)
+                .build();
+    }
+
+    private void assertMatches(ProductFilterDto filter, String... expectedNames) {
+        CapturingInspector.STATEMENTS.clear();
+        List<String> names = productRepository.findAll(ProductFilterSpecifications.from(filter)).stream()
+                .map(Product::getName)
+                .sorted()
+                .toList();
+        assertEquals(List.of(expectedNames), names);
+    }
+
+    private void assertPlanUses(String indexName) {
+        String plan = explain(lastSelect());
+        assertTrue(plan.contains(indexName), "Expected " + indexName + " in plan:\n" + plan);
+        assertFalse(plan.contains("Seq Scan on products"), "Unexpected sequential scan:\n" + plan);
+    }
+
+    private String explain(String sql) {
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class));
+    }
+
+    private String lastSelect() {
+        List<String> selects = CapturingInspector.STATEMENTS.stream()
+                .filter(sql -> sql.contains("from products"))
+                .toList();
+        assertFalse(selects.isEmpty(), "No product query captured");
+        return selects.get(selects.size() - 1);
+    }
+
+    private void persistProduct(Category category, CategoryDynamicField color, CategoryDynamicField ram, String name,
+                                String description, String colorValue, String ramValue) {
+        Product product = new Product();
+        product.setCategory(category);
+        product.setName(name);
+        product.setDescription(description);
+        product.setBasePrice(BigDecimal.valueOf(100L + name.length() * 10L));
+        entityManager.persist(product);
+        entityManager.persist(new ProductDynamicValue(null, product, color, colorValue));
+        entityManager.persist(new ProductDynamicValue(null, product, ram, ramValue));
+    }
+
+    /**
+     * Records the SQL Hibernate sends so the test can EXPLAIN it
+     */
+    public static class CapturingInspector implements StatementInspector {
+        static final List<String> STATEMENTS = new ArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.hungng3011.vdtecomberefresh.product.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hungng3011.vdtecomberefresh.category.entities.Category;
+import com.hungng3011.vdtecomberefresh.category.entities.CategoryDynamicField;
+import com.hungng3011.vdtecomberefresh.category.enums.AppliesTo;
+import com.hungng3011.vdtecomberefresh.category.enums.FieldType;
+import com.hungng3011.vdtecomberefresh.category.repositories.CategoryRepository;
+import com.hungng3011.vdtecomberefresh.product.cache.ProductFacetCache;
+import com.hungng3011.vdtecomberefresh.product.dtos.ProductImportResultDto;
+import com.hungng3011.vdtecomberefresh.product.entities.Product;
+import com.hungng3011.vdtecomberefresh.product.entities.ProductDynamicValue;
+import com.hungng3011.vdtecomberefresh.product.enums.ProductImportFormat;
+import com.hungng3011.vdtecomberefresh.product.repositories.ProductBulkInsertRepository;
+import com.hungng3011.vdtecomberefresh.search.services.ProductIndexingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ProductImportServiceTest {
+
+    @Mock
+    private CategoryRepository categoryRepository;
+
+    @Mock
+    private ProductBulkInsertRepository productBulkInsertRepository;
+
+    @Mock
+    private ProductIndexingService productIndexingService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ProductFacetCache productFacetCache;
+
+    @Captor
+    private ArgumentCaptor<List<Product>> productsCaptor;
+
+    @Captor
+    private ArgumentCaptor<List<ProductDynamicValue>> dynamicValuesCaptor;
+
+    private ProductImportService productImportService;
+    private CategoryDynamicField screenSize;
+
+    @BeforeEach
+    void setUp() {
+        productImportService = new ProductImportService(categoryRepository, productBulkInsertRepository,
+                productIndexingService, transactionManager, new ObjectMapper(), productFacetCache);
+        ReflectionTestUtils.setField(productImportService, "batchSize", 2);
+        ReflectionTestUtils.setField(productImportService, "maxReportedErrors", 100);
+
+        Category category = new Category();
+        category.setId(1L);
+        category.setName("Smartphones");
+        screenSize = new CategoryDynamicField();
+        screenSize.setId(10L);
+        screenSize.setFieldName("Screen Size");
+        screenSize.setFieldType(FieldType.TEXT);
+        screenSize.setRequired(false);
+        screenSize.setAppliesTo(AppliesTo.PRODUCT);
+        screenSize.setCategory(category);
+        category.setDynamicFields(new ArrayList<>(List.of(screenSize)));
+
+        when(categoryRepository.findAllById(any())).thenReturn(List.of(category));
+        // Hand out sequential IDs per call, like a sequence would
+        when(productBulkInsertRepository.allocateIds(anyString(), anyInt())).thenAnswer(invocation -> {
+            int count = invocation.getArgument(1);
+            return LongStream.rangeClosed(100, 99 + count).boxed().toList();
+        });
+    }
+
+    @Test
+    void importProducts_Ndjson_ShouldImportValidRowsAndReportInvalidOnes() {
+        // Arrange
+        String input = """
+                {"name":"Phone A","basePrice":100,"categoryId":1,"dynamicValues":[{"field":{"id":10},"value":"6.1"}]}
+                not json
+                {"name":"Phone B","basePrice":200,"categoryId":99}
+
+                {"name":"","basePrice":50,"categoryId":1}
+                """;
+
+        // Act
+        ProductImportResultDto result = productImportService.importProducts(stream(input), ProductImportFormat.NDJSON);
+
+        // Assert
+        assertEquals(4, result.getTotalRows());
+        assertEquals(1, result.getImported());
+        assertEquals(3, result.getFailed());
+        assertEquals(List.of(2L, 3L, 5L), result.getErrors().stream().map(e -> e.getRow()).toList());
+        assertTrue(result.getErrors().get(1).getMessage().contains("Category not found"));
+
+        verify(productBulkInsertRepository).insertProducts(productsCaptor.capture());
+        assertEquals(1, productsCaptor.getValue().size());
+        assertEquals(100L, productsCaptor.getValue().get(0).getId());
+        verify(productBulkInsertRepository).insertProductDynamicValues(dynamicValuesCaptor.capture());
+        ProductDynamicValue value = dynamicValuesCaptor.getValue().get(0);
+        assertSame(screenSize, value.getField());
+        assertEquals(100L, value.getProduct().getId());
+
+        // A category is loaded once and reused by later batches; the search index is refreshed once at the end
+        verify(categoryRepository, times(1)).findAllById(Set.of(1L));
+        verify(categoryRepository, times(1)).findAllById(Set.of(99L));
+        verify(productIndexingService, times(1)).reindexProducts(List.of(100L));
+    }
+
+    @Test
+    void importProducts_Csv_ShouldMapAttributeColumnsToCategoryFields() {
+        // Arrange
+        String input = """
+                name,basePrice,categoryId,images,Screen Size
+                Phone A,100,1,a.jpg|b.jpg,6.1 inches
+                Phone B,abc,1,,
+                """;
+
+        // Act
+        ProductImportResultDto result = productImportService.importProducts(stream(input), ProductImportFormat.CSV);
+
+        // Assert
+        assertEquals(2, result.getTotalRows());
+        assertEquals(1, result.getImported());
+        assertEquals(3L, result.getErrors().get(0).getRow());
+
+        verify(productBulkInsertRepository).insertProducts(productsCaptor.capture());
+        Product product = productsCaptor.getValue().get(0);
+        assertEquals("Phone A", product.getName());
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(product.getBasePrice()));
+        assertEquals(List.of("a.jpg", "b.jpg"), product.getImages());
+        verify(productBulkInsertRepository).insertProductDynamicValues(dynamicValuesCaptor.capture());
+        assertEquals("6.1 inches", dynamicValuesCaptor.getValue().get(0).getValue());
+    }
+
+    @Test
+    void importProducts_WhenBatchWriteFails_ShouldReportRowsAndContinue() {
+        // Arrange
+        doThrow(new RuntimeException("duplicate key")).doNothing()
+                .when(productBulkInsertRepository).insertProducts(any());
+        String input = """
+                {"name":"Phone A","basePrice":100,"categoryId":1}
+                {"name":"Phone B","basePrice":100,"categoryId":1}
+                {"name":"Phone C","basePrice":100,"categoryId":1}
+                """;
+
+        // Act
+        ProductImportResultDto result = productImportService.importProducts(stream(input), ProductImportFormat.NDJSON);
+
+        // Assert: first batch of two fails, second batch succeeds
+        assertEquals(3, result.getTotalRows());
+        assertEquals(1, result.getImported());
+        assertEquals(2, result.getFailed());
+        assertTrue(result.getErrors().get(0).getMessage().contains("duplicate key"));
+        verify(productIndexingService).reindexProducts(List.of(100L));
+    }
+
+    @Test
+    void importProducts_WhenInputBreaksMidStream_ShouldKeepCommittedRowsAndReportTheReadError() {
+        // Arrange: three rows arrive, then the upload connection drops
+        InputStream broken = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        };
+        InputStream input = new SequenceInputStream(stream("""
+                {"name":"Phone A","basePrice":100,"categoryId":1}
+                {"name":"Phone B","basePrice":100,"categoryId":1}
+                {"name":"Phone C","basePrice":100,"categoryId":1}
+                """), broken);
+
+        // Act
+        ProductImportResultDto result = productImportService.importProducts(input, ProductImportFormat.NDJSON);
+
+        // Assert: both the full batch and the rows buffered before the failure are imported and reindexed
+        assertEquals(3, result.getTotalRows());
+        assertEquals(3, result.getImported());
+        assertEquals("Import file could not be read after 3 rows: Connection reset", result.getReadError());
+        verify(productBulkInsertRepository, times(2)).insertProducts(any());
+        verify(productIndexingService).reindexProducts(List.of(100L, 101L, 100L));
+        verify(productFacetCache).invalidateAll();
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,18 +1,30 @@
 package com.hungng3011.vdtecomberefresh.product.services;
 
+import com.hungng3011.vdtecomberefresh.category.cache.CategoryCatalogCache;
+import com.hungng3011.vdtecomberefresh.category.cache.CategoryCatalogSnapshot;
 import com.hungng3011.vdtecomberefresh.category.dtos.CategoryDynamicFieldDto;
 import com.hungng3011.vdtecomberefresh.category.entities.Category;
 import com.hungng3011.vdtecomberefresh.category.entities.CategoryDynamicField;
 import com.hungng3011.vdtecomberefresh.category.enums.AppliesTo;
 import com.hungng3011.vdtecomberefresh.category.enums.FieldType;
 import com.hungng3011.vdtecomberefresh.category.repositories.CategoryRepository;
+import com.hungng3011.vdtecomberefresh.common.dtos.PagedResponse;
+import com.hungng3011.vdtecomberefresh.product.cache.ProductAggregateCache;
+import com.hungng3011.vdtecomberefresh.product.cache.ProductCountCache;
+import com.hungng3011.vdtecomberefresh.product.cache.ProductFacetCache;
 import com.hungng3011.vdtecomberefresh.product.dtos.*;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto.ProductSortField;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto.SortDirection;
 import com.hungng3011.vdtecomberefresh.product.entities.Product;
 import com.hungng3011.vdtecomberefresh.product.entities.ProductDynamicValue;
 import com.hungng3011.vdtecomberefresh.product.entities.Variation;
 import com.hungng3011.vdtecomberefresh.product.entities.VariationDynamicValue;
 import com.hungng3011.vdtecomberefresh.product.mappers.ProductMapper;
+import com.hungng3011.vdtecomberefresh.product.repositories.ProductDynamicValueRepository;
+import com.hungng3011.vdtecomberefresh.product.repositories.ProductKeysetRepository;
 import com.hungng3011.vdtecomberefresh.product.repositories.ProductRepository;
+import com.hungng3011.vdtecomberefresh.product.repositories.VariationDynamicValueRepository;
+import com.hungng3011.vdtecomberefresh.product.repositories.VariationRepository;
 import com.hungng3011.vdtecomberefresh.stock.StockService;
 import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
@@ -22,16 +34,20 @@ import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
 import com.hungng3011.vdtecomberefresh.exception.product.ProductProcessingException;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -54,6 +70,33 @@ public class ProductServiceTest {
     @Mock
     private StockService stockService;
 
+    @Mock
+    private ProductAggregateCache productAggregateCache;
+
+    @Mock
+    private ProductDynamicValueRepository productDynamicValueRepository;
+
+    @Mock
+    private VariationRepository variationRepository;
+
+    @Mock
+    private VariationDynamicValueRepository variationDynamicValueRepository;
+
+    @Mock
+    private ProductKeysetRepository productKeysetRepository;
+
+    @Mock
+    private ProductCountCache productCountCache;
+
+    @Mock
+    private ProductFacetCache productFacetCache;
+
+    @Mock
+    private CategoryCatalogCache categoryCatalogCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private ProductService productService;
 
@@ -66,7 +109,12 @@ public class ProductServiceTest {
     private CategoryDynamicField field1, field2, field3, field4, field5, field6;
 
     @BeforeEach
+    @SuppressWarnings("unchecked")
     void setUp() {
+        // Cache is a pass-through to the loader in unit tests
+        when(productAggregateCache.get(any(), any())).thenAnswer(invocation ->
+                ((Function<Long, ProductDto>) invocation.getArgument(1)).apply(invocation.getArgument(0)));
+
         // Set up category
         testCategory = new Category();
         testCategory.setId(1L);
@@ -184,6 +232,9 @@ public class ProductServiceTest {
         // Assert
         verify(productRepository).delete(testProduct);
         verify(stockService).removeStockByProductId(1L);
+        verify(productAggregateCache).evict(1L);
+        verify(productFacetCache).evictCategory(1L);
+        verify(categoryRepository).adjustProductCount(1L, -1);
     }
 
     @Test
@@ -388,8 +439,202 @@ public class ProductServiceTest {
         assertThrows(ProductProcessingException.class, () -> productService.update(request));
     }
 
+    @Test
+    void update_WithChangedChildren_ShouldOnlyWriteDifferences() {
+        // Arrange: product has two dynamic values and two variations
+        ProductDynamicValue screen = new ProductDynamicValue(10L, testProduct, field1, "6.1 inches");
+        ProductDynamicValue battery = new ProductDynamicValue(11L, testProduct, field3, "3000mAh");
+        testProduct.getDynamicValues().addAll(List.of(screen, battery));
+
+        Variation blue = new Variation(20L, testProduct, "Color", "Blue", BigDecimal.ZERO, new ArrayList<>());
+        VariationDynamicValue blueCode = new VariationDynamicValue(30L, blue, field4, "#0000FF");
+        blue.getDynamicValues().add(blueCode);
+        Variation red = new Variation(21L, testProduct, "Color", "Red", BigDecimal.ZERO, new ArrayList<>());
+        testProduct.getVariations().addAll(List.of(blue, red));
+
+        ProductDto request = new ProductDto();
+        request.setId(1L);
+        request.setName("Test Product");
+        request.setBasePrice(BigDecimal.valueOf(99.99));
+        // Screen matched by ID and changed, battery dropped, processor added
+        request.setDynamicValues(List.of(
+                new ProductDynamicValueDto(10L, 1L, fieldDto(1L), "6.7 inches"),
+                new ProductDynamicValueDto(null, 1L, fieldDto(2L), "A17 Pro")));
+        // Blue matched by natural key with a new price, red dropped
+        request.setVariations(List.of(new VariationDto(null, 1L, "Color", "Blue", BigDecimal.TEN,
+                List.of(new VariationDynamicValueDto(null, null, fieldDto(4L), "#0000FF")))));
+
+        when(productRepository.findById(1L)).thenReturn(Optional.of(testProduct));
+        when(productRepository.saveAndFlush(any(Product.class))).thenReturn(testProduct);
+        when(entityManager.find(CategoryDynamicField.class, 2L)).thenReturn(field2);
+        when(productMapper.toDto(any(Product.class))).thenReturn(request);
+
+        // Act
+        productService.update(request);
+
+        // Assert: existing rows are updated in place and keep their IDs
+        assertEquals("6.7 inches", screen.getValue());
+        assertEquals(BigDecimal.TEN, blue.getAdditionalPrice());
+        assertSame(blueCode, blue.getDynamicValues().get(0));
+        assertEquals(List.of(blue), testProduct.getVariations());
+
+        // The filter projection follows the merged values
+        assertEquals(Map.of("screen size", "6.7 inches", "processor", "a17 pro"), testProduct.getAttributes());
+
+        // Only the new dynamic value is inserted
+        verify(entityManager, times(1)).persist(any());
+        verify(entityManager).persist(argThat(entity -> entity instanceof ProductDynamicValue value
+                && value.getField() == field2 && "A17 Pro".equals(value.getValue())));
+
+        // Removed rows are deleted in batches, and stock links only for removed variations
+        verify(productDynamicValueRepository).deleteAllByIdInBatch(List.of(11L));
+        verify(variationRepository).unlinkStock(List.of(21L));
+        verify(variationDynamicValueRepository).deleteByVariationIds(List.of(21L));
+        verify(variationRepository).deleteAllByIdInBatch(List.of(21L));
+        verify(variationDynamicValueRepository, never()).deleteAllByIdInBatch(any());
+        verify(productAggregateCache).evict(1L);
+        verify(productFacetCache).evictCategory(1L);
+        verify(categoryRepository, never()).adjustProductCount(any(), anyLong());
+    }
+
+    @Test
+    void update_WithFieldInCatalogSnapshot_ShouldAttachAReferenceInsteadOfLoadingIt() {
+        // Arrange
+        ProductDto request = new ProductDto();
+        request.setId(1L);
+        request.setName("Test Product");
+        request.setBasePrice(BigDecimal.valueOf(99.99));
+        request.setDynamicValues(List.of(new ProductDynamicValueDto(null, 1L, fieldDto(2L), "A17 Pro")));
+
+        when(productRepository.findById(1L)).thenReturn(Optional.of(testProduct));
+        when(productRepository.saveAndFlush(any(Product.class))).thenReturn(testProduct);
+        when(categoryCatalogCache.findDynamicField(2L)).thenReturn(Optional.of(new CategoryCatalogSnapshot.FieldDefinition(
+                2L, 1L, "Processor", FieldType.TEXT, AppliesTo.PRODUCT, false)));
+        // Stands in for an uninitialized proxy: only its ID is known without a select
+        CategoryDynamicField reference = new CategoryDynamicField();
+        reference.setId(2L);
+        when(entityManager.getReference(CategoryDynamicField.class, 2L)).thenReturn(reference);
+        when(productMapper.toDto(any(Product.class))).thenReturn(request);
+
+        // Act
+        productService.update(request);
+
+        // Assert
+        verify(entityManager).persist(argThat(entity -> entity instanceof ProductDynamicValue value
+                && value.getField() == reference));
+        verify(entityManager, never()).find(eq(CategoryDynamicField.class), any());
+        // The attributes projection takes the field name and type from the snapshot
+        assertEquals(Map.of("processor", "a17 pro"), testProduct.getAttributes());
+    }
+
+    @Test
+    void getAllWithPagination_FirstPage_ShouldNotUseCursorQueryOrExactCount() {
+        // Arrange
+        when(productRepository.findFirstPage(any())).thenReturn(List.of(testProduct));
+        when(productCountCache.getApproximateCount()).thenReturn(1L);
+
+        // Act
+        PagedResponse<ProductDto> result = productService.getAllWithPagination(0, 10, null);
+
+        // Assert
+        assertEquals(1L, result.getPagination().getTotalElements());
+        assertEquals(1L, result.getPagination().getNextCursor());
+        verify(productRepository, never()).findAllWithCursorAfter(any(), any());
+        verify(productRepository, never()).countAllProducts();
+    }
+
+    @Test
+    void getListing_ShouldReturnKeysetCursorForNextPage() {
+        // Arrange: one row more than the page size signals a next page
+        List<Product> rows = List.of(listingProduct(5L, "Alpha"), listingProduct(3L, "Beta"),
+                listingProduct(9L, "Gamma"));
+        when(productKeysetRepository.findFirstPage(ProductSortField.NAME, SortDirection.ASC, 3)).thenReturn(rows);
+        when(productCountCache.getApproximateCount()).thenReturn(250_000L);
+
+        // Act
+        PagedResponse<ProductDto> first = productService.getListing(ProductSortField.NAME, SortDirection.ASC, 0, 2, null);
+
+        // Assert
+        assertEquals(2, first.getContent().size());
+        assertTrue(first.getPagination().isHasNext());
+        assertEquals(250_000L, first.getPagination().getTotalElements());
+
+        // The next page seeks past (name, id) of the last returned product
+        ArgumentCaptor<ProductListingCursor> cursorCaptor = ArgumentCaptor.forClass(ProductListingCursor.class);
+        when(productKeysetRepository.findPageAfter(cursorCaptor.capture(), eq(3))).thenReturn(List.of(rows.get(2)));
+
+        PagedResponse<ProductDto> second = productService.getListing(ProductSortField.NAME, SortDirection.ASC, 1, 2,
+                (String) first.getPagination().getNextCursor());
+
+        assertEquals("Beta", cursorCaptor.getValue().getSortValue());
+        assertEquals(3L, cursorCaptor.getValue().getId());
+        assertEquals(1, second.getContent().size());
+        assertFalse(second.getPagination().isHasNext());
+        assertNull(second.getPagination().getNextCursor());
+        verify(productRepository, never()).countAllProducts();
+    }
+
+    @Test
+    void getListing_WithPreviousCursor_ShouldSeekBackFromTheFirstProductOfThePage() {
+        // Arrange: the second page starts at Gamma; its previous cursor points before it
+        when(productCountCache.getApproximateCount()).thenReturn(250_000L);
+        when(productKeysetRepository.findPageAfter(any(), eq(3))).thenReturn(List.of(listingProduct(9L, "Gamma")));
+        String secondPageCursor = ProductListingCursor.after(listingProduct(3L, "Beta"),
+                ProductSortField.NAME, SortDirection.ASC).encode();
+        PagedResponse<ProductDto> second = productService.getListing(ProductSortField.NAME, SortDirection.ASC, 1, 2,
+                secondPageCursor);
+        assertTrue(second.getPagination().isHasPrevious());
+        assertNotEquals(secondPageCursor, second.getPagination().getPreviousCursor());
+
+        ArgumentCaptor<ProductListingCursor> cursorCaptor = ArgumentCaptor.forClass(ProductListingCursor.class);
+        when(productKeysetRepository.findPageBefore(cursorCaptor.capture(), eq(3)))
+                .thenReturn(List.of(listingProduct(5L, "Alpha"), listingProduct(3L, "Beta")));
+
+        // Act
+        PagedResponse<ProductDto> first = productService.getListing(ProductSortField.NAME, SortDirection.ASC, 0, 2,
+                (String) second.getPagination().getPreviousCursor());
+
+        // Assert: no extra row came back, so this is the first page
+        assertTrue(cursorCaptor.getValue().isBackward());
+        assertEquals("Gamma", cursorCaptor.getValue().getSortValue());
+        assertEquals(9L, cursorCaptor.getValue().getId());
+        assertEquals(2, first.getContent().size());
+        assertFalse(first.getPagination().isHasPrevious());
+        assertNull(first.getPagination().getPreviousCursor());
+        assertTrue(first.getPagination().isHasNext());
+        assertEquals(ProductListingCursor.after(listingProduct(3L, "Beta"), ProductSortField.NAME, SortDirection.ASC)
+                .encode(), first.getPagination().getNextCursor());
+    }
+
+    @Test
+    void getListing_WithCursorFromOtherSort_ShouldThrowException() {
+        // Arrange
+        String priceCursor = ProductListingCursor.after(listingProduct(3L, "Beta"),
+                ProductSortField.BASE_PRICE, SortDirection.ASC).encode();
+
+        // Act & Assert
+        ProductProcessingException exception = assertThrows(ProductProcessingException.class,
+                () -> productService.getListing(ProductSortField.NAME, SortDirection.ASC, 1, 2, priceCursor));
+        assertEquals("INVALID_CURSOR", exception.getErrorCode());
+        verifyNoInteractions(productKeysetRepository);
+    }
+
     // Helper methods
 
+    private Product listingProduct(Long id, String name) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setBasePrice(BigDecimal.valueOf(id * 10));
+        return product;
+    }
+
+    private CategoryDynamicFieldDto fieldDto(Long id) {
+        CategoryDynamicFieldDto dto = new CategoryDynamicFieldDto();
+        dto.setId(id);
+        return dto;
+    }
+
     private ProductDto createCompleteProductDto() {
         ProductDto dto = new ProductDto();
         dto.setName("iPhone 15 Pro");
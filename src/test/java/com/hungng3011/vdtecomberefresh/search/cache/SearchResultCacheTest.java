@@ -0,0 +1,130 @@
+package com.hungng3011.vdtecomberefresh.search.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hungng3011.vdtecomberefresh.search.documents.ProductSearchDocument;
+import com.hungng3011.vdtecomberefresh.search.dtos.SearchRequestDto;
+import com.hungng3011.vdtecomberefresh.search.dtos.SearchResponseDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SearchResultCacheTest {
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger searches = new AtomicInteger();
+    private final Function<SearchRequestDto, SearchResponseDto<ProductSearchDocument>> loader = request -> {
+        searches.incrementAndGet();
+        return SearchResponseDto.<ProductSearchDocument>builder()
+                .results(List.of(ProductSearchDocument.builder().id("1").name("Galaxy S24").build()))
+                .build();
+    };
+
+    private SearchResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        cache = new SearchResultCache(redisTemplate, listenerContainer, meterRegistry, objectMapper,
+                100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        cache.init();
+    }
+
+    @Test
+    void get_ShouldShareOneSearchBetweenEquivalentRequests() {
+        cache.get(request("  Galaxy   Phone ", List.of(2L, 1L)), loader);
+        SearchResponseDto<ProductSearchDocument> second = cache.get(request("galaxy phone", List.of(1L, 2L)), loader);
+
+        assertEquals(1, searches.get());
+        assertEquals("Galaxy S24", second.getResults().get(0).getName());
+        assertEquals(1.0, meterRegistry.counter("search.results.l2.requests", "result", "miss").count());
+        verify(valueOperations).set(startsWith(SearchResultCache.KEY_PREFIX + "0:"), anyString(), eq(Duration.ofMinutes(1)));
+    }
+
+    @Test
+    void get_ShouldReadOtherNodesResultsFromRedis() throws Exception {
+        String cached = objectMapper.writeValueAsString(loader.apply(new SearchRequestDto()));
+        searches.set(0);
+        when(valueOperations.get(startsWith(SearchResultCache.KEY_PREFIX + "0:"))).thenReturn(cached);
+
+        SearchResponseDto<ProductSearchDocument> response = cache.get(request("galaxy", null), loader);
+
+        assertEquals(0, searches.get());
+        assertEquals("1", response.getResults().get(0).getId());
+        assertEquals(1.0, meterRegistry.counter("search.results.l2.requests", "result", "hit").count());
+    }
+
+    @Test
+    void get_ShouldAlwaysSearchWhenBypassedOrContinuingACursor() {
+        SearchRequestDto bypassed = request("galaxy", null);
+        bypassed.setBypassCache(true);
+        SearchRequestDto continued = request("galaxy", null);
+        continued.setCursor("token");
+
+        cache.get(bypassed, loader);
+        cache.get(bypassed, loader);
+        cache.get(continued, loader);
+
+        assertEquals(3, searches.get());
+        assertEquals(3.0, meterRegistry.counter("search.results.bypassed").count());
+    }
+
+    @Test
+    void bumpIndexVersion_ShouldMoveToANewKeyNamespace() {
+        when(valueOperations.increment(SearchResultCache.VERSION_KEY)).thenReturn(4L);
+
+        cache.get(request("galaxy", null), loader);
+        cache.bumpIndexVersion();
+        cache.get(request("galaxy", null), loader);
+
+        assertEquals(2, searches.get());
+        verify(valueOperations).set(startsWith(SearchResultCache.KEY_PREFIX + "4:"), anyString(), any(Duration.class));
+        verify(redisTemplate).convertAndSend(SearchResultCache.INVALIDATION_CHANNEL, "version:4");
+    }
+
+    @Test
+    void hash_ShouldDifferWhenThePageDiffers() {
+        SearchRequestDto secondPage = request("galaxy", null);
+        secondPage.setPage(1);
+
+        assertNotEquals(cache.hash(request("galaxy", null)), cache.hash(secondPage));
+    }
+
+    private static SearchRequestDto request(String query, List<Long> categoryIds) {
+        return SearchRequestDto.builder()
+                .query(query)
+                .filters(SearchRequestDto.SearchFilters.builder().categoryIds(categoryIds).build())
+                .build();
+    }
+}
@@ -0,0 +1,138 @@
+package com.hungng3011.vdtecomberefresh.search.services;
+
+import com.hungng3011.vdtecomberefresh.search.cache.SearchResultCache;
+import com.hungng3011.vdtecomberefresh.search.services.SearchAnalyticsService.ClickStats;
+import com.hungng3011.vdtecomberefresh.search.services.SearchAnalyticsService.ClickTotals;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ClickRankingServiceTest {
+
+    @Mock
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @Mock
+    private SearchAnalyticsService searchAnalyticsService;
+
+    @Mock
+    private SearchResultCache searchResultCache;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ClickRankingService clickRankingService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        clickRankingService = new ClickRankingService(elasticsearchOperations, searchAnalyticsService,
+                searchResultCache, meterRegistry, 10, 0.5f, 3.0f, 2);
+    }
+
+    @Test
+    void computeChangedScores_ShouldScoreDebiasedClickThroughAgainstTheAverage() {
+        Map<Long, Float> scores = clickRankingService.computeChangedScores(Map.of(
+                1L, new ClickStats(20, 100, null),
+                2L, new ClickStats(0, 100, null),
+                3L, new ClickStats(10, 100, null)), 0.1);
+
+        // (20 + 10 * 0.1) / (100 + 10) / 0.1 and (0 + 1) / 110 / 0.1
+        assertEquals(Map.of(1L, 1.91f, 2L, 0.5f), scores);
+    }
+
+    @Test
+    void computeChangedScores_ShouldShrinkRarelyShownProductsTowardsTheAverage() {
+        Map<Long, Float> scores = clickRankingService.computeChangedScores(Map.of(
+                1L, new ClickStats(1, 1, null),
+                2L, new ClickStats(99, 999, 1.0f)), 0.1);
+
+        assertTrue(scores.get(1L) < 2.0f, "one click on one examination should not max out the score");
+    }
+
+    @Test
+    void computeChangedScores_ShouldSkipScoresThatDidNotMove() {
+        Map<Long, Float> scores = clickRankingService.computeChangedScores(Map.of(
+                1L, new ClickStats(20, 100, 1.91f),
+                2L, new ClickStats(0, 100, 0.5f),
+                3L, new ClickStats(10, 100, 1.0f)), 0.1);
+
+        assertTrue(scores.isEmpty());
+    }
+
+    @Test
+    void updateRankingScores_ShouldRescoreTheProductsToRankInBatches() {
+        // 30 clicks over 300 examinations: an average rate of 0.1
+        when(searchAnalyticsService.getClickTotals()).thenReturn(new ClickTotals(30, 300));
+        when(searchAnalyticsService.takeProductsToRank(2)).thenReturn(List.of(1L, 2L), List.of(3L, 4L), List.of());
+        when(searchAnalyticsService.getClickStats(List.of(1L, 2L))).thenReturn(Map.of(
+                1L, new ClickStats(20, 100, null),
+                2L, new ClickStats(0, 100, null)));
+        when(searchAnalyticsService.getClickStats(List.of(3L, 4L))).thenReturn(Map.of(
+                3L, new ClickStats(0, 50, null),
+                4L, new ClickStats(10, 50, null)));
+
+        assertEquals(4, clickRankingService.updateRankingScores());
+
+        verify(searchAnalyticsService, times(3)).takeProductsToRank(2);
+        verify(searchAnalyticsService, times(2)).saveRankingScores(any());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<UpdateQuery>> batches = ArgumentCaptor.forClass(List.class);
+        verify(elasticsearchOperations, times(2)).bulkUpdate(batches.capture(), any(IndexCoordinates.class));
+        UpdateQuery first = batches.getAllValues().get(0).get(0);
+        assertEquals("1", first.getId());
+        assertEquals(1.91f, first.getDocument().get("searchRankingScore"));
+        verify(searchResultCache).bumpIndexVersion();
+        assertEquals(4.0, meterRegistry.get("search.ranking.clicks.updated").counter().count());
+    }
+
+    @Test
+    void updateRankingScores_ShouldCountDocumentsTheIndexRejected() {
+        when(searchAnalyticsService.getClickTotals()).thenReturn(new ClickTotals(20, 200));
+        when(searchAnalyticsService.takeProductsToRank(2)).thenReturn(List.of(1L, 2L), List.of());
+        when(searchAnalyticsService.getClickStats(List.of(1L, 2L))).thenReturn(Map.of(
+                1L, new ClickStats(20, 100, null),
+                2L, new ClickStats(0, 100, null)));
+        doThrow(new BulkFailureException("missing", Map.of("2",
+                new BulkFailureException.FailureDetails(404, "document missing"))))
+                .when(elasticsearchOperations).bulkUpdate(anyList(), any(IndexCoordinates.class));
+
+        assertEquals(2, clickRankingService.updateRankingScores());
+
+        assertEquals(1.0, meterRegistry.get("search.ranking.clicks.failures").counter().count());
+        assertEquals(1.0, meterRegistry.get("search.ranking.clicks.updated").counter().count());
+    }
+
+    @Test
+    void updateRankingScores_ShouldDoNothingWithoutClicks() {
+        when(searchAnalyticsService.getClickTotals()).thenReturn(new ClickTotals(0, 100));
+
+        assertEquals(0, clickRankingService.updateRankingScores());
+
+        // Products stay queued until there are clicks to rank them by
+        verify(searchAnalyticsService, never()).takeProductsToRank(anyInt());
+        verifyNoInteractions(elasticsearchOperations, searchResultCache);
+    }
+}
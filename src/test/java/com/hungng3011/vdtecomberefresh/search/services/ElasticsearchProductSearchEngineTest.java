@@ -0,0 +1,239 @@
+package com.hungng3011.vdtecomberefresh.search.services;
+
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.LongTermsBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.RangeBucket;
+import com.hungng3011.vdtecomberefresh.category.cache.CategoryCatalogCache;
+import com.hungng3011.vdtecomberefresh.category.cache.CategoryCatalogSnapshot;
+import com.hungng3011.vdtecomberefresh.category.entities.Category;
+import com.hungng3011.vdtecomberefresh.search.documents.ProductSearchDocument;
+import com.hungng3011.vdtecomberefresh.search.dtos.SearchRequestDto;
+import com.hungng3011.vdtecomberefresh.search.dtos.SearchResponseDto;
+import com.hungng3011.vdtecomberefresh.search.exceptions.SearchServiceUnavailableException;
+import com.hungng3011.vdtecomberefresh.search.exceptions.SearchValidationException;
+import com.hungng3011.vdtecomberefresh.search.utils.SearchCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchHitsImpl;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.suggest.response.CompletionSuggestion;
+import org.springframework.data.elasticsearch.core.suggest.response.SortBy;
+import org.springframework.data.elasticsearch.core.suggest.response.Suggest;
+import org.springframework.data.elasticsearch.core.suggest.response.TermSuggestion;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ElasticsearchProductSearchEngineTest {
+
+    @Mock
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @Spy
+    private ProductSearchQueryBuilder productSearchQueryBuilder;
+
+    @Mock
+    private CategoryCatalogCache categoryCatalogCache;
+
+    @InjectMocks
+    private ElasticsearchProductSearchEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(engine, "scrollBatchSize", 2);
+    }
+
+    @Test
+    void search_ShouldReturnCursorWithoutOpeningPointInTimeOnFirstPage() {
+        when(elasticsearchOperations.search(any(NativeQuery.class), eq(ProductSearchDocument.class)))
+                .thenReturn(hits(null, 5, 1L, 2L));
+
+        SearchResponseDto<ProductSearchDocument> response = engine.search(request(2, null), null);
+
+        SearchCursor cursor = SearchCursor.decode(response.getMetadata().getCursor());
+        assertNull(cursor.pointInTimeId());
+        assertEquals(List.of(1.0, "2"), cursor.searchAfter());
+        verify(elasticsearchOperations, never()).openPointInTime(any(), any());
+    }
+
+    @Test
+    void search_ShouldOpenPointInTimeForTheSecondPageAndCloseItAfterTheLastOne() {
+        when(elasticsearchOperations.openPointInTime(eq(IndexCoordinates.of("products")), any(Duration.class)))
+                .thenReturn("pit-1");
+        when(elasticsearchOperations.search(any(NativeQuery.class), eq(ProductSearchDocument.class)))
+                .thenReturn(hits("pit-2", 5, 3L, 4L))
+                .thenReturn(hits("pit-3", 5, 5L));
+
+        String first = new SearchCursor(null, List.of(1.0, "2")).encode();
+        SearchResponseDto<ProductSearchDocument> second = search(request(2, first));
+        SearchResponseDto<ProductSearchDocument> third = search(request(2, second.getMetadata().getCursor()));
+
+        ArgumentCaptor<NativeQuery> queries = ArgumentCaptor.forClass(NativeQuery.class);
+        verify(elasticsearchOperations, times(2)).search(queries.capture(), eq(ProductSearchDocument.class));
+        assertEquals("pit-1", queries.getAllValues().get(0).getPointInTime().id());
+        assertEquals(List.of(1.0, "2"), queries.getAllValues().get(0).getSearchAfter());
+        assertEquals("pit-2", queries.getAllValues().get(1).getPointInTime().id());
+        assertEquals(List.of(1.0, "4"), queries.getAllValues().get(1).getSearchAfter());
+        verify(elasticsearchOperations, times(1)).openPointInTime(any(), any());
+
+        assertNull(third.getMetadata().getCursor());
+        verify(elasticsearchOperations).closePointInTime("pit-3");
+    }
+
+    @Test
+    void scroll_ShouldReadBatchesFromOnePointInTimeAndCloseIt() {
+        when(elasticsearchOperations.openPointInTime(eq(IndexCoordinates.of("products")), any(Duration.class)))
+                .thenReturn("pit-1");
+        when(elasticsearchOperations.search(any(NativeQuery.class), eq(ProductSearchDocument.class)))
+                .thenReturn(hits("pit-1", 0, 1L, 2L))
+                .thenReturn(hits("pit-1", 0, 3L));
+        List<String> streamed = new ArrayList<>();
+
+        long count = engine.scroll(new SearchRequestDto(), document -> streamed.add(document.getId()));
+
+        assertEquals(3, count);
+        assertEquals(List.of("1", "2", "3"), streamed);
+        ArgumentCaptor<NativeQuery> queries = ArgumentCaptor.forClass(NativeQuery.class);
+        verify(elasticsearchOperations, times(2)).search(queries.capture(), eq(ProductSearchDocument.class));
+        assertNull(queries.getAllValues().get(0).getSearchAfter());
+        assertEquals(List.of(1.0, "2"), queries.getAllValues().get(1).getSearchAfter());
+        verify(elasticsearchOperations).closePointInTime("pit-1");
+    }
+
+    @Test
+    void search_ShouldReadFacetsSuggestionsAndHighlightsFromTheSameResponse() {
+        Category phones = new Category();
+        phones.setId(3L);
+        phones.setName("Phones");
+        when(categoryCatalogCache.getSnapshot()).thenReturn(CategoryCatalogSnapshot.of(1L, List.of(phones)));
+
+        Aggregate categories = Aggregate.of(a -> a.lterms(t -> t.buckets(b -> b.array(List.of(
+                LongTermsBucket.of(bucket -> bucket.key(3L).docCount(7)))))));
+        Aggregate prices = Aggregate.of(a -> a.range(r -> r.buckets(b -> b.array(List.of(
+                RangeBucket.of(bucket -> bucket.key("-100000").docCount(2)),
+                RangeBucket.of(bucket -> bucket.key("10000000-").docCount(5)))))));
+        Aggregate priced = Aggregate.of(a -> a.filter(f -> f.docCount(7)
+                .aggregations(ProductSearchQueryBuilder.CATEGORIES_FACET, categories)));
+        Suggest suggest = new Suggest(List.of(
+                new CompletionSuggestion<>(ProductSearchQueryBuilder.COMPLETION_SUGGESTION, 5, List.of(
+                        new CompletionSuggestion.Entry<>("pho", 0, 3, List.of(
+                                new CompletionSuggestion.Entry.Option<>("Phone X", null, 12.0, null, null, null, null, null))))),
+                new TermSuggestion(ProductSearchQueryBuilder.SPELLING_SUGGESTION, 5, List.of(
+                        new TermSuggestion.Entry("pho", 0, 3, List.of(
+                                new TermSuggestion.Entry.Option("phone", null, 0.8, null, 42)))), SortBy.SCORE)),
+                false);
+        SearchHit<ProductSearchDocument> hit = new SearchHit<>("products", "1", null, 1.0f, new Object[]{1.0, "1"},
+                Map.of("name", List.of("<em>Phone</em> X")), null, null, null, null,
+                ProductSearchDocument.builder().id("1").build());
+        when(elasticsearchOperations.search(any(NativeQuery.class), eq(ProductSearchDocument.class)))
+                .thenReturn(new SearchHitsImpl<>(1, TotalHitsRelation.EQUAL_TO, 1.0f, Duration.ZERO, null, null,
+                        List.of(hit), new ElasticsearchAggregations(Map.of(
+                                ProductSearchQueryBuilder.PRICED_FACETS, priced,
+                                ProductSearchQueryBuilder.PRICE_RANGES_FACET, prices)), suggest, null));
+
+        SearchRequestDto request = SearchRequestDto.builder()
+                .query("pho")
+                .size(10)
+                .includeFacets(true)
+                .includeSuggestions(true)
+                .filters(SearchRequestDto.SearchFilters.builder().minPrice(new BigDecimal("20000000")).build())
+                .build();
+        SearchResponseDto<ProductSearchDocument> response = engine.search(request, null);
+
+        SearchResponseDto.FacetResult category = response.getFacets().get("categories").get(0);
+        assertEquals("3", category.getKey());
+        assertEquals(7L, category.getCount());
+        assertEquals("Phones", category.getMetadata().get("label"));
+        List<SearchResponseDto.FacetResult> priceRanges = response.getFacets().get("priceRanges");
+        assertEquals(List.of(false, true), priceRanges.stream().map(SearchResponseDto.FacetResult::getSelected).toList());
+        assertEquals("10000000+", priceRanges.get(1).getMetadata().get("label"));
+        assertEquals(List.of("Phone X", "phone"),
+                response.getSuggestions().stream().map(SearchResponseDto.SearchSuggestion::getText).toList());
+        assertEquals(42L, response.getSuggestions().get(1).getFrequency());
+        assertEquals(List.of("<em>Phone</em> X"), response.getHighlights().get("1"));
+        verify(elasticsearchOperations).search(any(NativeQuery.class), eq(ProductSearchDocument.class));
+        verifyNoMoreInteractions(elasticsearchOperations);
+    }
+
+    @Test
+    void complete_ShouldScopeToTheCategoryThroughTheCompletionContext() {
+        when(elasticsearchOperations.search(any(NativeQuery.class), eq(ProductSearchDocument.class)))
+                .thenReturn(new SearchHitsImpl<>(0, TotalHitsRelation.EQUAL_TO, Float.NaN, Duration.ZERO, null, null,
+                        List.of(), null, null, null));
+
+        engine.complete("iph", 5, 7L);
+
+        ArgumentCaptor<NativeQuery> query = ArgumentCaptor.forClass(NativeQuery.class);
+        verify(elasticsearchOperations).search(query.capture(), eq(ProductSearchDocument.class));
+        assertEquals("7", query.getValue().getSuggester().suggesters()
+                .get(ProductSearchQueryBuilder.COMPLETION_SUGGESTION).completion()
+                .contexts().get(ProductSearchDocument.CATEGORY_CONTEXT).get(0).context().category());
+    }
+
+    @Test
+    void search_ShouldReportAnExpiredCursorAsAValidationError() {
+        String cursor = new SearchCursor("pit-1", List.of(1.0, "2")).encode();
+        when(elasticsearchOperations.search(any(NativeQuery.class), eq(ProductSearchDocument.class)))
+                .thenThrow(new IllegalStateException("search_context_missing_exception"));
+
+        assertThrows(SearchValidationException.class, () -> search(request(2, cursor)));
+    }
+
+    @Test
+    void search_ShouldReportOtherFailuresAsUnavailable() {
+        when(elasticsearchOperations.search(any(NativeQuery.class), eq(ProductSearchDocument.class)))
+                .thenThrow(new IllegalStateException("connection refused"));
+
+        assertThrows(SearchServiceUnavailableException.class, () -> engine.search(request(2, null), null));
+    }
+
+    private SearchResponseDto<ProductSearchDocument> search(SearchRequestDto request) {
+        return engine.search(request, SearchCursor.decode(request.getCursor()));
+    }
+
+    private static SearchRequestDto request(int size, String cursor) {
+        return SearchRequestDto.builder()
+                .query("phone")
+                .size(size)
+                .cursor(cursor)
+                .build();
+    }
+
+    private static SearchHits<ProductSearchDocument> hits(String pointInTimeId, long total, Long... ids) {
+        List<SearchHit<ProductSearchDocument>> hits = Arrays.stream(ids)
+                .map(id -> new SearchHit<>("products", id.toString(), null, 1.0f, new Object[]{1.0, id.toString()},
+                        null, null, null, null, null, ProductSearchDocument.builder().id(id.toString()).build()))
+                .toList();
+        return new SearchHitsImpl<>(total, TotalHitsRelation.EQUAL_TO, 1.0f, Duration.ZERO, null, pointInTimeId,
+                hits, null, null, null);
+    }
+}
@@ -0,0 +1,121 @@
+package com.hungng3011.vdtecomberefresh.search.services;
+
+import com.hungng3011.vdtecomberefresh.product.repositories.ProductRepository;
+import com.hungng3011.vdtecomberefresh.search.events.ProductIndexEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.elasticsearch.BulkFailureException;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProductIndexSyncServiceTest {
+
+    @Mock
+    private ProductIndexingService productIndexingService;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ProductIndexSyncService syncService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        syncService = new ProductIndexSyncService(productIndexingService, productRepository, meterRegistry, 2, 2);
+    }
+
+    @Test
+    void flush_ShouldCoalesceEventsPerProductWithTheLastActionWinning() {
+        syncService.onProductIndexEvent(ProductIndexEvent.upsert("product", 1L));
+        syncService.onProductIndexEvent(ProductIndexEvent.upsert("stock", 1L));
+        syncService.onProductIndexEvent(ProductIndexEvent.upsert("stock", 2L));
+        syncService.onProductIndexEvent(ProductIndexEvent.delete("product", 2L));
+
+        syncService.flush();
+
+        verify(productIndexingService).syncProducts(List.of(1L), List.of(2L));
+        assertEquals(0, syncService.getPendingCount());
+        assertEquals(2, meterRegistry.get("search.index.sync.lag").timer().count());
+        assertEquals(2.0, meterRegistry.get("search.index.sync.events").tag("source", "stock").counter().count());
+    }
+
+    @Test
+    void flush_ShouldSplitPendingChangesIntoBatches() {
+        syncService.onProductIndexEvent(ProductIndexEvent.upsert("order", List.of(1L, 2L, 3L)));
+
+        syncService.flush();
+
+        verify(productIndexingService, times(2)).syncProducts(any(), any());
+        verify(productIndexingService).syncProducts(argThat(ids -> ids.size() == 1), any());
+    }
+
+    @Test
+    void onProductIndexEvent_ShouldExpandCategoryEventsToTheirProducts() {
+        when(productRepository.findIdsByCategoryId(7L)).thenReturn(List.of(4L, 5L));
+
+        syncService.onProductIndexEvent(ProductIndexEvent.category(7L));
+
+        assertEquals(2, syncService.getPendingCount());
+    }
+
+    @Test
+    void flush_ShouldRequeueFailedBatchForTheNextFlush() {
+        when(productIndexingService.syncProducts(any(), any()))
+                .thenThrow(new RuntimeException("Elasticsearch unavailable"))
+                .thenReturn(1);
+        syncService.onProductIndexEvent(ProductIndexEvent.upsert("product", 1L));
+
+        syncService.flush();
+        assertEquals(1, syncService.getPendingCount());
+        assertEquals(1.0, meterRegistry.get("search.index.sync.failures").counter().count());
+
+        syncService.flush();
+        assertEquals(0, syncService.getPendingCount());
+        verify(productIndexingService, times(2)).syncProducts(List.of(1L), List.of());
+    }
+
+    @Test
+    void flush_ShouldRequeueOnlyTheDocumentsTheIndexRejected() {
+        when(productIndexingService.syncProducts(any(), any()))
+                .thenThrow(new BulkFailureException("rejected", Map.of("2",
+                        new BulkFailureException.FailureDetails(400, "mapper_parsing_exception"))))
+                .thenReturn(1);
+        syncService.onProductIndexEvent(ProductIndexEvent.upsert("order", List.of(1L, 2L)));
+
+        syncService.flush();
+        assertEquals(1, syncService.getPendingCount());
+        assertEquals(1, meterRegistry.get("search.index.sync.lag").timer().count());
+
+        syncService.flush();
+        verify(productIndexingService).syncProducts(List.of(2L), List.of());
+        assertEquals(0, syncService.getPendingCount());
+    }
+
+    @Test
+    void flush_ShouldDropChangesThatKeepFailing() {
+        when(productIndexingService.syncProducts(any(), any())).thenThrow(new RuntimeException("Elasticsearch unavailable"));
+        syncService.onProductIndexEvent(ProductIndexEvent.upsert("product", 1L));
+
+        syncService.flush();
+        syncService.onProductIndexEvent(ProductIndexEvent.upsert("stock", 1L));
+        syncService.flush();
+
+        // A newer write to the product does not reset its attempts
+        assertEquals(0, syncService.getPendingCount());
+        assertEquals(1.0, meterRegistry.get("search.index.sync.dropped").counter().count());
+    }
+}
@@ -0,0 +1,180 @@
+package com.hungng3011.vdtecomberefresh.search.services;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.indices.ElasticsearchIndicesClient;
+import com.hungng3011.vdtecomberefresh.product.entities.Product;
+import com.hungng3011.vdtecomberefresh.product.repositories.ProductRepository;
+import com.hungng3011.vdtecomberefresh.search.cache.SearchResultCache;
+import com.hungng3011.vdtecomberefresh.search.documents.ProductSearchDocument;
+import com.hungng3011.vdtecomberefresh.search.repositories.ProductSearchRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.index.AliasAction;
+import org.springframework.data.elasticsearch.core.index.AliasActions;
+import org.springframework.data.elasticsearch.core.index.Settings;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProductIndexingServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductSearchRepository productSearchRepository;
+
+    @Mock
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @Mock
+    private ElasticsearchClient elasticsearchClient;
+
+    @Mock
+    private ElasticsearchIndicesClient indicesClient;
+
+    @Mock
+    private ProductSignalLoader productSignalLoader;
+
+    @Mock
+    private SearchResultCache searchResultCache;
+
+    @Mock
+    private IndexOperations templateOps;
+
+    @Mock
+    private IndexOperations indexOps;
+
+    @InjectMocks
+    private ProductIndexingService productIndexingService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(productIndexingService, "reindexBatchSize", 2);
+        ReflectionTestUtils.setField(productIndexingService, "reindexParallelism", 2);
+
+        Settings settings = new Settings();
+        settings.put("index", new Settings()
+                .append("number_of_shards", 3)
+                .append("number_of_replicas", 1));
+        when(elasticsearchOperations.indexOps(ProductSearchDocument.class)).thenReturn(templateOps);
+        when(templateOps.createSettings()).thenReturn(settings);
+        when(templateOps.createMapping()).thenReturn(Document.create());
+        when(elasticsearchOperations.indexOps(any(IndexCoordinates.class))).thenReturn(indexOps);
+        lenient().when(elasticsearchClient.indices()).thenReturn(indicesClient);
+
+        when(productRepository.findMinId()).thenReturn(1L);
+        when(productRepository.findMaxId()).thenReturn(4L);
+        when(productRepository.findIdRangeAfter(anyLong(), anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long after = invocation.getArgument(0);
+            long upTo = invocation.getArgument(1);
+            int limit = invocation.<Pageable>getArgument(2).getPageSize();
+            return LongStream.rangeClosed(after + 1, upTo).limit(limit).mapToObj(ProductIndexingServiceTest::product).toList();
+        });
+    }
+
+    @Test
+    void fullReindex_ShouldBuildNewIndexWithoutRefreshOrReplicasAndSwapTheAlias() throws Exception {
+        when(indexOps.getAliases("products")).thenReturn(Map.of("products_20260101020000", Set.of()));
+
+        productIndexingService.fullReindex();
+
+        verify(indexOps).create(argThat(settings -> "-1".equals(settings.get("index.refresh_interval"))
+                && "0".equals(settings.get("index.number_of_replicas"))
+                && Integer.valueOf(3).equals(settings.get("index.number_of_shards"))), any(Document.class));
+        // Two slices of two products each, one page per slice
+        verify(elasticsearchOperations, times(2)).bulkIndex(argThat(queries -> queries.size() == 2),
+                argThat((IndexCoordinates index) -> index.getIndexName().startsWith("products_")));
+        verify(indicesClient).putSettings(any(Function.class));
+        verify(indexOps).alias(argThat(actions -> hasSwap(actions, "products_20260101020000")));
+        verify(elasticsearchOperations).indexOps(
+                argThat((IndexCoordinates index) -> "products_20260101020000".equals(index.getIndexName())));
+        verify(indexOps).delete();
+        verify(productSearchRepository, never()).deleteAll();
+        verify(searchResultCache).bumpIndexVersion();
+    }
+
+    @Test
+    void fullReindex_ShouldDropTheNewIndexAndKeepTheAliasWhenBuildingFails() {
+        when(elasticsearchOperations.bulkIndex(anyList(), any(IndexCoordinates.class)))
+                .thenThrow(new RuntimeException("Elasticsearch unavailable"));
+
+        productIndexingService.fullReindex();
+
+        verify(indexOps, never()).alias(any());
+        verify(indexOps).delete();
+        verify(searchResultCache, never()).bumpIndexVersion();
+    }
+
+    @Test
+    void syncProducts_ShouldReplayChangesMadeDuringReindexIntoTheNewIndex() {
+        when(indexOps.getAliases("products")).thenReturn(Map.of());
+        when(indexOps.exists()).thenReturn(true);
+        when(productRepository.findAllById(List.of(3L))).thenReturn(List.of(product(3L)));
+        // A write is synced while the first slice is being read
+        when(productRepository.findIdRangeAfter(0L, 2L, Pageable.ofSize(2))).thenAnswer(invocation -> {
+            productIndexingService.syncProducts(List.of(3L), List.of());
+            return List.of(product(1L), product(2L));
+        });
+
+        productIndexingService.fullReindex();
+
+        // Once to the live alias by the sync itself, once to the new index by the catch-up
+        verify(elasticsearchOperations).bulkIndex(argThat(queries -> queries.size() == 1
+                && "3".equals(queries.get(0).getId())), any(Class.class));
+        verify(elasticsearchOperations).bulkIndex(argThat(queries -> queries.size() == 1
+                && "3".equals(queries.get(0).getId())),
+                argThat((IndexCoordinates index) -> index.getIndexName().startsWith("products_")));
+        // "products" was a concrete index, so the swap removes it
+        verify(indexOps).alias(argThat(actions -> actions.getActions().stream()
+                .anyMatch(action -> action instanceof AliasAction.RemoveIndex)));
+        // Only the swap retires cached result pages, not the sync
+        verify(searchResultCache, times(1)).bumpIndexVersion();
+    }
+
+    private static boolean hasSwap(AliasActions actions, String previousIndex) {
+        List<AliasAction> list = actions.getActions();
+        boolean added = list.stream().anyMatch(action -> action instanceof AliasAction.Add add
+                && add.getParameters().getIndices()[0].startsWith("products_")
+                && Arrays.asList(add.getParameters().getAliases()).contains("products"));
+        boolean removed = list.stream().anyMatch(action -> action instanceof AliasAction.Remove remove
+                && previousIndex.equals(remove.getParameters().getIndices()[0]));
+        assertEquals(2, list.size());
+        return added && removed;
+    }
+
+    private static Product product(long id) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setBasePrice(new BigDecimal("1000"));
+        return product;
+    }
+}
@@ -0,0 +1,179 @@
+package com.hungng3011.vdtecomberefresh.search.services;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hungng3011.vdtecomberefresh.search.documents.ProductSearchDocument;
+import com.hungng3011.vdtecomberefresh.search.dtos.SearchRequestDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductSearchQueryBuilderTest {
+
+    private final ProductSearchQueryBuilder queryBuilder = new ProductSearchQueryBuilder();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void build_ShouldPutFiltersInFilterContextAndBoostByPopularity() throws Exception {
+        SearchRequestDto request = SearchRequestDto.builder()
+                .query("galaxy")
+                .filters(SearchRequestDto.SearchFilters.builder()
+                        .categoryIds(List.of(1L, 2L))
+                        .minPrice(new BigDecimal("100"))
+                        .maxPrice(new BigDecimal("500"))
+                        .brands(List.of("Samsung"))
+                        .inStock(true)
+                        .customAttributes(Map.of("ram", "8GB"))
+                        .build())
+                .build();
+
+        JsonNode functionScore = json(queryBuilder.build(request)).get("function_score");
+        JsonNode bool = functionScore.get("query").get("bool");
+        List<String> filters = filterTypes(bool);
+
+        assertEquals("popularityScore", functionScore.get("functions").get(0).get("field_value_factor").get("field").asText());
+        assertEquals("searchRankingScore", functionScore.get("functions").get(1).get("field_value_factor").get("field").asText());
+        assertEquals("multiply", functionScore.get("score_mode").asText());
+        assertEquals("galaxy", bool.get("must").get(0).get("multi_match").get("query").asText());
+        assertTrue(filters.contains("terms:categoryId"));
+        assertTrue(filters.contains("range:basePrice"));
+        assertTrue(filters.contains("terms:brand"));
+        assertTrue(filters.contains("term:inStock"));
+        assertTrue(filters.contains("term:customAttributes.ram"));
+        assertTrue(filters.contains("term:isActive"));
+        assertEquals(100.0, filterOf(bool, "range").get("basePrice").get("gte").asDouble());
+    }
+
+    @Test
+    void build_ShouldNotRestrictStockWhenInStockIsFalse() throws Exception {
+        SearchRequestDto request = SearchRequestDto.builder()
+                .query("galaxy")
+                .filters(SearchRequestDto.SearchFilters.builder().inStock(false).build())
+                .build();
+
+        List<String> filters = filterTypes(json(queryBuilder.build(request)).get("function_score").get("query").get("bool"));
+
+        assertFalse(filters.contains("term:inStock"));
+        assertEquals(List.of("term:isActive", "term:isVisible"), filters);
+    }
+
+    @Test
+    void build_ShouldEndEverySortWithTheDocumentId() {
+        SearchRequestDto byRelevance = SearchRequestDto.builder().query("galaxy").build();
+        SearchRequestDto byPrice = SearchRequestDto.builder().query("galaxy").sortBy("price")
+                .sortDirection(SearchRequestDto.SortDirection.ASC).build();
+
+        List<Sort.Order> relevanceOrders = queryBuilder.buildSort(byRelevance).toList();
+        List<Sort.Order> priceOrders = queryBuilder.buildSort(byPrice).toList();
+
+        assertEquals("_score", relevanceOrders.get(0).getProperty());
+        assertEquals(ProductSearchQueryBuilder.ID_FIELD, relevanceOrders.get(1).getProperty());
+        assertEquals(Sort.Order.asc("basePrice"), priceOrders.get(0));
+        assertEquals(ProductSearchQueryBuilder.ID_FIELD, priceOrders.get(1).getProperty());
+    }
+
+    @Test
+    void build_ShouldPageWithSearchAfterInsteadOfOffset() {
+        SearchRequestDto request = SearchRequestDto.builder()
+                .query("galaxy")
+                .page(40)
+                .size(20)
+                .searchAfter(List.of(1.5, "812"))
+                .build();
+
+        NativeQuery query = queryBuilder.build(request);
+
+        assertEquals(0, query.getPageable().getPageNumber());
+        assertEquals(20, query.getPageable().getPageSize());
+        assertEquals(List.of(1.5, "812"), query.getSearchAfter());
+    }
+
+    @Test
+    void build_ShouldRequestFacetsSuggestionsAndHighlightsInTheSameQuery() throws Exception {
+        SearchRequestDto request = SearchRequestDto.builder()
+                .query("galaxy")
+                .includeFacets(true)
+                .includeSuggestions(true)
+                .filters(SearchRequestDto.SearchFilters.builder()
+                        .brands(List.of("Samsung"))
+                        .maxPrice(new BigDecimal("500000"))
+                        .build())
+                .build();
+
+        NativeQuery query = queryBuilder.build(request);
+
+        // The price filter narrows the hits after aggregation so every price range is still counted
+        assertFalse(filterTypes(json(query).get("function_score").get("query").get("bool")).contains("range:basePrice"));
+        assertEquals(500000.0, json(query.getFilter()).get("range").get("basePrice").get("lte").asDouble());
+        assertEquals(Set.of(ProductSearchQueryBuilder.PRICED_FACETS, ProductSearchQueryBuilder.PRICE_RANGES_FACET),
+                query.getAggregations().keySet());
+        assertEquals("-100000", query.getAggregations().get(ProductSearchQueryBuilder.PRICE_RANGES_FACET)
+                .range().ranges().get(0).key());
+        assertEquals("10000000-", query.getAggregations().get(ProductSearchQueryBuilder.PRICE_RANGES_FACET)
+                .range().ranges().get(5).key());
+        assertTrue(query.getAggregations().get(ProductSearchQueryBuilder.PRICED_FACETS).aggregations()
+                .containsKey(ProductSearchQueryBuilder.BRANDS_FACET));
+        assertEquals("galaxy", query.getSuggester().suggesters()
+                .get(ProductSearchQueryBuilder.COMPLETION_SUGGESTION).prefix());
+        assertEquals(ProductSearchDocument.ALL_CATEGORIES, query.getSuggester().suggesters()
+                .get(ProductSearchQueryBuilder.COMPLETION_SUGGESTION).completion()
+                .contexts().get(ProductSearchDocument.CATEGORY_CONTEXT).get(0).context().category());
+        assertNotNull(query.getSuggester().suggesters().get(ProductSearchQueryBuilder.SPELLING_SUGGESTION).term());
+        assertNotNull(query.getHighlightQuery().orElse(null));
+    }
+
+    @Test
+    void build_ShouldKeepPriceInTheQueryWithoutFacets() throws Exception {
+        SearchRequestDto request = SearchRequestDto.builder()
+                .query("galaxy")
+                .highlightResults(false)
+                .filters(SearchRequestDto.SearchFilters.builder().maxPrice(new BigDecimal("500000")).build())
+                .build();
+
+        NativeQuery query = queryBuilder.build(request);
+
+        assertTrue(filterTypes(json(query).get("function_score").get("query").get("bool")).contains("range:basePrice"));
+        assertNull(query.getFilter());
+        assertTrue(query.getAggregations().isEmpty());
+        assertNull(query.getSuggester());
+        assertTrue(query.getHighlightQuery().isEmpty());
+    }
+
+    private JsonNode json(NativeQuery query) throws Exception {
+        return json(query.getQuery());
+    }
+
+    private JsonNode json(Query query) throws Exception {
+        String text = query.toString();
+        return objectMapper.readTree(text.substring(text.indexOf('{')));
+    }
+
+    private static List<String> filterTypes(JsonNode bool) {
+        List<String> types = new ArrayList<>();
+        bool.get("filter").forEach(filter -> filter.properties().forEach(clause ->
+                types.add(clause.getKey() + ":" + clause.getValue().properties().iterator().next().getKey())));
+        return types;
+    }
+
+    private static JsonNode filterOf(JsonNode bool, String type) {
+        for (JsonNode filter : bool.get("filter")) {
+            if (filter.has(type)) {
+                return filter.get(type);
+            }
+        }
+        throw new AssertionError("No " + type + " filter");
+    }
+}
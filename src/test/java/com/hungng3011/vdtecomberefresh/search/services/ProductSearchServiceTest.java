@@ -0,0 +1,208 @@
+package com.hungng3011.vdtecomberefresh.search.services;
+
+import com.hungng3011.vdtecomberefresh.category.dtos.CategoryDto;
+import com.hungng3011.vdtecomberefresh.common.dtos.PagedResponse;
+import com.hungng3011.vdtecomberefresh.product.dtos.ProductDto;
+import com.hungng3011.vdtecomberefresh.product.dtos.filters.ProductFilterDto;
+import com.hungng3011.vdtecomberefresh.product.services.ProductFilterService;
+import com.hungng3011.vdtecomberefresh.search.cache.PopularQueryCache;
+import com.hungng3011.vdtecomberefresh.search.cache.SearchResultCache;
+import com.hungng3011.vdtecomberefresh.search.documents.ProductSearchDocument;
+import com.hungng3011.vdtecomberefresh.search.dtos.SearchRequestDto;
+import com.hungng3011.vdtecomberefresh.search.dtos.SearchResponseDto;
+import com.hungng3011.vdtecomberefresh.search.exceptions.SearchServiceUnavailableException;
+import com.hungng3011.vdtecomberefresh.search.exceptions.SearchValidationException;
+import com.hungng3011.vdtecomberefresh.search.utils.PrefixTrie;
+import com.hungng3011.vdtecomberefresh.search.utils.SearchCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProductSearchServiceTest {
+
+    @Mock
+    private ProductSearchEngine productSearchEngine;
+
+    @Mock
+    private SearchAnalyticsService searchAnalyticsService;
+
+    @Mock
+    private ProductFilterService productFilterService;
+
+    @Mock
+    private PopularQueryCache popularQueryCache;
+
+    @Mock
+    private SearchResultCache searchResultCache;
+
+    @Mock
+    private SearchCircuitBreaker searchCircuitBreaker;
+
+    @InjectMocks
+    private ProductSearchService productSearchService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(searchResultCache.get(any(), any())).thenAnswer(invocation ->
+                invocation.<Function<SearchRequestDto, SearchResponseDto<ProductSearchDocument>>>getArgument(1)
+                        .apply(invocation.getArgument(0)));
+        lenient().when(searchCircuitBreaker.execute(any())).thenAnswer(invocation ->
+                invocation.<Supplier<?>>getArgument(0).get());
+    }
+
+    @Test
+    void search_ShouldPassTheDecodedCursorToTheEngineAndLogTheSearch() {
+        SearchCursor cursor = new SearchCursor("pit-1", List.of(1.0, "2"));
+        SearchResponseDto<ProductSearchDocument> page = SearchResponseDto.<ProductSearchDocument>builder()
+                .results(List.of()).build();
+        when(productSearchEngine.search(any(SearchRequestDto.class), eq(cursor))).thenReturn(page);
+        SearchRequestDto request = request(2, cursor.encode());
+        request.setQuery("  phone  ");
+
+        assertSame(page, productSearchService.search(request));
+
+        assertEquals("phone", request.getQuery());
+        verify(searchAnalyticsService).logSearch(request, page);
+    }
+
+    @Test
+    void search_ShouldRejectOffsetsBeyondTheWindow() {
+        SearchRequestDto request = request(100, null);
+        request.setPage(100);
+
+        assertThrows(SearchValidationException.class, () -> productSearchService.search(request));
+        verifyNoInteractions(productSearchEngine);
+    }
+
+    @Test
+    void search_ShouldRejectTamperedCursor() {
+        assertThrows(SearchValidationException.class, () -> productSearchService.search(request(2, "not-a-cursor")));
+    }
+
+    @Test
+    void getSuggestions_ShouldAnswerFromPopularQueriesWithoutElasticsearch() {
+        when(popularQueryCache.complete("iph", 2)).thenReturn(List.of(
+                new PrefixTrie.Completion<>("iphone 15", 90L), new PrefixTrie.Completion<>("iphone case", 50L)));
+
+        List<SearchResponseDto.SearchSuggestion> suggestions = productSearchService.getSuggestions("iph", 2);
+
+        assertEquals(List.of("iphone 15", "iphone case"),
+                suggestions.stream().map(SearchResponseDto.SearchSuggestion::getText).toList());
+        assertEquals(90L, suggestions.get(0).getFrequency());
+        verifyNoInteractions(productSearchEngine);
+    }
+
+    @Test
+    void getSuggestions_ShouldFillFromTheCompletionSuggesterAndSkipDuplicates() {
+        when(popularQueryCache.complete("iph", 3)).thenReturn(List.of(new PrefixTrie.Completion<>("iPhone 15", 90L)));
+        when(productSearchEngine.complete("iph", 3, null)).thenReturn(List.of(
+                completion("iphone 15", 1500.0), completion("iPhone 15 Pro", 1200.0)));
+
+        List<SearchResponseDto.SearchSuggestion> suggestions = productSearchService.getSuggestions("iph", 3);
+
+        assertEquals(List.of("iPhone 15", "iPhone 15 Pro"),
+                suggestions.stream().map(SearchResponseDto.SearchSuggestion::getText).toList());
+    }
+
+    @Test
+    void getSuggestions_ShouldAskTheEngineDirectlyForACategory() {
+        when(productSearchEngine.complete("iph", 5, 7L)).thenReturn(List.of(completion("iPhone 15", 1500.0)));
+
+        List<SearchResponseDto.SearchSuggestion> suggestions = productSearchService.getSuggestions("iph", 5, 7L);
+
+        assertEquals(1, suggestions.size());
+        verifyNoInteractions(popularQueryCache);
+    }
+
+    @Test
+    void search_ShouldFallBackToTheDatabaseWhileTheIndexIsUnavailable() {
+        doThrow(new SearchServiceUnavailableException("Search circuit breaker is open"))
+                .when(searchCircuitBreaker).execute(any());
+        CategoryDto category = new CategoryDto();
+        category.setId(7L);
+        category.setName("Accessories");
+        ProductDto product = new ProductDto();
+        product.setId(3L);
+        product.setName("Phone case");
+        product.setBasePrice(new BigDecimal("9.90"));
+        product.setImages(List.of("case.jpg"));
+        product.setCategory(category);
+        when(productFilterService.filterProducts(any(ProductFilterDto.class))).thenReturn(PagedResponse.<ProductDto>builder()
+                .content(List.of(product))
+                .pagination(PagedResponse.PaginationMetadata.builder()
+                        .page(0).size(2).totalElements(1).totalPages(1).build())
+                .build());
+        SearchRequestDto request = request(2, null);
+        request.setSortBy("price");
+        request.setSortDirection(SearchRequestDto.SortDirection.ASC);
+        request.setFilters(SearchRequestDto.SearchFilters.builder()
+                .categoryIds(List.of(7L))
+                .maxPrice(new BigDecimal("20"))
+                .build());
+
+        SearchResponseDto<ProductSearchDocument> response = productSearchService.search(request);
+
+        ArgumentCaptor<ProductFilterDto> filter = ArgumentCaptor.forClass(ProductFilterDto.class);
+        verify(productFilterService).filterProducts(filter.capture());
+        assertEquals("phone", filter.getValue().getName());
+        assertEquals(7L, filter.getValue().getCategoryId());
+        assertEquals(new BigDecimal("20"), filter.getValue().getMaxPrice());
+        assertEquals(ProductFilterDto.ProductSortField.BASE_PRICE, filter.getValue().getSortBy());
+        assertEquals(ProductFilterDto.SortDirection.ASC, filter.getValue().getSortDirection());
+        assertEquals(Boolean.TRUE, response.getMetadata().getDegraded());
+        assertEquals(1L, response.getMetadata().getTotalHits());
+        ProductSearchDocument document = response.getResults().get(0);
+        assertEquals("3", document.getId());
+        assertEquals("Accessories", document.getCategoryName());
+        assertEquals("case.jpg", document.getPrimaryImageUrl());
+        verifyNoInteractions(productSearchEngine);
+    }
+
+    @Test
+    void search_ShouldNotFallBackWhenContinuingACursor() {
+        SearchServiceUnavailableException open = new SearchServiceUnavailableException("Search circuit breaker is open");
+        doThrow(open).when(searchCircuitBreaker).execute(any());
+
+        String cursor = new SearchCursor(null, List.of(1.0, "2")).encode();
+        assertEquals(open, assertThrows(SearchServiceUnavailableException.class,
+                () -> productSearchService.search(request(2, cursor))));
+        verifyNoInteractions(productFilterService);
+    }
+
+    private static SearchRequestDto request(int size, String cursor) {
+        return SearchRequestDto.builder()
+                .query("phone")
+                .size(size)
+                .cursor(cursor)
+                .build();
+    }
+
+    private static SearchResponseDto.SearchSuggestion completion(String text, double score) {
+        return SearchResponseDto.SearchSuggestion.builder()
+                .text(text)
+                .score(score)
+                .type(SearchResponseDto.SearchSuggestion.SuggestionType.COMPLETION)
+                .build();
+    }
+}
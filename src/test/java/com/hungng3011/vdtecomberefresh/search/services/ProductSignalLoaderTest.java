@@ -0,0 +1,102 @@
+package com.hungng3011.vdtecomberefresh.search.services;
+
+import com.hungng3011.vdtecomberefresh.order.repositories.OrderRepository;
+import com.hungng3011.vdtecomberefresh.product.repositories.VariationRepository;
+import com.hungng3011.vdtecomberefresh.search.services.ProductSignalLoader.ProductSignals;
+import com.hungng3011.vdtecomberefresh.search.services.SearchAnalyticsService.ProductEngagement;
+import com.hungng3011.vdtecomberefresh.stock.repositories.StockRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProductSignalLoaderTest {
+
+    @Mock
+    private StockRepository stockRepository;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private VariationRepository variationRepository;
+
+    @Mock
+    private SearchAnalyticsService searchAnalyticsService;
+
+    @InjectMocks
+    private ProductSignalLoader productSignalLoader;
+
+    @Test
+    void load_ShouldCombineStockSalesEngagementAndVariations() {
+        List<Long> ids = List.of(1L, 2L, 3L);
+        when(stockRepository.summarizeByProductIds(ids)).thenReturn(List.<Object[]>of(
+                new Object[]{1L, 40L, 10L},
+                new Object[]{2L, 3L, 5L}));
+        when(orderRepository.countOrdersByProductIds(ids, ProductSignalLoader.SALE_STATUSES))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, 12L}));
+        when(variationRepository.findLabelsByProductIds(ids)).thenReturn(List.of(
+                new Object[]{1L, 100L, "Color", "Blue"},
+                new Object[]{1L, 101L, "color", "Blue"},
+                new Object[]{1L, 102L, "Size", "XL"},
+                new Object[]{1L, 103L, "RAM", "16GB"}));
+        when(searchAnalyticsService.getProductEngagement(ids)).thenReturn(Map.of(2L, new ProductEngagement(30, 4, 1.8f)));
+
+        Map<Long, ProductSignals> signals = productSignalLoader.load(ids);
+
+        ProductSignals first = signals.get(1L);
+        assertTrue(first.inStock());
+        assertFalse(first.lowStock());
+        assertEquals(40, first.stockQuantity());
+        assertEquals(12, first.orderCount());
+        assertEquals(List.of("Blue"), first.colors());
+        assertEquals(List.of("XL"), first.sizes());
+        assertEquals(List.of("100", "101", "102", "103"), first.variationIds());
+        assertEquals(1.0f, first.rankingScore());
+
+        ProductSignals second = signals.get(2L);
+        assertTrue(second.lowStock());
+        assertEquals(30, second.viewCount());
+        assertEquals(4, second.clickCount());
+        assertEquals(1.8f, second.rankingScore());
+
+        assertEquals(ProductSignals.NONE, signals.get(3L));
+        assertFalse(signals.get(3L).inStock());
+    }
+
+    @Test
+    void load_ShouldUseTheSameNumberOfQueriesForAnyBatchSize() {
+        List<Long> ids = LongStream.rangeClosed(1, 1000).boxed().toList();
+
+        Map<Long, ProductSignals> signals = productSignalLoader.load(ids);
+
+        assertEquals(1000, signals.size());
+        verify(stockRepository, times(1)).summarizeByProductIds(anyCollection());
+        verify(orderRepository, times(1)).countOrdersByProductIds(anyCollection(), any());
+        verify(variationRepository, times(1)).findLabelsByProductIds(anyCollection());
+        verify(searchAnalyticsService, times(1)).getProductEngagement(anyCollection());
+    }
+
+    @Test
+    void load_ShouldSkipQueriesForAnEmptyBatch() {
+        assertTrue(productSignalLoader.load(List.of()).isEmpty());
+
+        verifyNoInteractions(stockRepository, orderRepository, variationRepository, searchAnalyticsService);
+    }
+}
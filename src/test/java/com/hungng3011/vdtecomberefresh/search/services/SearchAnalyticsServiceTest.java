@@ -0,0 +1,256 @@
+package com.hungng3011.vdtecomberefresh.search.services;
+
+import com.hungng3011.vdtecomberefresh.search.documents.ProductSearchDocument;
+import com.hungng3011.vdtecomberefresh.search.dtos.SearchRequestDto;
+import com.hungng3011.vdtecomberefresh.search.dtos.SearchResponseDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SearchAnalyticsServiceTest {
+
+    private static final String DAILY_KEY = "search:analytics:daily:" + LocalDate.now();
+    private static final String HOUR = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH"));
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private RedisOperations<String, Object> pipeline;
+
+    @Mock
+    private ZSetOperations<String, Object> zSetOperations;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private SetOperations<String, Object> setOperations;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SearchAnalyticsService analyticsService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        analyticsService = new SearchAnalyticsService(redisTemplate, meterRegistry, 3, 10, 2, 100, 64, 4, 2);
+        lenient().when(pipeline.opsForZSet()).thenReturn(zSetOperations);
+        lenient().when(pipeline.<Object, Object>opsForHash()).thenReturn(hashOperations);
+        lenient().when(pipeline.opsForSet()).thenReturn(setOperations);
+        lenient().when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation ->
+                invocation.<SessionCallback<?>>getArgument(0).execute(pipeline));
+    }
+
+    @Test
+    void logSearch_ShouldNotTouchRedisUntilTheFlush() {
+        analyticsService.logSearch(request("phone"), response(5, 12));
+
+        verifyNoInteractions(redisTemplate);
+        assertEquals(1, analyticsService.getPendingCount());
+    }
+
+    @Test
+    void flush_ShouldAddUpTheDailyTotalsAndWriteThemInOnePipeline() {
+        analyticsService.logSearch(request("phone"), response(5, 10));
+        analyticsService.logSearch(request("phone"), response(7, 20));
+        analyticsService.logSearch(request("unicorn"), response(0, 30));
+
+        analyticsService.flush();
+
+        verify(redisTemplate, times(1)).executePipelined(any(SessionCallback.class));
+        verifyNoInteractions(zSetOperations);
+        verify(hashOperations).increment(DAILY_KEY, "total_searches", 3L);
+        verify(hashOperations).increment(DAILY_KEY, "total_results", 12L);
+        verify(hashOperations).increment(DAILY_KEY, "zero_result_searches", 1L);
+        verify(hashOperations).increment(DAILY_KEY, "total_search_time", 60L);
+        verify(pipeline).expire(DAILY_KEY, 90, TimeUnit.DAYS);
+        assertEquals(0, analyticsService.getPendingCount());
+    }
+
+    @Test
+    void flush_ShouldWeightEachShownProductByTheChanceItsPositionIsLookedAt() {
+        SearchRequestDto secondPage = request("phone");
+        secondPage.setPage(1);
+        secondPage.setSize(2);
+        analyticsService.logSearch(request("phone"), response(5, 10, "7", "8"));
+        analyticsService.logSearch(secondPage, response(5, 10, "8", "9"));
+
+        analyticsService.flush();
+
+        String key = "search:analytics:product:examinations:day:" + LocalDate.now();
+        verify(zSetOperations).incrementScore(key, "7", 1.0);
+        verify(zSetOperations).incrementScore(key, "8", 1 / log2(3) + 1 / log2(4));
+        verify(zSetOperations).incrementScore(key, "9", 1 / log2(5));
+        verify(pipeline).expire(key, Duration.ofDays(3));
+        verify(hashOperations).increment(eq(DAILY_KEY), eq("examinations"), any(Double.class));
+        verify(setOperations).add(eq("search:analytics:product:ranking:pending"), any(Object[].class));
+    }
+
+    @Test
+    void logSearchResultClick_ShouldCountTheClickInTheDailyWindowOnlyWithAPosition() {
+        String dailyClicks = "search:analytics:product:clicks:day:" + LocalDate.now();
+        lenient().when(pipeline.opsForList()).thenReturn(mock(ListOperations.class));
+
+        analyticsService.logSearchResultClick("phone", "7", 2);
+        analyticsService.logSearchResultClick("phone", "8", 0);
+
+        verify(zSetOperations).incrementScore("search:analytics:product:clicks", "7", 1);
+        verify(zSetOperations).incrementScore("search:analytics:product:clicks", "8", 1);
+        verify(zSetOperations).incrementScore(dailyClicks, "7", 1);
+        verify(zSetOperations, never()).incrementScore(dailyClicks, "8", 1);
+        verify(hashOperations, times(1)).increment(DAILY_KEY, "search_clicks", 1L);
+        verify(setOperations).add("search:analytics:product:ranking:pending", "7");
+    }
+
+    @Test
+    void getClickStats_ShouldAddUpTheWindowOfTheRequestedProductsOnly() {
+        String yesterday = LocalDate.now().minusDays(1).toString();
+        List<Object> results = new ArrayList<>();
+        results.add(Arrays.asList(1.5, null));
+        results.add(Arrays.asList(2.0, null));
+        results.add(Arrays.asList(1.0, 4.0));
+        results.add(Arrays.asList(20.0, null));
+        results.add(Arrays.asList(30.0, null));
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            invocation.<SessionCallback<?>>getArgument(0).execute(pipeline);
+            return results;
+        });
+
+        Map<Long, SearchAnalyticsService.ClickStats> stats = analyticsService.getClickStats(List.of(7L, 8L));
+
+        verify(zSetOperations).score("search:analytics:product:clicks:day:" + yesterday, "7", "8");
+        verify(zSetOperations).score("search:analytics:product:examinations:day:" + yesterday, "7", "8");
+        // Product 8 was clicked but never examined inside the window, so it has no rate to score
+        assertEquals(Map.of(7L, new SearchAnalyticsService.ClickStats(3, 50.0, 1.5f)), stats);
+    }
+
+    @Test
+    void logProductView_ShouldQueueViewsAndWriteThemPerProductOnTheFlush() {
+        analyticsService.logProductView(7L);
+        analyticsService.logProductView(7L);
+        analyticsService.logProductView(8L);
+        verifyNoInteractions(redisTemplate);
+
+        analyticsService.flush();
+
+        verify(redisTemplate, times(1)).executePipelined(any(SessionCallback.class));
+        verify(zSetOperations).incrementScore("search:analytics:product:views", "7", 2L);
+        verify(zSetOperations).incrementScore("search:analytics:product:views", "8", 1L);
+    }
+
+    @Test
+    void logSearch_ShouldDropAndCountEventsOnceTheQueueIsFull() {
+        for (int i = 0; i < 5; i++) {
+            analyticsService.logSearch(request("phone"), response(1, 1));
+        }
+
+        assertEquals(3, analyticsService.getPendingCount());
+        assertEquals(2.0, meterRegistry.get("search.analytics.dropped").counter().count());
+    }
+
+    @Test
+    void flush_ShouldCountFailedBatchesAndCarryOn() {
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenThrow(new IllegalStateException("redis down"));
+        analyticsService.logSearch(request("phone"), response(1, 1));
+
+        analyticsService.flush();
+
+        assertEquals(0, analyticsService.getPendingCount());
+        assertEquals(1.0, meterRegistry.get("search.analytics.flush.failures").counter().count());
+        verifyNoInteractions(zSetOperations);
+    }
+
+    @Test
+    void mergeTopQueries_ShouldAddTheCountsSinceTheLastMergeToTheHourlyAndDailySets() {
+        analyticsService.logSearch(request("phone"), response(5, 10));
+        analyticsService.logSearch(request("phone"), response(7, 20));
+        analyticsService.logSearch(request("unicorn"), response(0, 30));
+        analyticsService.flush();
+
+        analyticsService.mergeTopQueries();
+
+        String hourly = "search:analytics:popular:hour:" + HOUR;
+        String daily = "search:analytics:popular:day:" + LocalDate.now();
+        verify(zSetOperations).incrementScore(hourly, "phone", 2);
+        verify(zSetOperations).incrementScore(daily, "phone", 2);
+        verify(zSetOperations).removeRange(hourly, 0, -101);
+        verify(pipeline).expire(hourly, Duration.ofHours(26));
+        verify(zSetOperations).incrementScore("search:analytics:failed:hour:" + HOUR, "unicorn", 1);
+
+        // Counts already merged are not added again
+        analyticsService.mergeTopQueries();
+        verify(redisTemplate, times(2)).executePipelined(any(SessionCallback.class));
+    }
+
+    @Test
+    void getPopularQueryCounts_ShouldRankTheUnionOfTheLastWeeksDailySets() {
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            invocation.<SessionCallback<?>>getArgument(0).execute(pipeline);
+            return List.of(2L, true, new LinkedHashSet<>(List.of(ZSetOperations.TypedTuple.<Object>of("phone", 12.0),
+                    ZSetOperations.TypedTuple.<Object>of("case", 4.0))));
+        });
+
+        Map<String, Long> counts = analyticsService.getPopularQueryCounts(SearchAnalyticsService.QueryWindow.WEEK, 2);
+
+        ArgumentCaptor<Collection<String>> otherKeys = ArgumentCaptor.captor();
+        verify(zSetOperations).unionAndStore(eq("search:analytics:popular:day:" + LocalDate.now()), otherKeys.capture(),
+                eq("search:analytics:popular:top:week"));
+        assertEquals(6, otherKeys.getValue().size());
+        assertEquals(Map.of("phone", 12L, "case", 4L), counts);
+        assertEquals(List.of("phone", "case"), List.copyOf(counts.keySet()));
+    }
+
+    private static SearchRequestDto request(String query) {
+        return SearchRequestDto.builder().query(query).build();
+    }
+
+    private static SearchResponseDto<ProductSearchDocument> response(long totalHits, long searchTime,
+                                                                    String... productIds) {
+        return SearchResponseDto.<ProductSearchDocument>builder()
+                .results(Arrays.stream(productIds).map(id -> ProductSearchDocument.builder().id(id).build()).toList())
+                .metadata(SearchResponseDto.SearchMetadata.builder()
+                        .totalHits(totalHits)
+                        .searchTime(searchTime)
+                        .build())
+                .build();
+    }
+
+    private static double log2(int value) {
+        return Math.log(value) / Math.log(2);
+    }
+}
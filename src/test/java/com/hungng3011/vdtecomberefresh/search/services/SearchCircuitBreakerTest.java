@@ -0,0 +1,131 @@
+package com.hungng3011.vdtecomberefresh.search.services;
+
+import com.hungng3011.vdtecomberefresh.search.exceptions.SearchServiceUnavailableException;
+import com.hungng3011.vdtecomberefresh.search.exceptions.SearchValidationException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SearchCircuitBreakerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private SearchCircuitBreaker breaker;
+
+    @AfterEach
+    void tearDown() {
+        breaker.shutdown();
+    }
+
+    @Test
+    void execute_ShouldOpenOnceTheFailureRateReachesTheThresholdAndShortCircuit() {
+        breaker = breaker(Duration.ofSeconds(1), 1, 1, Duration.ofMinutes(1));
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals("ok", breaker.execute(() -> "ok"));
+        for (int i = 0; i < 3; i++) {
+            assertThrows(SearchServiceUnavailableException.class, () -> breaker.execute(() -> {
+                calls.incrementAndGet();
+                throw new IllegalStateException("cluster down");
+            }));
+        }
+
+        assertEquals(SearchCircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(SearchServiceUnavailableException.class, () -> breaker.execute(calls::incrementAndGet));
+        assertEquals(3, calls.get());
+        assertEquals(1.0, meterRegistry.get("search.circuit.calls").tag("outcome", "short_circuited").counter().count());
+    }
+
+    @Test
+    void execute_ShouldGiveUpAfterTheLatencyBudget() {
+        breaker = breaker(Duration.ofMillis(50), 1, 1, Duration.ofMinutes(1));
+
+        long start = System.nanoTime();
+        assertThrows(SearchServiceUnavailableException.class, () -> breaker.execute(() -> {
+            sleep(Duration.ofSeconds(5));
+            return "late";
+        }));
+
+        assertEquals(true, Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(1)) < 0);
+        assertEquals(1.0, meterRegistry.get("search.circuit.calls").tag("outcome", "timeout").counter().count());
+    }
+
+    @Test
+    void execute_ShouldRejectCallsOnceTheBulkheadIsFull() throws InterruptedException {
+        breaker = breaker(Duration.ofSeconds(5), 1, 1, Duration.ofMinutes(1));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocked = () -> breaker.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+        Thread running = new Thread(blocked);
+        Thread queued = new Thread(blocked);
+        running.start();
+        started.await();
+        queued.start();
+        sleep(Duration.ofMillis(100));
+
+        assertThrows(SearchServiceUnavailableException.class, () -> breaker.execute(() -> "third"));
+
+        release.countDown();
+        running.join();
+        queued.join();
+        assertEquals(1.0, meterRegistry.get("search.circuit.calls").tag("outcome", "rejected").counter().count());
+        assertEquals(SearchCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void execute_ShouldCloseAgainAfterSuccessfulTrialCalls() {
+        breaker = breaker(Duration.ofSeconds(1), 1, 1, Duration.ZERO);
+        for (int i = 0; i < 4; i++) {
+            assertThrows(SearchServiceUnavailableException.class, () -> breaker.execute(() -> {
+                throw new IllegalStateException("cluster down");
+            }));
+        }
+
+        assertEquals(SearchCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals("ok", breaker.execute(() -> "ok"));
+        assertEquals("ok", breaker.execute(() -> "ok"));
+
+        assertEquals(SearchCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void execute_ShouldRethrowValidationErrorsWithoutCountingThemAsFailures() {
+        breaker = breaker(Duration.ofSeconds(1), 1, 1, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(SearchValidationException.class, () -> breaker.execute(() -> {
+                throw new SearchValidationException("Search cursor has expired");
+            }));
+        }
+
+        assertEquals(SearchCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    private SearchCircuitBreaker breaker(Duration latencyBudget, int maxConcurrent, int queueCapacity,
+                                         Duration openDuration) {
+        return new SearchCircuitBreaker(meterRegistry, latencyBudget, maxConcurrent, queueCapacity,
+                4, 4, 50, openDuration, 2);
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.hungng3011.vdtecomberefresh.search.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountMinSketchTest {
+
+    @Test
+    void estimate_ShouldNeverUndercountAndStayWithinTheErrorBound() {
+        CountMinSketch sketch = new CountMinSketch(1024, 4);
+        for (int i = 0; i < 10_000; i++) {
+            sketch.add("query " + (i % 2_000), 1);
+        }
+        sketch.add("phone", 500);
+
+        long estimate = sketch.estimate("phone");
+        // e / width of the 10,500 added is about 28
+        assertTrue(estimate >= 500 && estimate <= 528, "estimate " + estimate);
+        assertTrue(sketch.estimate("query 7") >= 5);
+    }
+
+    @Test
+    void clear_ShouldForgetEveryCount() {
+        CountMinSketch sketch = new CountMinSketch(64, 2);
+        sketch.add("phone", 3);
+
+        sketch.clear();
+
+        assertEquals(0, sketch.estimate("phone"));
+    }
+}
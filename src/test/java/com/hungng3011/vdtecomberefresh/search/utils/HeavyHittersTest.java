@@ -0,0 +1,61 @@
+package com.hungng3011.vdtecomberefresh.search.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeavyHittersTest {
+
+    @Test
+    void top_ShouldFindTheFrequentQueriesInALongTail() {
+        HeavyHitters heavyHitters = new HeavyHitters(10, 1024, 4);
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            heavyHitters.add("tail " + random.nextInt(5_000), 1);
+            if (i % 10 == 0) {
+                heavyHitters.add("iphone", 1);
+            }
+            if (i % 20 == 0) {
+                heavyHitters.add("laptop", 1);
+            }
+        }
+
+        List<HeavyHitters.HeavyHitter> top = heavyHitters.top(2);
+
+        assertEquals(List.of("iphone", "laptop"), top.stream().map(HeavyHitters.HeavyHitter::item).toList());
+        assertTrue(top.get(0).count() >= 2_000);
+        assertTrue(top.get(0).count() < 2_100);
+        assertEquals(10, heavyHitters.size());
+    }
+
+    @Test
+    void drainUnmerged_ShouldReturnOnlyTheOccurrencesSinceThePreviousDrain() {
+        HeavyHitters heavyHitters = new HeavyHitters(5, 64, 4);
+        heavyHitters.add("phone", 3);
+        heavyHitters.add("case", 1);
+
+        assertEquals(Map.of("phone", 3L, "case", 1L), heavyHitters.drainUnmerged());
+
+        heavyHitters.add("phone", 2);
+        assertEquals(Map.of("phone", 2L), heavyHitters.drainUnmerged());
+        assertEquals(5L, heavyHitters.top(1).get(0).count());
+    }
+
+    @Test
+    void add_ShouldKeepTheCandidatesWhenARareQueryArrivesAtCapacity() {
+        HeavyHitters heavyHitters = new HeavyHitters(2, 64, 4);
+        heavyHitters.add("phone", 5);
+        heavyHitters.add("case", 3);
+
+        heavyHitters.add("rare", 1);
+        heavyHitters.add("charger", 4);
+
+        assertEquals(List.of("phone", "charger"),
+                heavyHitters.top(2).stream().map(HeavyHitters.HeavyHitter::item).toList());
+    }
+}
@@ -0,0 +1,45 @@
+package com.hungng3011.vdtecomberefresh.search.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrefixTrieTest {
+
+    @Test
+    void complete_ShouldReturnTheBestRankedPhrasesWithThePrefix() {
+        Map<String, Long> ranked = new LinkedHashMap<>();
+        ranked.put("iphone 15", 90L);
+        ranked.put("ipad", 70L);
+        ranked.put("Iphone case", 50L);
+        ranked.put("samsung", 40L);
+        ranked.put("iphone charger", 10L);
+        PrefixTrie<Long> trie = PrefixTrie.of(ranked, 2);
+
+        assertEquals(List.of("iphone 15", "Iphone case"), phrases(trie.complete("IPH", 5)));
+        assertEquals(List.of("iphone 15"), phrases(trie.complete("iph", 1)));
+        assertEquals(90L, trie.complete("iphone", 1).get(0).value());
+        assertTrue(trie.complete("xbox", 5).isEmpty());
+        assertTrue(trie.complete("  ", 5).isEmpty());
+    }
+
+    @Test
+    void of_ShouldKeepTheBetterRankedOfPhrasesDifferingOnlyInCase() {
+        Map<String, Long> ranked = new LinkedHashMap<>();
+        ranked.put("Laptop", 20L);
+        ranked.put("laptop ", 5L);
+        PrefixTrie<Long> trie = PrefixTrie.of(ranked, 5);
+
+        assertEquals(1, trie.size());
+        assertEquals(20L, trie.complete("lap", 5).get(0).value());
+    }
+
+    private static List<String> phrases(List<PrefixTrie.Completion<Long>> completions) {
+        return completions.stream().map(PrefixTrie.Completion::phrase).toList();
+    }
+}
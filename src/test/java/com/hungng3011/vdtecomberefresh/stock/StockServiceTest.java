@@ -1,7 +1,11 @@
 package com.hungng3011.vdtecomberefresh.stock;
 
+import com.hungng3011.vdtecomberefresh.category.entities.Category;
+import com.hungng3011.vdtecomberefresh.product.cache.ProductFacetCache;
 import com.hungng3011.vdtecomberefresh.product.entities.Product;
 import com.hungng3011.vdtecomberefresh.product.entities.Variation;
+import com.hungng3011.vdtecomberefresh.product.repositories.ProductRepository;
+import com.hungng3011.vdtecomberefresh.search.events.ProductIndexEvent;
 import com.hungng3011.vdtecomberefresh.stock.dtos.StockDto;
 import com.hungng3011.vdtecomberefresh.stock.dtos.StockHistoryDto;
 import com.hungng3011.vdtecomberefresh.stock.entities.Stock;
@@ -20,12 +24,14 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -46,6 +52,15 @@ public class StockServiceTest {
     @Mock
     private StockHistoryMapper stockHistoryMapper;
 
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductFacetCache productFacetCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private StockService stockService;
 
@@ -324,6 +339,102 @@ public class StockServiceTest {
         assertEquals(reference, capturedHistory.getReference());
     }
 
+    @Test
+    void delete_ShouldEvictCategoryFacetsOnlyWhenTheStockWasAvailable() {
+        // Arrange
+        Category category = new Category();
+        category.setId(7L);
+        testProduct.setCategory(category);
+        Stock soldOut = new Stock();
+        soldOut.setId(2L);
+        soldOut.setProduct(testProduct);
+        soldOut.setQuantity(0);
+        when(stockRepository.existsById(any())).thenReturn(true);
+        when(stockRepository.findById(1L)).thenReturn(Optional.of(testStock));
+        when(stockRepository.findById(2L)).thenReturn(Optional.of(soldOut));
+
+        // Act: deleting sold-out stock changes nothing, deleting available stock does
+        stockService.delete(2L);
+        verify(productFacetCache, never()).evictCategory(any());
+        stockService.delete(1L);
+
+        // Assert
+        verify(productFacetCache).evictCategory(7L);
+    }
+
+    @Test
+    void update_MovingStockToAnotherProduct_ShouldRefreshBothProducts() {
+        // Arrange
+        Category phones = new Category();
+        phones.setId(7L);
+        testProduct.setCategory(phones);
+        Category tablets = new Category();
+        tablets.setId(8L);
+        Product tablet = new Product();
+        tablet.setId(2L);
+        tablet.setCategory(tablets);
+        testStockDto.setProductId(2L);
+        Stock moved = new Stock();
+        moved.setId(1L);
+        moved.setQuantity(10);
+        when(stockRepository.existsById(1L)).thenReturn(true);
+        when(stockRepository.findById(1L)).thenReturn(Optional.of(testStock));
+        when(productRepository.findById(2L)).thenReturn(Optional.of(tablet));
+        when(stockMapper.toEntity(testStockDto)).thenReturn(moved);
+        when(stockRepository.save(any(Stock.class))).thenAnswer(invocation -> {
+            // Saving merges into the managed entry
+            testStock.setProduct(invocation.<Stock>getArgument(0).getProduct());
+            return invocation.getArgument(0);
+        });
+
+        // Act: the entry stays in stock, but it now counts for the tablet instead of the phone
+        stockService.update(1L, testStockDto);
+
+        // Assert
+        verify(productFacetCache).evictCategory(7L);
+        verify(productFacetCache).evictCategory(8L);
+        ArgumentCaptor<ProductIndexEvent> events = ArgumentCaptor.forClass(ProductIndexEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        assertEquals(List.of(Set.of(1L), Set.of(2L)),
+                events.getAllValues().stream().map(ProductIndexEvent::productIds).toList());
+    }
+
+    @Test
+    void performStockAction_SellingOut_ShouldEvictCategoryFacets() {
+        // Arrange
+        Category category = new Category();
+        category.setId(7L);
+        testProduct.setCategory(category);
+        testStock.setQuantity(3);
+        when(stockRepository.findById(1L)).thenReturn(Optional.of(testStock));
+        when(stockRepository.save(any(Stock.class))).thenReturn(testStock);
+
+        // Act: a partial sale keeps the product in stock, the last sale does not
+        stockService.performStockAction(1L, 1, StockActionState.SALE, "Order 1");
+        verify(productFacetCache, never()).evictCategory(any());
+        stockService.performStockAction(1L, 2, StockActionState.SALE, "Order 2");
+
+        // Assert
+        verify(productFacetCache).evictCategory(7L);
+    }
+
+    @Test
+    void performStockAction_ShouldPublishSearchIndexEventForProduct() {
+        // Arrange
+        when(stockRepository.findById(1L)).thenReturn(Optional.of(testStock));
+        when(stockRepository.save(any(Stock.class))).thenReturn(testStock);
+
+        // Act
+        stockService.performStockAction(1L, 5, StockActionState.RESTOCK, "Restock");
+
+        // Assert
+        ArgumentCaptor<ProductIndexEvent> event = ArgumentCaptor.forClass(ProductIndexEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(ProductIndexEvent.Action.UPSERT, event.getValue().action());
+        assertEquals(Set.of(testProduct.getId()), event.getValue().productIds());
+        assertEquals("stock", event.getValue().source());
+    }
+
     @Test
     void performStockAction_Sale_WithInsufficientStock_ShouldThrowException() {
         // Arrange
@@ -0,0 +1,99 @@
+package com.hungng3011.vdtecomberefresh.stock.repositories;
+
+import com.hungng3011.vdtecomberefresh.VdtEcomBeRefreshApplication;
+import com.hungng3011.vdtecomberefresh.benchmark.EmbeddedPostgresTestConfig;
+import com.hungng3011.vdtecomberefresh.category.entities.Category;
+import com.hungng3011.vdtecomberefresh.product.entities.Product;
+import com.hungng3011.vdtecomberefresh.stock.entities.Stock;
+import com.hungng3011.vdtecomberefresh.stock.enums.StockStatus;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the search indexing stock summary against PostgreSQL
+ */
+@DataJpaTest
+@ContextConfiguration(classes = VdtEcomBeRefreshApplication.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(EmbeddedPostgresTestConfig.class)
+@TestPropertySource(properties = {
+        "spring.config.on-not-found=ignore",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+class StockRepositoryTest {
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Product galaxy;
+    private Product pixel;
+
+    @BeforeEach
+    void setUp() {
+        Category phones = new Category();
+        phones.setName("Phones");
+        phones.setDynamicFields(new ArrayList<>());
+        entityManager.persist(phones);
+        galaxy = product(phones, "Galaxy");
+        pixel = product(phones, "Pixel");
+
+        stock(galaxy, "GALAXY-1", 4, 1);
+        stock(galaxy, "GALAXY-2", 6, 2);
+        stock(galaxy, "GALAXY-OLD", 50, 5);
+        stock(pixel, "PIXEL-OLD", 9, 1);
+        entityManager.flush();
+        // Status is derived from the quantity on every write, so discontinue the old entries directly
+        entityManager.createQuery("UPDATE Stock s SET s.status = :status WHERE s.sku LIKE '%-OLD'")
+                .setParameter("status", StockStatus.DISCONTINUED)
+                .executeUpdate();
+        entityManager.clear();
+    }
+
+    @Test
+    void summarizeByProductIds_ShouldLeaveOutDiscontinuedStock() {
+        Map<Long, List<Number>> summary = stockRepository.summarizeByProductIds(List.of(galaxy.getId(), pixel.getId()))
+                .stream()
+                .collect(Collectors.toMap(row -> (Long) row[0], row -> List.of((Number) row[1], (Number) row[2])));
+
+        assertEquals(1, summary.size());
+        assertEquals(10L, summary.get(galaxy.getId()).get(0).longValue());
+        assertEquals(3L, summary.get(galaxy.getId()).get(1).longValue());
+    }
+
+    private Product product(Category category, String name) {
+        Product product = new Product();
+        product.setCategory(category);
+        product.setName(name);
+        product.setBasePrice(new BigDecimal("1000"));
+        entityManager.persist(product);
+        return product;
+    }
+
+    private void stock(Product product, String sku, int quantity, int lowStockThreshold) {
+        Stock stock = new Stock();
+        stock.setSku(sku);
+        stock.setProduct(product);
+        stock.setQuantity(quantity);
+        stock.setLowStockThreshold(lowStockThreshold);
+        entityManager.persist(stock);
+    }
+}